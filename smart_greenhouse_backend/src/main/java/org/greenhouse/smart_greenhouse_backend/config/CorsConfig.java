@@ -17,6 +17,7 @@ public class CorsConfig {
                         .allowedOriginPatterns("*")    // bárhonnan (file://, localhost, stb.)
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
+                        .exposedHeaders("ETag", "X-Next-Cursor")  // lapozás és feltételes lekérés a böngészőből
                         .allowCredentials(false);
             }
         };
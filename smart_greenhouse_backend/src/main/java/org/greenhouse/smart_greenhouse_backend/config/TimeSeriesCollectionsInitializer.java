@@ -0,0 +1,304 @@
+package org.greenhouse.smart_greenhouse_backend.config;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.TimeSeriesGranularity;
+import com.mongodb.client.model.TimeSeriesOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A mérési jellegű gyűjtemények (sensor_data, weather_snapshots, actionLogs) előkészítése
+ * induláskor, még mielőtt bármi írna beléjük.
+ * <p>
+ * Csak a hozzáfűzött, nem módosított és nem törölt, ismétlésre nem érzékeny {@code actionLogs}
+ * time-series gyűjtemény. A {@code sensor_data}-t a REST API módosítja és törli (MongoDB 6.0-n
+ * a time-series gyűjtemény csak korlátozott módosítást/törlést enged), és mindkét másikhoz
+ * egyedi kulcs kell az ismételt beszúrás kiszűréséhez, amit time-series gyűjtemény nem tud
+ * (az {@code _id} sem egyedi benne). Ezek hagyományos gyűjtemények, TTL indexszel.
+ * <p>
+ * Gyűjteményenként:
+ * <ul>
+ *   <li>ha nem létezik: a megfelelő fajtájú gyűjtemény a {@code timestamp} időmezővel, a megadott
+ *       meta mezővel és lejárattal (time-series: {@code expireAfterSeconds}, hagyományos: TTL index);</li>
+ *   <li>ha már a megfelelő fajta: a lejáratot a beállításhoz igazítja ({@code collMod});</li>
+ *   <li>ha más fajta: {@code storage.time-series.migrate-existing=true} esetén átnevezi
+ *       ({@code <név>_legacy}, illetve {@code <név>_timeseries}), létrehozza az újat, és átmásolja
+ *       az időbélyeggel rendelkező dokumentumokat (az egyedi kulcsba ütközőket kihagyva); a régit nem törli.
+ *       Egyébként csak figyelmeztet.</li>
+ * </ul>
+ * Mindegyikre létrehozza a {meta: 1, timestamp: -1} összetett indexet, amit a lekérdezések használnak;
+ * a {@code sensor_data}-n ez egyedi, a {@code code} + {@code timestamp} a mérés idempotencia-kulcsa.
+ * <p>
+ * MongoDB 6.0 vagy újabb szükséges.
+ */
+@Slf4j
+@Component
+public class TimeSeriesCollectionsInitializer implements SmartInitializingSingleton {
+
+    private static final String TIME_FIELD = "timestamp";
+    private static final String TTL_INDEX = "timestamp_ttl";
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int COPY_BATCH = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final boolean migrateExisting;
+    private final List<Spec> specs;
+
+    public TimeSeriesCollectionsInitializer(
+            final MongoTemplate mongoTemplate,
+            @Value("${storage.time-series.enabled:true}") final boolean enabled,
+            @Value("${storage.time-series.migrate-existing:false}") final boolean migrateExisting,
+            @Value("${storage.time-series.sensor-data.expire-after:P90D}") final Duration sensorDataExpiry,
+            @Value("${storage.time-series.weather-snapshots.expire-after:P365D}") final Duration weatherSnapshotExpiry,
+            @Value("${storage.time-series.action-logs.expire-after:P180D}") final Duration actionLogExpiry
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.migrateExisting = migrateExisting;
+        this.specs = List.of(
+                Spec.regular("sensor_data", "code", true, sensorDataExpiry),
+                Spec.regular("weather_snapshots", "greenhouseCode", false, weatherSnapshotExpiry),
+                Spec.timeSeries("actionLogs", "greenhouseCode", TimeSeriesGranularity.MINUTES, actionLogExpiry)
+        );
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            log.info("Time-series gyűjtemények inicializálása kikapcsolva");
+            return;
+        }
+        for (Spec spec : specs) {
+            try {
+                boolean timeSeries = ensureCollection(spec);
+                ensureIndexes(spec, timeSeries);
+            } catch (MongoTimeoutException e) {
+                // az adatbázis nem érhető el: a többi gyűjteménnyel sem próbálkozunk
+                log.error("MongoDB nem érhető el, a time-series gyűjtemények előkészítése kimarad: {}", e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                log.error("A(z) {} time-series gyűjtemény előkészítése sikertelen: {}", spec.name(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return a gyűjtemény a lépés után time-series-e
+     */
+    private boolean ensureCollection(Spec spec) {
+        MongoDatabase db = mongoTemplate.getDb();
+        Document info = collectionInfo(db, spec.name());
+
+        if (info == null) {
+            create(db, spec);
+            log.info("{} gyűjtemény létrehozva: {} (meta: {}, lejárat: {})",
+                    spec.timeSeries() ? "Time-series" : "Hagyományos", spec.name(), spec.metaField(), spec.expireAfter());
+            return spec.timeSeries();
+        }
+
+        boolean timeSeries = "timeseries".equals(info.getString("type"));
+        if (timeSeries == spec.timeSeries()) {
+            if (timeSeries) updateExpiry(db, spec, info);
+            return timeSeries;
+        }
+
+        if (!migrateExisting) {
+            log.warn("A(z) {} {} gyűjtemény, de {} kellene; az átállításhoz indítsd storage.time-series.migrate-existing=true beállítással",
+                    spec.name(), timeSeries ? "time-series" : "hagyományos", spec.timeSeries() ? "time-series" : "hagyományos");
+            return timeSeries;
+        }
+        return migrate(db, spec) ? spec.timeSeries() : timeSeries;
+    }
+
+    private void create(MongoDatabase db, Spec spec) {
+        if (spec.timeSeries()) {
+            db.createCollection(spec.name(), createOptions(spec));
+        } else {
+            db.createCollection(spec.name());
+            // az egyedi kulcs a másolás előtt kell, hogy az ütköző dokumentumok ne kerüljenek be
+            ensureIndexes(spec, false);
+        }
+    }
+
+    private void updateExpiry(MongoDatabase db, Spec spec, Document info) {
+        Document options = info.get("options", Document.class);
+        Number current = options == null ? null : options.get("expireAfterSeconds", Number.class);
+        long wanted = spec.expireAfterSeconds();
+        boolean same = wanted > 0 ? current != null && current.longValue() == wanted : current == null;
+        if (same) return;
+
+        Object value = wanted > 0 ? wanted : "off";
+        db.runCommand(new Document("collMod", spec.name()).append("expireAfterSeconds", value));
+        log.info("A(z) {} lejárata módosítva: {} mp → {}", spec.name(), current, value);
+    }
+
+    /**
+     * @return sikerült-e az átállítás
+     */
+    private boolean migrate(MongoDatabase db, Spec spec) {
+        String legacyName = spec.name() + (spec.timeSeries() ? "_legacy" : "_timeseries");
+        if (collectionInfo(db, legacyName) != null) {
+            log.warn("A(z) {} már létezik, a(z) {} migrálását kihagyjuk", legacyName, spec.name());
+            return false;
+        }
+
+        db.getCollection(spec.name()).renameCollection(new MongoNamespace(db.getName(), legacyName));
+        create(db, spec);
+
+        MongoCollection<Document> legacy = db.getCollection(legacyName);
+        MongoCollection<Document> target = db.getCollection(spec.name());
+        long copied = 0;
+        List<Document> batch = new ArrayList<>(COPY_BATCH);
+        try (MongoCursor<Document> cursor = legacy.find(Filters.type(TIME_FIELD, BsonType.DATE_TIME))
+                .batchSize(COPY_BATCH).iterator()) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() == COPY_BATCH) {
+                    copied += insert(target, batch);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            copied += insert(target, batch);
+        }
+
+        long skipped = legacy.countDocuments() - copied;
+        log.info("A(z) {} migrálva {} gyűjteménybe: {} dokumentum átmásolva, {} kihagyva (nincs időbélyeg vagy ismétlődő kulcs). "
+                        + "A régi adat a(z) {} gyűjteményben maradt.",
+                spec.name(), spec.timeSeries() ? "time-series" : "hagyományos", copied, skipped, legacyName);
+        return true;
+    }
+
+    /**
+     * Rendezetlen beszúrás; az egyedi kulcsba ütköző dokumentumokat kihagyjuk, más hibát továbbdobunk.
+     */
+    private static long insert(MongoCollection<Document> target, List<Document> batch) {
+        long count = batch.size();
+        try {
+            target.insertMany(batch, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            if (e.getWriteErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY)) throw e;
+            count = e.getWriteResult().getInsertedCount();
+        }
+        batch.clear();
+        return count;
+    }
+
+    private void ensureIndexes(Spec spec, boolean timeSeries) {
+        MongoCollection<Document> collection = mongoTemplate.getDb().getCollection(spec.name());
+        Map<String, Document> existing = new HashMap<>();
+        for (Document index : collection.listIndexes()) {
+            existing.put(index.getString("name"), index);
+        }
+
+        // time-series gyűjteményen egyedi index nem hozható létre
+        boolean unique = spec.unique() && !timeSeries;
+        String name = spec.metaField() + "_1_" + TIME_FIELD + "_-1";
+        Document current = existing.get(name);
+        if (current != null && current.getBoolean("unique", false) != unique) {
+            collection.dropIndex(name);
+            current = null;
+        }
+        if (current == null) {
+            createMetaTimeIndex(collection, spec, name, unique);
+        }
+
+        if (!timeSeries && !spec.timeSeries()) {
+            ensureTtlIndex(collection, spec, existing.get(TTL_INDEX));
+        }
+    }
+
+    private void createMetaTimeIndex(MongoCollection<Document> collection, Spec spec, String name, boolean unique) {
+        Bson keys = Indexes.compoundIndex(Indexes.ascending(spec.metaField()), Indexes.descending(TIME_FIELD));
+        try {
+            collection.createIndex(keys, new IndexOptions().name(name).unique(unique));
+        } catch (MongoException e) {
+            if (!unique || e.getCode() != DUPLICATE_KEY) throw e;
+            // a már bent lévő ismétlődések miatt nem lehet egyedi: a lekérdezésekhez legalább a sima index legyen meg
+            log.error("A(z) {} gyűjteményben ismétlődő {} + {} párok vannak, az egyedi index nem hozható létre; "
+                    + "az ismételt beszúrás nem szűrődik ki, amíg ki nem takarítod őket", spec.name(), spec.metaField(), TIME_FIELD);
+            collection.createIndex(keys, new IndexOptions().name(name));
+        }
+    }
+
+    private void ensureTtlIndex(MongoCollection<Document> collection, Spec spec, Document current) {
+        long wanted = spec.expireAfterSeconds();
+        if (wanted <= 0) {
+            if (current != null) {
+                collection.dropIndex(TTL_INDEX);
+                log.info("A(z) {} lejárata kikapcsolva", spec.name());
+            }
+            return;
+        }
+        if (current == null) {
+            collection.createIndex(Indexes.ascending(TIME_FIELD),
+                    new IndexOptions().name(TTL_INDEX).expireAfter(wanted, TimeUnit.SECONDS));
+            return;
+        }
+        Number seconds = current.get("expireAfterSeconds", Number.class);
+        if (seconds != null && seconds.longValue() == wanted) return;
+        mongoTemplate.getDb().runCommand(new Document("collMod", spec.name())
+                .append("index", new Document("name", TTL_INDEX).append("expireAfterSeconds", wanted)));
+        log.info("A(z) {} lejárata módosítva: {} mp → {}", spec.name(), seconds, wanted);
+    }
+
+    private static CreateCollectionOptions createOptions(Spec spec) {
+        CreateCollectionOptions options = new CreateCollectionOptions()
+                .timeSeriesOptions(new TimeSeriesOptions(TIME_FIELD)
+                        .metaField(spec.metaField())
+                        .granularity(spec.granularity()));
+        if (spec.expireAfterSeconds() > 0) {
+            options.expireAfter(spec.expireAfterSeconds(), TimeUnit.SECONDS);
+        }
+        return options;
+    }
+
+    private static Document collectionInfo(MongoDatabase db, String name) {
+        return db.listCollections().filter(Filters.eq("name", name)).first();
+    }
+
+    /**
+     * Egy gyűjtemény beállítása. Nulla lejárat: nincs automatikus törlés.
+     * A {@code unique} a {meta, timestamp} index egyediségét kéri (csak hagyományos gyűjteményen).
+     */
+    record Spec(String name, String metaField, boolean timeSeries, TimeSeriesGranularity granularity,
+                boolean unique, Duration expireAfter) {
+
+        static Spec timeSeries(String name, String metaField, TimeSeriesGranularity granularity, Duration expireAfter) {
+            return new Spec(name, metaField, true, granularity, false, expireAfter);
+        }
+
+        static Spec regular(String name, String metaField, boolean unique, Duration expireAfter) {
+            return new Spec(name, metaField, false, null, unique, expireAfter);
+        }
+
+        long expireAfterSeconds() {
+            return expireAfter == null ? 0 : expireAfter.toSeconds();
+        }
+    }
+}
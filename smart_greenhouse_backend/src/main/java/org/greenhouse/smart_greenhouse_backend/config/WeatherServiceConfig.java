@@ -0,0 +1,88 @@
+package org.greenhouse.smart_greenhouse_backend.config;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.greenhouse.smart_greenhouse_backend.repository.WeatherForecastRepository;
+import org.greenhouse.smart_greenhouse_backend.service.weather.CachingWeatherService;
+import org.greenhouse.smart_greenhouse_backend.service.weather.ForecastStore;
+import org.greenhouse.smart_greenhouse_backend.service.weather.ResilientWeatherService;
+import org.greenhouse.smart_greenhouse_backend.service.weather.WeatherLocationKey;
+import org.greenhouse.smart_greenhouse_backend.service.weather.WeatherService;
+import org.greenhouse.smart_greenhouse_backend.service.weather.WeatherServiceImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Az alkalmazás által használt {@link WeatherService} összeállítása.
+ * A {@link WeatherServiceImpl} közvetlenül az OpenWeather API-t hívja, ezt a
+ * {@link ResilientWeatherService} védi időkorláttal, újrapróbálással és circuit breakerrel.
+ * Előtte a {@link ForecastStore} helyenként egyszer kéri le és tárolja az előrejelzést,
+ * legkívül pedig a helyalapú gyorsítótár áll az aktuális időjáráshoz.
+ */
+@Configuration
+public class WeatherServiceConfig {
+
+    @Bean
+    @Primary
+    public WeatherService weatherService(
+            WeatherServiceImpl openWeatherService,
+            WeatherForecastRepository weatherForecastRepository,
+            MeterRegistry meterRegistry,
+            @Value("${weather.cache.ttl:PT10M}") Duration ttl,
+            @Value("${weather.cache.key-mode:grid}") String keyMode,
+            @Value("${weather.cache.grid-cell-deg:0.01}") double gridCellDeg,
+            @Value("${weather.forecast.refresh-window:PT3H}") Duration forecastRefreshWindow,
+            @Value("${weather.resilience.call-timeout:PT8S}") Duration callTimeout,
+            @Value("${weather.resilience.max-retries:2}") int maxRetries,
+            @Value("${weather.resilience.retry-backoff:PT0.2S}") Duration retryBackoff,
+            @Value("${weather.resilience.retry-budget-ratio:0.2}") double retryBudgetRatio,
+            @Value("${weather.resilience.retry-budget-max:10}") int retryBudgetMax,
+            @Value("${weather.resilience.breaker.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${weather.resilience.breaker.sliding-window-size:20}") int slidingWindowSize,
+            @Value("${weather.resilience.breaker.minimum-number-of-calls:10}") int minimumNumberOfCalls,
+            @Value("${weather.resilience.breaker.open-duration:PT30S}") Duration openDuration
+    ) {
+        Clock clock = Clock.systemUTC();
+        WeatherLocationKey.Mode mode = WeatherLocationKey.Mode.valueOf(keyMode.toUpperCase(Locale.ROOT));
+
+        CircuitBreakerRegistry breakers = CircuitBreakerRegistry.of(ResilientWeatherService.breakerConfig(
+                failureRateThreshold, slidingWindowSize, minimumNumberOfCalls, openDuration));
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(breakers).bindTo(meterRegistry);
+        CircuitBreaker breaker = breakers.circuitBreaker("openweather");
+
+        ResilientWeatherService resilient = new ResilientWeatherService(
+                openWeatherService,
+                breaker,
+                meterRegistry,
+                callTimeout,
+                maxRetries,
+                retryBackoff,
+                retryBudgetRatio,
+                retryBudgetMax
+        );
+        ForecastStore forecastStore = new ForecastStore(
+                resilient,
+                weatherForecastRepository,
+                clock,
+                forecastRefreshWindow,
+                mode,
+                gridCellDeg
+        );
+        return new CachingWeatherService(
+                forecastStore,
+                meterRegistry,
+                clock,
+                ttl,
+                mode,
+                gridCellDeg
+        );
+    }
+}
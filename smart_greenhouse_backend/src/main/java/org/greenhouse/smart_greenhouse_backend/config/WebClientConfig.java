@@ -1,17 +1,45 @@
 package org.greenhouse.smart_greenhouse_backend.config;
 
+import io.netty.channel.ChannelOption;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class WebClientConfig {
 
+    /**
+     * Az időjárás szolgáltató kliense saját kapcsolatkészlettel és időkorlátokkal,
+     * hogy egy lassú vagy elérhetetlen végpont ne foglalja le korlátlanul a hívókat.
+     */
     @Bean
-    public WebClient weatherWebClient(@Value("${weather.base-url}") String baseUrl) {
+    public WebClient weatherWebClient(
+            @Value("${weather.base-url}") String baseUrl,
+            @Value("${weather.http.connect-timeout:PT3S}") Duration connectTimeout,
+            @Value("${weather.http.response-timeout:PT5S}") Duration responseTimeout,
+            @Value("${weather.http.max-connections:50}") int maxConnections,
+            @Value("${weather.http.pending-acquire-timeout:PT5S}") Duration pendingAcquireTimeout,
+            @Value("${weather.http.max-idle-time:PT30S}") Duration maxIdleTime
+    ) {
+        ConnectionProvider pool = ConnectionProvider.builder("weather")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(pool)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout);
+
         return WebClient.builder()
                 .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package org.greenhouse.smart_greenhouse_backend.config;
+
+import lombok.RequiredArgsConstructor;
+import org.greenhouse.smart_greenhouse_backend.controller.SensorStreamHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final SensorStreamHandler sensorStreamHandler;
+
+    /**
+     * Böngészőből csak innen (és azonos originről) lehet csatlakozni; az írási végpont hitelesítés nélküli,
+     * ezért nincs helyettesítő minta. Az átjárók nem küldenek {@code Origin} fejlécet, őket ez nem érinti.
+     */
+    @Value("${sensor.stream.allowed-origins:}")
+    private String[] allowedOrigins;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(sensorStreamHandler, "/ws/sensors")
+                .setAllowedOrigins(allowedOrigins);
+    }
+}
@@ -1,10 +1,14 @@
 package org.greenhouse.smart_greenhouse_backend.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.greenhouse.smart_greenhouse_backend.dto.GreenhouseListQuery;
+import org.greenhouse.smart_greenhouse_backend.dto.GreenhousePageDto;
 import org.greenhouse.smart_greenhouse_backend.dto.PlanDto;
 import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.DeviceState;
@@ -13,15 +17,21 @@ import org.greenhouse.smart_greenhouse_backend.model.documents.ActionLog;
 import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
 import org.greenhouse.smart_greenhouse_backend.model.documents.Plan;
 import org.greenhouse.smart_greenhouse_backend.service.actionLog.ActionLogService;
+import org.greenhouse.smart_greenhouse_backend.service.greenhouse.GreenhouseEventHub;
 import org.greenhouse.smart_greenhouse_backend.service.greenhouse.GreenhouseService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/greenhouses")
@@ -33,6 +43,10 @@ public class GreenhouseController {
 
     private final ActionLogService actionLogService;
 
+    private final GreenhouseEventHub eventHub;
+
+    private final ObjectMapper objectMapper;
+
     @Operation(summary = "Új üvegház létrehozása")
     @ApiResponse(responseCode = "200", description = "Sikeres mentés")
     @PostMapping
@@ -40,11 +54,41 @@ public class GreenhouseController {
         return service.create(greenhouse);
     }
 
-    @Operation(summary = "Üvegházak listázása")
+    @Operation(summary = "Üvegházak listázása",
+            description = "Szűrés városra és növénytípusra, vetítés a 'fields' mezőkre. 'limit' megadásakor "
+                    + "kód szerint lapoz; a következő oldal kurzora az X-Next-Cursor fejlécben jön. "
+                    + "A válasz ETag-et kap: egyező If-None-Match esetén 304, törzs nélkül.")
     @ApiResponse(responseCode = "200", description = "Sikeres lekérés")
+    @ApiResponse(responseCode = "304", description = "A lista nem változott")
+    @ApiResponse(responseCode = "400", description = "Ismeretlen mező, hibás kurzor vagy limit")
     @GetMapping
-    public List<Greenhouse> list() {
-        return service.listAll();
+    public ResponseEntity<byte[]> list(@RequestParam(value = "city", required = false) String city,
+                                       @RequestParam(value = "plantType", required = false) String plantType,
+                                       @RequestParam(value = "fields", required = false) Set<String> fields,
+                                       @RequestParam(value = "cursor", required = false) String cursor,
+                                       @RequestParam(value = "limit", required = false) Integer limit,
+                                       WebRequest request) throws JsonProcessingException {
+        GreenhousePageDto page = service.listPage(new GreenhouseListQuery(city, plantType, fields, cursor, limit));
+        // a lapozás nélküli válasz formája változatlan (tömb), a dashboard erre épít
+        byte[] body = objectMapper.writeValueAsBytes(page.items());
+        String etag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON);
+        if (page.nextCursor() != null) {
+            response.header("X-Next-Cursor", page.nextCursor());
+        }
+        return response.body(body);
+    }
+
+    @Operation(summary = "Üvegház változások folyamatos követése (Server-Sent Events)",
+            description = "Először 'snapshot' esemény a teljes listával, utána üvegházanként 'delta' "
+                    + "(csak a változott mezők) és 'deleted' események.")
+    @ApiResponse(responseCode = "200", description = "Eseményfolyam")
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events() {
+        return eventHub.subscribe();
     }
 
     @Operation(summary = "Üvegház lekérése ID-CODE alapján")
@@ -0,0 +1,36 @@
+package org.greenhouse.smart_greenhouse_backend.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.greenhouse.smart_greenhouse_backend.dto.RollupSeriesDto;
+import org.greenhouse.smart_greenhouse_backend.service.rollup.RollupService;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+
+@RestController
+@RequestMapping("/api/rollups")
+@RequiredArgsConstructor
+@Tag(name = "Rollup API", description = "Összesített (lefelé mintavételezett) mérési idősorok")
+public class RollupController {
+
+    private final RollupService rollupService;
+
+    @Operation(summary = "Összesített idősor lekérése",
+            description = "A felbontást (1m, 1h, 1d) a kért időszak és a pontkeret alapján választja, "
+                    + "hacsak a resolution paraméter nem kényszeríti.")
+    @ApiResponse(responseCode = "200", description = "Sikeres lekérés")
+    @ApiResponse(responseCode = "400", description = "Érvénytelen időszak, forrás vagy felbontás")
+    @GetMapping("/{source}/{greenhouseCode}")
+    public RollupSeriesDto series(@PathVariable("source") String source,
+                                  @PathVariable("greenhouseCode") String greenhouseCode,
+                                  @RequestParam(value = "code", required = false) String code,
+                                  @RequestParam("from") Instant from,
+                                  @RequestParam("to") Instant to,
+                                  @RequestParam(value = "maxPoints", defaultValue = "500") int maxPoints,
+                                  @RequestParam(value = "resolution", required = false) String resolution) {
+        return rollupService.query(source, greenhouseCode, code, from, to, maxPoints, resolution);
+    }
+}
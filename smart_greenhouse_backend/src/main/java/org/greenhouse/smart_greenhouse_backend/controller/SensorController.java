@@ -1,10 +1,16 @@
 package org.greenhouse.smart_greenhouse_backend.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult;
 import org.greenhouse.smart_greenhouse_backend.model.documents.SensorData;
+import org.greenhouse.smart_greenhouse_backend.service.sensor.SensorBatchStreamReader;
+import org.greenhouse.smart_greenhouse_backend.service.sensor.SensorBinaryCodec;
 import org.greenhouse.smart_greenhouse_backend.service.sensor.SensorService;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Optional;
 
 @RestController
@@ -14,11 +20,30 @@ public class SensorController {
 
     private final SensorService sensorService;
 
+    private final SensorBatchStreamReader batchStreamReader;
+
     @PostMapping
     public SensorData ingest(@RequestBody SensorData data) {
         return sensorService.ingest(data);
     }
 
+    /**
+     * Kötegelt beküldés JSON tömbként vagy NDJSON folyamként (soronként egy mérés).
+     * Tételenkénti eredményt ad vissza; a hibás tételek nem akadályozzák a többi mentését.
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public SensorBatchResult ingestBatch(InputStream body) throws IOException {
+        return batchStreamReader.ingest(body);
+    }
+
+    /**
+     * Kötegelt beküldés tömör bináris formátumban (lásd {@link SensorBinaryCodec}).
+     */
+    @PostMapping(value = "/batch", consumes = SensorBinaryCodec.CONTENT_TYPE)
+    public SensorBatchResult ingestBinaryBatch(InputStream body) throws IOException {
+        return batchStreamReader.ingestBinary(body);
+    }
+
     @PutMapping("/{sensorCode}")
     public void update(@PathVariable("sensorCode") String sensorCode, @RequestBody SensorData sensor) {
         sensorService.updateByCode(sensorCode, sensor);
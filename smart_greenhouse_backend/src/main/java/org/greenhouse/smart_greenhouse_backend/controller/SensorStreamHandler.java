@@ -0,0 +1,252 @@
+package org.greenhouse.smart_greenhouse_backend.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tomcat.websocket.WsSession;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult.Item;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult.Status;
+import org.greenhouse.smart_greenhouse_backend.service.sensor.SensorBatchStreamReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Folyamatos szenzoradat-beküldés átjáróktól WebSocketen ({@code /ws/sensors}).
+ * <p>
+ * Protokoll: minden üzenet egy köteg – szöveges üzenetben JSON tömb vagy NDJSON, binárisban a
+ * {@code SensorBinaryCodec} formátuma. A kötegek ugyanazon az ellenőrzésen és bulk mentésen mennek át,
+ * mint a {@code POST /api/sensors/batch}. Kapcsolódáskor a szerver {@code hello} üzenetben megadja
+ * a keretet (ennyi nyugtázatlan köteg lehet úton); minden kötegre, az érkezés sorrendjében,
+ * {@code ack} jön a sorszámmal, az elfogadott/elutasított darabszámmal, az elutasított tételekkel
+ * és az aktuális kerettel.
+ * <p>
+ * Ellennyomás: ha egy kapcsolat nyugtázatlan kötegei elérik a keretet, a szerver felfüggeszti
+ * az olvasását (Tomcat {@link WsSession#suspend()}), így a TCP ablak a lassú mentést
+ * az átjáróig visszavezeti. A kötegek feldolgozása virtuális szálakon, kapcsolatonként sorban
+ * történik, a konténer szálait nem foglalja; a node-on egyszerre legfeljebb
+ * {@code sensor.stream.max-concurrent-batches} köteg ír az adatbázisba.
+ */
+@Slf4j
+@Component
+public class SensorStreamHandler extends AbstractWebSocketHandler {
+
+    private final SensorBatchStreamReader batchReader;
+    private final ObjectMapper objectMapper;
+    private final int window;
+    private final int maxMessageBytes;
+    private final long idleTimeoutMillis;
+    private final int sendTimeLimitMillis;
+    private final Semaphore persistPermits;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, GatewaySession> sessions = new ConcurrentHashMap<>();
+
+    private final Counter ackedCounter;
+    private final Counter failedCounter;
+    private final Counter suspendedCounter;
+
+    public SensorStreamHandler(final SensorBatchStreamReader batchReader,
+                               final ObjectMapper objectMapper,
+                               final MeterRegistry meterRegistry,
+                               @Value("${sensor.stream.window:8}") final int window,
+                               @Value("${sensor.stream.max-message-size:1MB}") final DataSize maxMessageSize,
+                               @Value("${sensor.stream.idle-timeout:PT5M}") final Duration idleTimeout,
+                               @Value("${sensor.stream.send-time-limit:PT10S}") final Duration sendTimeLimit,
+                               @Value("${sensor.stream.max-concurrent-batches:64}") final int maxConcurrentBatches) {
+        this.batchReader = batchReader;
+        this.objectMapper = objectMapper;
+        this.window = window;
+        this.maxMessageBytes = (int) maxMessageSize.toBytes();
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.sendTimeLimitMillis = (int) sendTimeLimit.toMillis();
+        this.persistPermits = new Semaphore(maxConcurrentBatches);
+
+        Gauge.builder("sensor.stream.sessions", sessions, Map::size).register(meterRegistry);
+        this.ackedCounter = Counter.builder("sensor.stream.batches").tag("result", "ack").register(meterRegistry);
+        this.failedCounter = Counter.builder("sensor.stream.batches").tag("result", "error").register(meterRegistry);
+        this.suspendedCounter = Counter.builder("sensor.stream.suspended").register(meterRegistry);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        session.setTextMessageSizeLimit(maxMessageBytes);
+        session.setBinaryMessageSizeLimit(maxMessageBytes);
+        WsSession nativeSession = session instanceof NativeWebSocketSession ns ? ns.getNativeSession(WsSession.class) : null;
+        if (nativeSession != null) nativeSession.setMaxIdleTimeout(idleTimeoutMillis);
+
+        GatewaySession gateway = new GatewaySession(session, nativeSession);
+        sessions.put(session.getId(), gateway);
+        Map<String, Object> hello = new LinkedHashMap<>();
+        hello.put("type", "hello");
+        hello.put("window", window);
+        hello.put("maxMessageBytes", maxMessageBytes);
+        gateway.send(hello);
+        log.debug("Átjáró csatlakozott: {} ({})", session.getId(), session.getRemoteAddress());
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        byte[] payload = message.asBytes();
+        enqueue(session, () -> batchReader.ingest(new ByteArrayInputStream(payload)));
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        ByteBuffer buffer = message.getPayload();
+        byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+        enqueue(session, () -> batchReader.ingestBinary(new ByteArrayInputStream(payload)));
+    }
+
+    private void enqueue(WebSocketSession session, BatchTask task) {
+        GatewaySession gateway = sessions.get(session.getId());
+        if (gateway != null) gateway.enqueue(task);
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("Átjáró kapcsolati hiba ({}): {}", session.getId(), exception.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        sessions.remove(session.getId());
+        log.debug("Átjáró lecsatlakozott: {} ({})", session.getId(), status);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @FunctionalInterface
+    private interface BatchTask {
+        SensorBatchResult run() throws IOException;
+    }
+
+    /**
+     * Egy átjáró kapcsolata: a beérkezett kötegek sora, amit egyszerre egy virtuális szál dolgoz fel,
+     * így a nyugták az érkezés sorrendjében mennek ki.
+     */
+    private final class GatewaySession {
+        private final WebSocketSession out;
+        private final WsSession nativeSession;
+
+        private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+        private long received;
+        private int inFlight;
+        private boolean draining;
+        private boolean suspended;
+
+        GatewaySession(WebSocketSession session, WsSession nativeSession) {
+            this.out = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMillis, maxMessageBytes);
+            this.nativeSession = nativeSession;
+        }
+
+        synchronized void enqueue(BatchTask task) {
+            queue.add(new Pending(++received, task));
+            inFlight++;
+            if (inFlight >= window && !suspended && nativeSession != null) {
+                nativeSession.suspend();
+                suspended = true;
+                suspendedCounter.increment();
+            }
+            if (!draining) {
+                draining = true;
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Pending next;
+                synchronized (this) {
+                    next = queue.poll();
+                    if (next == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                Map<String, Object> reply = process(next);
+                synchronized (this) {
+                    inFlight--;
+                    reply.put("credit", Math.max(0, window - inFlight));
+                    if (suspended && inFlight < window) {
+                        nativeSession.resume();
+                        suspended = false;
+                    }
+                }
+                send(reply);
+            }
+        }
+
+        private Map<String, Object> process(Pending pending) {
+            Map<String, Object> reply = new LinkedHashMap<>();
+            reply.put("seq", pending.seq());
+            try {
+                persistPermits.acquire();
+                SensorBatchResult result;
+                try {
+                    result = pending.task().run();
+                } finally {
+                    persistPermits.release();
+                }
+                List<Item> rejected = result.getItems().stream().filter(i -> i.status() != Status.CREATED).toList();
+                reply.put("type", "ack");
+                reply.put("accepted", result.getAccepted());
+                reply.put("rejected", result.getRejected());
+                reply.put("errors", rejected);
+                ackedCounter.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reply.put("type", "error");
+                reply.put("message", "A szerver leáll");
+                failedCounter.increment();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Átjáró köteg feldolgozása sikertelen ({} #{}): {}", out.getId(), pending.seq(), e.getMessage());
+                reply.put("type", "error");
+                reply.put("message", e.getMessage());
+                failedCounter.increment();
+            }
+            return reply;
+        }
+
+        void send(Map<String, Object> payload) {
+            if (!out.isOpen()) return;
+            try {
+                out.sendMessage(new TextMessage(objectMapper.writeValueAsBytes(payload)));
+            } catch (IOException | RuntimeException e) {
+                // lassú vagy eltűnt átjáró: a dekorátor túllépéskor lezárja a kapcsolatot
+                log.debug("Nyugta küldése sikertelen ({}): {}", out.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private record Pending(long seq, BatchTask task) {
+    }
+}
@@ -0,0 +1,21 @@
+package org.greenhouse.smart_greenhouse_backend.dto;
+
+import java.util.Set;
+
+/**
+ * Az üvegház lista szűrési, vetítési és lapozási paraméterei.
+ *
+ * @param city      csak az ebben a városban lévők ({@code location.city} egyezés)
+ * @param plantType csak az ilyen növénytípusúak
+ * @param fields    a visszaadott mezők; üres vagy {@code null}: a teljes dokumentum
+ * @param cursor    az előző oldal {@code X-Next-Cursor} értéke; {@code null}: az első oldal
+ * @param limit     oldalméret; {@code null}: lapozás nélkül, az összes találat
+ */
+public record GreenhouseListQuery(
+        String city,
+        String plantType,
+        Set<String> fields,
+        String cursor,
+        Integer limit
+) {
+}
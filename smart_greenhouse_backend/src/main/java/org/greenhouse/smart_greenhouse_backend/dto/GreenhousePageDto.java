@@ -0,0 +1,14 @@
+package org.greenhouse.smart_greenhouse_backend.dto;
+
+import java.util.List;
+
+/**
+ * Egy oldal az üvegház listából. Vetítésnél az elemek csak a kért mezőket tartalmazó map-ek.
+ *
+ * @param nextCursor a következő oldal kurzora, vagy {@code null}, ha ez az utolsó oldal
+ */
+public record GreenhousePageDto(
+        List<?> items,
+        String nextCursor
+) {
+}
@@ -0,0 +1,25 @@
+package org.greenhouse.smart_greenhouse_backend.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import org.greenhouse.smart_greenhouse_backend.model.documents.SensorRollup;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Egy sorozat összesített pontjai a kért időszakra, az automatikusan választott felbontásban.
+ * A {@code coveredUntil} utáni időszakra még nincs összesítés (a háttérfeldolgozás le van maradva).
+ */
+@Data
+@Builder
+public class RollupSeriesDto {
+    private String source;
+    private String greenhouseCode;
+    private String code;
+    private String resolution;
+    private Instant from;
+    private Instant to;
+    private Instant coveredUntil;
+    private List<SensorRollup> points;
+}
@@ -0,0 +1,34 @@
+package org.greenhouse.smart_greenhouse_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Egy kötegelt szenzoradat-beküldés eredménye: összesítve és tételenként, a beküldési sorrend szerinti indexszel.
+ */
+@Data
+public class SensorBatchResult {
+    private int accepted;
+    private int rejected;
+    private List<Item> items = new ArrayList<>();
+
+    public enum Status {
+        CREATED,    // elmentve
+        INVALID,    // nem ment át az ellenőrzésen vagy nem értelmezhető
+        DUPLICATE,  // ilyen azonosítójú mérés már létezik
+        FAILED      // adatbázis hiba, újraküldhető
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Item(int index, Status status, String id, String error) {
+    }
+
+    public void add(final Item item) {
+        items.add(item);
+        if (item.status() == Status.CREATED) accepted++;
+        else rejected++;
+    }
+}
@@ -8,7 +8,7 @@ import java.time.Instant;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class WeatherDto {
     private String city;
     private Instant timestamp;
@@ -0,0 +1,18 @@
+package org.greenhouse.smart_greenhouse_backend.model.auxiliaries;
+
+/**
+ * Kifejezés alapú szabály: ha a {@code when} feltétel teljesül, az akció kiváltódik.
+ * <p>
+ * Példák (a metrikák a mért típusok nevei, pl. {@code temperature}, {@code soilMoisturePct}):
+ * <ul>
+ *   <li>{@code soilMoisturePct < 30 until soilMoisturePct > 40} – hiszterézis: 30 alatt bekapcsol, 40 fölött enged el</li>
+ *   <li>{@code temperature > 30 for 10m} – csak ha legalább 10 perce fennáll</li>
+ *   <li>{@code rate(temperature) > 4} – óránként 4 egységnél gyorsabb emelkedés</li>
+ *   <li>{@code time between 06:00 and 20:00 and (humidityPct < 45 or temperature > 28)}</li>
+ * </ul>
+ */
+public record ConditionRule(
+        String when,    // a feltétel kifejezése
+        String action   // pl. "IRRIGATION_ON"
+) {
+}
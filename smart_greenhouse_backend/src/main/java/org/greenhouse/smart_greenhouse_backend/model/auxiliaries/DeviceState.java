@@ -1,8 +1,15 @@
 package org.greenhouse.smart_greenhouse_backend.model.auxiliaries;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.DeviceChannel;
+import org.springframework.data.annotation.Transient;
 
 import java.time.Instant;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -13,5 +20,50 @@ public class DeviceState {
     private boolean shadeOn;
     private boolean lightOn;
     private boolean humidifierOn;
+    private boolean heatingOn;
+    private boolean coolingOn;
+    private boolean fertilizationOn;
     private Map<String, Instant> lastManualActionAt = new HashMap<>();
-}
\ No newline at end of file
+
+    /** a {@link #lastManualActionAt} csatornánként ({@link DeviceChannel#ordinal()}), epoch ms; lustán épül */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient long[] manualTimes;
+
+    /**
+     * Csak olvasható nézet: módosítani a {@link #recordManual}-lal vagy a {@link #setLastManualActionAt}-tel lehet,
+     * különben a {@code manualTimes} gyorsítótár elavulna.
+     */
+    public Map<String, Instant> getLastManualActionAt() {
+        return lastManualActionAt == null ? null : Collections.unmodifiableMap(lastManualActionAt);
+    }
+
+    /** Saját másolatot tart, így a hívó későbbi módosítása nem kerüli meg a gyorsítótárat. */
+    public void setLastManualActionAt(Map<String, Instant> lastManualActionAt) {
+        this.lastManualActionAt = lastManualActionAt == null ? null : new HashMap<>(lastManualActionAt);
+        this.manualTimes = null;
+    }
+
+    /** @return a csatorna utolsó kézi vezérlésének ideje (epoch ms), 0, ha még nem volt */
+    public long lastManualMillis(DeviceChannel channel) {
+        if (manualTimes == null) {
+            long[] times = new long[DeviceChannel.values().length];
+            if (lastManualActionAt != null) {
+                for (DeviceChannel c : DeviceChannel.values()) {
+                    Instant at = lastManualActionAt.get(c.name());
+                    if (at != null) times[c.ordinal()] = at.toEpochMilli();
+                }
+            }
+            manualTimes = times;
+        }
+        return manualTimes[channel.ordinal()];
+    }
+
+    public void recordManual(DeviceChannel channel, Instant when) {
+        if (lastManualActionAt == null) lastManualActionAt = new HashMap<>();
+        lastManualActionAt.put(channel.name(), when);
+        if (manualTimes != null) manualTimes[channel.ordinal()] = when.toEpochMilli();
+    }
+}
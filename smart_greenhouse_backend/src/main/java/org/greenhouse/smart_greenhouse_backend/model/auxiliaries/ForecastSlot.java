@@ -0,0 +1,15 @@
+package org.greenhouse.smart_greenhouse_backend.model.auxiliaries;
+
+import java.time.Instant;
+
+/**
+ * Egy 3 órás előrejelzési időrés értékei.
+ */
+public record ForecastSlot(
+        Instant at,
+        Double temperature,     // °C
+        Double humidity,        // %
+        Double windSpeed,       // km/h
+        Double precipitationMm  // mm (3 órás összeg)
+) {
+}
@@ -0,0 +1,14 @@
+package org.greenhouse.smart_greenhouse_backend.model.auxiliaries;
+
+/**
+ * Egy mérőszám összesítése egy időablakban. Ha az ablakban nem volt érték, {@code count} 0,
+ * a többi mező {@code null}.
+ */
+public record MetricStats(
+        Double min,
+        Double max,
+        Double avg,
+        Double sum,
+        Long count
+) {
+}
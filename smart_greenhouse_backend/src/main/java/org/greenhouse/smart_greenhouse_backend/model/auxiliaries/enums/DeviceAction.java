@@ -0,0 +1,79 @@
+package org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums;
+
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.DeviceState;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A szabályok és a kézi vezérlés által kiadható eszközakciók diszpécsertáblája.
+ * <p>
+ * Minden akció egy csatornát kapcsol be vagy ki; a név (pl. {@code VENT_OPEN}) a szabályokban,
+ * az akciónaplóban és a {@code lastActionAt} kulcsaként használt, változatlan szöveges forma.
+ * Az {@link #ordinal()} egyben a lehűlési idő résének indexe az üvegház időbélyeg-tömbjében.
+ */
+public enum DeviceAction {
+    IRRIGATION_ON(DeviceChannel.IRRIGATION, true),
+    IRRIGATION_OFF(DeviceChannel.IRRIGATION, false),
+    VENT_OPEN(DeviceChannel.VENT, true),
+    VENT_CLOSE(DeviceChannel.VENT, false),
+    SHADE_ON(DeviceChannel.SHADE, true),
+    SHADE_OFF(DeviceChannel.SHADE, false),
+    LIGHT_ON(DeviceChannel.LIGHT, true),
+    LIGHT_OFF(DeviceChannel.LIGHT, false),
+    HUMIDIFIER_ON(DeviceChannel.HUMIDIFIER, true),
+    HUMIDIFIER_OFF(DeviceChannel.HUMIDIFIER, false),
+    HEATING_ON(DeviceChannel.HEATING, true),
+    HEATING_OFF(DeviceChannel.HEATING, false),
+    COOLING_ON(DeviceChannel.COOLING, true),
+    COOLING_OFF(DeviceChannel.COOLING, false),
+    FERTILIZATION_ON(DeviceChannel.FERTILIZATION, true),
+    FERTILIZATION_OFF(DeviceChannel.FERTILIZATION, false);
+
+    private static final Map<String, DeviceAction> BY_NAME = new HashMap<>();
+
+    static {
+        for (DeviceAction action : values()) {
+            BY_NAME.put(action.name(), action);
+        }
+    }
+
+    private final DeviceChannel channel;
+    private final boolean on;
+
+    DeviceAction(DeviceChannel channel, boolean on) {
+        this.channel = channel;
+        this.on = on;
+    }
+
+    public DeviceChannel channel() {
+        return channel;
+    }
+
+    /** {@code true}: bekapcsol/nyit, {@code false}: kikapcsol/zár. */
+    public boolean on() {
+        return on;
+    }
+
+    /**
+     * Beállítja a csatornát, ha még nem ebben az állapotban van.
+     *
+     * @return változott-e az eszközállapot
+     */
+    public boolean apply(DeviceState devices) {
+        if (channel.isOn(devices) == on) return false;
+        channel.set(devices, on);
+        return true;
+    }
+
+    /** Pontos név szerinti keresés (szabályok kimenete), ismeretlen vagy {@code null} névre {@code null}. */
+    public static DeviceAction of(String name) {
+        return name == null ? null : BY_NAME.get(name);
+    }
+
+    /** Felhasználói bemenet (kézi akció): nagybetűsít és levágja a szóközöket; ismeretlenre {@code null}. */
+    public static DeviceAction parse(String raw) {
+        return raw == null ? null : BY_NAME.get(raw.toUpperCase(Locale.ROOT).trim());
+    }
+}
@@ -0,0 +1,52 @@
+package org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums;
+
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.DeviceState;
+
+import java.util.function.Predicate;
+
+/**
+ * Az üvegház egy kapcsolható eszköze (csatornája) a {@link DeviceState}-ben.
+ * <p>
+ * A csatorna neve egyben a kézi vezérlés csoportkulcsa ({@code lastManualActionAt}), a {@code field}
+ * a Mongo mezőnév a {@code devices} alatt. Új eszköz felvétele egy új sor itt és egy mező a
+ * {@link DeviceState}-ben; a diszpécser, a kézi vezérlés és az összefésülés innen dolgozik.
+ */
+public enum DeviceChannel {
+    IRRIGATION("irrigationOn", DeviceState::isIrrigationOn, DeviceState::setIrrigationOn),
+    VENT("ventOpen", DeviceState::isVentOpen, DeviceState::setVentOpen),
+    SHADE("shadeOn", DeviceState::isShadeOn, DeviceState::setShadeOn),
+    LIGHT("lightOn", DeviceState::isLightOn, DeviceState::setLightOn),
+    HUMIDIFIER("humidifierOn", DeviceState::isHumidifierOn, DeviceState::setHumidifierOn),
+    HEATING("heatingOn", DeviceState::isHeatingOn, DeviceState::setHeatingOn),
+    COOLING("coolingOn", DeviceState::isCoolingOn, DeviceState::setCoolingOn),
+    FERTILIZATION("fertilizationOn", DeviceState::isFertilizationOn, DeviceState::setFertilizationOn);
+
+    /** Primitív boolean beállító, hogy a kapcsolás ne dobozoljon. */
+    @FunctionalInterface
+    public interface Switch {
+        void set(DeviceState devices, boolean on);
+    }
+
+    private final String field;
+    private final Predicate<DeviceState> getter;
+    private final Switch setter;
+
+    DeviceChannel(String field, Predicate<DeviceState> getter, Switch setter) {
+        this.field = field;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /** A mező neve a {@code devices} aldokumentumban. */
+    public String field() {
+        return field;
+    }
+
+    public boolean isOn(DeviceState devices) {
+        return getter.test(devices);
+    }
+
+    public void set(DeviceState devices, boolean on) {
+        setter.set(devices, on);
+    }
+}
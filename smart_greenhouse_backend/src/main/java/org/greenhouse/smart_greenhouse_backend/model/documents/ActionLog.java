@@ -13,4 +13,6 @@ public class ActionLog {
     private Instant timestamp;
     private String action; // VENT_OPEN, IRRIGATION_ON...
     private String reason; // ruleId vagy "manual"
+    private Boolean applied; // változtatott-e az eszközállapoton
+    private Integer count;   // ennyi azonos bejegyzés vonódott össze egy kiírási ablakban
 }
\ No newline at end of file
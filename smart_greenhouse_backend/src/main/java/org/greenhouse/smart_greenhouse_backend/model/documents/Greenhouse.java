@@ -1,21 +1,36 @@
 package org.greenhouse.smart_greenhouse_backend.model.documents;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.DeviceState;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.Location;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.SensorRef;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.DeviceAction;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @Data
 @Document("greenhouses")
+@CompoundIndexes({
+        // a szűrt, kód szerint lapozott listához
+        @CompoundIndex(name = "city_code", def = "{'location.city': 1, 'code': 1}"),
+        @CompoundIndex(name = "plantType_code", def = "{'plantType': 1, 'code': 1}")
+})
 public class Greenhouse {
     @Id
     private String id;
@@ -34,4 +49,56 @@ public class Greenhouse {
     private String planId;
 
     private Map<String, Instant> lastActionAt = new HashMap<>();
-}
\ No newline at end of file
+
+    /** a {@link #lastActionAt} akciónként ({@link DeviceAction#ordinal()}), epoch ms; lustán épül a map-ből */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient long[] actionTimes;
+
+    /** Optimista zároláshoz: minden mentés növeli, eltérő verziójú írás nem megy át. */
+    @Version
+    private Long version;
+
+    /**
+     * Csak olvasható nézet: módosítani a {@link #recordAction}-nel vagy a {@link #setLastActionAt}-tel lehet,
+     * különben az {@code actionTimes} gyorsítótár elavulna.
+     */
+    public Map<String, Instant> getLastActionAt() {
+        return lastActionAt == null ? null : Collections.unmodifiableMap(lastActionAt);
+    }
+
+    /** Saját másolatot tart, így a hívó későbbi módosítása nem kerüli meg a gyorsítótárat. */
+    public void setLastActionAt(Map<String, Instant> lastActionAt) {
+        this.lastActionAt = lastActionAt == null ? null : new HashMap<>(lastActionAt);
+        this.actionTimes = null;
+    }
+
+    /** @return az akció utolsó végrehajtásának ideje (epoch ms), 0, ha még nem volt */
+    public long lastActionMillis(DeviceAction action) {
+        if (actionTimes == null) {
+            long[] times = new long[DeviceAction.values().length];
+            if (lastActionAt != null) {
+                for (DeviceAction a : DeviceAction.values()) {
+                    Instant at = lastActionAt.get(a.name());
+                    if (at != null) times[a.ordinal()] = at.toEpochMilli();
+                }
+            }
+            actionTimes = times;
+        }
+        return actionTimes[action.ordinal()];
+    }
+
+    public void recordAction(DeviceAction action, Instant when) {
+        recordAction(action.name(), when);
+    }
+
+    /** A {@code key} lehet akciónév vagy kézi vezérlésnél a csatorna (csoport) neve. */
+    public void recordAction(String key, Instant when) {
+        if (lastActionAt == null) lastActionAt = new HashMap<>();
+        lastActionAt.put(key, when);
+        DeviceAction action = DeviceAction.of(key);
+        if (action != null && actionTimes != null) actionTimes[action.ordinal()] = when.toEpochMilli();
+    }
+}
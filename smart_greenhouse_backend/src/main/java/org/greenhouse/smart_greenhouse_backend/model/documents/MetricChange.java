@@ -0,0 +1,33 @@
+package org.greenhouse.smart_greenhouse_backend.model.documents;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Egy másik példányhoz tartozó üvegház mért értékeinek változása, amit a gazdája vesz át és értékel ki.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document("metric_changes")
+public class MetricChange {
+    @Id
+    private String id;
+
+    private String greenhouseCode;
+    private double[] values;    // Type-sorszámmal indexelt új értékek, NaN: nem változott
+    private List<SensorValues> sensors; // a gazda által a szenzorokba írandó értékek, szenzoronként
+    private Instant createdAt;  // TTL: a gazda nélkül maradt bejegyzések ennyi idő után törlődnek
+
+    /**
+     * Egy szenzor beírandó értékei ({@code Type}-sorszámmal indexelve, NaN: nincs érték).
+     */
+    public record SensorValues(String code, double[] values) {
+    }
+}
@@ -23,6 +23,9 @@ public class Plan {
     private Instant validTo;
     private boolean active;
 
+    /** a tervet generáló feladat bérletének tokenje; egyedi létrehozásnál {@code null} */
+    private Long fencingToken;
+
     @Builder.Default
     private List<PlannedEvent> events = new ArrayList<>();
 }
\ No newline at end of file
@@ -2,8 +2,10 @@ package org.greenhouse.smart_greenhouse_backend.model.documents;
 
 import lombok.Data;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ActionRule;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ConditionRule;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.Range;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -11,7 +13,7 @@ import java.util.List;
 
 /**
  * Egy növény profilja, amely tartalmazza a szabályokat
- * (ActionRule) az optimális környezeti feltételekhez.
+ * (ActionRule, ConditionRule) az optimális környezeti feltételekhez.
  */
 @Data
 @Document("plantProfiles")
@@ -30,4 +32,11 @@ public class PlantProfile {
     private Range soilMoistureRangePct;
 
     private List<ActionRule> rules;
+
+    /** kifejezés alapú szabályok (hiszterézis, tartósság, változási sebesség, napszak) */
+    private List<ConditionRule> conditions;
+
+    /** módosításonként nő; a lefordított szabályok gyorsítótára ehhez igazodik */
+    @Version
+    private Long version;
 }
@@ -0,0 +1,33 @@
+package org.greenhouse.smart_greenhouse_backend.model.documents;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.MetricStats;
+import org.springframework.data.annotation.Id;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Egy sorozat (üvegház + kód) egy időablakának összesítése.
+ * <p>
+ * Nincs rögzített gyűjteménye: felbontásonként külön gyűjteménybe kerül
+ * ({@code sensor_rollups_1m}, {@code _1h}, {@code _1d}). Az azonosító
+ * {@code forrás|üvegház|kód|vödör-kezdet-ms}, így egy vödör újraszámolása felülírja a régit.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SensorRollup {
+    @Id
+    private String id;
+
+    private String source;          // sensor | weather
+    private String greenhouseCode;
+    private String code;
+    private Instant bucket;         // a vödör kezdete
+    private Map<String, MetricStats> metrics;
+}
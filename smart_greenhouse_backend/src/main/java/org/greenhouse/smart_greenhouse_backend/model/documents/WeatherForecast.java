@@ -0,0 +1,37 @@
+package org.greenhouse.smart_greenhouse_backend.model.documents;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ForecastSlot;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Egy helyre (rácscella vagy város) utoljára lekért előrejelzés.
+ * Az azonosító a helykulcs, így helyenként egy dokumentum létezik.
+ */
+@Document("weather_forecasts")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WeatherForecast {
+    @Id
+    private String id;
+
+    private String city;
+    private Double lat;
+    private Double lon;
+
+    private Instant fetchedAt;
+    private Instant validUntil; // a szolgáltató következő frissítési időpontja
+
+    @Builder.Default
+    private List<ForecastSlot> slots = new ArrayList<>();
+}
@@ -12,7 +12,13 @@ import java.util.Optional;
 public interface SensorDataRepository extends MongoRepository<SensorData, String> {
     List<SensorData> findByCodeAndTimestampAfter(String sensorCode, Instant after);
 
+    /** A szenzor legutolsó mérése; a {code: 1, timestamp: -1} indexből egyetlen dokumentumot olvas. */
+    Optional<SensorData> findFirstByCodeOrderByTimestampDesc(String sensorCode);
+
     Optional<SensorData> findByCode(String sensorCode);
 
+    /** A mérés az idempotencia-kulcsa (kód + időbélyeg) szerint. */
+    Optional<SensorData> findFirstByCodeAndTimestamp(String sensorCode, Instant timestamp);
+
     void deleteByIdAndGreenhouseCode(String sensorId, String greenhouseCode);
 }
\ No newline at end of file
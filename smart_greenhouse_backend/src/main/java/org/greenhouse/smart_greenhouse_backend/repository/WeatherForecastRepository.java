@@ -0,0 +1,9 @@
+package org.greenhouse.smart_greenhouse_backend.repository;
+
+import org.greenhouse.smart_greenhouse_backend.model.documents.WeatherForecast;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface WeatherForecastRepository extends MongoRepository<WeatherForecast, String> {
+}
@@ -6,9 +6,12 @@ import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface WeatherSnapshotRepository extends MongoRepository<WeatherSnapshot, String> {
     List<WeatherSnapshot> findByTimestampAfter(Instant after);
+
+    Optional<WeatherSnapshot> findFirstByGreenhouseCodeOrderByTimestampDesc(String greenhouseCode);
 }
 
@@ -2,7 +2,10 @@ package org.greenhouse.smart_greenhouse_backend.scheduler;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.JobLockService;
 import org.greenhouse.smart_greenhouse_backend.service.greenhouse.GreenhouseService;
+import org.greenhouse.smart_greenhouse_backend.service.greenhouse.GreenhouseStateStore;
+import org.greenhouse.smart_greenhouse_backend.service.rollup.RollupService;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -23,16 +26,27 @@ public class SchedulerTasks {
 
     private final GreenhouseService service;
 
+    private final RollupService rollupService;
+
+    private final GreenhouseStateStore stateStore;
+
+    private final JobLockService jobLocks;
+
+    static final String PLAN_CRON = "0 0 */12 * * *";
+
     /**
-     * 5 percenként lefutó ütemezett feladat.
+     * 15 percenként lefutó ütemezett feladat.
      * <p>
      * Feladata: az üvegházak belső szenzorainak legfrissebb értékeit
      * kiértékeli a hozzárendelt PlantProfile szabályai alapján.
      * Ha valamelyik érték átlépi a küszöböt, akkor a megfelelő
      * akció (pl. öntözés bekapcsolása, szellőző nyitása) végrehajtásra kerül,
      * és bekerül az akciónaplóba.
+     * <p>
+     * A mérésváltozásokra a szabályok eseményvezérelten, azonnal lefutnak (RuleTrigger); ez a teljes
+     * bejárás biztonsági háló a kimaradt eseményekre és a csak időtől függő (napszak, tartósság) szabályokra.
      */
-    @Scheduled(fixedRate = 300000) // 5 perc
+    @Scheduled(fixedRateString = "${greenhouse.rules.sweep-interval:PT15M}")
     public void checkSensors() {
         service.evaluateRulesFromSensors();
     }
@@ -58,14 +72,57 @@ public class SchedulerTasks {
      * amelyek tartalmazzák a várható eseményeket (pl. "Holnap 13:00 körül 32 °C,
      * javasolt SHADE_ON és VENT_OPEN"). Ezek a tervek segítenek a felhasználónak
      * előre látni a szükséges beavatkozásokat.
+     * <p>
+     * Több példány esetén ciklusonként csak egy futtatja, a teljes flottára (bérletzárral).
      */
-    @Scheduled(cron = "0 0 */12 * * *") // 12 óránként
+    @Scheduled(cron = PLAN_CRON) // 12 óránként
     public void generatePlans() {
-        service.generatePlans();
+        jobLocks.runOncePerCycle("generatePlans", PLAN_CRON, service::generatePlans);
     }
 
-    @Scheduled(cron = "* 0/30 * * * *")
+    /**
+     * 30 percenként lefutó ütemezett feladat.
+     * <p>
+     * Feladata: minden üvegházhoz lekéri az aktuális időjárást, pillanatfelvételt
+     * ment belőle, és lefuttatja a belső környezet szimulációját. Az üvegházakat
+     * a {@code greenhouse.sweep.concurrency} által korlátozott párhuzamossággal dolgozza fel.
+     */
+    @Scheduled(cron = "0 0/30 * * * *")
     public void pollAllGreenhouses() {
         service.pollAllGreenhouses();
     }
-}
\ No newline at end of file
+
+    /**
+     * Percenként (az előző futás végétől számítva) lefutó ütemezett feladat.
+     * <p>
+     * Feladata: a szenzoradatok és időjárás-pillanatképek perces, órás és napi összesítéseinek
+     * továbbvitele a legutóbbi feldolgozott időponttól. A grafikonok ezekből olvasnak a nyers adat helyett.
+     * Több példány esetén egyszerre csak egy futtatja (bérletzárral).
+     */
+    @Scheduled(fixedDelayString = "${rollup.interval:PT1M}")
+    public void rollUpSensorHistory() {
+        jobLocks.runExclusively("rollUp", lease -> rollupService.rollUp());
+    }
+
+    /**
+     * Szimulációs ciklusonként (az előző futás végétől számítva) lefutó ütemezett feladat.
+     * <p>
+     * Feladata: a memóriában módosult üvegházak kiírása az adatbázisba. Egy üvegház
+     * kiírásonként legfeljebb egyszer kerül mentésre, akárhány módosítás érte közben.
+     */
+    @Scheduled(fixedDelayString = "${greenhouse.state.flush-interval:PT5S}")
+    public void flushGreenhouseState() {
+        stateStore.flush();
+    }
+
+    /**
+     * 15 másodpercenként (az előző futás végétől számítva) lefutó ütemezett feladat.
+     * <p>
+     * Feladata: a memóriabeli üvegház-állapot egyeztetése az adatbázissal – több példányos futásnál
+     * a máshol létrehozott üvegházak felvétele, a máshol töröltek eldobása, a máshol módosítottak újratöltése.
+     */
+    @Scheduled(fixedDelayString = "${greenhouse.state.reconcile-interval:PT15S}")
+    public void reconcileGreenhouseState() {
+        stateStore.reconcile();
+    }
+}
@@ -7,4 +7,12 @@ import org.springframework.data.domain.Pageable;
 public interface ActionLogService {
 
     Page<ActionLog> findByGreenhouseCode(String greenhouseCode, Pageable pageable);
+
+    /**
+     * Akció naplózása. A bejegyzés aszinkron, kötegelten íródik ki; az egy kiírási
+     * ablakon belül ismétlődő (üvegház, akció, ok) bejegyzések egy darabbá vonódnak össze.
+     *
+     * @param applied true, ha az akció ténylegesen megváltoztatta az eszközállapotot
+     */
+    void record(String greenhouseCode, String action, String reason, boolean applied);
 }
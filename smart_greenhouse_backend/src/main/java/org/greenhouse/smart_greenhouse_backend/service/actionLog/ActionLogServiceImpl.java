@@ -1,19 +1,85 @@
 package org.greenhouse.smart_greenhouse_backend.service.actionLog;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.greenhouse.smart_greenhouse_backend.model.documents.ActionLog;
 import org.greenhouse.smart_greenhouse_backend.repository.ActionLogRepository;
+import org.greenhouse.smart_greenhouse_backend.service.persistence.BulkWriteBuffer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+
 @Service
-@RequiredArgsConstructor
 public class ActionLogServiceImpl implements ActionLogService {
     private final ActionLogRepository actionLogRepository;
+    private final BulkWriteBuffer<ActionLog> buffer;
+    private final boolean stateChangesOnly;
+    private final Counter skippedCounter;
+
+    public ActionLogServiceImpl(final ActionLogRepository actionLogRepository,
+                                final MongoTemplate mongoTemplate,
+                                final MeterRegistry meterRegistry,
+                                @Value("${action-log.state-changes-only:true}") final boolean stateChangesOnly,
+                                @Value("${action-log.batch-size:500}") final int batchSize,
+                                @Value("${action-log.capacity:5000}") final int capacity,
+                                @Value("${action-log.flush-interval:PT2S}") final Duration flushInterval) {
+        this.actionLogRepository = actionLogRepository;
+        this.stateChangesOnly = stateChangesOnly;
+        this.skippedCounter = Counter.builder("action.log.skipped").register(meterRegistry);
+        this.buffer = new BulkWriteBuffer<>(
+                "actionLogs",
+                mongoTemplate,
+                ActionLog.class,
+                ActionLogServiceImpl::coalesceKey,
+                ActionLogServiceImpl::merge,
+                batchSize,
+                capacity,
+                flushInterval,
+                meterRegistry
+        );
+    }
 
     @Override
     public Page<ActionLog> findByGreenhouseCode(String greenhouseCode, Pageable pageable) {
         return actionLogRepository.findByGreenhouseCode(greenhouseCode, pageable);
     }
+
+    @Override
+    public void record(String greenhouseCode, String action, String reason, boolean applied) {
+        if (stateChangesOnly && !applied) {
+            skippedCounter.increment();
+            return;
+        }
+        ActionLog entry = new ActionLog();
+        entry.setGreenhouseCode(greenhouseCode);
+        entry.setTimestamp(Instant.now());
+        entry.setAction(action);
+        entry.setReason(reason);
+        entry.setApplied(applied);
+        entry.setCount(1);
+        buffer.add(entry);
+    }
+
+    @PreDestroy
+    public void close() {
+        buffer.close();
+    }
+
+    private static String coalesceKey(ActionLog entry) {
+        return entry.getGreenhouseCode() + "|" + entry.getAction() + "|" + entry.getReason() + "|" + entry.getApplied();
+    }
+
+    /**
+     * Az összevont bejegyzés a legutóbbi időpontot és az összesített darabszámot tartja meg.
+     */
+    private static ActionLog merge(ActionLog older, ActionLog newer) {
+        newer.setCount(older.getCount() + newer.getCount());
+        return newer;
+    }
 }
@@ -0,0 +1,252 @@
+package org.greenhouse.smart_greenhouse_backend.service.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fürt-tagság és az üvegház-flotta felosztása a futó példányok között.
+ * <p>
+ * Minden példány {@code heartbeatInterval} időközönként frissíti a saját dokumentumát a
+ * {@code cluster_nodes} gyűjteményben; élőnek az számít, akinek a bérlete ({@code leaseTtl}) még nem járt le.
+ * Az élő csomópontokból konzisztens hash gyűrű épül, egy üvegházat az a példány dolgoz fel az ütemezett
+ * bejárásokban, akihez a kódja tartozik. Tagságváltozáskor {@link ClusterRebalancedEvent} megy ki.
+ * <p>
+ * Ha a saját szívverésünk a bérlet idejénél régebben sikerült utoljára (pl. nem érjük el az adatbázist),
+ * a többiek már átvették a kulcsainkat: ilyenkor semmit sem tekintünk a sajátunknak, hogy egy üvegházat
+ * ne dolgozzon fel két példány. Kikapcsolt fürtmódban ({@code cluster.enabled=false}) minden a miénk.
+ */
+@Component
+@Slf4j
+public class ClusterMembership implements SmartInitializingSingleton {
+
+    static final String COLLECTION = "cluster_nodes";
+
+    /** leálláskor legfeljebb ennyit várunk a saját dokumentum törlésére */
+    static final Duration LEAVE_TIMEOUT = Duration.ofSeconds(2);
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final String nodeId;
+    private final Duration heartbeatInterval;
+    private final Duration leaseTtl;
+    private final int virtualNodes;
+    private final Clock clock;
+    private final Instant startedAt;
+
+    private volatile ConsistentHashRing ring;
+    private volatile Instant lastHeartbeat;
+    /** sikerült-e a legutóbbi szívverés (elérjük-e az adatbázist) */
+    private volatile boolean reachable;
+    private ScheduledExecutorService heartbeats;
+
+    private final Counter rebalanceCounter;
+
+    @Autowired
+    public ClusterMembership(final MongoTemplate mongoTemplate,
+                             final ApplicationEventPublisher eventPublisher,
+                             final MeterRegistry meterRegistry,
+                             @Value("${cluster.enabled:true}") final boolean enabled,
+                             @Value("${cluster.node-id:}") final String nodeId,
+                             @Value("${cluster.heartbeat-interval:PT5S}") final Duration heartbeatInterval,
+                             @Value("${cluster.lease-ttl:PT15S}") final Duration leaseTtl,
+                             @Value("${cluster.virtual-nodes:128}") final int virtualNodes) {
+        this(mongoTemplate, eventPublisher, meterRegistry, enabled, nodeId, heartbeatInterval, leaseTtl,
+                virtualNodes, Clock.systemUTC());
+    }
+
+    ClusterMembership(final MongoTemplate mongoTemplate,
+                      final ApplicationEventPublisher eventPublisher,
+                      final MeterRegistry meterRegistry,
+                      final boolean enabled,
+                      final String nodeId,
+                      final Duration heartbeatInterval,
+                      final Duration leaseTtl,
+                      final int virtualNodes,
+                      final Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.heartbeatInterval = heartbeatInterval;
+        this.leaseTtl = leaseTtl;
+        this.virtualNodes = virtualNodes;
+        this.clock = clock;
+        this.startedAt = clock.instant();
+        this.ring = new ConsistentHashRing(List.of(this.nodeId), virtualNodes);
+
+        this.rebalanceCounter = Counter.builder("cluster.rebalances").register(meterRegistry);
+        Gauge.builder("cluster.nodes", this, m -> m.ring.nodes().size()).register(meterRegistry);
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            log.info("Fürtmód kikapcsolva, ez a példány dolgozza fel az összes üvegházat");
+            return;
+        }
+        heartbeats = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("cluster-heartbeat").daemon().factory());
+        long millis = heartbeatInterval.toMillis();
+        heartbeats.scheduleWithFixedDelay(this::heartbeatQuietly, 0, millis, TimeUnit.MILLISECONDS);
+        log.info("Fürt csomópont indul: {}", nodeId);
+    }
+
+    /**
+     * Saját bérlet megújítása, az élő csomópontok beolvasása és szükség esetén a gyűrű újraépítése.
+     */
+    public void heartbeat() {
+        if (!enabled) return;
+        Instant now = clock.instant();
+        try {
+            mongoTemplate.upsert(
+                    new Query(Criteria.where("_id").is(nodeId)),
+                    new Update().set("heartbeatAt", Date.from(now)).setOnInsert("startedAt", Date.from(startedAt)),
+                    COLLECTION);
+        } catch (RuntimeException e) {
+            reachable = false;
+            throw e;
+        }
+        lastHeartbeat = now;
+        reachable = true;
+
+        Set<String> live = new TreeSet<>();
+        Query alive = new Query(Criteria.where("heartbeatAt").gte(Date.from(now.minus(leaseTtl))));
+        alive.fields().include("_id");
+        for (Document node : mongoTemplate.find(alive, Document.class, COLLECTION)) {
+            live.add(node.getString("_id"));
+        }
+        live.add(nodeId);
+
+        ConsistentHashRing previous = ring;
+        if (!previous.nodes().equals(live)) {
+            ConsistentHashRing next = new ConsistentHashRing(live, virtualNodes);
+            ring = next;
+            rebalanceCounter.increment();
+            log.info("Fürt tagság változott: {} → {}", new TreeSet<>(previous.nodes()), live);
+            eventPublisher.publishEvent(new ClusterRebalancedEvent(nodeId, previous, next));
+        }
+    }
+
+    private void heartbeatQuietly() {
+        try {
+            heartbeat();
+        } catch (DataAccessException e) {
+            log.warn("Fürt szívverés sikertelen ({}): {}", nodeId, e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Fürt szívverés hiba ({}): {}", nodeId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Ehhez a példányhoz tartozik-e az üvegház.
+     */
+    public boolean owns(final String code) {
+        if (!enabled) return true;
+        Instant last = lastHeartbeat;
+        if (last == null || last.plus(leaseTtl).isBefore(clock.instant())) {
+            // a bérletünk lejárt: a kulcsainkat már más viszi
+            return false;
+        }
+        return nodeId.equals(ring.owner(code));
+    }
+
+    /**
+     * A listából azok az üvegházak, amelyek ehhez a példányhoz tartoznak.
+     */
+    public List<Greenhouse> owned(final List<Greenhouse> greenhouses) {
+        if (!enabled) return greenhouses;
+        List<Greenhouse> result = new ArrayList<>(greenhouses.size());
+        for (Greenhouse greenhouse : greenhouses) {
+            if (owns(greenhouse.getCode())) result.add(greenhouse);
+        }
+        return result;
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /** Fürtmódban fut-e (kikapcsolva minden üvegház ehhez a példányhoz tartozik). */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ConsistentHashRing ring() {
+        return ring;
+    }
+
+    /**
+     * Kilépés: a saját dokumentum törlése, hogy a többiek azonnal átvegyék a kulcsainkat.
+     * Ha a legutóbbi szívverés sem érte el az adatbázist, meg sem próbáljuk (a bérlet magától lejár);
+     * egyébként is legfeljebb {@link #LEAVE_TIMEOUT} ideig várunk rá, hogy a leállást ne tartsa fel
+     * a driver szerverválasztási időkorlátja.
+     */
+    @PreDestroy
+    public void leave() {
+        if (!enabled) return;
+        if (heartbeats != null) heartbeats.shutdownNow();
+        lastHeartbeat = null;
+        if (!reachable) {
+            log.info("Fürt csomópont kilépett ({}), az adatbázis nem érhető el, a bérlet magától lejár", nodeId);
+            return;
+        }
+        Thread remover = Thread.ofPlatform().name("cluster-leave").daemon().start(this::removeSelf);
+        try {
+            if (!remover.join(LEAVE_TIMEOUT)) {
+                log.warn("Fürtből kilépés nem fejeződött be {} alatt ({}), a bérlet magától lejár", LEAVE_TIMEOUT, nodeId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void removeSelf() {
+        try {
+            mongoTemplate.remove(new Query(Criteria.where("_id").is(nodeId)), COLLECTION);
+            log.info("Fürt csomópont kilépett: {}", nodeId);
+        } catch (DataAccessException e) {
+            log.warn("Fürtből kilépés sikertelen ({}), a bérlet magától lejár: {}", nodeId, e.getMessage());
+        }
+    }
+}
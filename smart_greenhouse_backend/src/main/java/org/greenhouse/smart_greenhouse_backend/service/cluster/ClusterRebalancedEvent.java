@@ -0,0 +1,29 @@
+package org.greenhouse.smart_greenhouse_backend.service.cluster;
+
+import java.util.Objects;
+
+/**
+ * A gyűrű megváltozott (csomópont lépett be vagy ki).
+ *
+ * @param nodeId   ennek a csomópontnak az azonosítója
+ * @param previous a korábbi gyűrű ({@code null}, ha ez az első)
+ * @param current  az új gyűrű
+ */
+public record ClusterRebalancedEvent(String nodeId, ConsistentHashRing previous, ConsistentHashRing current) {
+
+    /**
+     * Igaz, ha a kulcs most került ehhez a csomóponthoz.
+     */
+    public boolean gained(final String key) {
+        return Objects.equals(nodeId, current.owner(key))
+                && (previous == null || !Objects.equals(nodeId, previous.owner(key)));
+    }
+
+    /**
+     * Igaz, ha a kulcs eddig ehhez a csomóponthoz tartozott, most máshoz.
+     */
+    public boolean lost(final String key) {
+        return previous != null && Objects.equals(nodeId, previous.owner(key))
+                && !Objects.equals(nodeId, current.owner(key));
+    }
+}
@@ -0,0 +1,85 @@
+package org.greenhouse.smart_greenhouse_backend.service.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Konzisztens hash gyűrű: kulcs (üvegházkód) → csomópont.
+ * <p>
+ * Minden csomópont {@code virtualNodes} ponttal kerül a gyűrűre, a kulcs a hash-e utáni első pont
+ * csomópontjához tartozik. Csomópont belépésekor vagy kilépésekor így csak a kulcsok kb. 1/N része
+ * vándorol, a többi marad a helyén. A gyűrű megváltoztathatatlan; tagságváltozáskor újat építünk.
+ */
+public final class ConsistentHashRing {
+
+    private final Set<String> nodes;
+    private final long[] points;
+    private final String[] owners;
+
+    public ConsistentHashRing(final Collection<String> nodes, final int virtualNodes) {
+        this.nodes = Set.copyOf(new TreeSet<>(nodes));
+        int replicas = Math.max(1, virtualNodes);
+
+        long[] hashes = new long[this.nodes.size() * replicas];
+        String[] names = new String[hashes.length];
+        int i = 0;
+        for (String node : new TreeSet<>(nodes)) {
+            for (int r = 0; r < replicas; r++) {
+                hashes[i] = hash(node + "#" + r);
+                names[i] = node;
+                i++;
+            }
+        }
+
+        // rendezés hash szerint, a csomópontnevekkel együtt
+        Integer[] order = new Integer[hashes.length];
+        for (int k = 0; k < order.length; k++) order[k] = k;
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        this.points = new long[hashes.length];
+        this.owners = new String[hashes.length];
+        for (int k = 0; k < order.length; k++) {
+            points[k] = hashes[order[k]];
+            owners[k] = names[order[k]];
+        }
+    }
+
+    /**
+     * @return a kulcs gazdája, vagy {@code null}, ha a gyűrű üres
+     */
+    public String owner(final String key) {
+        if (points.length == 0) return null;
+        int idx = Arrays.binarySearch(points, hash(key));
+        if (idx < 0) idx = -idx - 1;
+        if (idx == points.length) idx = 0;
+        return owners[idx];
+    }
+
+    public Set<String> nodes() {
+        return nodes;
+    }
+
+    /**
+     * 64 bites FNV-1a, a végén a murmur3 keverőlépésével, hogy a hasonló kódok is szétszóródjanak.
+     */
+    static long hash(final String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistentHashRing" + new TreeSet<>(nodes);
+    }
+}
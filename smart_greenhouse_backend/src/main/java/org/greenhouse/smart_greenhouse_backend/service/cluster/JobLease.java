@@ -0,0 +1,60 @@
+package org.greenhouse.smart_greenhouse_backend.service.cluster;
+
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * Egy megszerzett feladat-bérlet.
+ * <p>
+ * A {@link #token()} monoton nő minden megszerzéskor (fencing token): a feladat az írásait ezzel jelöli,
+ * így egy lejárt bérletű, de még futó (pl. hosszan szünetelt) példány késői írása felismerhető és
+ * felülírható. A bérletet a {@link JobLockService} a háttérben újítja; ha ez nem sikerül,
+ * a bérlet elveszettnek számít, és a {@link #assertHeld()} megszakítja a feladatot.
+ */
+public final class JobLease {
+
+    private final String job;
+    private final long token;
+    private final Clock clock;
+    private volatile Instant expiresAt;
+    private volatile boolean lost;
+
+    JobLease(final String job, final long token, final Instant expiresAt, final Clock clock) {
+        this.job = job;
+        this.token = token;
+        this.expiresAt = expiresAt;
+        this.clock = clock;
+    }
+
+    public String job() {
+        return job;
+    }
+
+    public long token() {
+        return token;
+    }
+
+    /**
+     * Igaz, ha a bérlet a helyi óra szerint még érvényes, és a megújítása nem bukott el.
+     */
+    public boolean isHeld() {
+        return !lost && clock.instant().isBefore(expiresAt);
+    }
+
+    /**
+     * @throws JobLeaseLostException ha a bérlet már nem a miénk
+     */
+    public void assertHeld() {
+        if (!isHeld()) {
+            throw new JobLeaseLostException(job, token);
+        }
+    }
+
+    void renewed(final Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    void lost() {
+        this.lost = true;
+    }
+}
@@ -0,0 +1,11 @@
+package org.greenhouse.smart_greenhouse_backend.service.cluster;
+
+/**
+ * A feladat bérlete futás közben lejárt vagy más vette át; a feladatnak abba kell hagynia az írást.
+ */
+public class JobLeaseLostException extends RuntimeException {
+
+    public JobLeaseLostException(final String job, final long token) {
+        super("A(z) " + job + " feladat bérlete elveszett (token: " + token + ")");
+    }
+}
@@ -0,0 +1,238 @@
+package org.greenhouse.smart_greenhouse_backend.service.cluster;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * MongoDB-alapú bérletzár a fürtben egyszer futtatandó (flotta-szintű) feladatokhoz.
+ * <p>
+ * Feladatonként egy dokumentum a {@code job_locks} gyűjteményben: {@code owner}, {@code token},
+ * {@code expiresAt} és {@code completedCycle}. A zárat az szerezheti meg, akinél már van, vagy akinél
+ * lejárt – így egy összeomlott példány bérletét a TTL letelte után más átveszi. Minden megszerzés
+ * növeli a tokent ({@link JobLease#token()}), amivel a feladat az írásait jelöli.
+ * <p>
+ * Futás közben a bérletet {@code ttl/3} időközönként megújítjuk; ha ez nem sikerül, a bérlet
+ * elveszettnek számít. A {@link #runOncePerCycle} ezen felül a lezárt ciklust is rögzíti, így az
+ * órák kis eltérése miatt később induló példány már nem futtatja újra ugyanazt a ciklust.
+ * A lejáratot a példányok a saját órájuk szerint ítélik meg, ezért a TTL legyen jóval nagyobb az
+ * órák várható eltérésénél.
+ */
+@Component
+@Slf4j
+public class JobLockService {
+
+    static final String COLLECTION = "job_locks";
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId;
+    private final Duration defaultTtl;
+    private final Duration clockSkew;
+    private final Clock clock;
+    private final ScheduledExecutorService renewals = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("job-lease-renewal").daemon().factory());
+
+    @Autowired
+    public JobLockService(final MongoTemplate mongoTemplate,
+                          final MeterRegistry meterRegistry,
+                          final ClusterMembership cluster,
+                          @Value("${cluster.jobs.lease-ttl:PT2M}") final Duration defaultTtl,
+                          @Value("${cluster.jobs.clock-skew:PT1M}") final Duration clockSkew) {
+        this(mongoTemplate, meterRegistry, cluster.nodeId(), defaultTtl, clockSkew, Clock.systemUTC());
+    }
+
+    JobLockService(final MongoTemplate mongoTemplate,
+                   final MeterRegistry meterRegistry,
+                   final String nodeId,
+                   final Duration defaultTtl,
+                   final Duration clockSkew,
+                   final Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.meterRegistry = meterRegistry;
+        this.nodeId = nodeId;
+        this.defaultTtl = defaultTtl;
+        this.clockSkew = clockSkew;
+        this.clock = clock;
+    }
+
+    /**
+     * A feladat futtatása, ha a zárat megkapjuk; különben kihagyjuk.
+     *
+     * @return igaz, ha ez a példány futtatta
+     */
+    public boolean runExclusively(final String job, final Consumer<JobLease> task) {
+        return run(job, null, task);
+    }
+
+    /**
+     * A feladat futtatása cron-ciklusonként legfeljebb egyszer a fürtben. A ciklus az ütemezés utolsó
+     * esedékes időpontja ({@code clockSkew} tűréssel, hogy a kicsit korábban induló példány is ugyanazt a
+     * ciklust lássa). Sikeres futás után a ciklus lezártnak számít; hibás vagy megszakadt futás után
+     * egy későbbi próbálkozás (pl. átvevő példány) még újrafuttathatja.
+     *
+     * @param cron ugyanaz a kifejezés, amivel a feladat ütemezve van
+     * @return igaz, ha ez a példány futtatta
+     */
+    public boolean runOncePerCycle(final String job, final String cron, final Consumer<JobLease> task) {
+        return run(job, cycle(CronExpression.parse(cron), clock.instant().plus(clockSkew)).toString(), task);
+    }
+
+    /**
+     * Az utolsó ütemezett időpont, amely nem későbbi {@code at}-nél.
+     */
+    static ZonedDateTime cycle(final CronExpression cron, final Instant at) {
+        ZonedDateTime limit = at.atZone(ZoneId.systemDefault());
+        Duration lookback = Duration.ofMinutes(1);
+        ZonedDateTime fire = cron.next(limit.minus(lookback));
+        while (fire == null || fire.isAfter(limit)) {
+            lookback = lookback.multipliedBy(2);
+            if (lookback.toDays() > 800) {
+                throw new IllegalArgumentException("A cron kifejezésnek nincs múltbeli időpontja: " + cron);
+            }
+            fire = cron.next(limit.minus(lookback));
+        }
+        for (ZonedDateTime next = cron.next(fire); next != null && !next.isAfter(limit); next = cron.next(next)) {
+            fire = next;
+        }
+        return fire;
+    }
+
+    private boolean run(final String job, final String cycle, final Consumer<JobLease> task) {
+        Optional<JobLease> acquired;
+        try {
+            acquired = tryAcquire(job, cycle, defaultTtl);
+        } catch (DataAccessException e) {
+            log.warn("A(z) {} feladat zárja nem szerezhető meg, kihagyjuk: {}", job, e.getMessage());
+            count(job, "error");
+            return false;
+        }
+        if (acquired.isEmpty()) {
+            log.debug("A(z) {} feladatot más példány futtatja vagy már lefutott ebben a ciklusban", job);
+            count(job, "skipped");
+            return false;
+        }
+
+        JobLease lease = acquired.get();
+        long every = Math.max(1, defaultTtl.toMillis() / 3);
+        ScheduledFuture<?> renewal = renewals.scheduleAtFixedRate(() -> renew(lease), every, every, TimeUnit.MILLISECONDS);
+        boolean completed = false;
+        try {
+            log.info("A(z) {} feladat indul ({} példányon, token: {})", job, nodeId, lease.token());
+            task.accept(lease);
+            completed = true;
+            count(job, "run");
+            return true;
+        } catch (JobLeaseLostException e) {
+            log.warn(e.getMessage());
+            count(job, "lost");
+            return false;
+        } finally {
+            renewal.cancel(false);
+            release(lease, completed ? cycle : null);
+        }
+    }
+
+    /**
+     * A zár megszerzése, ha szabad, lejárt, vagy már a miénk, és (ciklusos feladatnál) a ciklus még nincs lezárva.
+     */
+    Optional<JobLease> tryAcquire(final String job, final String cycle, final Duration ttl) {
+        Instant now = clock.instant();
+        Criteria criteria = Criteria.where("_id").is(job)
+                .orOperator(Criteria.where("expiresAt").lt(Date.from(now)), Criteria.where("owner").is(nodeId));
+        if (cycle != null) {
+            criteria = criteria.and("completedCycle").ne(cycle);
+        }
+        Instant expiresAt = now.plus(ttl);
+        Update update = new Update()
+                .set("owner", nodeId)
+                .set("acquiredAt", Date.from(now))
+                .set("expiresAt", Date.from(expiresAt))
+                .inc("token", 1);
+        try {
+            Document lock = mongoTemplate.findAndModify(new Query(criteria), update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), Document.class, COLLECTION);
+            if (lock == null) return Optional.empty();
+            long token = ((Number) lock.get("token")).longValue();
+            return Optional.of(new JobLease(job, token, expiresAt, clock));
+        } catch (DuplicateKeyException e) {
+            // a dokumentum létezik, de nem felel meg: más tartja, vagy a ciklus már lezárult
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * A bérlet meghosszabbítása, ha még a miénk (ugyanaz a token).
+     *
+     * @return igaz, ha sikerült
+     */
+    boolean renew(final JobLease lease) {
+        Instant expiresAt = clock.instant().plus(defaultTtl);
+        try {
+            long matched = mongoTemplate.updateFirst(held(lease),
+                    new Update().set("expiresAt", Date.from(expiresAt)), COLLECTION).getMatchedCount();
+            if (matched == 1) {
+                lease.renewed(expiresAt);
+                return true;
+            }
+            log.warn("A(z) {} feladat bérletét közben más vette át (token: {})", lease.job(), lease.token());
+        } catch (DataAccessException e) {
+            log.warn("A(z) {} feladat bérlete nem újítható meg: {}", lease.job(), e.getMessage());
+            // átmeneti hiba: a bérlet a lejártáig még érvényes, a következő megújítás újrapróbálja
+            return false;
+        }
+        lease.lost();
+        return false;
+    }
+
+    /**
+     * A zár elengedése: a lejárat most lesz, a token marad (így a következő megszerzés nagyobbat kap).
+     */
+    private void release(final JobLease lease, final String completedCycle) {
+        Update update = new Update().set("expiresAt", Date.from(clock.instant()));
+        if (completedCycle != null) update.set("completedCycle", completedCycle);
+        try {
+            mongoTemplate.updateFirst(held(lease), update, COLLECTION);
+        } catch (DataAccessException e) {
+            log.warn("A(z) {} feladat zárja nem engedhető el, a bérlet magától lejár: {}", lease.job(), e.getMessage());
+        }
+    }
+
+    private Query held(final JobLease lease) {
+        return new Query(Criteria.where("_id").is(lease.job()).and("owner").is(nodeId).and("token").is(lease.token()));
+    }
+
+    private void count(final String job, final String result) {
+        meterRegistry.counter("cluster.jobs", "job", job, "result", result).increment();
+    }
+
+    @PreDestroy
+    public void close() {
+        renewals.shutdownNow();
+    }
+}
@@ -0,0 +1,194 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Az üvegház-flotta párhuzamos bejárását végző komponens.
+ * <p>
+ * Minden üvegház egy saját virtuális szálon fut, a párhuzamosan futó
+ * feladatok számát egy megosztott szemafor korlátozza. Egy üvegház hibája
+ * nem állítja meg a többit. Ha ugyanaz a bejárás (pl. két egymásra csúszó
+ * {@code pollAllGreenhouses}) egy üvegházat már feldolgoz, a második
+ * bejárás kihagyja azt.
+ */
+@Component
+@Slf4j
+public class FleetSweepExecutor {
+
+    private final MeterRegistry meterRegistry;
+    private final Semaphore permits;
+    private final int concurrency;
+
+    /** sweepName → az éppen feldolgozás alatt álló üvegházkódok */
+    private final Map<String, Set<String>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, SweepReport> lastReports = new ConcurrentHashMap<>();
+
+    public FleetSweepExecutor(MeterRegistry meterRegistry,
+                              @Value("${greenhouse.sweep.concurrency:32}") int concurrency) {
+        this.meterRegistry = meterRegistry;
+        this.concurrency = Math.max(1, concurrency);
+        this.permits = new Semaphore(this.concurrency);
+    }
+
+    /**
+     * Lefuttatja a feladatot az összes megadott üvegházon, legfeljebb
+     * {@code greenhouse.sweep.concurrency} párhuzamos végrehajtással, és megvárja a végét.
+     *
+     * @param sweepName   a bejárás neve (metrikákban és az átfedés-védelemben használjuk)
+     * @param greenhouses a feldolgozandó üvegházak
+     * @param task        az egy üvegházon elvégzendő munka
+     * @return a bejárás összesítője
+     */
+    public SweepReport sweep(final String sweepName,
+                             final Collection<Greenhouse> greenhouses,
+                             final Consumer<Greenhouse> task) {
+        long started = System.nanoTime();
+        Set<String> running = inFlight.computeIfAbsent(sweepName, k -> ConcurrentHashMap.newKeySet());
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(greenhouses.size());
+            for (Greenhouse greenhouse : greenhouses) {
+                String code = greenhouse.getCode();
+                if (code == null || !running.add(code)) {
+                    // egy korábbi, még futó bejárás már dolgozik rajta
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                futures.add(executor.submit(() -> runIsolated(sweepName, greenhouse, task, running, succeeded, failed)));
+            }
+            for (Future<?> future : futures) {
+                awaitQuietly(future);
+            }
+        }
+
+        SweepReport report = new SweepReport(
+                sweepName,
+                greenhouses.size(),
+                succeeded.get(),
+                failed.get(),
+                skipped.get(),
+                Duration.ofNanos(System.nanoTime() - started)
+        );
+        record(report);
+        return report;
+    }
+
+    /**
+     * Az adott bejárás legutóbbi összesítője, ha már futott.
+     */
+    public SweepReport lastReport(final String sweepName) {
+        return lastReports.get(sweepName);
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    private void runIsolated(String sweepName,
+                             Greenhouse greenhouse,
+                             Consumer<Greenhouse> task,
+                             Set<String> running,
+                             AtomicInteger succeeded,
+                             AtomicInteger failed) {
+        boolean acquired = false;
+        try {
+            permits.acquire();
+            acquired = true;
+            task.accept(greenhouse);
+            succeeded.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.warn("{} bejárás hibára futott a(z) {} üvegháznál: {}", sweepName, greenhouse.getCode(), e.getMessage());
+        } finally {
+            if (acquired) permits.release();
+            running.remove(greenhouse.getCode());
+        }
+    }
+
+    private void awaitQuietly(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // a runIsolated már elkapta és naplózta
+        }
+    }
+
+    private void record(SweepReport report) {
+        lastReports.put(report.name(), report);
+
+        Timer.builder("greenhouse.sweep.duration")
+                .tag("sweep", report.name())
+                .register(meterRegistry)
+                .record(report.duration().toNanos(), TimeUnit.NANOSECONDS);
+        count(report.name(), "succeeded", report.succeeded());
+        count(report.name(), "failed", report.failed());
+        count(report.name(), "skipped", report.skipped());
+
+        log.info("{} bejárás kész: {} üvegház, {} sikeres, {} hibás, {} kihagyva, {} ms, {} üvegház/s",
+                report.name(), report.total(), report.succeeded(), report.failed(), report.skipped(),
+                report.duration().toMillis(), String.format("%.1f", report.throughputPerSecond()));
+    }
+
+    private void count(String sweepName, String outcome, int amount) {
+        if (amount == 0) return;
+        Counter.builder("greenhouse.sweep.greenhouses")
+                .tag("sweep", sweepName)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment(amount);
+    }
+
+    /**
+     * Egy flotta-bejárás összesítője.
+     *
+     * @param name      a bejárás neve
+     * @param total     a bejárásnak átadott üvegházak száma
+     * @param succeeded sikeresen feldolgozott üvegházak
+     * @param failed    hibára futott üvegházak
+     * @param skipped   kihagyott üvegházak (egy átfedő bejárás már dolgozott rajtuk)
+     * @param duration  a bejárás teljes ideje
+     */
+    public record SweepReport(
+            String name,
+            int total,
+            int succeeded,
+            int failed,
+            int skipped,
+            Duration duration
+    ) {
+        public double throughputPerSecond() {
+            long nanos = Math.max(1, duration.toNanos());
+            return (succeeded + failed) * 1_000_000_000.0 / nanos;
+        }
+    }
+}
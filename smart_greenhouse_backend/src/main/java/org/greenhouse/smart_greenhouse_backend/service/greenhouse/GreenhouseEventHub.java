@@ -0,0 +1,172 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Az üvegházak változásainak kiküldése a dashboardoknak Server-Sent Events-en.
+ * <p>
+ * Minden {@link Greenhouse} mentés (szimuláció, szabály- és kézi akciók, szenzor módosítás) után a
+ * Spring Data {@code AfterSaveEvent}-jéből az utoljára kiküldött állapothoz képest változott
+ * legfelső szintű mezőket ({@code delta}) küldjük ki; ha semmi nem változott, nem küldünk semmit.
+ * Feliratkozáskor egyszer a teljes lista megy ki a memóriabeli állapotból ({@code snapshot}), utána csak a változások –
+ * a böngészőnként 30 másodperces teljes lekérdezés helyett.
+ * <p>
+ * A kiküldés egyetlen háttérszálon történik (a mentő szálat nem lassítja, a sorrend megmarad);
+ * a lezárt vagy hibás kapcsolatokat eldobjuk. A más példányok által kiírt változásokról a
+ * {@link GreenhouseStateStore} egyeztetése küld eseményt, így ezek legfeljebb egy egyeztetési ciklus késéssel érkeznek.
+ */
+@Slf4j
+@Component
+public class GreenhouseEventHub extends AbstractMongoEventListener<Greenhouse> {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private final GreenhouseStateStore stateStore;
+    private final ObjectMapper objectMapper;
+    private final long emitterTimeoutMillis;
+
+    private final Set<SseEmitter> emitters = new CopyOnWriteArraySet<>();
+    /** üvegház azonosító → utoljára kiküldött állapot (a delta alapja) */
+    private final Map<String, Map<String, Object>> lastSent = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("greenhouse-events").daemon().factory());
+
+    public GreenhouseEventHub(final GreenhouseStateStore stateStore,
+                              final ObjectMapper objectMapper,
+                              final MeterRegistry meterRegistry,
+                              @Value("${greenhouse.events.timeout:PT30M}") final Duration emitterTimeout,
+                              @Value("${greenhouse.events.heartbeat:PT25S}") final Duration heartbeat) {
+        this.stateStore = stateStore;
+        this.objectMapper = objectMapper;
+        this.emitterTimeoutMillis = emitterTimeout.toMillis();
+        Gauge.builder("greenhouse.events.subscribers", emitters, Set::size).register(meterRegistry);
+        long heartbeatMillis = heartbeat.toMillis();
+        sender.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Új dashboard feliratkozása: a teljes lista egyszer, utána a változások.
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+
+        // a küldő szálon, hogy a pillanatkép és az utána sorba álló delták között ne vesszen el változás
+        sender.execute(() -> {
+            try {
+                List<Greenhouse> greenhouses = stateStore.snapshotAll();
+                if (send(emitter, "snapshot", greenhouses)) emitters.add(emitter);
+            } catch (RuntimeException e) {
+                log.warn("Az SSE pillanatkép betöltése sikertelen: {}", e.getMessage());
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Greenhouse> event) {
+        Greenhouse greenhouse = event.getSource();
+        Map<String, Object> delta = delta(greenhouse);
+        if (delta != null) broadcast("delta", delta);
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Greenhouse> event) {
+        Object id = event.getSource().get("_id");
+        if (id == null) return;
+        Map<String, Object> last = lastSent.remove(id.toString());
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", id.toString());
+        payload.put("code", last == null ? null : last.get("code"));
+        broadcast("deleted", payload);
+    }
+
+    /**
+     * A mentett állapot és az utoljára kiküldött közti különbség: a változott legfelső szintű mezők,
+     * kiegészítve az azonosítóval és a kóddal. {@code null}, ha nincs változás.
+     */
+    Map<String, Object> delta(Greenhouse greenhouse) {
+        if (greenhouse.getId() == null) return null;
+        Map<String, Object> current = objectMapper.convertValue(greenhouse, MAP_TYPE);
+        Map<String, Object> previous = lastSent.put(greenhouse.getId(), current);
+
+        Map<String, Object> changes = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> field : current.entrySet()) {
+            if (previous == null || !Objects.equals(previous.get(field.getKey()), field.getValue())) {
+                changes.put(field.getKey(), field.getValue());
+            }
+        }
+        if (changes.isEmpty()) return null;
+
+        Map<String, Object> delta = new LinkedHashMap<>();
+        delta.put("id", greenhouse.getId());
+        delta.put("code", greenhouse.getCode());
+        delta.put("at", Instant.now());
+        delta.put("changes", changes);
+        return delta;
+    }
+
+    private void broadcast(String name, Object payload) {
+        sender.execute(() -> {
+            for (SseEmitter emitter : emitters) {
+                if (!send(emitter, name, payload)) emitters.remove(emitter);
+            }
+        });
+    }
+
+    private void heartbeat() {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().comment("ping"));
+            } catch (IOException | IllegalStateException e) {
+                emitters.remove(emitter);
+            }
+        }
+    }
+
+    private boolean send(SseEmitter emitter, String name, Object payload) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(payload));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("SSE kapcsolat lezárva: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        emitters.forEach(SseEmitter::complete);
+    }
+}
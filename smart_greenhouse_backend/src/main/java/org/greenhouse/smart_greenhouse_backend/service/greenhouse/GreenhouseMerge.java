@@ -0,0 +1,119 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.DeviceState;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.SensorRef;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.DeviceChannel;
+import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Háromutas összefésülés verzióütközéskor.
+ * <p>
+ * {@code base} az utoljára kiírt állapot, {@code ours} a memóriabeli (még ki nem írt) állapot,
+ * {@code theirs} a közben más által tárolt dokumentum. Az eredmény a tárolt dokumentumból indul,
+ * és csak azt írja felül, amit mi változtattunk, mezőcsoportonként a hozzájuk tartozó műveletek
+ * szerint:
+ * <ul>
+ *   <li>egyszerű mezők és eszközkapcsolók (kézi akció, szabálymotor): a mi változásunk nyer;</li>
+ *   <li>akció-időbélyegek (cooldown): kulcsonként a későbbi időpont marad;</li>
+ *   <li>szenzorok (szimuláció, szenzorfrissítés): kódonként a frissebb {@code lastSeen} nyer,
+ *       a csak egyik oldalon felvett szenzor megmarad.</li>
+ * </ul>
+ */
+final class GreenhouseMerge {
+
+    private GreenhouseMerge() {
+    }
+
+    static Greenhouse rebase(final Greenhouse base, final Greenhouse ours, final Greenhouse theirs) {
+        Greenhouse merged = GreenhouseStateStore.copy(theirs);
+
+        if (changed(base.getName(), ours.getName())) merged.setName(ours.getName());
+        if (changed(base.getPlantType(), ours.getPlantType())) merged.setPlantType(ours.getPlantType());
+        if (base.isActive() != ours.isActive()) merged.setActive(ours.isActive());
+        if (changed(base.getLocation(), ours.getLocation())) merged.setLocation(ours.getLocation());
+        if (changed(base.getPlantProfileId(), ours.getPlantProfileId())) merged.setPlantProfileId(ours.getPlantProfileId());
+        if (changed(base.getPlanId(), ours.getPlanId())) merged.setPlanId(ours.getPlanId());
+
+        merged.setDevices(devices(base.getDevices(), ours.getDevices(), merged.getDevices()));
+        merged.setLastActionAt(timestamps(base.getLastActionAt(), ours.getLastActionAt(), merged.getLastActionAt()));
+        merged.setSensors(sensors(base.getSensors(), ours.getSensors(), merged.getSensors()));
+        return merged;
+    }
+
+    private static DeviceState devices(DeviceState base, DeviceState ours, DeviceState theirs) {
+        if (!changed(base, ours)) return theirs;
+        if (base == null || ours == null || theirs == null) return GreenhouseStateStore.copy(ours);
+
+        for (DeviceChannel channel : DeviceChannel.values()) {
+            if (channel.isOn(base) != channel.isOn(ours)) channel.set(theirs, channel.isOn(ours));
+        }
+        theirs.setLastManualActionAt(timestamps(base.getLastManualActionAt(), ours.getLastManualActionAt(),
+                theirs.getLastManualActionAt()));
+        return theirs;
+    }
+
+    private static Map<String, Instant> timestamps(Map<String, Instant> base,
+                                                   Map<String, Instant> ours,
+                                                   Map<String, Instant> theirs) {
+        if (!changed(base, ours)) return theirs;
+        Map<String, Instant> baseMap = base == null ? Map.of() : base;
+        Map<String, Instant> oursMap = ours == null ? Map.of() : ours;
+        Map<String, Instant> merged = theirs == null ? new HashMap<>() : new HashMap<>(theirs);
+
+        for (Map.Entry<String, Instant> entry : oursMap.entrySet()) {
+            if (Objects.equals(baseMap.get(entry.getKey()), entry.getValue())) continue;
+            merged.merge(entry.getKey(), entry.getValue(), (a, b) -> a.isAfter(b) ? a : b);
+        }
+        for (String key : baseMap.keySet()) {
+            if (!oursMap.containsKey(key)) merged.remove(key);
+        }
+        return merged;
+    }
+
+    private static List<SensorRef> sensors(List<SensorRef> base, List<SensorRef> ours, List<SensorRef> theirs) {
+        if (!changed(base, ours)) return theirs;
+        List<SensorRef> baseList = base == null ? List.of() : base;
+        List<SensorRef> oursList = ours == null ? List.of() : ours;
+        List<SensorRef> merged = theirs == null ? new ArrayList<>() : new ArrayList<>(theirs);
+
+        for (SensorRef sensor : oursList) {
+            if (sensor == null || baseList.contains(sensor)) continue;
+            int idx = indexOf(merged, sensor.code());
+            if (idx < 0) {
+                merged.add(sensor);
+            } else if (!isOlder(sensor, merged.get(idx))) {
+                merged.set(idx, sensor);
+            }
+        }
+        for (SensorRef sensor : baseList) {
+            if (sensor != null && indexOf(oursList, sensor.code()) < 0) {
+                int idx = indexOf(merged, sensor.code());
+                if (idx >= 0) merged.remove(idx);
+            }
+        }
+        return merged;
+    }
+
+    private static int indexOf(List<SensorRef> sensors, String code) {
+        for (int i = 0; i < sensors.size(); i++) {
+            SensorRef sensor = sensors.get(i);
+            if (sensor != null && Objects.equals(sensor.code(), code)) return i;
+        }
+        return -1;
+    }
+
+    private static boolean isOlder(SensorRef ours, SensorRef theirs) {
+        return ours.lastSeen() != null && theirs.lastSeen() != null && ours.lastSeen().isBefore(theirs.lastSeen());
+    }
+
+    private static boolean changed(Object base, Object ours) {
+        return !Objects.equals(base, ours);
+    }
+}
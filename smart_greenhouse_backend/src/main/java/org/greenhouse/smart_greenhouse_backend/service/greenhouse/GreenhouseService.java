@@ -1,13 +1,18 @@
 package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
 
+import org.greenhouse.smart_greenhouse_backend.dto.GreenhouseListQuery;
+import org.greenhouse.smart_greenhouse_backend.dto.GreenhousePageDto;
 import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.DeviceState;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.SensorRef;
 import org.greenhouse.smart_greenhouse_backend.model.documents.ActionLog;
 import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
 import org.greenhouse.smart_greenhouse_backend.model.documents.Plan;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.JobLease;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricChanges;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * A GreenhouseService felelős az üvegházak üzleti logikájáért.
@@ -29,11 +34,14 @@ public interface GreenhouseService {
     Greenhouse create(final Greenhouse greenhouse);
 
     /**
-     * Az összes üvegház listázása.
+     * Üvegházak szűrve, a kért mezőkre vetítve, kurzoros lapozással (kód szerint növekvő sorrendben).
+     * A teljes dokumentumok a memóriabeli állapotból jönnek; vetítésnél a lekérdezés az adatbázisban fut,
+     * így a ki nem kért beágyazott mezők be sem töltődnek.
      *
-     * @return az összes üvegház listája
+     * @param query a szűrési, vetítési és lapozási paraméterek
+     * @return az oldal elemei és a következő oldal kurzora
      */
-    List<Greenhouse> listAll();
+    GreenhousePageDto listPage(GreenhouseListQuery query);
 
     /**
      * Egy üvegház lekérése azonosító alapján.
@@ -139,6 +147,16 @@ public interface GreenhouseService {
      */
     void evaluateRulesFromSensors();
 
+    /**
+     * Eseményvezérelt kiértékelés: csak a megadott üvegházakra, és azokon belül csak a változott
+     * metrikákra hivatkozó szabályokkal. A beküldött mérések előbb a kódjuk szerinti szenzorba kerülnek,
+     * a kiértékelés onnan olvas. A nem ehhez a példányhoz tartozó üvegházak kimaradnak (a {@code RuleTrigger}
+     * ezeket a gazdájukhoz továbbítja).
+     *
+     * @param changes üvegház kód → az összevont változások
+     */
+    void evaluateRulesForChanges(Map<String, MetricChanges> changes);
+
     /**
      * Szabályok kiértékelése az aktuális külső időjárás alapján.
      * Ha valamelyik érték átlépi a küszöböt, a megfelelő akció
@@ -153,6 +171,16 @@ public interface GreenhouseService {
      */
     void generatePlans();
 
+    /**
+     * Tervgenerálás a teljes flottára, fürtben egyetlen példányon, a megszerzett bérlet alatt.
+     * Az új tervek a bérlet tokenjével jelölve íródnak: egy üvegháznak a legnagyobb tokenű
+     * terve marad aktív, így egy lejárt bérletű példány késői írása nem hagy duplikált aktív tervet.
+     *
+     * @param lease a feladat bérlete
+     * @throws org.greenhouse.smart_greenhouse_backend.service.cluster.JobLeaseLostException ha a bérlet közben elveszett
+     */
+    void generatePlans(JobLease lease);
+
     /**
      * Egy üvegházhoz tartozó aktuális terv lekérése.
      *
@@ -1,8 +1,12 @@
 package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.greenhouse.smart_greenhouse_backend.config.PlantProfileLoader;
+import org.greenhouse.smart_greenhouse_backend.dto.GreenhouseListQuery;
+import org.greenhouse.smart_greenhouse_backend.dto.GreenhousePageDto;
 import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
 import org.greenhouse.smart_greenhouse_backend.exception.GreenhouseAlreadyExistsException;
 import org.greenhouse.smart_greenhouse_backend.exception.GreenhouseNotFoundException;
@@ -11,19 +15,40 @@ import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.DeviceState;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.Location;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.PlannedEvent;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.SensorRef;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.DeviceAction;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.DeviceChannel;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Unit;
 import org.greenhouse.smart_greenhouse_backend.model.documents.*;
 import org.greenhouse.smart_greenhouse_backend.repository.*;
+import org.greenhouse.smart_greenhouse_backend.service.actionLog.ActionLogService;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.ClusterMembership;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.JobLease;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.ActionMatrix;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.CompiledRules;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricChanges;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricsChangedEvent;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.ReadingBlock;
 import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.RuleEvaluatorService;
 import org.greenhouse.smart_greenhouse_backend.service.weather.WeatherService;
+import org.greenhouse.smart_greenhouse_backend.service.weather.WeatherSnapshotFallback;
+import org.greenhouse.smart_greenhouse_backend.service.weather.WeatherSnapshotWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
@@ -33,15 +58,35 @@ public class GreenhouseServiceImpl implements GreenhouseService {
     private final GreenhouseRepository greenhouseRepository;
     private final PlantProfileRepository plantProfileRepository;
     private final ActionLogRepository actionLogRepository;
+    private final ActionLogService actionLogService;
     private final PlanRepository planRepository;
-    private final WeatherSnapshotRepository weatherSnapshotRepository;
 
     private final WeatherService weatherService;
     private final RuleEvaluatorService ruleEvaluatorService;
 
     private final PlantProfileLoader plantProfileLoader;
+    private final FleetSweepExecutor fleetSweepExecutor;
+    private final WeatherSnapshotFallback weatherSnapshotFallback;
+    private final WeatherSnapshotWriter weatherSnapshotWriter;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final GreenhouseStateStore stateStore;
+    private final ClusterMembership cluster;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${greenhouse.list.max-limit:500}")
+    private int listMaxLimit = 500;
+
+    /** a szimuláció a szabályokat változási eseménnyel ({@link RuleTrigger}) váltja ki, nem helyben értékeli */
+    @Value("${greenhouse.rules.event-driven:true}")
+    private boolean eventDriven = true;
+
+    /** A lista vetítésében kérhető mezők; az {@code id} és a {@code code} mindig benne van. */
+    static final Set<String> LIST_FIELDS = Set.of("id", "code", "name", "plantType", "active", "location",
+            "sensors", "devices", "plantProfileId", "planId", "lastActionAt");
 
     private static final Duration ACTION_COOLDOWN = Duration.ofMinutes(5); // 5 perc cooldown
+    private static final long COOLDOWN_MILLIS = ACTION_COOLDOWN.toMillis();
 
     @Override
     public Greenhouse create(final Greenhouse greenhouse) {
@@ -54,6 +99,7 @@ public class GreenhouseServiceImpl implements GreenhouseService {
             }
 
             Greenhouse saved = greenhouseRepository.save(greenhouse);
+            stateStore.put(saved);
 
             boolean hasPlan = planRepository.findByGreenhouseCode(saved.getCode())
                     .stream()
@@ -62,47 +108,148 @@ public class GreenhouseServiceImpl implements GreenhouseService {
             if (!hasPlan) {
                 generatePlanForNewGreenhouse(saved);
             }
-            return saved;
+            return getByCode(saved.getCode());
         }
         throw new GreenhouseAlreadyExistsException("Az üvegház már létezik ezzel a kóddal");
     }
 
     @Override
-    public List<Greenhouse> listAll() {
-        return greenhouseRepository.findAll();
+    public GreenhousePageDto listPage(final GreenhouseListQuery query) {
+        boolean projected = query.fields() != null && !query.fields().isEmpty();
+        if (projected) {
+            for (String field : query.fields()) {
+                if (!LIST_FIELDS.contains(field)) {
+                    throw new IllegalArgumentException("Ismeretlen mező: " + field + " (választható: " + LIST_FIELDS + ")");
+                }
+            }
+        }
+        Integer limit = query.limit();
+        if (limit != null && limit <= 0) throw new IllegalArgumentException("A limit legyen pozitív");
+        int pageSize = limit == null ? -1 : Math.min(limit, listMaxLimit);
+
+        // a teljes dokumentumok a memóriából jönnek (mérvadó állapot), a vetített lista a Mongóból
+        List<Greenhouse> found = projected ? findProjected(query, pageSize) : findInMemory(query, pageSize);
+        String nextCursor = null;
+        if (pageSize > 0 && found.size() > pageSize) {
+            found = found.subList(0, pageSize);
+            nextCursor = encodeCursor(found.get(found.size() - 1).getCode());
+        }
+        if (!projected) {
+            return new GreenhousePageDto(found, nextCursor);
+        }
+
+        Set<String> keep = new HashSet<>(query.fields());
+        keep.add("id");
+        keep.add("code");
+        List<Map<String, Object>> items = new ArrayList<>(found.size());
+        for (Greenhouse greenhouse : found) {
+            Map<String, Object> item = objectMapper.convertValue(greenhouse, new TypeReference<LinkedHashMap<String, Object>>() {});
+            item.keySet().retainAll(keep);
+            items.add(item);
+        }
+        return new GreenhousePageDto(items, nextCursor);
+    }
+
+    /**
+     * Szűrés és lapozás a memóriabeli állapoton: a kódok kiválogatása után csak az oldal elemei másolódnak.
+     *
+     * @param pageSize oldalméret, {@code -1}: nincs korlát; eggyel többet adunk vissza, ebből derül ki a következő oldal
+     */
+    private List<Greenhouse> findInMemory(final GreenhouseListQuery query, final int pageSize) {
+        String after = query.cursor() == null ? null : decodeCursor(query.cursor());
+        List<String> codes = new ArrayList<>();
+        for (Greenhouse greenhouse : stateStore.all()) {
+            String code = greenhouse.getCode();
+            if (code == null || (after != null && code.compareTo(after) <= 0)) continue;
+            Location location = greenhouse.getLocation();
+            if (query.city() != null && (location == null || !query.city().equals(location.city()))) continue;
+            if (query.plantType() != null && !query.plantType().equals(greenhouse.getPlantType())) continue;
+            codes.add(code);
+        }
+        Collections.sort(codes);
+        if (pageSize > 0 && codes.size() > pageSize + 1) codes = codes.subList(0, pageSize + 1);
+
+        List<Greenhouse> result = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            stateStore.snapshot(code).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Vetített lekérdezés a Mongóból: csak a kért mezők jönnek át.
+     */
+    private List<Greenhouse> findProjected(final GreenhouseListQuery query, final int pageSize) {
+        Criteria criteria = new Criteria();
+        if (query.city() != null) criteria.and("location.city").is(query.city());
+        if (query.plantType() != null) criteria.and("plantType").is(query.plantType());
+        if (query.cursor() != null) criteria.and("code").gt(decodeCursor(query.cursor()));
+
+        Query mongoQuery = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "code"));
+        for (String field : query.fields()) {
+            mongoQuery.fields().include(field);
+        }
+        mongoQuery.fields().include("code");
+        // eggyel többet kérünk: ebből derül ki, van-e következő oldal
+        if (pageSize > 0) mongoQuery.limit(pageSize + 1);
+        return mongoTemplate.find(mongoQuery, Greenhouse.class);
+    }
+
+    static String encodeCursor(String code) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(code.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Érvénytelen kurzor");
+        }
     }
 
     @Override
     public Greenhouse getByCode(final String code) {
-        return greenhouseRepository.findByCode(code)
+        return stateStore.snapshot(code)
                 .orElseThrow(() -> new GreenhouseNotFoundException("Greenhouse not found: " + code));
     }
 
+    /**
+     * Módosítás a memóriabeli állapoton, az üvegház zárja alatt; a változás a következő kiíráskor kerül az adatbázisba.
+     *
+     * @return a módosított üvegház másolata
+     */
+    private Greenhouse modify(final String code, final Consumer<Greenhouse> mutation) {
+        return stateStore.update(code, greenhouse -> {
+            mutation.accept(greenhouse);
+            stateStore.markDirty(greenhouse);
+            return GreenhouseStateStore.copy(greenhouse);
+        });
+    }
+
     @Override
     public Greenhouse updateById(final String code, final Greenhouse updated) {
-        Greenhouse existing = getByCode(code);
-        existing.setName(updated.getName());
-        existing.setPlantType(updated.getPlantType());
-        existing.setActive(updated.isActive());
-        existing.setLocation(updated.getLocation());
-        existing.setSensors(updated.getSensors());
-        existing.setDevices(updated.getDevices());
-        existing.setPlantProfileId(updated.getPlantProfileId());
-
-        return greenhouseRepository.save(existing);
+        return modify(code, existing -> {
+            existing.setName(updated.getName());
+            existing.setPlantType(updated.getPlantType());
+            existing.setActive(updated.isActive());
+            existing.setLocation(updated.getLocation());
+            existing.setSensors(updated.getSensors());
+            existing.setDevices(updated.getDevices());
+            existing.setPlantProfileId(updated.getPlantProfileId());
+        });
     }
 
     @Override
     public void deleteByCode(final String code) {
         Greenhouse greenhouse = getByCode(code);
+        stateStore.remove(code);
+        ruleEvaluatorService.forget(code);
         greenhouseRepository.deleteById(greenhouse.getId());
     }
 
     @Override
     public Greenhouse setActive(String code, boolean active) {
-        Greenhouse greenhouse = getByCode(code);
-        greenhouse.setActive(active);
-        return greenhouseRepository.save(greenhouse);
+        return modify(code, greenhouse -> greenhouse.setActive(active));
     }
 
     void validateSensorDatas(final String code, final SensorRef sensor) {
@@ -115,8 +262,6 @@ public class GreenhouseServiceImpl implements GreenhouseService {
     public Greenhouse addSensorData(final String code, final SensorRef sensor) {
         validateSensorDatas(code, sensor);
 
-        Greenhouse greenhouse = getByCode(code);
-
         SensorRef sensorWithTimestamp = sensor.lastSeen() == null
                 ? new SensorRef(
                 sensor.id(),
@@ -128,21 +273,38 @@ public class GreenhouseServiceImpl implements GreenhouseService {
         )
                 : sensor;
 
-        greenhouse.getSensors().removeIf(sensorRef ->
-                (sensor.id() != null && Objects.equals(sensorRef.id(), sensor.id()))
-                        || (sensor.code() != null && Objects.equals(sensorRef.code(), sensor.code()))
-        );
-
-        greenhouse.getSensors().add(sensorWithTimestamp);
+        Greenhouse result = modify(code, greenhouse -> {
+            greenhouse.getSensors().removeIf(sensorRef ->
+                    (sensor.id() != null && Objects.equals(sensorRef.id(), sensor.id()))
+                            || (sensor.code() != null && Objects.equals(sensorRef.code(), sensor.code()))
+            );
 
-        return greenhouseRepository.save(greenhouse);
+            greenhouse.getSensors().add(sensorWithTimestamp);
+        });
+        publishSensorChange(code, sensor);
+        return result;
     }
 
     @Override
     public Greenhouse updateSensorData(String code, SensorRef sensor) {
         validateSensorDatas(code, sensor);
-        Greenhouse greenhouse = getByCode(code);
+        Greenhouse result = stateStore.update(code, greenhouse -> updateSensorData(greenhouse, sensor));
+        // ismeretlen szenzor: felvesszük, az eseményt is az küldi
+        if (result == null) return addSensorData(code, sensor);
+        publishSensorChange(code, sensor);
+        return result;
+    }
 
+    private void publishSensorChange(final String code, final SensorRef sensor) {
+        if (sensor.type() != null && sensor.lastValue() != null) {
+            eventPublisher.publishEvent(MetricsChangedEvent.of(code, sensor.type(), sensor.lastValue()));
+        }
+    }
+
+    /**
+     * @return a módosított üvegház másolata, vagy {@code null}, ha nincs ilyen azonosítójú/kódú szenzor
+     */
+    private Greenhouse updateSensorData(Greenhouse greenhouse, SensorRef sensor) {
         int idx = -1;
         for (int i = 0; i < greenhouse.getSensors().size(); i++) {
             SensorRef s = greenhouse.getSensors().get(i);
@@ -152,10 +314,7 @@ public class GreenhouseServiceImpl implements GreenhouseService {
             }
         }
 
-        if (idx == -1) {
-            Greenhouse newGreenhouse = addSensorData(code, sensor);
-            return newGreenhouse;
-        }
+        if (idx == -1) return null;
 
         SensorRef existing = greenhouse.getSensors().get(idx);
 
@@ -169,23 +328,23 @@ public class GreenhouseServiceImpl implements GreenhouseService {
         );
 
         greenhouse.getSensors().set(idx, updated);
+        stateStore.markDirty(greenhouse);
 
-        return greenhouseRepository.save(greenhouse);
+        return GreenhouseStateStore.copy(greenhouse);
     }
 
     @Override
     public Greenhouse removeSensorData(String code, String sensorId) {
-        Greenhouse greenhouse = getByCode(code);
-
-        boolean removed = greenhouse.getSensors().removeIf(sensorRef ->
-                (sensorId != null && Objects.equals(sensorRef.id(), sensorId))
-        );
+        return stateStore.update(code, greenhouse -> {
+            boolean removed = greenhouse.getSensors().removeIf(sensorRef ->
+                    (sensorId != null && Objects.equals(sensorRef.id(), sensorId))
+            );
 
-        if (removed) {
-            return greenhouseRepository.save(greenhouse);
-        } else {
-            return greenhouse;
-        }
+            if (removed) {
+                stateStore.markDirty(greenhouse);
+            }
+            return GreenhouseStateStore.copy(greenhouse);
+        });
     }
 
     @Override
@@ -195,92 +354,95 @@ public class GreenhouseServiceImpl implements GreenhouseService {
 
     @Override
     public DeviceState manualAction(final String id, final String action) {
-        // Lekérjük az üvegház objektumot azonosító (code/id) alapján
-        Greenhouse greenhouse = getByCode(id);
+        // Az akciót az üvegház zárja alatt alkalmazzuk a memóriabeli állapoton
+        Greenhouse greenhouse = stateStore.update(id, live -> {
+            applyManualAction(live, action);
+            return GreenhouseStateStore.copy(live);
+        });
 
+        // Naplózzuk a kézi akciót (kézi beavatkozásnál mindig, akkor is, ha az állapot nem változott)
+        actionLogService.record(id, action, "manual", true);
+
+        // Azonnal lefuttatjuk a szimulációt, hogy a frontend friss szenzorértékeket kapjon;
+        // az időjárást a záron kívül kérjük le, hogy a hálózati hívás ne tartsa fel a többi módosítást
+        try {
+            WeatherDto weather = fetchWeather(greenhouse);
+            return stateStore.update(id, live -> {
+                simulateInternalEnvironment(live, weather);
+                return GreenhouseStateStore.copy(live.getDevices());
+            });
+        } catch (Exception e) {
+            // Ha a szimuláció hibára fut, debug logban jelezzük
+            log.debug("Szimuláció a kézi művelet után sikertelen {}: {}", id, e.getMessage());
+        }
+
+        // Visszaadjuk az aktuális eszközállapotot
+        return greenhouse.getDevices();
+    }
+
+    private void applyManualAction(final Greenhouse greenhouse, final String action) {
         // Ha az üvegházhoz még nincs DeviceState példány, létrehozunk egyet
         if (greenhouse.getDevices() == null) greenhouse.setDevices(new DeviceState());
 
         // Lekérjük az eszközállapotot
         DeviceState devices = greenhouse.getDevices();
 
-        // Ha még nincs inicializálva a kézi akciók időbélyegzőit tároló map, létrehozzuk
-        if (devices.getLastManualActionAt() == null) devices.setLastManualActionAt(new HashMap<>());
-
-        // Normalizáljuk az action stringet: nagybetűsítjük és levágjuk a felesleges whitespace-t
-        String normalized = action == null ? "" : action.toUpperCase(Locale.ROOT).trim();
-
-        // Meghatározzuk, melyik eszközcsoporthoz tartozik az adott akció (öntözés, szellőztetés, stb.)
-        String manualKey = switch (normalized) {
-            case "IRRIGATION_ON", "IRRIGATION_OFF" -> "IRRIGATION";
-            case "VENT_OPEN", "VENT_CLOSE" -> "VENT";
-            case "SHADE_ON", "SHADE_OFF" -> "SHADE";
-            case "LIGHT_ON", "LIGHT_OFF" -> "LIGHT";
-            case "HUMIDIFIER_ON", "HUMIDIFIER_OFF" -> "HUMIDIFIER";
-            default -> null;
-        };
-
-        // Az akció alapján beállítjuk az adott eszköz állapotát (true = bekapcsolva/nyitva, false = kikapcsolva/zárva)
-        switch (normalized) {
-            case "IRRIGATION_ON" -> devices.setIrrigationOn(true);
-            case "IRRIGATION_OFF" -> devices.setIrrigationOn(false);
-            case "VENT_OPEN" -> devices.setVentOpen(true);
-            case "VENT_CLOSE" -> devices.setVentOpen(false);
-            case "SHADE_ON" -> devices.setShadeOn(true);
-            case "SHADE_OFF" -> devices.setShadeOn(false);
-            case "LIGHT_ON" -> devices.setLightOn(true);
-            case "LIGHT_OFF" -> devices.setLightOn(false);
-            case "HUMIDIFIER_ON" -> devices.setHumidifierOn(true);
-            case "HUMIDIFIER_OFF" -> devices.setHumidifierOn(false);
-            default -> throw new IllegalArgumentException("Ismeretlen akció: " + action);
-        }
-
-        // Az adott eszközcsoporthoz eltároljuk, mikor történt utoljára kézi beavatkozás
-        String key = manualKey.toUpperCase(Locale.ROOT);
-        devices.getLastManualActionAt().put(key, Instant.now());
-
-        // Az üvegház szintjén is frissítjük az utolsó akció időbélyegét
-        setLastActionTimestamp(greenhouse, key, Instant.now());
+        // Az akciót a diszpécsertáblából keressük ki (kis- és nagybetű, szóközök nem számítanak)
+        DeviceAction parsed = DeviceAction.parse(action);
+        if (parsed == null) throw new IllegalArgumentException("Ismeretlen akció: " + action);
 
-        // Elmentjük az üvegház állapotát az adatbázisba
-        greenhouseRepository.save(greenhouse);
+        // Kézi akciónál a csatornát mindig beállítjuk, akkor is, ha már ebben az állapotban volt
+        DeviceChannel channel = parsed.channel();
+        channel.set(devices, parsed.on());
 
-        // Létrehozunk egy ActionLog bejegyzést, hogy naplózzuk a kézi akciót
-        ActionLog actionLog = new ActionLog();
-        actionLog.setGreenhouseCode(id);
-        actionLog.setTimestamp(Instant.now());
-        actionLog.setAction(action);
-        actionLog.setReason("manual"); // ok: kézi beavatkozás
-        actionLogRepository.save(actionLog);
-
-        // Azonnal lefuttatjuk a szimulációt, hogy a frontend friss szenzorértékeket kapjon
-        try {
-            WeatherDto weather = fetchWeatherForGreenhouse(id);
-            simulateInternalEnvironment(greenhouse, weather);
-            greenhouseRepository.save(greenhouse);
-        } catch (Exception e) {
-            // Ha a szimuláció hibára fut, debug logban jelezzük
-            log.debug("Szimuláció a kézi művelet után sikertelen {}: {}", id, e.getMessage());
-        }
+        // Az adott eszközcsoporthoz eltároljuk, mikor történt utoljára kézi beavatkozás,
+        // és az üvegház szintjén is frissítjük az utolsó akció időbélyegét
+        Instant now = Instant.now();
+        devices.recordManual(channel, now);
+        greenhouse.recordAction(channel.name(), now);
 
-        // Visszaadjuk az aktuális eszközállapotot
-        return devices;
+        // A következő kiíráskor kerül az adatbázisba
+        stateStore.markDirty(greenhouse);
     }
 
     @Override
     public WeatherDto fetchWeatherForGreenhouse(final String code) {
-        Greenhouse greenhouse = getByCode(code);
-        WeatherDto dto = weatherService.fetchForLocation(
-                greenhouse.getLocation().city(),
-                greenhouse.getLocation().lat(),
-                greenhouse.getLocation().lon()
-        ).block();
+        return fetchWeather(getByCode(code));
+    }
+
+    /**
+     * Aktuális időjárás egy már betöltött üvegházhoz (nem olvassa újra az adatbázisból).
+     * Ha az upstream nem érhető el, az üvegház utolsó tárolt mérését adja vissza.
+     */
+    private WeatherDto fetchWeather(final Greenhouse greenhouse) {
+        return fetchWeatherWithFallback(greenhouse).weather();
+    }
+
+    private FetchedWeather fetchWeatherWithFallback(final Greenhouse greenhouse) {
+        WeatherDto dto;
+        try {
+            dto = weatherService.fetchForLocation(
+                    greenhouse.getLocation().city(),
+                    greenhouse.getLocation().lat(),
+                    greenhouse.getLocation().lon()
+            ).block();
+        } catch (RuntimeException e) {
+            Optional<WeatherDto> stored = weatherSnapshotFallback.latestFor(greenhouse.getCode(), Exceptions.unwrap(e));
+            if (stored.isEmpty()) throw e;
+            return new FetchedWeather(stored.get(), true);
+        }
 
         if (dto != null) {
             dto.setCity(greenhouse.getLocation().city());
             dto.setTimestamp(Instant.now());
         }
-        return dto;
+        return new FetchedWeather(dto, false);
+    }
+
+    /**
+     * @param stale true, ha az adat a tárolt utolsó mérésből származik
+     */
+    private record FetchedWeather(WeatherDto weather, boolean stale) {
     }
 
     @Override
@@ -307,80 +469,177 @@ public class GreenhouseServiceImpl implements GreenhouseService {
 
     @Override
     public void evaluateRulesFromSensors() {
-        for (Greenhouse greenhouse : greenhouseRepository.findAll()) {
+        // profilonként egy köteg: a profil egyszer töltődik be, a szabályok egy ciklusban futnak az összes üvegházra
+        Map<String, List<Greenhouse>> byProfile = new HashMap<>();
+        for (Greenhouse greenhouse : cluster.owned(stateStore.all())) {
             if (!greenhouse.isActive()) continue;
-
-            PlantProfile profile = plantProfileRepository.findById(greenhouse.getPlantProfileId()).orElse(null);
-            if (profile == null) {
-                log.warn("Nincs plant profile a greenhouse {}-hoz (id={})", greenhouse.getCode(), greenhouse.getPlantProfileId());
+            if (greenhouse.getPlantProfileId() == null) {
+                log.warn("Nincs plant profile a greenhouse {}-hoz (id=null)", greenhouse.getCode());
                 continue;
             }
+            byProfile.computeIfAbsent(greenhouse.getPlantProfileId(), id -> new ArrayList<>()).add(greenhouse);
+        }
+        byProfile.forEach((profileId, greenhouses) ->
+                evaluateSensorRules(profileId, greenhouses.stream().map(Greenhouse::getCode).toList(), null));
+        log.info("evaluateRulesFromSensors lefutott ({} profil)", byProfile.size());
+    }
+
+    @Override
+    public void evaluateRulesForChanges(final Map<String, MetricChanges> changes) {
+        Map<String, List<String>> byProfile = new HashMap<>();
+        for (String code : changes.keySet()) {
+            if (!cluster.owns(code)) continue;
+            Map<String, double[]> measured = changes.get(code).sensors();
+            String profileId;
+            try {
+                profileId = stateStore.update(code, live -> {
+                    // a mért értékek előbb a gazda szenzorállapotába kerülnek, a kiértékelés már abból dolgozik
+                    if (applyMeasurements(live, measured)) stateStore.markDirty(live);
+                    return live.isActive() ? live.getPlantProfileId() : null;
+                });
+            } catch (GreenhouseNotFoundException e) {
+                continue; // közben törölték
+            }
+            if (profileId != null) byProfile.computeIfAbsent(profileId, id -> new ArrayList<>()).add(code);
+        }
+        byProfile.forEach((profileId, codes) -> evaluateSensorRules(profileId, codes, changes));
+    }
+
+    /**
+     * A beküldött mérések beírása az üvegház szenzoraiba: a szenzor kódja és a metrika típusa szerint.
+     * Ismeretlen kódú vagy eltérő típusú szenzorhoz nem veszünk fel újat, az értéket kihagyjuk.
+     *
+     * @param measured szenzor kód → {@code Type}-sorszámmal indexelt értékek
+     * @return változott-e a szenzorlista
+     */
+    private static boolean applyMeasurements(final Greenhouse greenhouse, final Map<String, double[]> measured) {
+        if (measured.isEmpty() || greenhouse.getSensors() == null) return false;
+        List<SensorRef> sensors = new ArrayList<>(greenhouse.getSensors());
+        Instant now = Instant.now();
+        boolean changed = false;
+        for (int i = 0; i < sensors.size(); i++) {
+            SensorRef sensor = sensors.get(i);
+            if (sensor == null || sensor.code() == null || sensor.type() == null) continue;
+            double[] values = measured.get(sensor.code());
+            if (values == null || Double.isNaN(values[sensor.type().ordinal()])) continue;
+            double value = values[sensor.type().ordinal()];
+            sensors.set(i, new SensorRef(sensor.id(), sensor.code(), sensor.type(), sensor.unit(), value, now));
+            changed = true;
+        }
+        if (changed) greenhouse.setSensors(sensors);
+        return changed;
+    }
+
+    /**
+     * @param changes eseményvezérelt futásnál üvegházanként a változott értékek (ezekre a metrikákra szűkít;
+     *                az értékek ekkorra már a szenzorokban vannak), teljes bejárásnál {@code null}
+     */
+    private void evaluateSensorRules(final String profileId, final List<String> codes, final Map<String, MetricChanges> changes) {
+        PlantProfile profile = plantProfileRepository.findById(profileId).orElse(null);
+        if (profile == null) {
+            log.warn("Nincs plant profile {} üvegházhoz (id={})", codes.size(), profileId);
+            return;
+        }
+
+        ReadingBlock block = new ReadingBlock(codes.size());
+        int[] changed = changes == null ? null : new int[codes.size()];
+        for (int row = 0; row < codes.size(); row++) {
+            int r = row;
+            stateStore.update(codes.get(row), live -> {
+                fillSensorRow(block, r, live.getSensors());
+                return null;
+            });
+            if (changes != null) changed[row] = MetricsChangedEvent.changedMask(changes.get(codes.get(row)).values());
+        }
 
-            Map<Type, Double> values = greenhouse.getSensors().stream()
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toMap(
-                            SensorRef::type,
-                            SensorRef::lastValue,
-                            (s1, s2) -> s1
-                    ));
-
-            var actions = ruleEvaluatorService.evaluate(profile, values);
-            applyActions(greenhouse, actions, "rule-engine");
-            log.info("evaluateRulesFromSensors lefutott");
+        ActionMatrix matrix = changes == null
+                ? ruleEvaluatorService.evaluate(profile, block, codes, Instant.now())
+                : ruleEvaluatorService.evaluate(profile, block, codes, Instant.now(), changed);
+        for (int row = 0; row < codes.size(); row++) {
+            if (!matrix.anyFired(row)) continue;
+            int r = row;
+            stateStore.update(codes.get(row), live -> {
+                if (!live.isActive()) return null;
+                applyFiredActions(live, matrix, r, "rule-engine");
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Egy üvegház szenzorainak utolsó értékei a blokk egy sorába; azonos típusnál az első szenzor nyer.
+     */
+    private static void fillSensorRow(final ReadingBlock block, final int row, final List<SensorRef> sensors) {
+        if (sensors == null) return;
+        for (int i = 0; i < sensors.size(); i++) {
+            SensorRef sensor = sensors.get(i);
+            if (sensor != null && sensor.type() != null && sensor.lastValue() != null) {
+                block.setIfAbsent(row, sensor.type(), sensor.lastValue());
+            }
         }
     }
 
     @Override
     public void evaluateRulesFromWeather() {
-        List<Greenhouse> greenhouses = greenhouseRepository.findAll();
+        List<Greenhouse> greenhouses = cluster.owned(stateStore.all());
         if (greenhouses.isEmpty()) {
             log.warn("Nincs greenhouse az adatbázisban, kihagyom a futást");
             return;
         }
 
+        List<Greenhouse> active = new ArrayList<>();
         for (Greenhouse greenhouse : greenhouses) {
             if (greenhouse.getPlantProfileId() == null) {
                 log.warn("Greenhouse {} nem rendelkezik plantProfileId-vel", greenhouse.getId());
             }
+            if (greenhouse.isActive()) active.add(greenhouse);
         }
 
-        for (Greenhouse greenhouse : greenhouseRepository.findAll()) {
-            if (!greenhouse.isActive()) continue;
-
-            PlantProfile profile = plantProfileRepository.findByPlantCode(greenhouse.getPlantProfileId())
-                    .orElse(null);
-            if (profile == null) continue;
-
-            WeatherDto weather = weatherService.fetchForLocation(
-                    greenhouse.getLocation().city(),
-                    greenhouse.getLocation().lat(),
-                    greenhouse.getLocation().lon()
-            ).block();
+        fleetSweepExecutor.sweep("evaluateRulesFromWeather", active, this::evaluateWeatherRules);
+        log.info("Időjárás lekérés lefutott");
+    }
 
-            if (weather == null) continue;
+    private void evaluateWeatherRules(final Greenhouse greenhouse) {
+        PlantProfile profile = plantProfileRepository.findByPlantCode(greenhouse.getPlantProfileId())
+                .orElse(null);
+        if (profile == null) return;
 
-            Map<Type, Double> values = new HashMap<>();
-            values.put(Type.TEMPERATURE, weather.getTemperature());
-            values.put(Type.HUMIDITY_PCT, weather.getHumidity());
-            values.put(Type.WIND_SPEED, weather.getWindSpeed());
-            if (weather.getPrecipitationMm() != null) {
-                values.put(Type.PRECIPITATION_MM, weather.getPrecipitationMm());
-            }
+        WeatherDto weather = fetchWeather(greenhouse);
+        if (weather == null) return;
 
-            List<String> actions = ruleEvaluatorService.evaluate(profile, values);
-            applyActions(greenhouse, actions, "weather-check");
+        Map<Type, Double> values = new HashMap<>();
+        values.put(Type.TEMPERATURE, weather.getTemperature());
+        values.put(Type.HUMIDITY_PCT, weather.getHumidity());
+        values.put(Type.WIND_SPEED, weather.getWindSpeed());
+        if (weather.getPrecipitationMm() != null) {
+            values.put(Type.PRECIPITATION_MM, weather.getPrecipitationMm());
         }
-        log.info("Időjárás lekérés lefutott");
+
+        List<String> actions = ruleEvaluatorService.evaluate(profile, values);
+        stateStore.update(greenhouse.getCode(), live -> {
+            applyActions(live, actions, "weather-check");
+            return null;
+        });
     }
 
     @Override
     public void generatePlans() {
-        for (Greenhouse greenhouse : greenhouseRepository.findAll()) {
+        for (Greenhouse greenhouse : cluster.owned(stateStore.all())) {
             if (!greenhouse.isActive()) continue;
             generatePlanForNewGreenhouse(greenhouse);
         }
     }
 
+    @Override
+    public void generatePlans(final JobLease lease) {
+        // a bérlet birtokosa a teljes flottát viszi, nem csak a hozzá rendelt részt
+        for (Greenhouse greenhouse : stateStore.all()) {
+            if (!greenhouse.isActive()) continue;
+            lease.assertHeld();
+            generatePlanForNewGreenhouse(greenhouse, lease.token());
+        }
+    }
+
     private PlantProfile ensurePlantProfileForGreenhouse(Greenhouse greenhouse) {
         if (greenhouse == null) return null;
 
@@ -429,6 +688,13 @@ public class GreenhouseServiceImpl implements GreenhouseService {
     }
 
     private void generatePlanForNewGreenhouse(final Greenhouse greenhouse) {
+        generatePlanForNewGreenhouse(greenhouse, null);
+    }
+
+    /**
+     * @param fencingToken a tervgeneráló feladat bérletének tokenje, vagy {@code null} (egyedi létrehozás)
+     */
+    private void generatePlanForNewGreenhouse(final Greenhouse greenhouse, final Long fencingToken) {
         if (greenhouse == null || !greenhouse.isActive())
             return;
 
@@ -454,16 +720,20 @@ public class GreenhouseServiceImpl implements GreenhouseService {
 
         List<PlannedEvent> events = new ArrayList<>();
 
-        for (WeatherDto weatherDto : forecast) {
-            Map<Type, Double> values = new HashMap<>();
-            values.put(Type.TEMPERATURE, weatherDto.getTemperature());
-            values.put(Type.HUMIDITY_PCT, weatherDto.getHumidity());
-            values.put(Type.WIND_SPEED, weatherDto.getWindSpeed());
-            if (weatherDto.getPrecipitationMm() != null) {
-                values.put(Type.PRECIPITATION_MM, weatherDto.getPrecipitationMm());
-            }
+        // az előrejelzés összes időpontja egy kötegben, soronként egy időpont
+        ReadingBlock block = new ReadingBlock(forecast.size());
+        for (int row = 0; row < forecast.size(); row++) {
+            WeatherDto weatherDto = forecast.get(row);
+            setIfPresent(block, row, Type.TEMPERATURE, weatherDto.getTemperature());
+            setIfPresent(block, row, Type.HUMIDITY_PCT, weatherDto.getHumidity());
+            setIfPresent(block, row, Type.WIND_SPEED, weatherDto.getWindSpeed());
+            setIfPresent(block, row, Type.PRECIPITATION_MM, weatherDto.getPrecipitationMm());
+        }
+        ActionMatrix matrix = ruleEvaluatorService.evaluate(profile, block);
 
-            List<String> actions = ruleEvaluatorService.evaluate(profile, values);
+        for (int row = 0; row < forecast.size(); row++) {
+            WeatherDto weatherDto = forecast.get(row);
+            List<String> actions = matrix.actions(row);
             if (!actions.isEmpty()) {
                 PlannedEvent plannedEvent = new PlannedEvent(
                         weatherDto.getTimestamp(),
@@ -483,13 +753,51 @@ public class GreenhouseServiceImpl implements GreenhouseService {
         }
 
         plan.setEvents(events);
+        plan.setFencingToken(fencingToken);
         planRepository.save(plan);
+        if (fencingToken != null && !activateFenced(plan)) {
+            log.warn("A(z) {} üvegház terve elavult bérletből készült (token: {}), nem lesz aktív",
+                    greenhouse.getCode(), fencingToken);
+            return;
+        }
 
-        greenhouse.setPlanId(plan.getId());
-        greenhouseRepository.save(greenhouse);
+        stateStore.update(greenhouse.getCode(), live -> {
+            live.setPlanId(plan.getId());
+            stateStore.markDirty(live);
+            return null;
+        });
         log.info("Új greenhouse-hoz alap plan létrehozva: {}", plan.getId());
     }
 
+    private static void setIfPresent(final ReadingBlock block, final int row, final Type type, final Double value) {
+        if (value != null) block.set(row, type, value);
+    }
+
+    /**
+     * A bérlet alatt mentett terv aktiválása: a kisebb tokenű (vagy token nélküli) aktív tervek
+     * inaktívvá válnak, ha pedig már van nagyobb tokenű aktív terv, a sajátunk lesz inaktív.
+     * Két egymást átfedő futás így is egyetlen aktív tervre konvergál.
+     *
+     * @return igaz, ha a mi tervünk maradt aktív
+     */
+    private boolean activateFenced(final Plan plan) {
+        Criteria olderActive = Criteria.where("greenhouseCode").is(plan.getGreenhouseCode())
+                .and("active").is(true)
+                .and("_id").ne(plan.getId())
+                .orOperator(Criteria.where("fencingToken").lt(plan.getFencingToken()),
+                        Criteria.where("fencingToken").is(null));
+        mongoTemplate.updateMulti(new Query(olderActive), new Update().set("active", false), Plan.class);
+
+        Query newer = new Query(Criteria.where("greenhouseCode").is(plan.getGreenhouseCode())
+                .and("active").is(true)
+                .and("fencingToken").gt(plan.getFencingToken()));
+        if (!mongoTemplate.exists(newer, Plan.class)) return true;
+
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(plan.getId())),
+                new Update().set("active", false), Plan.class);
+        return false;
+    }
+
     @Override
     public Plan getLastPlanForGreenhouse(final String code) {
         Greenhouse greenhouse = getByCode(code);
@@ -502,7 +810,7 @@ public class GreenhouseServiceImpl implements GreenhouseService {
 
     @Override
     public void pollAllGreenhouses() {
-        List<Greenhouse> greenhouses = greenhouseRepository.findAll();
+        List<Greenhouse> greenhouses = cluster.owned(stateStore.all());
         if (greenhouses.isEmpty()) {
             log.warn("Nincs greenhouse az adatbázisban, kihagyom a futást");
             return;
@@ -511,167 +819,141 @@ public class GreenhouseServiceImpl implements GreenhouseService {
         for (Greenhouse greenhouse : greenhouses) {
             if (greenhouse.getPlantProfileId() == null) {
                 log.warn("Greenhouse {} nem rendelkezik plantProfileId-vel", greenhouse.getId());
-                continue;
             }
         }
 
-        for (Greenhouse greenhouse : greenhouseRepository.findAll()) {
-            WeatherDto weather = fetchWeatherForGreenhouse(greenhouse.getCode());
-            if (weather == null) continue;
-
-            WeatherSnapshot snapshot = WeatherSnapshot.builder()
-                    .greenhouseCode(greenhouse.getCode())
-                    .timestamp(Instant.now())
-                    .city(weather.getCity())
-                    .temperature(weather.getTemperature())
-                    .humidity(weather.getHumidity())
-                    .windSpeed(weather.getWindSpeed())
-                    .precipitationMm(weather.getPrecipitationMm())
-                    .soilMoistureExtPct(weather.getSoilMoistureExtPct())
-                    .build();
-            weatherSnapshotRepository.save(snapshot);
-
-            simulateInternalEnvironment(greenhouse, weather);
-
-            log.info("Actual weatherSnapshot: {}", snapshot);
-            weatherSnapshotRepository.save(snapshot);
+        fleetSweepExecutor.sweep("pollAllGreenhouses", greenhouses, this::pollGreenhouse);
+    }
+
+    private void pollGreenhouse(final Greenhouse greenhouse) {
+        FetchedWeather fetched = fetchWeatherWithFallback(greenhouse);
+        WeatherDto weather = fetched.weather();
+        if (weather == null) return;
+        if (fetched.stale()) {
+            // a tárolt mérést nem mentjük újra frissként, csak a belső szimuláció fut
+            simulate(greenhouse.getCode(), weather);
+            return;
         }
+
+        WeatherSnapshot snapshot = WeatherSnapshot.builder()
+                .greenhouseCode(greenhouse.getCode())
+                .timestamp(Instant.now())
+                .city(weather.getCity())
+                .temperature(weather.getTemperature())
+                .humidity(weather.getHumidity())
+                .windSpeed(weather.getWindSpeed())
+                .precipitationMm(weather.getPrecipitationMm())
+                .soilMoistureExtPct(weather.getSoilMoistureExtPct())
+                .build();
+
+        simulate(greenhouse.getCode(), weather);
+
+        log.info("Actual weatherSnapshot: {}", snapshot);
+        weatherSnapshotWriter.write(snapshot);
     }
 
-    private boolean isInCooldown(Greenhouse greenhouse, String action) {
-        if (greenhouse == null || action == null) return false;
-        Map<String, Instant> lastActionAt = greenhouse.getLastActionAt();
-        if (lastActionAt == null) return false;
-        Instant last = lastActionAt.get(action);
-        if (last == null) return false;
-        return Instant.now().isBefore(last.plus(ACTION_COOLDOWN));
+    private boolean isInCooldown(Greenhouse greenhouse, DeviceAction action) {
+        return isInCooldown(greenhouse, action, System.currentTimeMillis());
     }
 
-    private void setLastActionTimestamp(Greenhouse greenhouse, String action, Instant when) {
-        if (greenhouse == null || action == null) return;
-        if (greenhouse.getLastActionAt() == null) {
-            greenhouse.setLastActionAt(new HashMap<>());
-        }
-        greenhouse.getLastActionAt().put(action, when);
+    private boolean isInCooldown(Greenhouse greenhouse, DeviceAction action, long now) {
+        if (greenhouse == null || action == null) return false;
+        long last = greenhouse.lastActionMillis(action);
+        return last != 0 && now < last + COOLDOWN_MILLIS;
     }
 
+    /**
+     * Név szerinti akciók (időjárás, egyedi kiértékelés) a beépített öntözési hiszterézissel ({@link #shouldApplyAction}).
+     */
     private void applyActions(final Greenhouse greenhouse,
                               final List<String> actions,
                               final String reason) {
         if (greenhouse == null || actions == null || actions.isEmpty()) return;
 
-        DeviceState devices = greenhouse.getDevices();
+        long now = System.currentTimeMillis();
         boolean changed = false;
+        for (String name : actions) {
+            if (name == null) continue;
+            changed |= applyAction(greenhouse, DeviceAction.of(name), name, reason, true, now);
+        }
+        finishActions(greenhouse, changed);
+    }
 
-        for (String action : actions) {
-            if (!shouldApplyAction(greenhouse, action)) {
-                log.debug("A {} művelet kihagyása a következőhöz: {}, mert a shouldApplyAction értéke hamis volt", action, greenhouse.getCode());
-                continue;
-            }
-
-            if (isInCooldown(greenhouse, action)) {
-                log.debug("Akció kihagyása {}-ra {}-ra a lehűlési idő miatt", action, greenhouse.getCode());
-                continue;
-            }
+    /**
+     * A kötegelt kiértékelés egy sorának kiváltott akciói, a szabálylista sorrendjében. Az akciók a profil
+     * fordításakor már fel vannak oldva, így itt nincs névkeresés; a név csak a naplóba kerül.
+     */
+    private void applyFiredActions(final Greenhouse greenhouse,
+                                   final ActionMatrix matrix,
+                                   final int row,
+                                   final String reason) {
+        long now = System.currentTimeMillis();
+        int ranges = matrix.rangeRuleCount();
+        boolean changed = false;
+        for (int rule = 0; rule < matrix.ruleCount(); rule++) {
+            if (!matrix.fired(rule, row)) continue;
+            // a kifejezés alapú szabályok maguk írják le a hiszterézist, nem kell a beépített kapu
+            changed |= applyAction(greenhouse, matrix.deviceAction(rule), matrix.action(rule), reason, rule < ranges, now);
+        }
+        finishActions(greenhouse, changed);
+    }
 
-            boolean applied = false;
-            switch (action) {
-                case "IRRIGATION_ON":
-                    if (!Boolean.TRUE.equals(devices.isIrrigationOn())) {
-                        devices.setIrrigationOn(true);
-                        applied = true;
-                    }
-                    break;
-                case "IRRIGATION_OFF":
-                    if (!Boolean.FALSE.equals(devices.isIrrigationOn())) {
-                        devices.setIrrigationOn(false);
-                        applied = true;
-                    }
-                    break;
-                case "VENT_OPEN":
-                    if (!Boolean.TRUE.equals(devices.isVentOpen())) {
-                        devices.setVentOpen(true);
-                        applied = true;
-                    }
-                    break;
-                case "VENT_CLOSE":
-                    if (!Boolean.FALSE.equals(devices.isVentOpen())) {
-                        devices.setVentOpen(false);
-                        applied = true;
-                    }
-                    break;
-                case "SHADE_ON":
-                    if (!Boolean.TRUE.equals(devices.isShadeOn())) {
-                        devices.setShadeOn(true);
-                        applied = true;
-                    }
-                    break;
-                case "SHADE_OFF":
-                    if (!Boolean.FALSE.equals(devices.isShadeOn())) {
-                        devices.setShadeOn(false);
-                        applied = true;
-                    }
-                    break;
-                case "LIGHT_ON":
-                    if (!Boolean.TRUE.equals(devices.isLightOn())) {
-                        devices.setLightOn(true);
-                        applied = true;
-                    }
-                    break;
-                case "LIGHT_OFF":
-                    if (!Boolean.FALSE.equals(devices.isLightOn())) {
-                        devices.setLightOn(false);
-                        applied = true;
-                    }
-                    break;
-                case "HUMIDIFIER_ON":
-                    if (!Boolean.TRUE.equals(devices.isHumidifierOn())) {
-                        devices.setHumidifierOn(true);
-                        applied = true;
-                    }
-                    break;
-                case "HUMIDIFIER_OFF":
-                    if (!Boolean.FALSE.equals(devices.isHumidifierOn())) {
-                        devices.setHumidifierOn(false);
-                        applied = true;
-                    }
-                    break;
-                default:
-                    log.warn("Ismeretlen action: {}", action);
-            }
+    /**
+     * @param action     a feloldott akció, ismeretlen névnél {@code null}
+     * @param hysteresis alkalmazza-e a beépített öntözési hiszterézist; a profil kifejezés alapú szabályainál
+     *                   ez a szabályban van
+     * @param name       az akció neve a naplóhoz
+     * @return változott-e az eszközállapot
+     */
+    private boolean applyAction(final Greenhouse greenhouse,
+                                final DeviceAction action,
+                                final String name,
+                                final String reason,
+                                final boolean hysteresis,
+                                final long now) {
+        if (hysteresis && !shouldApplyAction(greenhouse, action)) {
+            log.debug("A {} művelet kihagyása a következőhöz: {}, mert a shouldApplyAction értéke hamis volt", name, greenhouse.getCode());
+            return false;
+        }
 
-            ActionLog logEntry = new ActionLog();
-            logEntry.setGreenhouseCode(greenhouse.getCode());
-            logEntry.setTimestamp(Instant.now());
-            logEntry.setAction(action);
-            logEntry.setReason(reason);
-            actionLogRepository.save(logEntry);
+        if (isInCooldown(greenhouse, action, now)) {
+            log.debug("Akció kihagyása {}-ra {}-ra a lehűlési idő miatt", name, greenhouse.getCode());
+            return false;
+        }
 
-            if (applied) {
-                setLastActionTimestamp(greenhouse, action, Instant.now());
-                changed = true;
-            }
+        boolean applied = false;
+        if (action == null) {
+            log.warn("Ismeretlen action: {}", name);
+        } else {
+            applied = action.apply(greenhouse.getDevices());
         }
 
+        actionLogService.record(greenhouse.getCode(), name, reason, applied);
+
+        if (applied) greenhouse.recordAction(action, Instant.ofEpochMilli(now));
+        return applied;
+    }
+
+    private void finishActions(final Greenhouse greenhouse, final boolean changed) {
         if (changed) {
-            greenhouseRepository.save(greenhouse);
-            log.info("Mentett üvegház {} műveletek és eszközök alkalmazása után: {}", greenhouse.getCode(), greenhouse.getDevices());
+            stateStore.markDirty(greenhouse);
+            log.info("Módosult üvegház {} műveletek és eszközök alkalmazása után: {}", greenhouse.getCode(), greenhouse.getDevices());
         } else {
             log.debug("Nincsenek eszközváltozások a következőhöz: {}, a mentés kihagyásra kerül.", greenhouse.getCode());
         }
     }
 
-    private boolean shouldApplyAction(Greenhouse greenhouse, String action) {
-        if (greenhouse == null || action == null) return false;
+    private boolean shouldApplyAction(Greenhouse greenhouse, DeviceAction action) {
+        if (greenhouse == null) return false;
         if (greenhouse.getPlantProfileId() == null) return false;
 
         // Example hysteresis for irrigation only; other actions can be extended similarly
-        if ("IRRIGATION_ON".equals(action)) {
+        if (action == DeviceAction.IRRIGATION_ON) {
             Double soil = currentSoilMoisture(greenhouse);
             if (soil == null) return false;
             return soil < 30.0;
         }
-        if ("IRRIGATION_OFF".equals(action)) {
+        if (action == DeviceAction.IRRIGATION_OFF) {
             Double soil = currentSoilMoisture(greenhouse);
             if (soil == null) return false;
             return soil > 40.0;
@@ -719,19 +1001,25 @@ public class GreenhouseServiceImpl implements GreenhouseService {
             return greenhouse;
         }
 
-        WeatherDto weather = weatherService.fetchForLocation(
-                location.city(),
-                location.lat(),
-                location.lon()
-        ).block();
+        WeatherDto weather = fetchWeather(greenhouse);
 
         if (weather == null) {
             return greenhouse;
         }
 
-        simulateInternalEnvironment(greenhouse, weather);
+        return simulate(code, weather);
+    }
 
-        return greenhouseRepository.save(greenhouse);
+    /**
+     * A belső környezet szimulációja a memóriabeli állapoton, az üvegház zárja alatt.
+     *
+     * @return a szimuláció utáni állapot másolata
+     */
+    private Greenhouse simulate(final String code, final WeatherDto weather) {
+        return stateStore.update(code, live -> {
+            simulateInternalEnvironment(live, weather);
+            return GreenhouseStateStore.copy(live);
+        });
     }
 
     private void upsertInternalSensor(Greenhouse greenhouse,
@@ -907,9 +1195,9 @@ public class GreenhouseServiceImpl implements GreenhouseService {
         if (Boolean.TRUE.equals(devices.isIrrigationOn()) && profile != null && profile.getSoilMoistureRangePct() != null) {
             if (soil >= profile.getSoilMoistureRangePct().max()) {
                 soil = profile.getSoilMoistureRangePct().max();
-                if (!isUnderManualCooldown(devices, "IRRIGATION") && !isInCooldown(greenhouse, "IRRIGATION_OFF")) {
+                if (!isUnderManualCooldown(devices, DeviceChannel.IRRIGATION) && !isInCooldown(greenhouse, DeviceAction.IRRIGATION_OFF)) {
                     devices.setIrrigationOn(false);
-                    setLastActionTimestamp(greenhouse, "IRRIGATION_OFF", now);
+                    greenhouse.recordAction(DeviceAction.IRRIGATION_OFF, now);
                     log.info("Öntözés automatikus kikapcsolása {} talaj nedvességtartalma={}", greenhouse.getCode(), soil);
                 }
             }
@@ -941,89 +1229,89 @@ public class GreenhouseServiceImpl implements GreenhouseService {
 
 
         // ÖNTÖZÉS (hysteresis)
-        if (!wasRecentlyManual(greenhouse, "IRRIGATION")) {
+        if (!wasRecentlyManual(greenhouse, DeviceChannel.IRRIGATION)) {
             if (Boolean.TRUE.equals(devices.isIrrigationOn())) {
-                if (soil >= soilOffThreshold && !isInCooldown(greenhouse, "IRRIGATION_OFF")) {
+                if (soil >= soilOffThreshold && !isInCooldown(greenhouse, DeviceAction.IRRIGATION_OFF)) {
                     devices.setIrrigationOn(false);
-                    setLastActionTimestamp(greenhouse, "IRRIGATION_OFF", now);
+                    greenhouse.recordAction(DeviceAction.IRRIGATION_OFF, now);
                     log.info("Öntözés automatikus kikapcsolása {} talaj nedvességtartalma={}", greenhouse.getCode(), soil);
                 }
             } else {
-                if (soil <= soilOnThreshold && !isInCooldown(greenhouse, "IRRIGATION_ON")) {
+                if (soil <= soilOnThreshold && !isInCooldown(greenhouse, DeviceAction.IRRIGATION_ON)) {
                     devices.setIrrigationOn(true);
-                    setLastActionTimestamp(greenhouse, "IRRIGATION_ON", now);
+                    greenhouse.recordAction(DeviceAction.IRRIGATION_ON, now);
                     log.info("Öntözés automatikus kikapcsolása {} talaj nedvességtartalma={}", greenhouse.getCode(), soil);
                 }
             }
         }
 
         // PÁRÁSÍTÓ
-        if (!wasRecentlyManual(greenhouse, "HUMIDIFIER")) {
+        if (!wasRecentlyManual(greenhouse, DeviceChannel.HUMIDIFIER)) {
             if (Boolean.TRUE.equals(devices.isHumidifierOn())) {
-                if (intHum >= humOffThreshold && !isInCooldown(greenhouse, "HUMIDIFIER_OFF")) {
+                if (intHum >= humOffThreshold && !isInCooldown(greenhouse, DeviceAction.HUMIDIFIER_OFF)) {
                     devices.setHumidifierOn(false);
-                    setLastActionTimestamp(greenhouse, "HUMIDIFIER_OFF", now);
+                    greenhouse.recordAction(DeviceAction.HUMIDIFIER_OFF, now);
                     log.info("Párásító automatikus kikapcsolása {} párásító ={}", greenhouse.getCode(), intHum);
                 }
             } else {
-                if (intHum <= humOnThreshold && !isInCooldown(greenhouse, "HUMIDIFIER_ON")) {
+                if (intHum <= humOnThreshold && !isInCooldown(greenhouse, DeviceAction.HUMIDIFIER_ON)) {
                     devices.setHumidifierOn(true);
-                    setLastActionTimestamp(greenhouse, "HUMIDIFIER_ON", now);
+                    greenhouse.recordAction(DeviceAction.HUMIDIFIER_ON, now);
                     log.info("Párásító automatikus kikapcsolása {} párásító ={}", greenhouse.getCode(), intHum);
                 }
             }
         }
 
         // VILÁGÍTÁS és ÁRNYÉKOLÁS (temp alapú)
-        if (!wasRecentlyManual(greenhouse, "LIGHT")) {
+        if (!wasRecentlyManual(greenhouse, DeviceChannel.LIGHT)) {
             if (Boolean.TRUE.equals(devices.isLightOn())) {
-                if (intTemp >= tempMax && !isInCooldown(greenhouse, "LIGHT_OFF")) {
+                if (intTemp >= tempMax && !isInCooldown(greenhouse, DeviceAction.LIGHT_OFF)) {
                     devices.setLightOn(false);
-                    setLastActionTimestamp(greenhouse, "LIGHT_OFF", now);
+                    greenhouse.recordAction(DeviceAction.LIGHT_OFF, now);
                     log.info("Lámpa automatikus kikapcsolás {} hőmérséklet={}", greenhouse.getCode(), intTemp);
                 }
             } else {
-                if (intTemp <= tempMin && !isInCooldown(greenhouse, "LIGHT_ON")) {
+                if (intTemp <= tempMin && !isInCooldown(greenhouse, DeviceAction.LIGHT_ON)) {
                     devices.setLightOn(true);
-                    setLastActionTimestamp(greenhouse, "LIGHT_ON", now);
+                    greenhouse.recordAction(DeviceAction.LIGHT_ON, now);
                     log.info("Lámpa automatikus bekapcsolása {} hőmérséklet={}", greenhouse.getCode(), intTemp);
                 }
             }
         }
 
-        if (!wasRecentlyManual(greenhouse, "SHADE")) {
+        if (!wasRecentlyManual(greenhouse, DeviceChannel.SHADE)) {
             if (Boolean.TRUE.equals(devices.isShadeOn())) {
-                if (intTemp <= tempOffForShade && !isInCooldown(greenhouse, "SHADE_OFF")) {
+                if (intTemp <= tempOffForShade && !isInCooldown(greenhouse, DeviceAction.SHADE_OFF)) {
                     devices.setShadeOn(false);
-                    setLastActionTimestamp(greenhouse, "SHADE_OFF", now);
+                    greenhouse.recordAction(DeviceAction.SHADE_OFF, now);
                     log.info("Árnyékoló automatikus kikapcsolása {} hőmérséklet={}", greenhouse.getCode(), intTemp);
                 }
             } else {
-                if (intTemp >= tempOnForShade && !isInCooldown(greenhouse, "SHADE_ON")) {
+                if (intTemp >= tempOnForShade && !isInCooldown(greenhouse, DeviceAction.SHADE_ON)) {
                     devices.setShadeOn(true);
-                    setLastActionTimestamp(greenhouse, "SHADE_ON", now);
+                    greenhouse.recordAction(DeviceAction.SHADE_ON, now);
                     log.info("Árnyékoló automatikus bekapcsolása {} hőmérséklet={}", greenhouse.getCode(), intTemp);
                 }
             }
         }
 
         // SZELLŐZTETÉS: nyit, ha bármelyik kilóg; zár, ha mindkettő visszaáll
-        if (!wasRecentlyManual(greenhouse, "VENT")) {
+        if (!wasRecentlyManual(greenhouse, DeviceChannel.VENT)) {
             boolean tempOut = (intTemp < tempMin) || (intTemp > tempMax);
             boolean humOut = (intHum < humMin) || (intHum > humMax);
 
             if (Boolean.TRUE.equals(devices.isVentOpen())) {
                 // zárás: ha semmi sem kilóg és nincs cooldown
-                if (!tempOut && !humOut && !isInCooldown(greenhouse, "VENT_CLOSE")) {
+                if (!tempOut && !humOut && !isInCooldown(greenhouse, DeviceAction.VENT_CLOSE)) {
                     devices.setVentOpen(false);
-                    setLastActionTimestamp(greenhouse, "VENT_CLOSE", now);
+                    greenhouse.recordAction(DeviceAction.VENT_CLOSE, now);
                     log.info("Szellőztetés automatikus bezárása {}: hőmérséklet={}, páratartalom={}", greenhouse.getCode(), intTemp, intHum);
                 }
             } else {
                 // nyitás: ha bármelyik kilóg és nincs cooldown
-                if ((tempOut || humOut) && !isInCooldown(greenhouse, "VENT_OPEN")) {
+                if ((tempOut || humOut) && !isInCooldown(greenhouse, DeviceAction.VENT_OPEN)) {
                     devices.setVentOpen(true);
-                    setLastActionTimestamp(greenhouse, "VENT_OPEN", now);
+                    greenhouse.recordAction(DeviceAction.VENT_OPEN, now);
                     log.info("Szellőztetés automatikus megnyitása {}: hőmérséklet={}, páratartalom={}", greenhouse.getCode(), intTemp, intHum);                }
             }
         }
@@ -1052,29 +1340,32 @@ public class GreenhouseServiceImpl implements GreenhouseService {
         if (sW.isPresent()) updateSensorIfExists(sensors, sW.get().code(), Type.WIND_SPEED, Unit.KILO_METER_PER_HOUR, smoothW, ts);
         else upsertInternalSensor(greenhouse, "WIND_SPEED", Type.WIND_SPEED, Unit.KILO_METER_PER_HOUR, smoothW);
 
-        // profil szabályok smoothed értékekkel
-        evaluatePlantRules(greenhouse, profile, smoothT, smoothH, soil, smoothW);
+        // profil szabályok smoothed értékekkel: eseményvezérelt módban a RuleTrigger értékeli ki (a kifejezésekkel együtt)
+        if (eventDriven) {
+            double[] changed = CompiledRules.input();
+            changed[Type.TEMPERATURE.ordinal()] = smoothT;
+            changed[Type.HUMIDITY_PCT.ordinal()] = smoothH;
+            changed[Type.SOILMOISTURE_PTC.ordinal()] = soil;
+            changed[Type.WIND_SPEED.ordinal()] = smoothW;
+            // a szenzorokba fentebb már beírtuk: kód nélkül csak kiértékelést kérünk
+            eventPublisher.publishEvent(new MetricsChangedEvent(greenhouse.getCode(), null, changed));
+        } else {
+            evaluatePlantRules(greenhouse, profile, smoothT, smoothH, soil, smoothW);
+        }
 
-        greenhouseRepository.save(greenhouse);
+        stateStore.markDirty(greenhouse);
         log.debug("Szimuláció {} -> hőmérséklet={}, páratartalom={}, talajnedvesség={}, szélsebesség={}, eszközök={}",
                 greenhouse.getCode(), smoothT, smoothH, soil, smoothW, greenhouse.getDevices());
     }
 
-    private boolean wasRecentlyManual(Greenhouse greenhouse, String groupKey) {
-        if (greenhouse == null || greenhouse.getDevices() == null) return false;
-        Map<String, Instant> lastManual = greenhouse.getDevices().getLastManualActionAt();
-        if (lastManual == null) return false;
-        String key = groupKey == null ? null : groupKey.toUpperCase(Locale.ROOT);
-        if (key == null) return false;
-        Instant last = lastManual.get(key);
-        return last != null && Instant.now().isBefore(last.plus(ACTION_COOLDOWN));
+    private boolean wasRecentlyManual(Greenhouse greenhouse, DeviceChannel channel) {
+        return greenhouse != null && isUnderManualCooldown(greenhouse.getDevices(), channel);
     }
 
-    private boolean isUnderManualCooldown(DeviceState devices, String groupKey) {
-        if (devices == null || devices.getLastManualActionAt() == null || groupKey == null) return false;
-        Instant last = devices.getLastManualActionAt().get(groupKey);
-        if (last == null) return false;
-        return Instant.now().isBefore(last.plus(ACTION_COOLDOWN));
+    private boolean isUnderManualCooldown(DeviceState devices, DeviceChannel channel) {
+        if (devices == null) return false;
+        long last = devices.lastManualMillis(channel);
+        return last != 0 && System.currentTimeMillis() < last + COOLDOWN_MILLIS;
     }
 
     private void evaluatePlantRules(Greenhouse greenhouse,
@@ -1085,11 +1376,11 @@ public class GreenhouseServiceImpl implements GreenhouseService {
                                     double wind) {
         if (greenhouse == null || profile == null) return;
 
-        Map<Type, Double> values = new HashMap<>();
-        values.put(Type.TEMPERATURE, temp);
-        values.put(Type.HUMIDITY_PCT, hum);
-        values.put(Type.SOILMOISTURE_PTC, soil);
-        values.put(Type.WIND_SPEED, wind);
+        double[] values = CompiledRules.input();
+        values[Type.TEMPERATURE.ordinal()] = temp;
+        values[Type.HUMIDITY_PCT.ordinal()] = hum;
+        values[Type.SOILMOISTURE_PTC.ordinal()] = soil;
+        values[Type.WIND_SPEED.ordinal()] = wind;
 
         List<String> actions = ruleEvaluatorService.evaluate(profile, values);
         if (actions != null && !actions.isEmpty()) {
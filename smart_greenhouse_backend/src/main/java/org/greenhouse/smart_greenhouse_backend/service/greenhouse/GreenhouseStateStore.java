@@ -0,0 +1,541 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.greenhouse.smart_greenhouse_backend.exception.GreenhouseNotFoundException;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.DeviceState;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.DeviceChannel;
+import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
+import org.greenhouse.smart_greenhouse_backend.repository.GreenhouseRepository;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.ClusterRebalancedEvent;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Az üvegházak állapotának memóriabeli, mérvadó példánya.
+ * <p>
+ * Induláskor egyszer betölti az összes üvegházat, utána az ütemezett feladatok, a kézi akciók
+ * és a REST olvasások innen dolgoznak, nem olvassák újra a gyűjteményt. Üvegházanként saját
+ * zár védi az állapotot: a módosítás {@link #update} alatt fut (a zár újrahívható, így egymásba
+ * ágyazott módosítások is működnek), kifelé csak másolat ({@link #snapshot}) megy.
+ * <p>
+ * A módosított üvegház piszkosnak jelölődik ({@link #markDirty}); a {@link #flush()} a piszkos
+ * dokumentumokat egyszer írja ki, akárhányszor változtak a két kiírás között. A kiírás nem a teljes
+ * dokumentumot menti, hanem az utoljára kiírt állapothoz képest változott mezőket ({@link GreenhouseUpdates}),
+ * a tárolt verziószám feltételével. Sikertelen írás után a bejegyzés piszkos marad, a következő kiírás
+ * újrapróbálja. Ha a dokumentumot közben más írta (eltérő verzió), a tárolt változatot betöltjük,
+ * ráfésüljük a saját változásainkat ({@link GreenhouseMerge}), és legfeljebb {@code maxWriteRetries}
+ * alkalommal újra írunk. A zárra várakozás és az ütközések metrikában látszanak, ebből dönthető el,
+ * mennyire emelhető a bejárások párhuzamossága.
+ * <p>
+ * Több példányos futásnál minden példány a teljes flottát tartja memóriában, de csak a hozzá
+ * rendelt üvegházakat dolgozza fel. Amikor egy üvegház átkerül hozzánk ({@link ClusterRebalancedEvent}),
+ * a tárolt állapotát újratöltjük, a {@link #reconcile()} pedig időnként felveszi a máshol létrehozott
+ * és eldobja a máshol törölt üvegházakat, a máshol módosítottakat (eltérő {@code version}) pedig
+ * újratölti. Így a nem hozzánk tartozó üvegházak REST olvasása legfeljebb egy egyeztetési
+ * ({@code greenhouse.state.reconcile-interval}) és egy kiírási ciklusnyit késik a gazdájához képest.
+ */
+@Component
+@Slf4j
+public class GreenhouseStateStore implements SmartInitializingSingleton {
+
+    /** újratöltésnél egy lekérdezésben ennyi kód */
+    static final int REFRESH_BATCH = 500;
+
+    private static final String COLLECTION = "greenhouses";
+
+    private final GreenhouseRepository greenhouseRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxWriteRetries;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile boolean loaded;
+
+    private final Timer flushTimer;
+    private final Counter writtenCounter;
+    private final Counter failedCounter;
+    private final Counter conflictCounter;
+    private final Counter mergedCounter;
+    private final Counter lockContendedCounter;
+    private final Timer lockWaitTimer;
+
+    public GreenhouseStateStore(final GreenhouseRepository greenhouseRepository,
+                                final MongoTemplate mongoTemplate,
+                                final ApplicationEventPublisher eventPublisher,
+                                final MeterRegistry meterRegistry,
+                                @Value("${greenhouse.state.max-write-retries:3}") final int maxWriteRetries) {
+        this.greenhouseRepository = greenhouseRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.maxWriteRetries = Math.max(0, maxWriteRetries);
+        this.flushTimer = Timer.builder("greenhouse.state.flush").register(meterRegistry);
+        this.writtenCounter = Counter.builder("greenhouse.state.writes").tag("result", "written").register(meterRegistry);
+        this.failedCounter = Counter.builder("greenhouse.state.writes").tag("result", "failed").register(meterRegistry);
+        this.conflictCounter = Counter.builder("greenhouse.state.writes").tag("result", "conflict").register(meterRegistry);
+        this.mergedCounter = Counter.builder("greenhouse.state.writes").tag("result", "merged").register(meterRegistry);
+        this.lockContendedCounter = Counter.builder("greenhouse.state.lock.contended").register(meterRegistry);
+        this.lockWaitTimer = Timer.builder("greenhouse.state.lock.wait").register(meterRegistry);
+        Gauge.builder("greenhouse.state.size", entries, ConcurrentHashMap::size).register(meterRegistry);
+        Gauge.builder("greenhouse.state.dirty", this, GreenhouseStateStore::dirtyCount).register(meterRegistry);
+    }
+
+    /**
+     * Meleg indítás: az összes üvegház betöltése. Ha az adatbázis nem érhető el, az első
+     * {@link #all()} hívás próbálja újra, az egyes üvegházak pedig kódra keresve töltődnek be.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            loadAll();
+        } catch (DataAccessException e) {
+            log.error("Az üvegházak betöltése induláskor sikertelen, később újrapróbáljuk: {}", e.getMessage());
+        }
+    }
+
+    private void loadAll() {
+        loadLock.lock();
+        try {
+            if (loaded) return;
+            List<Greenhouse> greenhouses = greenhouseRepository.findAll();
+            for (Greenhouse greenhouse : greenhouses) {
+                if (greenhouse.getCode() != null) {
+                    entries.putIfAbsent(greenhouse.getCode(), new Entry(greenhouse));
+                }
+            }
+            loaded = true;
+            log.info("{} üvegház állapota betöltve a memóriába", greenhouses.size());
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Az összes üvegház élő példánya, bejáráshoz. Módosítani csak {@link #update} alatt szabad.
+     */
+    public List<Greenhouse> all() {
+        if (!loaded) loadAll();
+        List<Greenhouse> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            result.add(entry.greenhouse);
+        }
+        return result;
+    }
+
+    /**
+     * Az összes üvegház másolata (pl. REST válaszhoz).
+     */
+    public List<Greenhouse> snapshotAll() {
+        if (!loaded) loadAll();
+        List<Greenhouse> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            result.add(entry.read(GreenhouseStateStore::copy));
+        }
+        return result;
+    }
+
+    /**
+     * Egy üvegház másolata; ha még nincs a memóriában, az adatbázisból töltődik be.
+     */
+    public Optional<Greenhouse> snapshot(final String code) {
+        return entry(code).map(entry -> entry.read(GreenhouseStateStore::copy));
+    }
+
+    /**
+     * Módosítás az üvegház zárja alatt. A változást a hívónak kell {@link #markDirty}-vel jeleznie
+     * (így a nem változtató kiértékelés nem okoz írást).
+     *
+     * @throws GreenhouseNotFoundException ha nincs ilyen kódú üvegház
+     */
+    public <T> T update(final String code, final Function<Greenhouse, T> mutation) {
+        Entry entry = entry(code)
+                .orElseThrow(() -> new GreenhouseNotFoundException("Greenhouse not found: " + code));
+        lock(entry);
+        try {
+            return mutation.apply(entry.greenhouse);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Átrendeződés után a hozzánk került üvegházak tárolt állapotának betöltése, hogy ne a régi
+     * memóriabeli példányból folytassuk, amit közben az előző gazdája módosított.
+     */
+    @EventListener
+    public void onRebalanced(final ClusterRebalancedEvent event) {
+        int refreshed = 0;
+        for (Entry entry : entries.values()) {
+            if (event.gained(entry.greenhouse.getCode()) && refresh(entry)) refreshed++;
+        }
+        if (refreshed > 0) {
+            log.info("{} átvett üvegház állapota újratöltve", refreshed);
+        }
+    }
+
+    /**
+     * Egyeztetés az adatbázissal: a máshol létrehozott üvegházak felvétele, a máshol töröltek eldobása,
+     * a máshol módosítottak (a tárolt verzió eltér a legutóbb betöltött/kiírt verziótól) újratöltése.
+     * A piszkos bejegyzéseket nem töltjük újra: a kiírásuk verzióütközéskor összefésül.
+     *
+     * @return a felvett, eldobott és újratöltött üvegházak száma
+     */
+    public int reconcile() {
+        Query versionsOnly = new Query();
+        versionsOnly.fields().include("code").include("version");
+        Map<String, Long> stored = new HashMap<>();
+        for (Greenhouse greenhouse : mongoTemplate.find(versionsOnly, Greenhouse.class)) {
+            if (greenhouse.getCode() != null) stored.put(greenhouse.getCode(), greenhouse.getVersion());
+        }
+
+        int added = 0;
+        int removed = 0;
+        List<String> stale = new ArrayList<>();
+        for (Map.Entry<String, Long> e : stored.entrySet()) {
+            Entry entry = entries.get(e.getKey());
+            if (entry == null) {
+                Optional<Entry> loaded = entry(e.getKey());
+                if (loaded.isPresent()) {
+                    added++;
+                    publishSaved(loaded.get().read(GreenhouseStateStore::copy));
+                }
+            } else if (!entry.dirty && !Objects.equals(e.getValue(), entry.persisted.getVersion())) {
+                stale.add(e.getKey());
+            }
+        }
+        for (String code : List.copyOf(entries.keySet())) {
+            if (!stored.containsKey(code)) {
+                Entry entry = entries.get(code);
+                String id = entry == null ? null : entry.greenhouse.getId();
+                remove(code);
+                removed++;
+                if (id != null) {
+                    eventPublisher.publishEvent(new AfterDeleteEvent<>(new Document("_id", id), Greenhouse.class, COLLECTION));
+                }
+            }
+        }
+        int refreshed = refreshAll(stale);
+
+        if (added + removed + refreshed > 0) {
+            log.info("Üvegház-állapot egyeztetve az adatbázissal: {} felvéve, {} eldobva, {} újratöltve", added, removed, refreshed);
+        }
+        return added + removed + refreshed;
+    }
+
+    /**
+     * A megadott üvegházak tárolt állapotának betöltése, {@link #REFRESH_BATCH} kódonként egy lekérdezéssel.
+     */
+    private int refreshAll(List<String> codes) {
+        int refreshed = 0;
+        for (int from = 0; from < codes.size(); from += REFRESH_BATCH) {
+            List<String> chunk = codes.subList(from, Math.min(codes.size(), from + REFRESH_BATCH));
+            List<Greenhouse> found;
+            try {
+                found = mongoTemplate.find(new Query(Criteria.where("code").in(chunk)), Greenhouse.class);
+            } catch (DataAccessException e) {
+                log.warn("{} üvegház újratöltése sikertelen: {}", chunk.size(), e.getMessage());
+                continue;
+            }
+            for (Greenhouse greenhouse : found) {
+                Entry entry = entries.get(greenhouse.getCode());
+                if (entry != null && apply(entry, greenhouse)) refreshed++;
+            }
+        }
+        return refreshed;
+    }
+
+    /**
+     * A tárolt állapot betöltése egy nem piszkos bejegyzésbe. A piszkos bejegyzést nem bántjuk:
+     * a kiírása verzióütközéskor úgyis összefésül a tárolt állapottal.
+     */
+    private boolean refresh(Entry entry) {
+        Optional<Greenhouse> stored;
+        try {
+            stored = greenhouseRepository.findByCode(entry.greenhouse.getCode());
+        } catch (DataAccessException e) {
+            log.warn("A(z) {} üvegház újratöltése sikertelen: {}", entry.greenhouse.getCode(), e.getMessage());
+            return false;
+        }
+        if (stored.isEmpty()) {
+            lock(entry);
+            try {
+                if (!entry.dirty) entries.remove(entry.greenhouse.getCode(), entry);
+            } finally {
+                entry.lock.unlock();
+            }
+            return false;
+        }
+        return apply(entry, stored.get());
+    }
+
+    /**
+     * A tárolt állapot betöltése, ha újabb a legutóbb ismertnél. A máshol kiírt változásról a mentési
+     * esemény figyelői (pl. SSE) is értesülnek, különben csak a saját példányunk írásait látnák.
+     */
+    private boolean apply(Entry entry, Greenhouse stored) {
+        Greenhouse applied;
+        lock(entry);
+        try {
+            if (entry.dirty) return false;
+            // a lekérdezés óta mi is írhattunk: régebbi tárolt változattal nem írjuk felül
+            boolean sameDocument = Objects.equals(stored.getId(), entry.greenhouse.getId());
+            if (sameDocument && version(stored) <= version(entry.persisted)) return false;
+            replace(entry.greenhouse, stored);
+            entry.persisted = copy(stored);
+            applied = copy(entry.greenhouse);
+        } finally {
+            entry.lock.unlock();
+        }
+        publishSaved(applied);
+        return true;
+    }
+
+    private void publishSaved(Greenhouse greenhouse) {
+        eventPublisher.publishEvent(new AfterSaveEvent<>(greenhouse, new Document(), COLLECTION));
+    }
+
+    private static long version(Greenhouse greenhouse) {
+        return greenhouse.getVersion() == null ? 0 : greenhouse.getVersion();
+    }
+
+    /**
+     * Az üvegház megjelölése kiírandóként. Az {@link #update} alatt kell hívni.
+     */
+    public void markDirty(final Greenhouse greenhouse) {
+        if (greenhouse == null || greenhouse.getCode() == null) return;
+        Entry entry = entries.get(greenhouse.getCode());
+        if (entry != null && entry.greenhouse == greenhouse) {
+            entry.dirty = true;
+        }
+    }
+
+    /**
+     * Már elmentett (pl. most létrehozott) üvegház felvétele.
+     */
+    public void put(final Greenhouse greenhouse) {
+        entries.put(greenhouse.getCode(), new Entry(greenhouse));
+    }
+
+    /**
+     * Törölt üvegház eltávolítása; a függő kiírása elmarad, hogy ne támassza fel a dokumentumot.
+     */
+    public void remove(final String code) {
+        Entry entry = entries.remove(code);
+        if (entry == null) return;
+        entry.lock.lock();
+        try {
+            entry.dirty = false;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * A piszkos üvegházak kiírása. Az írás az üvegház zárja alatt fut, így nem keveredik
+     * egy közben zajló módosítással.
+     *
+     * @return a kiírt dokumentumok száma
+     */
+    public int flush() {
+        return flushTimer.record(() -> {
+            int written = 0;
+            for (Entry entry : entries.values()) {
+                if (!entry.dirty) continue;
+                lock(entry);
+                try {
+                    if (!entry.dirty) continue;
+                    if (write(entry)) written++;
+                } catch (DataAccessException e) {
+                    failedCounter.increment();
+                    log.warn("A(z) {} üvegház mentése sikertelen, a következő kiírás újrapróbálja: {}",
+                            entry.greenhouse.getCode(), e.getMessage());
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+            writtenCounter.increment(written);
+            return written;
+        });
+    }
+
+    /**
+     * Az üvegház kiírása, verzióütközésnél összefésüléssel és korlátozott újrapróbálással.
+     * Siker (vagy nincs mit írni) esetén törli a piszkos jelzést, kifogyott próbálkozásnál meghagyja.
+     *
+     * @return igaz, ha ténylegesen írtunk
+     */
+    private boolean write(Entry entry) {
+        Greenhouse live = entry.greenhouse;
+        for (int attempt = 0; attempt <= maxWriteRetries; attempt++) {
+            Update update = GreenhouseUpdates.diff(entry.persisted, live);
+            if (update == null) {
+                entry.dirty = false;
+                return false;
+            }
+
+            Long version = entry.persisted.getVersion();
+            update.inc("version", 1);
+            Query query = new Query(Criteria.where("_id").is(live.getId()).and("version").is(version));
+            if (mongoTemplate.updateFirst(query, update, Greenhouse.class).getMatchedCount() == 1) {
+                live.setVersion(version == null ? 1 : version + 1);
+                entry.persisted = copy(live);
+                entry.dirty = false;
+                // a mentési eseményre építő figyelők (pl. SSE) a részleges írásról is értesüljenek
+                eventPublisher.publishEvent(new AfterSaveEvent<>(copy(live), update.getUpdateObject(), COLLECTION));
+                return true;
+            }
+
+            conflictCounter.increment();
+            Optional<Greenhouse> stored = greenhouseRepository.findByCode(live.getCode());
+            if (stored.isEmpty()) {
+                // közben törölték: nem támasztjuk fel
+                log.warn("A(z) {} üvegház közben törlődött, a memóriabeli állapotát eldobjuk", live.getCode());
+                entries.remove(live.getCode(), entry);
+                entry.dirty = false;
+                return false;
+            }
+            log.debug("A(z) {} üvegházat közben más módosította (verzió: {} → {}), összefésüljük",
+                    live.getCode(), version, stored.get().getVersion());
+            replace(live, GreenhouseMerge.rebase(entry.persisted, live, stored.get()));
+            entry.persisted = stored.get();
+            mergedCounter.increment();
+        }
+        log.warn("A(z) {} üvegház kiírása {} ütközés után sem sikerült, a következő kiírás újrapróbálja",
+                live.getCode(), maxWriteRetries + 1);
+        return false;
+    }
+
+    /**
+     * Az élő példány tartalmának cseréje (a példány azonossága marad, mert a bejárások erre hivatkoznak).
+     */
+    private static void replace(Greenhouse live, Greenhouse source) {
+        live.setName(source.getName());
+        live.setPlantType(source.getPlantType());
+        live.setActive(source.isActive());
+        live.setLocation(source.getLocation());
+        live.setSensors(source.getSensors());
+        live.setDevices(source.getDevices());
+        live.setPlantProfileId(source.getPlantProfileId());
+        live.setPlanId(source.getPlanId());
+        live.setLastActionAt(source.getLastActionAt());
+        live.setVersion(source.getVersion());
+    }
+
+    /**
+     * Az üvegház zárolása; ha foglalt, a várakozást mérjük.
+     */
+    private void lock(Entry entry) {
+        if (entry.lock.tryLock()) return;
+        lockContendedCounter.increment();
+        long started = System.nanoTime();
+        entry.lock.lock();
+        lockWaitTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        int written = flush();
+        int left = dirtyCount();
+        if (left > 0) {
+            log.error("{} üvegház állapota leállításkor nem íródott ki ({} mentve)", left, written);
+        }
+    }
+
+    int dirtyCount() {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.dirty) count++;
+        }
+        return count;
+    }
+
+    private Optional<Entry> entry(final String code) {
+        if (code == null) return Optional.empty();
+        Entry entry = entries.get(code);
+        if (entry != null) return Optional.of(entry);
+        // nincs még a memóriában (pl. másik példány hozta létre, vagy a meleg indítás elmaradt)
+        return greenhouseRepository.findByCode(code)
+                .map(found -> entries.computeIfAbsent(code, k -> new Entry(found)));
+    }
+
+    /**
+     * Másolat, amely már nem osztozik módosítható állapoton az élő példánnyal.
+     */
+    static Greenhouse copy(final Greenhouse source) {
+        Greenhouse copy = new Greenhouse();
+        copy.setId(source.getId());
+        copy.setCode(source.getCode());
+        copy.setName(source.getName());
+        copy.setPlantType(source.getPlantType());
+        copy.setActive(source.isActive());
+        copy.setLocation(source.getLocation());
+        copy.setSensors(source.getSensors() == null ? null : new ArrayList<>(source.getSensors()));
+        copy.setPlantProfileId(source.getPlantProfileId());
+        copy.setPlanId(source.getPlanId());
+        copy.setLastActionAt(source.getLastActionAt());
+        copy.setDevices(copy(source.getDevices()));
+        copy.setVersion(source.getVersion());
+        return copy;
+    }
+
+    static DeviceState copy(final DeviceState source) {
+        if (source == null) return null;
+        DeviceState copy = new DeviceState();
+        for (DeviceChannel channel : DeviceChannel.values()) {
+            channel.set(copy, channel.isOn(source));
+        }
+        copy.setLastManualActionAt(source.getLastManualActionAt());
+        return copy;
+    }
+
+    private static final class Entry {
+        final ReentrantLock lock = new ReentrantLock();
+        final Greenhouse greenhouse;
+        /** az utoljára kiírt (vagy betöltött) állapot, ehhez képest számoljuk a változást */
+        Greenhouse persisted;
+        volatile boolean dirty;
+
+        Entry(Greenhouse greenhouse) {
+            this.greenhouse = greenhouse;
+            this.persisted = copy(greenhouse);
+        }
+
+        <T> T read(Function<Greenhouse, T> reader) {
+            lock.lock();
+            try {
+                return reader.apply(greenhouse);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
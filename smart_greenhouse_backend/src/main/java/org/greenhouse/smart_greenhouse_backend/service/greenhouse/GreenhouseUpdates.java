@@ -0,0 +1,103 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.DeviceState;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.SensorRef;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.DeviceChannel;
+import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Mezőszintű MongoDB módosítás két üvegház-állapot különbségéből.
+ * <p>
+ * A teljes dokumentum újraírása helyett csak a változott útvonalak kerülnek bele:
+ * {@code devices.*} kapcsolók, {@code lastActionAt.<akció>} és
+ * {@code devices.lastManualActionAt.<csoport>} időbélyegek, illetve a változott szenzor
+ * pozíciója ({@code sensors.<i>}). Ha a szenzorlista hossza vagy sorrendje változott,
+ * a teljes lista kerül beállításra. A pozíciók csak akkor érvényesek, ha a tárolt dokumentum
+ * azonos a {@code before} állapottal – ezt a hívó a verziószám feltételével biztosítja.
+ */
+final class GreenhouseUpdates {
+
+    private GreenhouseUpdates() {
+    }
+
+    /**
+     * @return a módosítás, vagy {@code null}, ha nincs különbség
+     */
+    static Update diff(final Greenhouse before, final Greenhouse after) {
+        Update update = new Update();
+        boolean changed = false;
+
+        changed |= set(update, "name", before.getName(), after.getName());
+        changed |= set(update, "plantType", before.getPlantType(), after.getPlantType());
+        changed |= set(update, "active", before.isActive(), after.isActive());
+        changed |= set(update, "location", before.getLocation(), after.getLocation());
+        changed |= set(update, "plantProfileId", before.getPlantProfileId(), after.getPlantProfileId());
+        changed |= set(update, "planId", before.getPlanId(), after.getPlanId());
+        changed |= devices(update, before.getDevices(), after.getDevices());
+        changed |= timestamps(update, "lastActionAt", before.getLastActionAt(), after.getLastActionAt());
+        changed |= sensors(update, before.getSensors(), after.getSensors());
+
+        return changed ? update : null;
+    }
+
+    private static boolean devices(Update update, DeviceState before, DeviceState after) {
+        if (before == null || after == null) {
+            return set(update, "devices", before, after);
+        }
+        boolean changed = false;
+        for (DeviceChannel channel : DeviceChannel.values()) {
+            changed |= set(update, "devices." + channel.field(), channel.isOn(before), channel.isOn(after));
+        }
+        changed |= timestamps(update, "devices.lastManualActionAt",
+                before.getLastManualActionAt(), after.getLastManualActionAt());
+        return changed;
+    }
+
+    private static boolean timestamps(Update update, String path, Map<String, Instant> before, Map<String, Instant> after) {
+        if (before == null || after == null) {
+            return set(update, path, before, after);
+        }
+        boolean changed = false;
+        for (Map.Entry<String, Instant> entry : after.entrySet()) {
+            changed |= set(update, path + "." + entry.getKey(), before.get(entry.getKey()), entry.getValue());
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                update.unset(path + "." + key);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean sensors(Update update, List<SensorRef> before, List<SensorRef> after) {
+        if (before == null || after == null || before.size() != after.size()) {
+            return set(update, "sensors", before, after);
+        }
+        for (int i = 0; i < after.size(); i++) {
+            SensorRef b = before.get(i);
+            SensorRef a = after.get(i);
+            if (b != null && a != null && !Objects.equals(b.code(), a.code())) {
+                // átrendezett lista: a pozíciók nem feleltethetők meg
+                return set(update, "sensors", before, after);
+            }
+        }
+        boolean changed = false;
+        for (int i = 0; i < after.size(); i++) {
+            changed |= set(update, "sensors." + i, before.get(i), after.get(i));
+        }
+        return changed;
+    }
+
+    private static boolean set(Update update, String path, Object before, Object after) {
+        if (Objects.equals(before, after)) return false;
+        update.set(path, after);
+        return true;
+    }
+}
@@ -0,0 +1,136 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.greenhouse.smart_greenhouse_backend.model.documents.MetricChange;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.ClusterMembership;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricChanges;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mérésváltozások továbbítása az üvegház gazdájához, a {@code metric_changes} gyűjteményen keresztül.
+ * <p>
+ * A beküldött mérés bármelyik példányra beérkezhet, de a szabályokat csak az üvegház gazdája értékeli ki
+ * (és csak ő írja a szenzorállapotát). A nem hozzánk tartozó változásokat kötegenként egy beszúrással
+ * ide tesszük; minden példány {@code greenhouse.rules.forward-poll-interval} időnként átnézi a gyűjteményt,
+ * a hozzá tartozó bejegyzéseket átveszi és törli. A lapozás {@code _id} kurzorral halad át a más példányokhoz
+ * tartozó bejegyzéseken, így azok nem takarják el a mieinket; rövid lapnál elölről kezdjük. A gazda nélkül
+ * maradt bejegyzéseket (pl. átrendeződés közben) a következő gazda veszi át, a túl régieket TTL index törli,
+ * a hibásakat (kód vagy értékek nélkül) az első példány, amelyik látja. Kikapcsolt fürtmódban nincs mit továbbítani.
+ */
+@Slf4j
+@Component
+public class MetricChangeOutbox implements SmartInitializingSingleton {
+
+    private final MongoTemplate mongoTemplate;
+    private final ClusterMembership cluster;
+    private final Duration expireAfter;
+    private final int batchSize;
+    private final Counter forwarded;
+    private final Counter claimed;
+    /** az előző lap utolsó azonosítója, vagy {@code null}: elölről kezdjük (csak a {@code RuleTrigger} szála használja) */
+    private String cursor;
+
+    public MetricChangeOutbox(final MongoTemplate mongoTemplate,
+                              final ClusterMembership cluster,
+                              final MeterRegistry meterRegistry,
+                              @Value("${greenhouse.rules.forward-expire-after:PT10M}") final Duration expireAfter,
+                              @Value("${greenhouse.rules.forward-batch-size:1000}") final int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.cluster = cluster;
+        this.expireAfter = expireAfter;
+        this.batchSize = batchSize;
+        this.forwarded = Counter.builder("greenhouse.rules.forwarded").tag("direction", "out").register(meterRegistry);
+        this.claimed = Counter.builder("greenhouse.rules.forwarded").tag("direction", "in").register(meterRegistry);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!cluster.isEnabled()) return;
+        try {
+            mongoTemplate.indexOps(MetricChange.class).ensureIndex(new Index()
+                    .on("createdAt", Sort.Direction.ASC)
+                    .expire(expireAfter)
+                    .named("createdAt_ttl"));
+        } catch (RuntimeException e) {
+            log.error("A metric_changes TTL indexének létrehozása sikertelen: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Más példányhoz tartozó üvegházak változásainak továbbítása, egyetlen kötegelt beszúrással.
+     */
+    public void forward(final Map<String, MetricChanges> changes) {
+        if (changes.isEmpty()) return;
+        Instant now = Instant.now();
+        List<MetricChange> documents = new ArrayList<>(changes.size());
+        changes.forEach((code, change) -> {
+            List<MetricChange.SensorValues> sensors = new ArrayList<>(change.sensors().size());
+            change.sensors().forEach((sensor, values) -> sensors.add(new MetricChange.SensorValues(sensor, values)));
+            documents.add(new MetricChange(new ObjectId().toHexString(), code, change.values(), sensors, now));
+        });
+        mongoTemplate.insertAll(documents);
+        forwarded.increment(documents.size());
+    }
+
+    /**
+     * A hozzánk tartozó, más példányról továbbított változások átvétele (beérkezési sorrendben összevonva)
+     * a következő legfeljebb {@code batchSize} bejegyzésből; az átvett és a hibás bejegyzéseket töröljük.
+     *
+     * @return üvegház kód → a változások; üres, ha nincs mit átvenni
+     */
+    public Map<String, MetricChanges> claim() {
+        if (!cluster.isEnabled()) return Map.of();
+        Query page = cursor == null ? new Query() : new Query(Criteria.where("_id").gt(cursor));
+        page.with(Sort.by("_id")).limit(batchSize);
+        List<MetricChange> pending = mongoTemplate.find(page, MetricChange.class);
+        // teli lapnál a következő átvétel innen folytatja, különben elölről
+        cursor = pending.size() < batchSize ? null : pending.get(pending.size() - 1).getId();
+        if (pending.isEmpty()) return Map.of();
+
+        Map<String, MetricChanges> result = new LinkedHashMap<>();
+        List<String> ids = new ArrayList<>();
+        int owned = 0;
+        for (MetricChange change : pending) {
+            if (change.getGreenhouseCode() == null || change.getValues() == null) {
+                ids.add(change.getId()); // senki nem tudná feldolgozni
+                continue;
+            }
+            if (!cluster.owns(change.getGreenhouseCode())) continue;
+            ids.add(change.getId());
+            owned++;
+            result.merge(change.getGreenhouseCode(), changes(change), MetricChanges::merge);
+        }
+        if (!ids.isEmpty()) {
+            mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), MetricChange.class);
+            claimed.increment(owned);
+        }
+        return result;
+    }
+
+    private static MetricChanges changes(final MetricChange change) {
+        Map<String, double[]> sensors = new LinkedHashMap<>();
+        if (change.getSensors() != null) {
+            for (MetricChange.SensorValues sensor : change.getSensors()) {
+                if (sensor != null && sensor.code() != null && sensor.values() != null) sensors.put(sensor.code(), sensor.values());
+            }
+        }
+        return new MetricChanges(change.getValues(), sensors);
+    }
+}
@@ -0,0 +1,127 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.ClusterMembership;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricChanges;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricsChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eseményvezérelt szabálykiértékelés: a mért értékek változásakor ({@link MetricsChangedEvent})
+ * csak az érintett üvegházak, és azokon belül csak a változott metrikára hivatkozó szabályok futnak újra.
+ * <p>
+ * Az eseményeket üvegházanként összevonjuk (metrikánként és szenzoronként a legutolsó érték marad), és egyetlen háttérszál
+ * {@code greenhouse.rules.debounce} időnként dolgozza fel őket; így egy mérési hullám egy kiértékelés, a
+ * reakcióidő a másodperc töredéke, tétlen üvegházra pedig nem fut semmi. A ritkább teljes bejárás
+ * ({@code greenhouse.rules.sweep-interval}, alapból 15 perc) biztonsági hálóként megmarad.
+ * <p>
+ * Több példányos futásnál a más példányhoz tartozó üvegházak változásait nem dobjuk el, hanem a
+ * {@link MetricChangeOutbox}-on át a gazdájukhoz továbbítjuk, és ugyanez a szál veszi át a nekünk szólókat.
+ */
+@Slf4j
+@Component
+public class RuleTrigger {
+
+    private final GreenhouseService service;
+    private final ClusterMembership cluster;
+    private final MetricChangeOutbox outbox;
+    private final boolean enabled;
+    /** üvegház kód → a még fel nem dolgozott változások */
+    private final ConcurrentHashMap<String, MetricChanges> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("rule-trigger").daemon().factory());
+    private final Counter received;
+    private final Counter evaluated;
+
+    public RuleTrigger(final GreenhouseService service,
+                       final ClusterMembership cluster,
+                       final MetricChangeOutbox outbox,
+                       final MeterRegistry meterRegistry,
+                       @Value("${greenhouse.rules.event-driven:true}") final boolean enabled,
+                       @Value("${greenhouse.rules.debounce:PT0.2S}") final Duration debounce,
+                       @Value("${greenhouse.rules.forward-poll-interval:PT1S}") final Duration pollInterval) {
+        this.service = service;
+        this.cluster = cluster;
+        this.outbox = outbox;
+        this.enabled = enabled;
+        this.received = Counter.builder("greenhouse.rules.events").register(meterRegistry);
+        this.evaluated = Counter.builder("greenhouse.rules.incremental").register(meterRegistry);
+        if (enabled) {
+            long millis = Math.max(1, debounce.toMillis());
+            worker.scheduleWithFixedDelay(this::drain, millis, millis, TimeUnit.MILLISECONDS);
+            if (cluster.isEnabled()) {
+                long poll = Math.max(1, pollInterval.toMillis());
+                worker.scheduleWithFixedDelay(this::claimForwarded, poll, poll, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @EventListener
+    public void onMetricsChanged(final MetricsChangedEvent event) {
+        if (!enabled || event.greenhouseCode() == null) return;
+        received.increment();
+        pending.merge(event.greenhouseCode(), MetricChanges.of(event), MetricChanges::merge);
+    }
+
+    /**
+     * A felgyűlt változások kiértékelése; a más példányhoz tartozókat továbbítjuk. Üres sornál nem csinál semmit.
+     */
+    void drain() {
+        if (pending.isEmpty()) return;
+        Map<String, MetricChanges> local = new HashMap<>();
+        Map<String, MetricChanges> remote = new HashMap<>();
+        for (String code : pending.keySet()) {
+            MetricChanges changes = pending.remove(code);
+            if (changes != null) (cluster.owns(code) ? local : remote).put(code, changes);
+        }
+        forward(remote);
+        if (local.isEmpty()) return;
+        try {
+            service.evaluateRulesForChanges(local);
+            evaluated.increment(local.size());
+        } catch (RuntimeException e) {
+            // a következő változás vagy a teljes bejárás pótolja
+            log.warn("Eseményvezérelt kiértékelés sikertelen ({} üvegház): {}", local.size(), e.getMessage());
+        }
+    }
+
+    private void forward(final Map<String, MetricChanges> remote) {
+        if (remote.isEmpty()) return;
+        try {
+            outbox.forward(remote);
+        } catch (RuntimeException e) {
+            // az érték csak az eseményben létezik: visszatesszük, a közben érkezett újabb értékek maradnak
+            log.warn("{} üvegház változásainak továbbítása sikertelen, újrapróbáljuk: {}", remote.size(), e.getMessage());
+            remote.forEach((code, changes) -> pending.merge(code, changes, (newer, failed) -> failed.merge(newer)));
+        }
+    }
+
+    /**
+     * A más példányokról nekünk továbbított változások átvétele a következő kiértékelésbe.
+     */
+    void claimForwarded() {
+        try {
+            outbox.claim().forEach((code, changes) -> pending.merge(code, changes, MetricChanges::merge));
+        } catch (RuntimeException e) {
+            log.warn("A továbbított mérésváltozások átvétele sikertelen: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+}
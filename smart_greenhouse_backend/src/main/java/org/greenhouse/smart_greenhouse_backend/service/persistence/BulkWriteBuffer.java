@@ -0,0 +1,268 @@
+package org.greenhouse.smart_greenhouse_backend.service.persistence;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Write-behind puffer MongoDB beszúrásokhoz.
+ * <p>
+ * A dokumentumokat kulcs szerint gyűjti: azonos kulcsú új elem a {@code merge} függvénnyel
+ * összevonódik a még ki nem írttal, így egy kulcsra flush-onként legfeljebb egy dokumentum kerül be.
+ * Kiírás rendezetlen {@code BulkOperations} beszúrással történik, ha a puffer eléri a
+ * {@code batchSize}-t, vagy {@code flushInterval} időközönként.
+ * <p>
+ * Ellennyomás: ha a puffer eléri a {@code capacity}-t, a beíró szál maga végzi a kiírást, és
+ * megvárja a folyamatban lévőt is – lassú Mongo mellett így a termelők lassulnak, nem a memória nő.
+ * Átmeneti hiba esetén az elemek visszakerülnek a pufferbe (ha van hely), duplikált kulcsnál eldobjuk őket,
+ * mert a dokumentum már bent van. Leállításkor ({@link #close()}) a maradék kiíródik.
+ */
+@Slf4j
+public class BulkWriteBuffer<T> implements AutoCloseable {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final String name;
+    private final MongoTemplate mongoTemplate;
+    private final Class<T> type;
+    private final Function<T, String> keyFunction;
+    private final BinaryOperator<T> merge;
+    private final int batchSize;
+    private final int capacity;
+
+    private final ReentrantLock pendingLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private LinkedHashMap<String, T> pending = new LinkedHashMap<>();
+
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private final Timer flushTimer;
+    private final Counter writtenCounter;
+    private final Counter coalescedCounter;
+    private final Counter duplicateCounter;
+    private final Counter requeuedCounter;
+    private final Counter droppedCounter;
+    private final Counter backpressureCounter;
+
+    public BulkWriteBuffer(final String name,
+                           final MongoTemplate mongoTemplate,
+                           final Class<T> type,
+                           final Function<T, String> keyFunction,
+                           final BinaryOperator<T> merge,
+                           final int batchSize,
+                           final int capacity,
+                           final Duration flushInterval,
+                           final MeterRegistry meterRegistry) {
+        this.name = name;
+        this.mongoTemplate = mongoTemplate;
+        this.type = type;
+        this.keyFunction = keyFunction;
+        this.merge = merge;
+        this.batchSize = batchSize;
+        this.capacity = Math.max(capacity, batchSize);
+
+        this.flushTimer = Timer.builder("bulk.write.flush").tag("buffer", name).register(meterRegistry);
+        this.writtenCounter = documents(meterRegistry, "written");
+        this.coalescedCounter = documents(meterRegistry, "coalesced");
+        this.duplicateCounter = documents(meterRegistry, "duplicate");
+        this.requeuedCounter = documents(meterRegistry, "requeued");
+        this.droppedCounter = documents(meterRegistry, "dropped");
+        this.backpressureCounter = Counter.builder("bulk.write.backpressure").tag("buffer", name).register(meterRegistry);
+        Gauge.builder("bulk.write.pending", this, BulkWriteBuffer::size).tag("buffer", name).register(meterRegistry);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("bulk-write-" + name).daemon().factory());
+        long intervalMillis = flushInterval.toMillis();
+        this.flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private Counter documents(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("bulk.write.documents")
+                .tag("buffer", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Dokumentum sorba állítása. Leállítás után közvetlenül ír.
+     */
+    public void add(final T item) {
+        if (closed) {
+            write(List.of(item));
+            return;
+        }
+
+        String key = keyFunction.apply(item);
+        int size;
+        pendingLock.lock();
+        try {
+            T previous = pending.get(key);
+            if (previous != null) {
+                pending.put(key, merge.apply(previous, item));
+                coalescedCounter.increment();
+                return;
+            }
+            pending.put(key, item);
+            size = pending.size();
+        } finally {
+            pendingLock.unlock();
+        }
+
+        if (size >= capacity) {
+            backpressureCounter.increment();
+            flush();
+        } else if (size >= batchSize) {
+            requestFlush();
+        }
+    }
+
+    public int size() {
+        pendingLock.lock();
+        try {
+            return pending.size();
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    /**
+     * A puffer kiírása. Egyszerre csak egy kiírás fut, a többi hívó megvárja.
+     *
+     * @return a ténylegesen beszúrt dokumentumok száma
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            List<T> batch = drain();
+            int inserted = 0;
+            for (int from = 0; from < batch.size(); from += batchSize) {
+                inserted += write(batch.subList(from, Math.min(batch.size(), from + batchSize)));
+            }
+            return inserted;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("A(z) {} puffer háttérkiírása nem állt le időben", name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        int left = size();
+        if (left > 0) {
+            log.error("A(z) {} pufferből {} dokumentum leállításkor nem íródott ki", name, left);
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushRequested.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("A(z) {} puffer kiírása sikertelen: {}", name, e.getMessage(), e);
+        }
+    }
+
+    private List<T> drain() {
+        pendingLock.lock();
+        try {
+            if (pending.isEmpty()) return List.of();
+            List<T> batch = new ArrayList<>(pending.values());
+            pending = new LinkedHashMap<>();
+            return batch;
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    private int write(List<T> chunk) {
+        Timer.Sample sample = Timer.start();
+        try {
+            BulkWriteResult result = mongoTemplate.bulkOps(BulkMode.UNORDERED, type).insert(chunk).execute();
+            writtenCounter.increment(result.getInsertedCount());
+            return result.getInsertedCount();
+        } catch (BulkOperationException e) {
+            // rendezetlen módban a hibátlan elemek bekerültek; csak a hibásakkal foglalkozunk
+            List<T> retry = new ArrayList<>();
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() == DUPLICATE_KEY) {
+                    duplicateCounter.increment();
+                } else {
+                    retry.add(chunk.get(error.getIndex()));
+                }
+            }
+            int inserted = e.getResult().getInsertedCount();
+            writtenCounter.increment(inserted);
+            if (!retry.isEmpty()) {
+                log.warn("A(z) {} puffer {} dokumentuma nem íródott ki, újrapróbáljuk: {}", name, retry.size(), e.getMessage());
+                requeue(retry);
+            }
+            return inserted;
+        } catch (DataAccessException e) {
+            log.warn("A(z) {} puffer kiírása sikertelen ({} dokumentum), újrapróbáljuk: {}", name, chunk.size(), e.getMessage());
+            requeue(chunk);
+            return 0;
+        } finally {
+            sample.stop(flushTimer);
+        }
+    }
+
+    /**
+     * Sikertelen elemek visszatétele. Ha közben újabb érkezett ugyanarra a kulcsra, az marad;
+     * ha a puffer megtelt, az elemet eldobjuk (és számoljuk), hogy tartós hibánál se nőjön korlátlanul.
+     */
+    private void requeue(List<T> items) {
+        pendingLock.lock();
+        try {
+            for (T item : items) {
+                if (pending.size() >= capacity) {
+                    droppedCounter.increment();
+                    continue;
+                }
+                if (pending.putIfAbsent(keyFunction.apply(item), item) == null) {
+                    requeuedCounter.increment();
+                }
+            }
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.greenhouse.smart_greenhouse_backend.service.rollup;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Az összesítések felbontásai, a legfinomabbtól a legdurvábbig.
+ * <p>
+ * Mindegyik saját gyűjteménybe kerül; a durvább szint a közvetlenül finomabb szint
+ * vödreiből számolódik, nem a nyers adatból. A napi vödrök UTC szerint értendők.
+ */
+public enum RollupResolution {
+
+    MINUTE("1m", "minute", ChronoUnit.MINUTES, Duration.ofDays(1)),
+    HOUR("1h", "hour", ChronoUnit.HOURS, Duration.ofDays(30)),
+    DAY("1d", "day", ChronoUnit.DAYS, Duration.ofDays(365));
+
+    private final String key;
+    private final String dateTruncUnit;
+    private final ChronoUnit unit;
+    private final Duration chunk;
+
+    RollupResolution(String key, String dateTruncUnit, ChronoUnit unit, Duration chunk) {
+        this.key = key;
+        this.dateTruncUnit = dateTruncUnit;
+        this.unit = unit;
+        this.chunk = chunk;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    /** A vödör kezdete a {@code $dateTrunc} egységeként. */
+    String dateTruncUnit() {
+        return dateTruncUnit;
+    }
+
+    /** Egy futásban egy aggregációval feldolgozott legnagyobb időszak. */
+    Duration chunk() {
+        return chunk;
+    }
+
+    public String collection() {
+        return "sensor_rollups_" + key;
+    }
+
+    public Duration bucket() {
+        return unit.getDuration();
+    }
+
+    public Instant truncate(final Instant instant) {
+        return instant.truncatedTo(unit);
+    }
+
+    /** A közvetlenül finomabb szint, amiből ez számolódik; a percesnél {@code null} (nyers adat). */
+    RollupResolution finer() {
+        return this == MINUTE ? null : values()[ordinal() - 1];
+    }
+
+    /**
+     * A [from, to) időszakot legfeljebb {@code maxPoints} vödörrel lefedő legfinomabb felbontás:
+     * csak addig durvítunk, amíg a pontkeret megköveteli. Ha még a napi sem fér bele, a napit adja.
+     */
+    public static RollupResolution pick(final Instant from, final Instant to, final int maxPoints) {
+        for (RollupResolution resolution : values()) {
+            if (resolution.buckets(from, to) <= maxPoints) {
+                return resolution;
+            }
+        }
+        return DAY;
+    }
+
+    long buckets(Instant from, Instant to) {
+        long millis = Duration.between(truncate(from), to).toMillis();
+        long size = bucket().toMillis();
+        return Math.max(0, (millis + size - 1) / size);
+    }
+
+    public static RollupResolution fromKey(final String key) {
+        for (RollupResolution resolution : values()) {
+            if (resolution.key.equalsIgnoreCase(key) || resolution.name().equalsIgnoreCase(key)) {
+                return resolution;
+            }
+        }
+        throw new IllegalArgumentException("Ismeretlen felbontás: " + key);
+    }
+}
@@ -0,0 +1,27 @@
+package org.greenhouse.smart_greenhouse_backend.service.rollup;
+
+import org.greenhouse.smart_greenhouse_backend.dto.RollupSeriesDto;
+
+import java.time.Instant;
+
+public interface RollupService {
+
+    /**
+     * Minden forrásra és felbontásra feldolgozza a legutóbbi futás óta lezárult időablakokat.
+     * A feldolgozott határt (watermark) forrásonként és felbontásonként tárolja,
+     * így egy futás csak az új adatot olvassa.
+     */
+    void rollUp();
+
+    /**
+     * Egy sorozat összesített pontjai a [from, to) időszakra.
+     *
+     * @param source         {@code sensor} vagy {@code weather}
+     * @param greenhouseCode az üvegház kódja
+     * @param code           a szenzor kódja (időjárásnál figyelmen kívül marad)
+     * @param maxPoints      legfeljebb ennyi pontot szeretne a hívó; ez alapján választjuk a felbontást
+     * @param resolution     kényszerített felbontás ({@code 1m}, {@code 1h}, {@code 1d}), vagy {@code null}
+     */
+    RollupSeriesDto query(String source, String greenhouseCode, String code,
+                          Instant from, Instant to, int maxPoints, String resolution);
+}
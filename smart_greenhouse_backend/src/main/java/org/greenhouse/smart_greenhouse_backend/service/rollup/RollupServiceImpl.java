@@ -0,0 +1,303 @@
+package org.greenhouse.smart_greenhouse_backend.service.rollup;
+
+import com.mongodb.MongoTimeoutException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.greenhouse.smart_greenhouse_backend.dto.RollupSeriesDto;
+import org.greenhouse.smart_greenhouse_backend.model.documents.SensorRollup;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Háttérben futó összesítő (rollup) a szenzoradatokra és az időjárás-pillanatképekre.
+ * <p>
+ * Felbontásonként ({@link RollupResolution}) sorozatonként min/max/átlag/összeg/darab vödröket számol,
+ * és {@code $merge}-dzsel írja a {@code sensor_rollups_<felbontás>} gyűjteményekbe. A percesek a nyers
+ * adatból, az órások a percesekből, a napiak az órásokból készülnek, így a durvább szint olcsó.
+ * <p>
+ * Mindig csak teljes, lezárt vödröket dolgoz fel: a felső határ a {@code rollup.lateness}-szel
+ * korábbi időpont (a késve érkező mérésekre), a durvább szinteknél pedig a finomabb szint
+ * watermarkja. A feldolgozott határt a {@code rollup_watermarks} gyűjtemény tárolja; mivel egy
+ * vödör újraszámolása felülírja a régit, egy félbeszakadt futás ismétlése nem okoz duplikációt.
+ * A watermark mögé utólag beérkező mérés nem kerül be az összesítésbe.
+ */
+@Slf4j
+@Service
+public class RollupServiceImpl implements RollupService {
+
+    static final String WATERMARKS = "rollup_watermarks";
+    private static final String RAW_TIME_FIELD = "timestamp";
+    private static final String BUCKET_FIELD = "bucket";
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Duration lateness;
+    private final Clock clock;
+
+    private final ReentrantLock running = new ReentrantLock();
+    private volatile boolean indexesReady;
+
+    @Autowired
+    public RollupServiceImpl(final MongoTemplate mongoTemplate,
+                             final MeterRegistry meterRegistry,
+                             @Value("${rollup.enabled:true}") final boolean enabled,
+                             @Value("${rollup.lateness:PT2M}") final Duration lateness) {
+        this(mongoTemplate, meterRegistry, enabled, lateness, Clock.systemUTC());
+    }
+
+    RollupServiceImpl(final MongoTemplate mongoTemplate,
+                      final MeterRegistry meterRegistry,
+                      final boolean enabled,
+                      final Duration lateness,
+                      final Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.lateness = lateness;
+        this.clock = clock;
+    }
+
+    @Override
+    public void rollUp() {
+        if (!enabled) return;
+        if (!running.tryLock()) {
+            log.debug("Az előző összesítés még fut, ezt a kört kihagyjuk");
+            return;
+        }
+        try {
+            ensureIndexes();
+            Instant horizon = clock.instant().minus(lateness);
+            for (RollupSource source : RollupSource.values()) {
+                Instant upstream = horizon;
+                for (RollupResolution resolution : RollupResolution.values()) {
+                    upstream = rollUp(source, resolution, upstream);
+                    if (upstream == null) break;
+                }
+            }
+        } catch (MongoTimeoutException e) {
+            log.error("MongoDB nem érhető el, az összesítés kimarad: {}", e.getMessage());
+        } finally {
+            running.unlock();
+        }
+    }
+
+    /**
+     * Egy forrás egy felbontásának feldolgozása a watermarktól a lezárt vödrök végéig.
+     *
+     * @param upstream eddig teljes a bemenet (nyers adatnál a késési határ, egyébként a finomabb szint watermarkja)
+     * @return az új watermark, vagy {@code null}, ha még nincs mit összesíteni
+     */
+    private Instant rollUp(RollupSource source, RollupResolution resolution, Instant upstream) {
+        Instant from = watermark(source, resolution);
+        if (from == null) {
+            Instant earliest = earliest(source, resolution);
+            if (earliest == null) return null;
+            from = resolution.truncate(earliest);
+        }
+        Instant to = resolution.truncate(upstream);
+        if (!from.isBefore(to)) return from;
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        int windows = 0;
+        while (from.isBefore(to)) {
+            Instant end = from.plus(resolution.chunk());
+            if (end.isAfter(to)) end = to;
+            aggregate(source, resolution, from, end);
+            saveWatermark(source, resolution, end);
+            from = end;
+            windows++;
+        }
+        sample.stop(Timer.builder("rollup.run")
+                .tag("source", source.key())
+                .tag("resolution", resolution.key())
+                .register(meterRegistry));
+        log.debug("Összesítés kész: {} {} → {} ({} ablak)", source.key(), resolution.key(), to, windows);
+        return to;
+    }
+
+    private void aggregate(RollupSource source, RollupResolution resolution, Instant from, Instant to) {
+        RollupResolution finer = resolution.finer();
+        String input = finer == null ? source.collection() : finer.collection();
+        mongoTemplate.getCollection(input)
+                .aggregate(pipeline(source, resolution, from, to))
+                .allowDiskUse(true)
+                .toCollection();
+    }
+
+    /**
+     * A [from, to) ablak összesítő pipeline-ja: szűrés, csoportosítás sorozat és vödör szerint,
+     * a kimeneti dokumentum felépítése, majd {@code $merge} a felbontás gyűjteményébe.
+     */
+    static List<Document> pipeline(RollupSource source, RollupResolution resolution, Instant from, Instant to) {
+        RollupResolution finer = resolution.finer();
+        String timeField = finer == null ? RAW_TIME_FIELD : BUCKET_FIELD;
+
+        Document match = new Document();
+        if (finer != null) match.append("source", source.key());
+        match.append(timeField, new Document("$gte", Date.from(from)).append("$lt", Date.from(to)));
+
+        Object code;
+        if (finer != null) code = "$code";
+        else if (source.codeField() == null) code = new Document("$literal", RollupSource.WEATHER_CODE);
+        else code = "$" + source.codeField();
+
+        Document group = new Document("_id", new Document("g", "$greenhouseCode")
+                .append("c", code)
+                .append("b", new Document("$dateTrunc", new Document("date", "$" + timeField)
+                        .append("unit", resolution.dateTruncUnit()))));
+        Document metrics = new Document();
+        for (String metric : source.metrics()) {
+            if (finer == null) {
+                String field = "$" + metric;
+                group.append(metric + "_min", new Document("$min", field))
+                        .append(metric + "_max", new Document("$max", field))
+                        .append(metric + "_sum", new Document("$sum", field))
+                        .append(metric + "_count", new Document("$sum",
+                                new Document("$cond", List.of(new Document("$isNumber", field), 1, 0))));
+            } else {
+                String prefix = "$metrics." + metric + ".";
+                group.append(metric + "_min", new Document("$min", prefix + "min"))
+                        .append(metric + "_max", new Document("$max", prefix + "max"))
+                        .append(metric + "_sum", new Document("$sum", prefix + "sum"))
+                        .append(metric + "_count", new Document("$sum", prefix + "count"));
+            }
+            metrics.append(metric, metricStats(metric));
+        }
+
+        Document project = new Document("_id", new Document("$concat", List.of(
+                source.key(), "|",
+                new Document("$ifNull", List.of("$_id.g", "")), "|",
+                new Document("$ifNull", List.of("$_id.c", "")), "|",
+                new Document("$toString", new Document("$toLong", "$_id.b")))))
+                .append("source", new Document("$literal", source.key()))
+                .append("greenhouseCode", "$_id.g")
+                .append("code", "$_id.c")
+                .append(BUCKET_FIELD, "$_id.b")
+                .append("metrics", metrics);
+
+        List<Document> pipeline = new ArrayList<>();
+        pipeline.add(new Document("$match", match));
+        pipeline.add(new Document("$group", group));
+        pipeline.add(new Document("$project", project));
+        pipeline.add(new Document("$merge", new Document("into", resolution.collection())
+                .append("on", "_id")
+                .append("whenMatched", "replace")
+                .append("whenNotMatched", "insert")));
+        return pipeline;
+    }
+
+    private static Document metricStats(String metric) {
+        String count = "$" + metric + "_count";
+        Document hasValues = new Document("$gt", List.of(count, 0));
+        return new Document("min", "$" + metric + "_min")
+                .append("max", "$" + metric + "_max")
+                .append("avg", new Document("$cond", Arrays.asList(hasValues,
+                        new Document("$divide", List.of("$" + metric + "_sum", count)), null)))
+                .append("sum", new Document("$cond", Arrays.asList(hasValues, "$" + metric + "_sum", null)))
+                .append("count", new Document("$toLong", count));
+    }
+
+    @Override
+    public RollupSeriesDto query(final String source, final String greenhouseCode, final String code,
+                                 final Instant from, final Instant to, final int maxPoints, final String resolution) {
+        RollupSource rollupSource = RollupSource.fromKey(source);
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("Érvénytelen időszak: a 'from' legyen korábbi a 'to'-nál");
+        }
+        if (maxPoints <= 0) {
+            throw new IllegalArgumentException("A pontkeretnek pozitívnak kell lennie");
+        }
+        RollupResolution chosen = resolution == null
+                ? RollupResolution.pick(from, to, maxPoints)
+                : RollupResolution.fromKey(resolution);
+        String seriesCode = rollupSource.seriesCode(code);
+
+        Query query = new Query(Criteria.where("source").is(rollupSource.key())
+                .and("greenhouseCode").is(greenhouseCode)
+                .and("code").is(seriesCode)
+                .and(BUCKET_FIELD).gte(chosen.truncate(from)).lt(to))
+                .with(Sort.by(Sort.Direction.ASC, BUCKET_FIELD));
+        List<SensorRollup> points = mongoTemplate.find(query, SensorRollup.class, chosen.collection());
+
+        return RollupSeriesDto.builder()
+                .source(rollupSource.key())
+                .greenhouseCode(greenhouseCode)
+                .code(seriesCode)
+                .resolution(chosen.key())
+                .from(from)
+                .to(to)
+                .coveredUntil(watermark(rollupSource, chosen))
+                .points(points)
+                .build();
+    }
+
+    private Instant watermark(RollupSource source, RollupResolution resolution) {
+        Document doc = mongoTemplate.findById(watermarkId(source, resolution), Document.class, WATERMARKS);
+        Date until = doc == null ? null : doc.getDate("until");
+        return until == null ? null : until.toInstant();
+    }
+
+    private void saveWatermark(RollupSource source, RollupResolution resolution, Instant until) {
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(watermarkId(source, resolution))),
+                new Update().set("until", Date.from(until)).set("updatedAt", Date.from(clock.instant())),
+                WATERMARKS);
+    }
+
+    static String watermarkId(RollupSource source, RollupResolution resolution) {
+        return source.key() + ":" + resolution.key();
+    }
+
+    /**
+     * A bemenet legkorábbi időpontja, ha még nincs watermark (első futás meglévő adaton).
+     */
+    private Instant earliest(RollupSource source, RollupResolution resolution) {
+        RollupResolution finer = resolution.finer();
+        String input = finer == null ? source.collection() : finer.collection();
+        String timeField = finer == null ? RAW_TIME_FIELD : BUCKET_FIELD;
+        Document filter = finer == null ? new Document() : new Document("source", source.key());
+        Document first = mongoTemplate.getCollection(input)
+                .find(filter)
+                .sort(new Document(timeField, 1))
+                .projection(new Document(timeField, 1))
+                .limit(1)
+                .first();
+        Date date = first == null ? null : first.getDate(timeField);
+        return date == null ? null : date.toInstant();
+    }
+
+    private void ensureIndexes() {
+        if (indexesReady) return;
+        for (RollupResolution resolution : RollupResolution.values()) {
+            mongoTemplate.indexOps(resolution.collection()).ensureIndex(new Index()
+                    .on("source", Sort.Direction.ASC)
+                    .on("greenhouseCode", Sort.Direction.ASC)
+                    .on("code", Sort.Direction.ASC)
+                    .on(BUCKET_FIELD, Sort.Direction.ASC)
+                    .named("series_bucket"));
+            mongoTemplate.indexOps(resolution.collection()).ensureIndex(new Index()
+                    .on("source", Sort.Direction.ASC)
+                    .on(BUCKET_FIELD, Sort.Direction.ASC)
+                    .named("source_bucket"));
+        }
+        indexesReady = true;
+    }
+}
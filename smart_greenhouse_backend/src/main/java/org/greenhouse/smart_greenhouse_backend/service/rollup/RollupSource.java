@@ -0,0 +1,62 @@
+package org.greenhouse.smart_greenhouse_backend.service.rollup;
+
+import java.util.List;
+
+/**
+ * Az összesített nyers gyűjtemények: melyik mező azonosítja a sorozatot, és mely mérőszámokat összesítjük.
+ * <p>
+ * A szenzoradat sorozata az üvegház + szenzorkód; az időjárás-pillanatképeké üvegházanként egy,
+ * a {@link #WEATHER_CODE} kóddal.
+ */
+public enum RollupSource {
+
+    SENSOR("sensor", "sensor_data", "code",
+            List.of("temperature", "humidity", "soilMoisture", "windSpeed")),
+    WEATHER("weather", "weather_snapshots", null,
+            List.of("temperature", "humidity", "windSpeed", "precipitationMm", "soilMoistureExtPct"));
+
+    public static final String WEATHER_CODE = "weather";
+
+    private final String key;
+    private final String collection;
+    private final String codeField;
+    private final List<String> metrics;
+
+    RollupSource(String key, String collection, String codeField, List<String> metrics) {
+        this.key = key;
+        this.collection = collection;
+        this.codeField = codeField;
+        this.metrics = metrics;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    String collection() {
+        return collection;
+    }
+
+    /** A nyers dokumentum sorozatkód mezője; {@code null}, ha a forrásnak nincs ilyen. */
+    String codeField() {
+        return codeField;
+    }
+
+    public List<String> metrics() {
+        return metrics;
+    }
+
+    /** A lekérdezésben használt sorozatkód: időjárásnál mindig {@link #WEATHER_CODE}. */
+    public String seriesCode(final String code) {
+        return codeField == null ? WEATHER_CODE : code;
+    }
+
+    public static RollupSource fromKey(final String key) {
+        for (RollupSource source : values()) {
+            if (source.key.equalsIgnoreCase(key)) {
+                return source;
+            }
+        }
+        throw new IllegalArgumentException("Ismeretlen összesítési forrás: " + key);
+    }
+}
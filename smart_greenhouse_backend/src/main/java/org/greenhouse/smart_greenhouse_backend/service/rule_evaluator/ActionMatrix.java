@@ -0,0 +1,127 @@
+package org.greenhouse.smart_greenhouse_backend.service.rule_evaluator;
+
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.DeviceAction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kötegelt kiértékelés eredménye: szabályonként egy sorokra (üvegházakra) vonatkozó bittérkép,
+ * egymás után egyetlen {@code long[]}-ben. A {@code (szabály, sor)} bit akkor áll, ha a sor mért
+ * értéke a szabály tartományán kívül esik, illetve kifejezés alapú szabálynál a feltétel teljesül.
+ */
+public final class ActionMatrix {
+
+    private final CompiledRules rules;
+    private final int rows;
+    private final int words;
+    private final long[] bits;
+
+    ActionMatrix(final CompiledRules rules, final int rows) {
+        this.rules = rules;
+        this.rows = rows;
+        this.words = (rows + 63) >>> 6;
+        this.bits = new long[rules.ruleCount() * words];
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Az összes szabály száma; a {@link #fired(int, int)} szabálysorszámai {@code [0, ruleCount())}.
+     */
+    public int ruleCount() {
+        return rules.ruleCount();
+    }
+
+    /**
+     * A tartományszabályok száma; ezek sorszáma {@code [0, rangeRuleCount())}, utánuk a kifejezéseké.
+     */
+    public int rangeRuleCount() {
+        return rules.rangeRuleCount();
+    }
+
+    /**
+     * A szabály fordításkor feloldott eszközakciója (ismeretlen névnél {@code null}); a végrehajtás ebből
+     * dolgozik, névkeresés nélkül.
+     */
+    public DeviceAction deviceAction(final int rule) {
+        return rules.deviceAction(rule);
+    }
+
+    /**
+     * A szabály akciójának neve, ahogy a profilban szerepel (naplózáshoz).
+     */
+    public String action(final int rule) {
+        return rules.action(rule);
+    }
+
+    /**
+     * Kiváltotta-e a sor a szabályt (a szabály sorszáma a profil szabálylistájában).
+     */
+    public boolean fired(final int rule, final int row) {
+        return (bits[rule * words + (row >>> 6)] & (1L << row)) != 0;
+    }
+
+    /**
+     * Van-e a sornak kiváltott akciója.
+     */
+    public boolean anyFired(final int row) {
+        int word = row >>> 6;
+        long bit = 1L << row;
+        for (int offset = word; offset < bits.length; offset += words) {
+            if ((bits[offset] & bit) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * A sor kiváltott akciói a szabálylista sorrendjében, ahogy az egyedi kiértékelés adná.
+     */
+    public List<String> actions(final int row) {
+        return actions(row, 0, rules.ruleCount());
+    }
+
+    /**
+     * Csak a tartományszabályok ({@code ActionRule}) kiváltott akciói.
+     */
+    public List<String> rangeActions(final int row) {
+        return actions(row, 0, rules.rangeRuleCount());
+    }
+
+    /**
+     * Csak a kifejezés alapú szabályok ({@code ConditionRule}) kiváltott akciói.
+     */
+    public List<String> conditionActions(final int row) {
+        return actions(row, rules.rangeRuleCount(), rules.ruleCount());
+    }
+
+    private List<String> actions(final int row, final int from, final int to) {
+        if (!anyFired(row)) return List.of();
+        List<String> result = new ArrayList<>();
+        for (int rule = from; rule < to; rule++) {
+            if (fired(rule, row)) result.add(rules.action(rule));
+        }
+        return result;
+    }
+
+    void set(final int rule, final int row) {
+        bits[rule * words + (row >>> 6)] |= 1L << row;
+    }
+
+    /**
+     * A szabály bittérképének kezdőindexe.
+     */
+    int offset(final int rule) {
+        return rule * words;
+    }
+
+    int words() {
+        return words;
+    }
+
+    long[] bits() {
+        return bits;
+    }
+}
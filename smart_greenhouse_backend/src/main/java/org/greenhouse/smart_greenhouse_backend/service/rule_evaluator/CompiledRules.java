@@ -0,0 +1,305 @@
+package org.greenhouse.smart_greenhouse_backend.service.rule_evaluator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ActionRule;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ConditionRule;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.Range;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.DeviceAction;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Egy növényprofil szabályainak lefordított, megváltoztathatatlan kiértékelési terve.
+ * <p>
+ * A szabályok metrikánként ({@link Type#ordinal()}) csoportosítva, párhuzamos primitív tömbökben állnak,
+ * a bemenet egy {@link Type}-sorszámmal indexelt {@code double[]} (hiányzó érték: {@code NaN}),
+ * a kimenet egy újrahasznosítható {@link BitSet}, amelyben a kiváltott szabályok eredeti sorszáma jelölődik.
+ * A kiértékelés így nem foglal memóriát és nem keres hash táblában; egy metrika szabályai egymás mellett vannak.
+ * <p>
+ * Az {@link #actions(BitSet)} a szabálylista sorrendjében adja vissza az akciókat, ahogy a korábbi,
+ * szabályonként bejáró kiértékelés (két azonos akciójú kiváltott szabálynál az akció kétszer szerepel).
+ * <p>
+ * A kifejezés alapú szabályok ({@link ConditionRule}) a tartományszabályok után kapnak sorszámot, és
+ * lefordított feltételfaként ({@link RuleExpression}) állnak a tervben. Állapotuk üvegházanként egy
+ * {@link RuleState}-ben van, ezért csak az állapotot is kapó kötegelt kiértékelés
+ * ({@link #evaluate(ReadingBlock, RuleState[], long, int)}) futtatja őket; a hibás kifejezésű szabály
+ * figyelmeztetéssel kimarad.
+ * <p>
+ * Eseményvezérelt kiértékelésnél soronként a változott metrikák maszkja is megadható: ilyenkor csak a
+ * változott metrikára hivatkozó szabályok futnak (a tartományszabályok metrikánként csoportosítva állnak,
+ * a kifejezéseknél a hivatkozott metrikák maszkja a függőségi index). Metrikára nem hivatkozó kifejezés
+ * (pl. csak napszak) így csak a teljes kiértékelésben fut.
+ */
+@Slf4j
+public final class CompiledRules {
+
+    /** a bemeneti vektor hossza */
+    public static final int METRICS = Type.values().length;
+
+    static final CompiledRules EMPTY = new CompiledRules(List.of(), List.of());
+
+    /** metrikánként a szabályok kezdőindexe; az m. metrika szabályai: [start[m], start[m + 1]) */
+    private final int[] start = new int[METRICS + 1];
+    private final double[] min;
+    private final double[] max;
+    /** a csoportosított szabályok eredeti sorszáma */
+    private final int[] ruleIds;
+    /** akció az eredeti sorszám szerint (a tartományszabályok után a feltételek) */
+    private final String[] actions;
+    /** az akció eszközakcióként, fordításkor feloldva; ismeretlen névnél {@code null} */
+    private final DeviceAction[] deviceActions;
+    /** a kifejezés alapú szabályok; az i. sorszáma {@code ruleIds.length + i} */
+    private final RuleExpression.Condition[] conditions;
+    /** kifejezésenként a hivatkozott metrikák bitmaszkja */
+    private final int[] conditionMetrics;
+    /** az állapotrések száma fajtánként ({@link RuleState}) */
+    private final int durations;
+    private final int latches;
+    private final int rates;
+
+    CompiledRules(final List<ActionRule> rules) {
+        this(rules, List.of());
+    }
+
+    CompiledRules(final List<ActionRule> rules, final List<ConditionRule> conditionRules) {
+        List<ActionRule> valid = new ArrayList<>();
+        if (rules != null) {
+            for (ActionRule rule : rules) {
+                // tartomány vagy metrika nélkül a szabály sosem sül el
+                if (rule == null || rule.metric() == null || rule.range() == null || rule.action() == null) continue;
+                valid.add(rule);
+            }
+        }
+        RuleExpression.Compiler compiler = new RuleExpression.Compiler();
+        List<RuleExpression.Condition> compiled = new ArrayList<>();
+        List<String> conditionActions = new ArrayList<>();
+        List<Integer> metricMasks = new ArrayList<>();
+        if (conditionRules != null) {
+            for (ConditionRule rule : conditionRules) {
+                if (rule == null || rule.action() == null) continue;
+                try {
+                    compiled.add(compiler.compile(rule.when()));
+                    conditionActions.add(rule.action());
+                    metricMasks.add(compiler.metrics);
+                } catch (IllegalArgumentException e) {
+                    log.warn("A {} feltételes szabály kimarad: {}", rule.action(), e.getMessage());
+                }
+            }
+        }
+        conditions = compiled.toArray(RuleExpression.Condition[]::new);
+        conditionMetrics = metricMasks.stream().mapToInt(Integer::intValue).toArray();
+        durations = compiler.durations;
+        latches = compiler.latches;
+        rates = compiler.rates;
+        actions = new String[valid.size() + conditions.length];
+        for (int i = 0; i < conditions.length; i++) actions[valid.size() + i] = conditionActions.get(i);
+
+        int[] counts = new int[METRICS];
+        for (ActionRule rule : valid) counts[rule.metric().ordinal()]++;
+        for (int m = 0; m < METRICS; m++) start[m + 1] = start[m] + counts[m];
+
+        min = new double[valid.size()];
+        max = new double[valid.size()];
+        ruleIds = new int[valid.size()];
+        int[] next = Arrays.copyOf(start, METRICS);
+        for (int id = 0; id < valid.size(); id++) {
+            ActionRule rule = valid.get(id);
+            int i = next[rule.metric().ordinal()]++;
+            Range range = rule.range();
+            min[i] = range.min() == null ? Double.NEGATIVE_INFINITY : range.min();
+            max[i] = range.max() == null ? Double.POSITIVE_INFINITY : range.max();
+            ruleIds[i] = id;
+            actions[id] = rule.action();
+        }
+
+        deviceActions = new DeviceAction[actions.length];
+        for (int id = 0; id < actions.length; id++) {
+            deviceActions[id] = DeviceAction.of(actions[id]);
+            if (deviceActions[id] == null) log.warn("Ismeretlen akció a szabályokban: {}", actions[id]);
+        }
+    }
+
+    /**
+     * Üres bemeneti vektor (minden érték hiányzik).
+     */
+    public static double[] input() {
+        double[] values = new double[METRICS];
+        Arrays.fill(values, Double.NaN);
+        return values;
+    }
+
+    /**
+     * A kiértékelés: azoknak a szabályoknak a bitje állítódik be, amelyek mért értéke a tartományon kívül esik.
+     *
+     * @param values {@link Type}-sorszámmal indexelt mért értékek, hiányzónál {@code NaN}
+     * @param fired  kimenet; a hívás elején törlődik
+     */
+    public void evaluate(final double[] values, final BitSet fired) {
+        fired.clear();
+        for (int m = 0; m < METRICS; m++) {
+            double v = values[m];
+            // NaN-ra mindkét összehasonlítás hamis, így a hiányzó érték nem vált ki akciót
+            for (int i = start[m], end = start[m + 1]; i < end; i++) {
+                if (v < min[i] || v > max[i]) fired.set(ruleIds[i]);
+            }
+        }
+    }
+
+    /**
+     * Kötegelt kiértékelés: szabályonként végigmegy a metrikája oszlopán, és 64 soronként egy szóba
+     * gyűjti a tartományon kívüli sorokat. A belső ciklus elágazás nélküli és folytonos tömböt olvas,
+     * így a JIT jól optimalizálja; üvegházanként nincs külön hívás.
+     *
+     * @param block oszlopos mérések
+     * @return a kiváltott (szabály, sor) párok bittérképe
+     */
+    public ActionMatrix evaluate(final ReadingBlock block) {
+        ActionMatrix matrix = new ActionMatrix(this, block.size());
+        evaluateRanges(block, matrix, null);
+        return matrix;
+    }
+
+    /**
+     * @param changed soronként a változott metrikák maszkja, vagy {@code null} (minden sor minden metrikája)
+     */
+    private void evaluateRanges(final ReadingBlock block, final ActionMatrix matrix, final int[] changed) {
+        long[] bits = matrix.bits();
+        int words = matrix.words();
+        int size = block.size();
+        long[] rows = changed == null ? null : new long[words];
+        for (int m = 0; m < METRICS; m++) {
+            if (start[m] == start[m + 1]) continue;
+            if (changed != null && !rowsChanged(changed, m, rows)) continue;
+            double[] column = block.column(m);
+            for (int i = start[m], end = start[m + 1]; i < end; i++) {
+                double lo = min[i];
+                double hi = max[i];
+                int offset = matrix.offset(ruleIds[i]);
+                for (int w = 0; w < words; w++) {
+                    int base = w << 6;
+                    int limit = Math.min(size - base, 64);
+                    long mask = 0;
+                    for (int k = 0; k < limit; k++) {
+                        double v = column[base + k];
+                        mask |= (v < lo | v > hi ? 1L : 0L) << k;
+                    }
+                    bits[offset + w] = rows == null ? mask : mask & rows[w];
+                }
+            }
+        }
+    }
+
+    /**
+     * Azoknak a soroknak a bittérképe, ahol az m. metrika változott.
+     *
+     * @return volt-e ilyen sor
+     */
+    private static boolean rowsChanged(final int[] changed, final int m, final long[] rows) {
+        Arrays.fill(rows, 0L);
+        boolean any = false;
+        for (int row = 0; row < changed.length; row++) {
+            if ((changed[row] & (1 << m)) != 0) {
+                rows[row >>> 6] |= 1L << row;
+                any = true;
+            }
+        }
+        return any;
+    }
+
+    /**
+     * Kötegelt kiértékelés állapottal: a tartományszabályok az {@link #evaluate(ReadingBlock)} szerint,
+     * utána soronként a kifejezés alapú szabályok, a sor állapotával.
+     *
+     * @param block       oszlopos mérések
+     * @param states      soronként az üvegház állapota ({@link #newState()}); kifejezés nélküli tervnél figyelmen kívül marad
+     * @param now         a kiértékelés időpontja (epoch ms)
+     * @param minuteOfDay a helyi idő napon belüli perce (napszak ablakokhoz)
+     * @return a kiváltott (szabály, sor) párok bittérképe
+     */
+    public ActionMatrix evaluate(final ReadingBlock block, final RuleState[] states, final long now, final int minuteOfDay) {
+        return evaluate(block, states, now, minuteOfDay, null);
+    }
+
+    /**
+     * Kötegelt kiértékelés állapottal, csak a változott metrikákra hivatkozó szabályokkal.
+     *
+     * @param changed soronként a változott metrikák maszkja ({@code 1 << Type.ordinal()}), vagy {@code null}
+     *                a teljes kiértékeléshez
+     * @see #evaluate(ReadingBlock, RuleState[], long, int)
+     */
+    public ActionMatrix evaluate(final ReadingBlock block, final RuleState[] states, final long now,
+                                 final int minuteOfDay, final int[] changed) {
+        ActionMatrix matrix = new ActionMatrix(this, block.size());
+        evaluateRanges(block, matrix, changed);
+        if (conditions.length == 0) return matrix;
+
+        double[] values = new double[METRICS];
+        int first = ruleIds.length;
+        for (int row = 0; row < block.size(); row++) {
+            for (int m = 0; m < METRICS; m++) values[m] = block.column(m)[row];
+            RuleState state = states[row];
+            int rowChanged = changed == null ? -1 : changed[row];
+            for (int i = 0; i < conditions.length; i++) {
+                if ((conditionMetrics[i] & rowChanged) == 0 && changed != null) continue;
+                if (conditions[i].test(values, now, minuteOfDay, state)) matrix.set(first + i, row);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Üres szabályállapot egy üvegházhoz ehhez a tervhez.
+     */
+    public RuleState newState() {
+        return new RuleState(this, durations, latches, rates);
+    }
+
+    /**
+     * A kiváltott szabályok akciói, a szabálylista sorrendjében.
+     */
+    public List<String> actions(final BitSet fired) {
+        if (fired.isEmpty()) return List.of();
+        List<String> result = new ArrayList<>(fired.cardinality());
+        for (int id = fired.nextSetBit(0); id >= 0; id = fired.nextSetBit(id + 1)) {
+            result.add(actions[id]);
+        }
+        return result;
+    }
+
+    /**
+     * @param id a szabály sorszáma (a bithalmaz indexe)
+     */
+    public String action(final int id) {
+        return actions[id];
+    }
+
+    /**
+     * @param id a szabály sorszáma
+     * @return a fordításkor feloldott eszközakció, ismeretlen akciónévnél {@code null}
+     */
+    public DeviceAction deviceAction(final int id) {
+        return deviceActions[id];
+    }
+
+    /**
+     * Az összes szabály (tartomány és kifejezés) száma.
+     */
+    public int ruleCount() {
+        return actions.length;
+    }
+
+    /**
+     * A tartományszabályok száma; ezek sorszáma {@code [0, rangeRuleCount())}, utánuk a kifejezéseké.
+     */
+    public int rangeRuleCount() {
+        return ruleIds.length;
+    }
+
+    public int conditionCount() {
+        return conditions.length;
+    }
+}
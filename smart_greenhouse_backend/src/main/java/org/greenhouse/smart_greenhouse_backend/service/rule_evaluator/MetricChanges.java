@@ -0,0 +1,51 @@
+package org.greenhouse.smart_greenhouse_backend.service.rule_evaluator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Egy üvegház összevont, még fel nem dolgozott mérésváltozásai.
+ * <p>
+ * A {@link #values()} metrikánként a legutolsó értéket tartja (ebből tudjuk, mely szabályok futnak újra);
+ * a {@link #sensors()} szenzor kódonként azokat az értékeket, amelyeket még be kell írni az üvegház
+ * szenzoraiba. A már beírt értékek (szimuláció, szenzor API) csak a {@link #values()}-ban szerepelnek.
+ * Nem szálbiztos: a {@code RuleTrigger} a sor összevonásakor, a továbbítás pedig egy szálról használja.
+ */
+public final class MetricChanges {
+
+    private final double[] values;
+    private final Map<String, double[]> sensors;
+
+    public MetricChanges(final double[] values, final Map<String, double[]> sensors) {
+        this.values = values;
+        this.sensors = sensors;
+    }
+
+    public static MetricChanges of(final MetricsChangedEvent event) {
+        Map<String, double[]> sensors = new LinkedHashMap<>();
+        if (event.sensorCode() != null) sensors.put(event.sensorCode(), event.values().clone());
+        return new MetricChanges(event.values().clone(), sensors);
+    }
+
+    /** {@code Type}-sorszámmal indexelt új értékek, a nem változottnál {@code NaN} */
+    public double[] values() {
+        return values;
+    }
+
+    /** szenzor kód → a szenzorba írandó, {@code Type}-sorszámmal indexelt értékek */
+    public Map<String, double[]> sensors() {
+        return sensors;
+    }
+
+    /**
+     * A később érkezett változások ({@code newer}) felülírják a korábbiakat, metrikánként és szenzoronként;
+     * ez a példány módosul.
+     *
+     * @return ez a példány
+     */
+    public MetricChanges merge(final MetricChanges newer) {
+        MetricsChangedEvent.overlay(values, newer.values);
+        newer.sensors.forEach((code, sensorValues) -> sensors.merge(code, sensorValues.clone(), MetricsChangedEvent::overlay));
+        return this;
+    }
+}
@@ -0,0 +1,72 @@
+package org.greenhouse.smart_greenhouse_backend.service.rule_evaluator;
+
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
+import org.greenhouse.smart_greenhouse_backend.model.documents.SensorData;
+
+/**
+ * Egy üvegház mért értékei megváltoztak (szenzor felvétel/módosítás, beküldött mérés, szimuláció).
+ * <p>
+ * Az értékek {@link Type}-sorszámmal indexeltek, a nem változott metrikánál {@code NaN}; így a
+ * kiértékelés csak a változott metrikára hivatkozó szabályokat futtatja újra.
+ * <p>
+ * A beküldött mérés ({@link #of(SensorData)}) a szenzor kódját is hordozza: a gazda ebbe a szenzorba írja
+ * az értékeket. Kód nélküli eseménynél az értékek már az üvegház szenzoraiban vannak (szimuláció, szenzor API),
+ * ezeket a kiértékelés nem írja újra.
+ *
+ * @param greenhouseCode az üvegház kódja
+ * @param sensorCode     a mérő szenzor kódja, vagy {@code null}, ha az értékek már be vannak írva
+ * @param values         az új értékek ({@link CompiledRules#input()} alakban)
+ */
+public record MetricsChangedEvent(String greenhouseCode, String sensorCode, double[] values) {
+
+    /**
+     * Már beírt érték változása (kód nélküli esemény).
+     */
+    public static MetricsChangedEvent of(final String greenhouseCode, final Type type, final double value) {
+        double[] values = CompiledRules.input();
+        values[type.ordinal()] = value;
+        return new MetricsChangedEvent(greenhouseCode, null, values);
+    }
+
+    /**
+     * @return az esemény, vagy {@code null}, ha a mérés nem üvegházhoz tartozik vagy nincs benne érték
+     */
+    public static MetricsChangedEvent of(final SensorData data) {
+        if (data == null || data.getGreenhouseCode() == null) return null;
+        double[] values = CompiledRules.input();
+        boolean any = put(values, Type.TEMPERATURE, data.getTemperature());
+        any |= put(values, Type.HUMIDITY_PCT, data.getHumidity());
+        any |= put(values, Type.SOILMOISTURE_PTC, data.getSoilMoisture());
+        any |= put(values, Type.WIND_SPEED, data.getWindSpeed());
+        return any ? new MetricsChangedEvent(data.getGreenhouseCode(), data.getCode(), values) : null;
+    }
+
+    /**
+     * A változott metrikák bitmaszkja ({@code 1 << Type.ordinal()}).
+     */
+    public static int changedMask(final double[] values) {
+        int mask = 0;
+        for (int m = 0; m < values.length; m++) {
+            if (!Double.isNaN(values[m])) mask |= 1 << m;
+        }
+        return mask;
+    }
+
+    /**
+     * A később érkezett értékek ({@code newer} nem-{@code NaN} elemei) felülírják a korábbiakat; az {@code older} tömb módosul.
+     *
+     * @return {@code older}
+     */
+    public static double[] overlay(final double[] older, final double[] newer) {
+        for (int m = 0; m < newer.length; m++) {
+            if (!Double.isNaN(newer[m])) older[m] = newer[m];
+        }
+        return older;
+    }
+
+    private static boolean put(final double[] values, final Type type, final Double value) {
+        if (value == null) return false;
+        values[type.ordinal()] = value;
+        return true;
+    }
+}
@@ -0,0 +1,70 @@
+package org.greenhouse.smart_greenhouse_backend.service.rule_evaluator;
+
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
+
+import java.util.Arrays;
+
+/**
+ * Oszlopos mérésblokk kötegelt kiértékeléshez: metrikánként ({@link Type}) egy {@code double[]},
+ * soronként egy üvegház (vagy előrejelzési időpont). Hiányzó érték: {@code NaN}.
+ * <p>
+ * A blokk újrahasznosítható: a {@link #reset(int)} a kért sorszámra állítja és törli az értékeket,
+ * a tömbök csak akkor nőnek, ha a kapacitás kevés.
+ */
+public final class ReadingBlock {
+
+    private final double[][] columns = new double[CompiledRules.METRICS][];
+    private int size;
+
+    /**
+     * {@code size} soros blokk, minden érték hiányzó.
+     */
+    public ReadingBlock(final int size) {
+        for (int m = 0; m < columns.length; m++) {
+            columns[m] = new double[Math.max(0, size)];
+        }
+        reset(size);
+    }
+
+    /**
+     * A blokk {@code size} sorra állítása, minden érték hiányzóra.
+     */
+    public void reset(final int size) {
+        for (int m = 0; m < columns.length; m++) {
+            if (columns[m].length < size) {
+                columns[m] = new double[Math.max(size, columns[m].length * 2)];
+            }
+            Arrays.fill(columns[m], 0, size, Double.NaN);
+        }
+        this.size = size;
+    }
+
+    public void set(final int row, final Type type, final double value) {
+        columns[type.ordinal()][checkRow(row)] = value;
+    }
+
+    /**
+     * Az érték beállítása, ha még nincs megadva (több azonos típusú szenzornál az első nyer).
+     */
+    public void setIfAbsent(final int row, final Type type, final double value) {
+        double[] column = columns[type.ordinal()];
+        if (Double.isNaN(column[checkRow(row)])) column[row] = value;
+    }
+
+    public double get(final int row, final Type type) {
+        return columns[type.ordinal()][checkRow(row)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    double[] column(final int metric) {
+        return columns[metric];
+    }
+
+    private int checkRow(final int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("sor: " + row + ", méret: " + size);
+        return row;
+    }
+}
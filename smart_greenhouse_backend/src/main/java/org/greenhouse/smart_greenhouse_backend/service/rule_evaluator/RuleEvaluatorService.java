@@ -3,6 +3,7 @@ package org.greenhouse.smart_greenhouse_backend.service.rule_evaluator;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
 import org.greenhouse.smart_greenhouse_backend.model.documents.PlantProfile;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -15,5 +16,60 @@ public interface RuleEvaluatorService {
      * @param values  aktuális mért értékek (pl. tempC, humidityPct, soilMoisturePct)
      * @return String akciók listája
      */
-    List evaluate(final PlantProfile profile, final Map<Type, Double> values);
+    List<String> evaluate(final PlantProfile profile, final Map<Type, Double> values);
+
+    /**
+     * Kiértékelés primitív bemeneti vektorral, köztes {@link Map} nélkül.
+     *
+     * @param profile a növény profilja (benne a szabályok)
+     * @param values  {@link Type}-sorszámmal indexelt mért értékek, hiányzónál {@code NaN}
+     *                (lásd {@link CompiledRules#input()})
+     * @return String akciók listája
+     */
+    List<String> evaluate(final PlantProfile profile, final double[] values);
+
+    /**
+     * Kötegelt kiértékelés az azonos profilú üvegházak (vagy előrejelzési időpontok) oszlopos méréseire,
+     * egyetlen szoros ciklusban.
+     *
+     * @param profile a közös növényprofil
+     * @param block   metrikánként egy oszlop, soronként egy üvegház
+     * @return soronként a kiváltott akciók ({@link ActionMatrix#actions(int)})
+     */
+    ActionMatrix evaluate(final PlantProfile profile, final ReadingBlock block);
+
+    /**
+     * Kötegelt kiértékelés élő üvegházakra: a tartományszabályokon túl a kifejezés alapú szabályok
+     * ({@code ConditionRule}) is lefutnak, üvegházanként megőrzött állapottal (tartósság, hiszterézis,
+     * változási sebesség). Egy üvegházat egyszerre csak egy szál értékelhet ki.
+     *
+     * @param profile a közös növényprofil
+     * @param block   metrikánként egy oszlop, soronként egy üvegház
+     * @param keys    soronként az üvegház kódja (az állapot kulcsa)
+     * @param now     a kiértékelés időpontja
+     * @return soronként a kiváltott akciók
+     */
+    ActionMatrix evaluate(final PlantProfile profile, final ReadingBlock block, final List<String> keys, final Instant now);
+
+    /**
+     * Eseményvezérelt kötegelt kiértékelés: soronként csak a változott metrikákra hivatkozó szabályok futnak.
+     *
+     * @param changed soronként a változott metrikák maszkja ({@link MetricsChangedEvent#changedMask(double[])})
+     * @see #evaluate(PlantProfile, ReadingBlock, List, Instant)
+     */
+    ActionMatrix evaluate(final PlantProfile profile, final ReadingBlock block, final List<String> keys,
+                          final Instant now, final int[] changed);
+
+    /**
+     * Eldobja az üvegház szabályállapotát (törléskor).
+     */
+    void forget(final String key);
+
+    /**
+     * A profil lefordított kiértékelési terve; profil-azonosítónként és verziónként gyorsítótárazva.
+     *
+     * @param profile a növény profilja
+     * @return a kiértékelési terv (szabályok nélküli profilnál üres terv)
+     */
+    CompiledRules compile(final PlantProfile profile);
 }
@@ -2,36 +2,161 @@ package org.greenhouse.smart_greenhouse_backend.service.rule_evaluator;
 
 import lombok.RequiredArgsConstructor;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ActionRule;
-import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.Range;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ConditionRule;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
 import org.greenhouse.smart_greenhouse_backend.model.documents.PlantProfile;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.ClusterRebalancedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Szabálykiértékelés lefordított tervekkel ({@link CompiledRules}).
+ * <p>
+ * A profilt első használatkor fordítjuk le, utána profil-azonosító és verzió szerint a gyorsítótárból
+ * jön (verzió nélküli profilnál a szabálylista egyezését ellenőrizzük). A bemeneti vektor és a kimeneti
+ * bithalmaz szálanként újrahasznosított, így egy kiértékelés csak a visszaadott akciólistát foglalja,
+ * azt is csak akkor, ha volt kiváltott akció.
+ * <p>
+ * A kifejezés alapú szabályok állapota üvegház-kódonként itt él; ha a profil új tervet kap,
+ * az állapot az első kiértékeléskor újraindul. Az állapot nem tárolódik az adatbázisban: ha az üvegház
+ * másik csomóponthoz kerül ({@link ClusterRebalancedEvent}), az új gazdánál a {@code for} időzítők elölről
+ * indulnak, az {@code until} reteszek kioldott állapotból, a {@code rate()} pedig az első két mérés után ad értéket.
+ * Az átadott üvegház állapotát itt eldobjuk, hogy egy későbbi visszakerüléskor se egy régi, közben
+ * nem frissült időzítőből folytassuk. A napszak ablakok a szerver időzónájában értendők.
+ * A teljes bejárás és az eseményvezérelt kiértékelés más szálon fut; egy profil állapotos kiértékelései
+ * a lefordított tervre szinkronizálva, sorosan futnak.
+ */
 @Service
 @RequiredArgsConstructor
 public class RuleEvaluatorServiceImpl implements RuleEvaluatorService {
 
+    private static final Type[] TYPES = Type.values();
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final ConcurrentHashMap<Object, Compiled> compiled = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RuleState> states = new ConcurrentHashMap<>();
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    @Override
+    public List<String> evaluate(PlantProfile profile, Map<Type, Double> values) {
+        CompiledRules rules = compile(profile);
+        if (rules.ruleCount() == 0) return List.of();
+
+        Scratch scratch = SCRATCH.get();
+        // metrikánként keresünk: az entrySet bejárása EnumMap-nél elemenként foglalna
+        for (Type type : TYPES) {
+            Double value = values.get(type);
+            scratch.input[type.ordinal()] = value != null ? value : Double.NaN;
+        }
+        rules.evaluate(scratch.input, scratch.fired);
+        return rules.actions(scratch.fired);
+    }
+
+    @Override
+    public List<String> evaluate(PlantProfile profile, double[] values) {
+        CompiledRules rules = compile(profile);
+        if (rules.ruleCount() == 0) return List.of();
+
+        BitSet fired = SCRATCH.get().fired;
+        rules.evaluate(values, fired);
+        return rules.actions(fired);
+    }
+
     @Override
-    public List evaluate(PlantProfile profile, Map<Type, Double> values) {
-        List actions = new ArrayList();
+    public ActionMatrix evaluate(PlantProfile profile, ReadingBlock block) {
+        return compile(profile).evaluate(block);
+    }
+
+    @Override
+    public ActionMatrix evaluate(PlantProfile profile, ReadingBlock block, List<String> keys, Instant now) {
+        return evaluate(profile, block, keys, now, null);
+    }
 
-        if (profile.getRules() == null) {
-            return actions;
+    @Override
+    public ActionMatrix evaluate(PlantProfile profile, ReadingBlock block, List<String> keys, Instant now, int[] changed) {
+        CompiledRules rules = compile(profile);
+        if (rules.conditionCount() == 0) {
+            return rules.evaluate(block, null, now.toEpochMilli(), 0, changed);
         }
 
-        for (ActionRule rule : profile.getRules()) {
-            Double measured = values.get(rule.metric());
-            if (measured != null) {
-                Range range = rule.range();
-                if (range != null && (measured < range.min() || measured > range.max())) {
-                    actions.add(rule.action());
-                }
-            }
+        RuleState[] rowStates = new RuleState[block.size()];
+        for (int row = 0; row < rowStates.length; row++) {
+            rowStates[row] = states.compute(keys.get(row),
+                    (key, state) -> state != null && state.belongsTo(rules) ? state : rules.newState());
+        }
+        LocalTime local = LocalTime.ofInstant(now, zone);
+        synchronized (rules) {
+            return rules.evaluate(block, rowStates, now.toEpochMilli(), local.getHour() * 60 + local.getMinute(), changed);
         }
-        return actions;
+    }
+
+    @Override
+    public void forget(String key) {
+        if (key != null) states.remove(key);
+    }
+
+    @EventListener
+    public void onRebalanced(final ClusterRebalancedEvent event) {
+        states.keySet().removeIf(code -> event.lost(code) || event.gained(code));
+    }
+
+    @Override
+    public CompiledRules compile(PlantProfile profile) {
+        if (profile == null || (isEmpty(profile.getRules()) && isEmpty(profile.getConditions()))) {
+            return CompiledRules.EMPTY;
+        }
+        Object key = profile.getId() != null ? profile.getId() : List.of(copy(profile.getRules()), copy(profile.getConditions()));
+        Compiled cached = compiled.get(key);
+        if (cached != null && cached.matches(profile)) {
+            return cached.rules;
+        }
+        Compiled fresh = new Compiled(profile.getVersion(), copy(profile.getRules()), copy(profile.getConditions()),
+                new CompiledRules(profile.getRules(), profile.getConditions()));
+        compiled.put(key, fresh);
+        return fresh.rules;
+    }
+
+    private static boolean isEmpty(List<?> list) {
+        return list == null || list.isEmpty();
+    }
+
+    private static <T> List<T> copy(List<T> list) {
+        // a List.copyOf nem fogad null elemet
+        return list == null ? List.of() : Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+    private static boolean same(List<?> copied, List<?> current) {
+        return current == null ? copied.isEmpty() : copied.equals(current);
+    }
+
+    /**
+     * Egy lefordított terv és a forrása.
+     */
+    private record Compiled(Long version, List<ActionRule> source, List<ConditionRule> conditions, CompiledRules rules) {
+
+        boolean matches(PlantProfile profile) {
+            if (version != null) return version.equals(profile.getVersion());
+            return profile.getVersion() == null
+                    && same(source, profile.getRules())
+                    && same(conditions, profile.getConditions());
+        }
+    }
+
+    /**
+     * Szálanként újrahasznosított bemenet és kimenet.
+     */
+    private static final class Scratch {
+        final double[] input = new double[CompiledRules.METRICS];
+        final BitSet fired = new BitSet();
     }
 }
@@ -0,0 +1,471 @@
+package org.greenhouse.smart_greenhouse_backend.service.rule_evaluator;
+
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A {@link org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ConditionRule} kifejezésnyelve
+ * és fordítója.
+ * <p>
+ * Nyelvtan (a kulcsszavak kis- és nagybetűre érzéketlenek):
+ * <pre>
+ * kifejezés := vagy [ 'until' vagy ]                 hiszterézis: a bal oldal bekapcsol, a jobb elenged
+ * vagy      := és { 'or' és }
+ * és        := egyes { 'and' egyes }
+ * egyes     := 'not' egyes | alap [ 'for' időtartam ] időtartam: 30s, 10m, 2h
+ * alap      := '(' kifejezés ')'
+ *            | 'time' 'between' ÓÓ:PP 'and' ÓÓ:PP  napszak, éjfélen átnyúló is lehet
+ *            | operandus reláció szám                 reláció: &lt; &lt;= &gt; &gt;= == !=
+ * operandus := metrika | 'rate' '(' metrika ')'       rate: változás óránként
+ * </pre>
+ * A metrika a {@link Type} JSON neve (pl. {@code soilMoisturePct}) vagy konstansneve.
+ * <p>
+ * A fordítás egyszer, a profil betöltésekor fut, és {@link Condition} csomópontok fáját állítja elő;
+ * a kiértékelés ezen a fán halad végig foglalás nélkül, az állapotot a {@link RuleState} tömbjeiben tartja.
+ */
+final class RuleExpression {
+
+    private RuleExpression() {
+    }
+
+    /**
+     * Egy lefordított feltétel.
+     */
+    abstract static class Condition {
+
+        /** van-e a részfában állapotot igénylő csomópont; ilyenkor a rövidzár tilos */
+        final boolean stateful;
+
+        Condition(final boolean stateful) {
+            this.stateful = stateful;
+        }
+
+        /**
+         * @param values      {@link Type}-sorszámmal indexelt mért értékek, hiányzónál {@code NaN}
+         * @param now         a kiértékelés időpontja (epoch ms)
+         * @param minuteOfDay a helyi idő napon belüli perce
+         * @param state       az üvegház szabályállapota
+         */
+        abstract boolean test(double[] values, long now, int minuteOfDay, RuleState state);
+    }
+
+    /**
+     * Egy terv feltételeinek fordítója: a kifejezések közösen osztják ki az állapotréseket.
+     */
+    static final class Compiler {
+
+        int durations;
+        int latches;
+        int rates;
+        /** a legutóbb fordított kifejezés által olvasott metrikák bitmaszkja ({@code 1 << Type.ordinal()}) */
+        int metrics;
+
+        /**
+         * @throws IllegalArgumentException ha a kifejezés hibás
+         */
+        Condition compile(final String text) {
+            if (text == null || text.isBlank()) throw new IllegalArgumentException("Üres feltétel");
+            metrics = 0;
+            Parser parser = new Parser(text, this);
+            Condition condition = parser.expression();
+            parser.expectEnd();
+            return condition;
+        }
+    }
+
+    // ---------------------------------------------------------------- csomópontok
+
+    private static final int LT = 0, LE = 1, GT = 2, GE = 3, EQ = 4, NE = 5;
+
+    private static boolean compare(final double v, final int op, final double threshold) {
+        // NaN-ra minden összehasonlítás hamis, a != is
+        if (v != v) return false;
+        return switch (op) {
+            case LT -> v < threshold;
+            case LE -> v <= threshold;
+            case GT -> v > threshold;
+            case GE -> v >= threshold;
+            case EQ -> v == threshold;
+            default -> v != threshold;
+        };
+    }
+
+    private static final class Compare extends Condition {
+        private final int metric;
+        private final int op;
+        private final double threshold;
+
+        Compare(final int metric, final int op, final double threshold) {
+            super(false);
+            this.metric = metric;
+            this.op = op;
+            this.threshold = threshold;
+        }
+
+        @Override
+        boolean test(double[] values, long now, int minuteOfDay, RuleState state) {
+            return compare(values[metric], op, threshold);
+        }
+    }
+
+    /**
+     * Változási sebesség (egység/óra) az előző kiértékeléshez képest. Az első mérésnél hamis.
+     */
+    private static final class Rate extends Condition {
+        private static final double HOUR_MS = 3_600_000d;
+
+        private final int metric;
+        private final int op;
+        private final double threshold;
+        private final int slot;
+
+        Rate(final int metric, final int op, final double threshold, final int slot) {
+            super(true);
+            this.metric = metric;
+            this.op = op;
+            this.threshold = threshold;
+            this.slot = slot;
+        }
+
+        @Override
+        boolean test(double[] values, long now, int minuteOfDay, RuleState state) {
+            double v = values[metric];
+            if (v != v) return false;
+            long at = state.previousAt[slot];
+            if (at != RuleState.NONE && now <= at) return false;
+            double previous = state.previous[slot];
+            state.previous[slot] = v;
+            state.previousAt[slot] = now;
+            if (at == RuleState.NONE) return false;
+            return compare((v - previous) * HOUR_MS / (now - at), op, threshold);
+        }
+    }
+
+    /**
+     * Napszak ablak percben; {@code from > to} esetén éjfélen átnyúlik.
+     */
+    private static final class TimeWindow extends Condition {
+        private final int from;
+        private final int to;
+
+        TimeWindow(final int from, final int to) {
+            super(false);
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        boolean test(double[] values, long now, int minuteOfDay, RuleState state) {
+            return from <= to
+                    ? minuteOfDay >= from && minuteOfDay < to
+                    : minuteOfDay >= from || minuteOfDay < to;
+        }
+    }
+
+    private static final class Not extends Condition {
+        private final Condition operand;
+
+        Not(final Condition operand) {
+            super(operand.stateful);
+            this.operand = operand;
+        }
+
+        @Override
+        boolean test(double[] values, long now, int minuteOfDay, RuleState state) {
+            return !operand.test(values, now, minuteOfDay, state);
+        }
+    }
+
+    private static final class And extends Condition {
+        private final Condition[] operands;
+
+        And(final Condition[] operands) {
+            super(anyStateful(operands));
+            this.operands = operands;
+        }
+
+        @Override
+        boolean test(double[] values, long now, int minuteOfDay, RuleState state) {
+            boolean result = true;
+            for (Condition operand : operands) {
+                // állapotos részfát minden ütemben ki kell értékelni, különben elavulna az állapota
+                if (!result && !stateful) return false;
+                result &= operand.test(values, now, minuteOfDay, state);
+            }
+            return result;
+        }
+    }
+
+    private static final class Or extends Condition {
+        private final Condition[] operands;
+
+        Or(final Condition[] operands) {
+            super(anyStateful(operands));
+            this.operands = operands;
+        }
+
+        @Override
+        boolean test(double[] values, long now, int minuteOfDay, RuleState state) {
+            boolean result = false;
+            for (Condition operand : operands) {
+                if (result && !stateful) return true;
+                result |= operand.test(values, now, minuteOfDay, state);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Tartósság: csak akkor igaz, ha a feltétel legalább {@code millis} ideje minden kiértékeléskor teljesült.
+     */
+    private static final class For extends Condition {
+        private final Condition operand;
+        private final long millis;
+        private final int slot;
+
+        For(final Condition operand, final long millis, final int slot) {
+            super(true);
+            this.operand = operand;
+            this.millis = millis;
+            this.slot = slot;
+        }
+
+        @Override
+        boolean test(double[] values, long now, int minuteOfDay, RuleState state) {
+            if (!operand.test(values, now, minuteOfDay, state)) {
+                state.since[slot] = RuleState.NONE;
+                return false;
+            }
+            long since = state.since[slot];
+            if (since == RuleState.NONE) {
+                state.since[slot] = now;
+                since = now;
+            }
+            return now - since >= millis;
+        }
+    }
+
+    /**
+     * Hiszterézis retesz: a {@code set} feltétel bekapcsolja, a {@code reset} elengedi; közben az állapot marad.
+     */
+    private static final class Latch extends Condition {
+        private final Condition set;
+        private final Condition reset;
+        private final int slot;
+
+        Latch(final Condition set, final Condition reset, final int slot) {
+            super(true);
+            this.set = set;
+            this.reset = reset;
+            this.slot = slot;
+        }
+
+        @Override
+        boolean test(double[] values, long now, int minuteOfDay, RuleState state) {
+            boolean on = set.test(values, now, minuteOfDay, state);
+            boolean off = reset.test(values, now, minuteOfDay, state);
+            boolean latched = state.latched[slot];
+            latched = latched ? !off : on && !off;
+            state.latched[slot] = latched;
+            return latched;
+        }
+    }
+
+    private static boolean anyStateful(final Condition[] operands) {
+        for (Condition operand : operands) {
+            if (operand.stateful) return true;
+        }
+        return false;
+    }
+
+    // ---------------------------------------------------------------- elemző
+
+    /**
+     * Rekurzív leszálló elemző; a lexikális elemzés is itt, karakterenként történik.
+     */
+    private static final class Parser {
+        private final String text;
+        private final Compiler compiler;
+        private int pos;
+
+        Parser(final String text, final Compiler compiler) {
+            this.text = text;
+            this.compiler = compiler;
+        }
+
+        Condition expression() {
+            Condition set = or();
+            if (!keyword("until")) return set;
+            Condition reset = or();
+            return new Latch(set, reset, compiler.latches++);
+        }
+
+        private Condition or() {
+            List<Condition> operands = new ArrayList<>();
+            operands.add(and());
+            while (keyword("or")) operands.add(and());
+            return operands.size() == 1 ? operands.get(0) : new Or(operands.toArray(Condition[]::new));
+        }
+
+        private Condition and() {
+            List<Condition> operands = new ArrayList<>();
+            operands.add(unary());
+            while (keyword("and")) operands.add(unary());
+            return operands.size() == 1 ? operands.get(0) : new And(operands.toArray(Condition[]::new));
+        }
+
+        private Condition unary() {
+            if (keyword("not")) return new Not(unary());
+            Condition primary = primary();
+            if (keyword("for")) return new For(primary, duration(), compiler.durations++);
+            return primary;
+        }
+
+        private Condition primary() {
+            if (symbol("(")) {
+                Condition inner = expression();
+                expect(")");
+                return inner;
+            }
+            if (keyword("time")) {
+                expectKeyword("between");
+                int from = clock();
+                expectKeyword("and");
+                return new TimeWindow(from, clock());
+            }
+            if (keyword("rate")) {
+                expect("(");
+                int metric = metric();
+                expect(")");
+                int op = relation();
+                return new Rate(metric, op, number(), compiler.rates++);
+            }
+            int metric = metric();
+            int op = relation();
+            return new Compare(metric, op, number());
+        }
+
+        private int metric() {
+            String name = identifier();
+            for (Type type : Type.values()) {
+                if (type.getType().equalsIgnoreCase(name) || type.name().equalsIgnoreCase(name)) {
+                    compiler.metrics |= 1 << type.ordinal();
+                    return type.ordinal();
+                }
+            }
+            throw error("ismeretlen metrika '" + name + "'");
+        }
+
+        private int relation() {
+            skipSpaces();
+            if (symbol("<=")) return LE;
+            if (symbol(">=")) return GE;
+            if (symbol("==")) return EQ;
+            if (symbol("!=")) return NE;
+            if (symbol("<")) return LT;
+            if (symbol(">")) return GT;
+            throw error("relációs jelet vártam");
+        }
+
+        private double number() {
+            skipSpaces();
+            int start = pos;
+            if (pos < text.length() && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) pos++;
+            while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) pos++;
+            try {
+                return Double.parseDouble(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("számot vártam");
+            }
+        }
+
+        private long duration() {
+            skipSpaces();
+            int start = pos;
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) pos++;
+            if (start == pos || pos >= text.length()) throw error("időtartamot vártam (pl. 10m)");
+            long amount = Long.parseLong(text.substring(start, pos));
+            char unit = Character.toLowerCase(text.charAt(pos++));
+            return switch (unit) {
+                case 's' -> amount * 1_000L;
+                case 'm' -> amount * 60_000L;
+                case 'h' -> amount * 3_600_000L;
+                default -> {
+                    pos--;
+                    throw error("ismeretlen időegység '" + unit + "' (s, m, h)");
+                }
+            };
+        }
+
+        private int clock() {
+            skipSpaces();
+            int start = pos;
+            while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == ':')) pos++;
+            String[] parts = text.substring(start, pos).split(":");
+            try {
+                int hour = Integer.parseInt(parts[0]);
+                int minute = Integer.parseInt(parts[1]);
+                if (parts.length == 2 && hour >= 0 && hour <= 24 && minute >= 0 && minute < 60) {
+                    return Math.min(hour * 60 + minute, 24 * 60);
+                }
+            } catch (RuntimeException ignored) {
+                // lent jelezzük
+            }
+            pos = start;
+            throw error("időpontot vártam (ÓÓ:PP)");
+        }
+
+        private String identifier() {
+            skipSpaces();
+            int start = pos;
+            while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) pos++;
+            if (start == pos) throw error("metrikát vártam");
+            return text.substring(start, pos);
+        }
+
+        /**
+         * Elfogyasztja a kulcsszót, ha az következik (teljes szóként).
+         */
+        private boolean keyword(final String word) {
+            skipSpaces();
+            int end = pos + word.length();
+            if (end > text.length() || !text.regionMatches(true, pos, word, 0, word.length())) return false;
+            if (end < text.length() && (Character.isLetterOrDigit(text.charAt(end)) || text.charAt(end) == '_')) return false;
+            pos = end;
+            return true;
+        }
+
+        private boolean symbol(final String symbol) {
+            skipSpaces();
+            if (!text.startsWith(symbol, pos)) return false;
+            pos += symbol.length();
+            return true;
+        }
+
+        private void expectKeyword(final String word) {
+            if (!keyword(word)) throw error("'" + word + "' kulcsszót vártam");
+        }
+
+        private void expect(final String symbol) {
+            if (!symbol(symbol)) throw error("'" + symbol + "' jelet vártam");
+        }
+
+        void expectEnd() {
+            skipSpaces();
+            if (pos < text.length()) throw error("váratlan folytatás");
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        }
+
+        private IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException(String.format(Locale.ROOT,
+                    "Hibás feltétel '%s' a %d. karakternél: %s", text, pos + 1, message));
+        }
+    }
+}
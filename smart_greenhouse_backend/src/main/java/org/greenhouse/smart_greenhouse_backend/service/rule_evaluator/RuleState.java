@@ -0,0 +1,42 @@
+package org.greenhouse.smart_greenhouse_backend.service.rule_evaluator;
+
+import java.util.Arrays;
+
+/**
+ * Egy üvegház kifejezés alapú szabályainak állapota egy adott lefordított tervhez ({@link CompiledRules}).
+ * <p>
+ * Az állapotot igénylő csomópontok (tartósság, hiszterézis, változási sebesség) fordításkor kapnak
+ * egy-egy rést a primitív tömbökben, így kiértékeléskor nincs foglalás és nincs keresés.
+ * Egy állapotot egyszerre csak egy szál értékelhet ki (üvegházanként sorosan).
+ */
+public final class RuleState {
+
+    /** a rés még nem kapott értéket */
+    static final long NONE = Long.MIN_VALUE;
+
+    private final CompiledRules rules;
+    /** {@code for}: mióta teljesül folyamatosan a feltétel (epoch ms) */
+    final long[] since;
+    /** {@code until}: a retesz be van-e kapcsolva */
+    final boolean[] latched;
+    /** {@code rate()}: az előző mért érték és időpontja */
+    final double[] previous;
+    final long[] previousAt;
+
+    RuleState(final CompiledRules rules, final int durations, final int latches, final int rates) {
+        this.rules = rules;
+        this.since = new long[durations];
+        this.latched = new boolean[latches];
+        this.previous = new double[rates];
+        this.previousAt = new long[rates];
+        Arrays.fill(since, NONE);
+        Arrays.fill(previousAt, NONE);
+    }
+
+    /**
+     * Ehhez a tervhez tartozik-e az állapot (profilváltozás után a rések kiosztása más lehet).
+     */
+    boolean belongsTo(final CompiledRules rules) {
+        return this.rules == rules;
+    }
+}
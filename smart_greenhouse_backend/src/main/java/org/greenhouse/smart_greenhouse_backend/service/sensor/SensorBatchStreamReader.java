@@ -0,0 +1,112 @@
+package org.greenhouse.smart_greenhouse_backend.service.sensor;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult.Item;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult.Status;
+import org.greenhouse.smart_greenhouse_backend.model.documents.SensorData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kötegelt szenzoradat beolvasása JSON tömbből, NDJSON folyamból vagy a {@link SensorBinaryCodec}
+ * bináris formátumából, olvasás közben mentve.
+ * <p>
+ * A kérés törzsét nem olvassuk be egyben: {@code sensor.batch.chunk-size} tételenként adjuk át
+ * a {@link SensorService#ingestBatch}-nek, így egy hosszú folyam memóriaigénye is korlátos, és
+ * mindhárom formátum ugyanazon az ellenőrzésen és mentésen megy át.
+ * Egy nem leképezhető JSON tétel (pl. szöveg a szám helyén) csak az adott tételt érvényteleníti;
+ * szintaktikai hiba vagy csonka bináris adat után a folyam nem folytatható, ott a beolvasás megáll.
+ */
+@Component
+public class SensorBatchStreamReader {
+
+    private final SensorService sensorService;
+    private final ObjectReader reader;
+    private final int chunkSize;
+
+    public SensorBatchStreamReader(final SensorService sensorService,
+                                   final ObjectMapper objectMapper,
+                                   @Value("${sensor.batch.chunk-size:1000}") final int chunkSize) {
+        this.sensorService = sensorService;
+        this.reader = objectMapper.readerFor(SensorData.class);
+        this.chunkSize = chunkSize;
+    }
+
+    public SensorBatchResult ingest(final InputStream body) throws IOException {
+        Batch batch = new Batch();
+        try (MappingIterator<SensorData> items = reader.readValues(body)) {
+            while (true) {
+                try {
+                    if (!items.hasNextValue()) break;
+                    batch.add(items.nextValue());
+                } catch (JsonParseException e) {
+                    batch.invalid("Hibás JSON: " + e.getOriginalMessage());
+                    break;
+                } catch (JsonMappingException e) {
+                    batch.invalid("Nem értelmezhető tétel: " + e.getOriginalMessage());
+                }
+            }
+        }
+        return batch.finish();
+    }
+
+    public SensorBatchResult ingestBinary(final InputStream body) throws IOException {
+        Batch batch = new Batch();
+        try {
+            SensorBinaryCodec.Reader items = new SensorBinaryCodec.Reader(body);
+            while (items.hasNext()) {
+                batch.add(items.next());
+            }
+        } catch (IOException e) {
+            batch.invalid("Hibás bináris köteg: " + e.getMessage());
+        }
+        return batch.finish();
+    }
+
+    /**
+     * Egy beküldés gyűjtője: a tételeket részkötegenként menti, és az eredményeket
+     * a beküldés szerinti indexszel fűzi össze.
+     */
+    private final class Batch {
+        private final SensorBatchResult result = new SensorBatchResult();
+        private final List<SensorData> chunk = new ArrayList<>(chunkSize);
+        private final List<Integer> positions = new ArrayList<>(chunkSize);
+        private int index;
+
+        void add(SensorData data) {
+            chunk.add(data);
+            positions.add(index++);
+            if (chunk.size() == chunkSize) flush();
+        }
+
+        void invalid(String error) {
+            result.add(new Item(index++, Status.INVALID, null, error));
+        }
+
+        SensorBatchResult finish() {
+            flush();
+            result.getItems().sort((a, b) -> Integer.compare(a.index(), b.index()));
+            return result;
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) return;
+            SensorBatchResult part = sensorService.ingestBatch(chunk);
+            for (Item item : part.getItems()) {
+                result.add(new Item(positions.get(item.index()), item.status(), item.id(), item.error()));
+            }
+            chunk.clear();
+            positions.clear();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.greenhouse.smart_greenhouse_backend.service.sensor;
+
+import org.greenhouse.smart_greenhouse_backend.model.documents.SensorData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tömör bináris formátum szenzoradat-kötegekhez ({@value #CONTENT_TYPE}).
+ * <pre>
+ * fejléc:   'S' 'G' verzió(1)
+ * szótár:   varint N, majd N × (varint hossz, UTF-8 bájtok)   – szenzor- és üvegházkódok
+ * alapidő:  varint epoch ms
+ * tételek:  varint darab, majd tételenként:
+ *   varint  üvegház szótárindex + 1 (0 = nincs)
+ *   varint  szenzorkód szótárindex
+ *   zigzag  időbélyeg eltérése az alapidőtől (ms)
+ *   bájt    jelenlévő értékek bitmaszkja (1 hőmérséklet, 2 páratartalom, 4 talajnedvesség, 8 szél)
+ *   zigzag  minden jelenlévő érték × 100, egészre kerekítve (két tizedes pontosság)
+ * </pre>
+ * Egy tipikus mérés így 10–15 bájt, a JSON ~150 bájtja helyett. A dekódoló közvetlenül
+ * {@link SensorData}-t állít elő, köztes fa nélkül, saját pufferből olvasva.
+ */
+public final class SensorBinaryCodec {
+
+    public static final String CONTENT_TYPE = "application/x-sensor-batch";
+
+    static final int VERSION = 1;
+    static final int MAX_DICTIONARY_SIZE = 65_536;
+    static final int MAX_STRING_BYTES = 256;
+    private static final double SCALE = 100.0;
+    /** az elfogadott időbélyegek határai (négyjegyű év, ahogy a JSON és a Mongo kezeli) */
+    static final long MIN_TIMESTAMP = Instant.parse("0000-01-01T00:00:00Z").toEpochMilli();
+    static final long MAX_TIMESTAMP = Instant.parse("9999-12-31T23:59:59.999Z").toEpochMilli();
+
+    private static final int TEMPERATURE = 1;
+    private static final int HUMIDITY = 2;
+    private static final int SOIL_MOISTURE = 4;
+    private static final int WIND_SPEED = 8;
+
+    private SensorBinaryCodec() {
+    }
+
+    /**
+     * Köteg kódolása (átjárók, tesztek és mérések számára).
+     */
+    public static byte[] encode(final List<SensorData> readings) {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> entries = new ArrayList<>();
+        long base = Long.MAX_VALUE;
+        for (SensorData data : readings) {
+            intern(dictionary, entries, data.getCode());
+            if (data.getGreenhouseCode() != null) intern(dictionary, entries, data.getGreenhouseCode());
+            if (data.getTimestamp() != null) base = Math.min(base, data.getTimestamp().toEpochMilli());
+        }
+        if (base == Long.MAX_VALUE) base = Instant.now().toEpochMilli();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + readings.size() * 16);
+        out.write('S');
+        out.write('G');
+        out.write(VERSION);
+        writeVarint(out, entries.size());
+        for (String entry : entries) {
+            byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.writeBytes(bytes);
+        }
+        writeVarint(out, base);
+        writeVarint(out, readings.size());
+        for (SensorData data : readings) {
+            writeVarint(out, data.getGreenhouseCode() == null ? 0 : dictionary.get(data.getGreenhouseCode()) + 1);
+            writeVarint(out, dictionary.get(data.getCode()));
+            long timestamp = data.getTimestamp() == null ? base : data.getTimestamp().toEpochMilli();
+            writeVarint(out, zigzag(timestamp - base));
+            int mask = (data.getTemperature() != null ? TEMPERATURE : 0)
+                    | (data.getHumidity() != null ? HUMIDITY : 0)
+                    | (data.getSoilMoisture() != null ? SOIL_MOISTURE : 0)
+                    | (data.getWindSpeed() != null ? WIND_SPEED : 0);
+            out.write(mask);
+            writeValue(out, data.getTemperature());
+            writeValue(out, data.getHumidity());
+            writeValue(out, data.getSoilMoisture());
+            writeValue(out, data.getWindSpeed());
+        }
+        return out.toByteArray();
+    }
+
+    private static void intern(Map<String, Integer> dictionary, List<String> entries, String value) {
+        if (value == null) throw new IllegalArgumentException("A szenzor kódja kötelező");
+        dictionary.computeIfAbsent(value, v -> {
+            entries.add(v);
+            return entries.size() - 1;
+        });
+    }
+
+    private static void writeValue(ByteArrayOutputStream out, Double value) {
+        if (value == null) return;
+        if (!Double.isFinite(value)) throw new IllegalArgumentException("Nem véges mért érték: " + value);
+        writeVarint(out, zigzag(Math.round(value * SCALE)));
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Folyamatos dekódoló: a fejlécet és a szótárat létrehozáskor olvassa be, a tételeket
+     * egyenként adja vissza. Hibás vagy csonka adatnál {@link IOException}-t dob.
+     */
+    public static final class Reader {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+        private int limit;
+
+        private final String[] dictionary;
+        private final long base;
+        private final long count;
+        private long read;
+
+        public Reader(final InputStream in) throws IOException {
+            this.in = in;
+            if (readByte() != 'S' || readByte() != 'G') throw new IOException("Nem szenzor köteg (hibás fejléc)");
+            int version = readByte();
+            if (version != VERSION) throw new IOException("Nem támogatott verzió: " + version);
+
+            long size = readVarint();
+            if (size > MAX_DICTIONARY_SIZE) throw new IOException("Túl nagy szótár: " + size);
+            dictionary = new String[(int) size];
+            for (int i = 0; i < size; i++) {
+                dictionary[i] = readString();
+            }
+            base = readVarint();
+            count = readVarint();
+        }
+
+        public boolean hasNext() {
+            return read < count;
+        }
+
+        public SensorData next() throws IOException {
+            if (!hasNext()) throw new EOFException("Nincs több tétel");
+            read++;
+            long greenhouse = readVarint();
+            String code = entry(readVarint());
+            long timestamp = timestamp(unzigzag(readVarint()));
+            int mask = readByte();
+            return SensorData.builder()
+                    .greenhouseCode(greenhouse == 0 ? null : entry(greenhouse - 1))
+                    .code(code)
+                    .timestamp(Instant.ofEpochMilli(timestamp))
+                    .temperature((mask & TEMPERATURE) != 0 ? readValue() : null)
+                    .humidity((mask & HUMIDITY) != 0 ? readValue() : null)
+                    .soilMoisture((mask & SOIL_MOISTURE) != 0 ? readValue() : null)
+                    .windSpeed((mask & WIND_SPEED) != 0 ? readValue() : null)
+                    .build();
+        }
+
+        private long timestamp(long delta) throws IOException {
+            long timestamp;
+            try {
+                timestamp = Math.addExact(base, delta);
+            } catch (ArithmeticException e) {
+                throw new IOException("Hibás időbélyeg: túlcsordulás (alap " + base + ", eltérés " + delta + ")");
+            }
+            if (timestamp < MIN_TIMESTAMP || timestamp > MAX_TIMESTAMP) {
+                throw new IOException("Hibás időbélyeg: " + timestamp + " ms a megengedett tartományon kívül");
+            }
+            return timestamp;
+        }
+
+        private String entry(long index) throws IOException {
+            if (index < 0 || index >= dictionary.length) throw new IOException("Hibás szótárindex: " + index);
+            return dictionary[(int) index];
+        }
+
+        private Double readValue() throws IOException {
+            return unzigzag(readVarint()) / SCALE;
+        }
+
+        private String readString() throws IOException {
+            long length = readVarint();
+            if (length > MAX_STRING_BYTES) throw new IOException("Túl hosszú szótárelem: " + length);
+            byte[] bytes = new byte[(int) length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) readByte();
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("Hibás varint");
+        }
+
+        private int readByte() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    throw new EOFException("Csonka köteg");
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
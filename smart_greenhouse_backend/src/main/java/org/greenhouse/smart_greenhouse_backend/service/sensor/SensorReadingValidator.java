@@ -0,0 +1,49 @@
+package org.greenhouse.smart_greenhouse_backend.service.sensor;
+
+import org.greenhouse.smart_greenhouse_backend.model.documents.SensorData;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Egy beérkező mérés ellenőrzése kötegelt beküldéshez.
+ * <p>
+ * Szándékosan egyszerű mezőellenőrzés (nem Bean Validation), mert kötegenként több ezer
+ * tételre fut le; az első hibát adja vissza szövegesen, vagy {@code null}-t, ha a mérés rendben van.
+ */
+final class SensorReadingValidator {
+
+    static final int MAX_CODE_LENGTH = 64;
+    /** Ennél távolabbi jövőbeli időbélyeget (órahiba az átjárón) nem fogadunk el. */
+    static final Duration MAX_FUTURE_SKEW = Duration.ofMinutes(5);
+
+    private SensorReadingValidator() {
+    }
+
+    static String validate(final SensorData data, final Instant now) {
+        if (data == null) return "Üres mérés";
+        String code = data.getCode();
+        if (code == null || code.isBlank()) return "A szenzor kódja kötelező";
+        if (code.length() > MAX_CODE_LENGTH) return "A szenzor kódja túl hosszú";
+        if (data.getTimestamp() != null && data.getTimestamp().isAfter(now.plus(MAX_FUTURE_SKEW))) {
+            return "Az időbélyeg a jövőben van";
+        }
+        if (data.getTemperature() == null && data.getHumidity() == null
+                && data.getSoilMoisture() == null && data.getWindSpeed() == null) {
+            return "Legalább egy mért érték kötelező";
+        }
+        String error = range("temperature", data.getTemperature(), -60, 90);
+        if (error == null) error = range("humidity", data.getHumidity(), 0, 100);
+        if (error == null) error = range("soilMoisture", data.getSoilMoisture(), 0, 100);
+        if (error == null) error = range("windSpeed", data.getWindSpeed(), 0, 400);
+        return error;
+    }
+
+    private static String range(String field, Double value, double min, double max) {
+        if (value == null) return null;
+        if (value.isNaN() || value < min || value > max) {
+            return field + " a megengedett tartományon kívül esik (" + min + " – " + max + ")";
+        }
+        return null;
+    }
+}
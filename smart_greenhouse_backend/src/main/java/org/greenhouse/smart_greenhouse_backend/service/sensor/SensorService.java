@@ -1,7 +1,9 @@
 package org.greenhouse.smart_greenhouse_backend.service.sensor;
 
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult;
 import org.greenhouse.smart_greenhouse_backend.model.documents.SensorData;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface SensorService {
@@ -14,6 +16,15 @@ public interface SensorService {
      */
     SensorData ingest(SensorData data);
 
+    /**
+     * Több mérés ellenőrzése és mentése egyben, rendezetlen bulk beszúrással.
+     * A hibás tételek nem akadályozzák a többi mentését.
+     *
+     * @param readings a mérések a beküldés sorrendjében
+     * @return tételenkénti eredmény, a lista szerinti indexszel
+     */
+    SensorBatchResult ingestBatch(List<SensorData> readings);
+
     /**
      * Lekéri a legutolsó beérkezett szenzoradatot a szenzorra.
      *
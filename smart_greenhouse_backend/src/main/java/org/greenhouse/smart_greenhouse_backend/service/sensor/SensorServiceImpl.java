@@ -1,30 +1,173 @@
 package org.greenhouse.smart_greenhouse_backend.service.sensor;
 
-import lombok.RequiredArgsConstructor;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult.Item;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult.Status;
 import org.greenhouse.smart_greenhouse_backend.model.documents.SensorData;
 import org.greenhouse.smart_greenhouse_backend.repository.SensorDataRepository;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricsChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Szenzoradatok kezelése.
+ * <p>
+ * A legutolsó mérést szenzorkódonként memóriában tartjuk ({@link #latestByCode}), az {@code ingest}
+ * naprakészen tartja. Ha egy kód még nincs benne (pl. újraindulás után), egyetlen, a
+ * {code: 1, timestamp: -1} indexre támaszkodó lekérdezéssel töltjük be, így a
+ * {@code /api/sensors/latest/{sensorCode}} válaszideje nem függ az előzmények mennyiségétől.
+ * A más példányon történt beküldést, módosítást vagy törlést a helyi tároló nem látja, ezért egy
+ * bejegyzést legfeljebb {@code sensor.latest.cache-ttl} ideig adunk ki újraellenőrzés nélkül.
+ * <p>
+ * Kötegelt beküldésnél a méréseket egyben ellenőrizzük, az azonosítót mi adjuk ki, és
+ * {@code sensor.batch.chunk-size} méretű rendezetlen bulk beszúrásokkal mentjük.
+ * <p>
+ * A {@code code} + {@code timestamp} egyedi (lásd {@code TimeSeriesCollectionsInitializer}), így az
+ * ismételten beküldött mérés nem kerül be kétszer: kötegben {@code DUPLICATE} állapotot kap,
+ * egyenként a már mentett mérést adjuk vissza.
+ * <p>
+ * Minden sikeresen mentett, üvegházhoz tartozó mérés {@link MetricsChangedEvent}-et küld, így a szabályok
+ * a negyedórás teljes bejárás ({@code greenhouse.rules.sweep-interval}) helyett azonnal lefutnak rá.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class SensorServiceImpl implements SensorService {
 
+    private static final int DUPLICATE_KEY = 11000;
+
     private final SensorDataRepository sensorDataRepository;
+    private final MongoTemplate mongoTemplate;
+    private final Duration latestMaxAge;
+    private final long latestCacheTtlNanos;
+    private final int batchChunkSize;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<String, Latest> latestByCode = new ConcurrentHashMap<>();
+
+    public SensorServiceImpl(final SensorDataRepository sensorDataRepository,
+                             final MongoTemplate mongoTemplate,
+                             @Value("${sensor.latest.max-age:P7D}") final Duration latestMaxAge,
+                             @Value("${sensor.latest.cache-ttl:PT5S}") final Duration latestCacheTtl,
+                             @Value("${sensor.batch.chunk-size:1000}") final int batchChunkSize,
+                             final ApplicationEventPublisher eventPublisher) {
+        this.sensorDataRepository = sensorDataRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.latestMaxAge = latestMaxAge;
+        this.latestCacheTtlNanos = latestCacheTtl.toNanos();
+        this.batchChunkSize = batchChunkSize;
+        this.eventPublisher = eventPublisher;
+    }
 
     @Override
     public SensorData ingest(SensorData data) {
         if (data.getTimestamp() == null) data.setTimestamp(Instant.now());
-        return sensorDataRepository.save(data);
+        SensorData saved;
+        try {
+            saved = sensorDataRepository.save(data);
+        } catch (DuplicateKeyException e) {
+            // ugyanez a mérés (kód + időbélyeg) már bent van: ismételt beküldés, a meglévőt adjuk vissza
+            return sensorDataRepository.findFirstByCodeAndTimestamp(data.getCode(), data.getTimestamp())
+                    .orElseThrow(() -> e);
+        }
+        // visszatöltött vagy sorrenden kívül érkező régebbi mérés nem írhatja felül az élő állapotot
+        if (remember(saved)) publish(saved);
+        return saved;
+    }
+
+    @Override
+    public SensorBatchResult ingestBatch(final List<SensorData> readings) {
+        Instant now = Instant.now();
+        Item[] items = new Item[readings.size()];
+        List<SensorData> valid = new ArrayList<>(readings.size());
+        List<Integer> positions = new ArrayList<>(readings.size());
+
+        for (int i = 0; i < readings.size(); i++) {
+            SensorData data = readings.get(i);
+            String error = SensorReadingValidator.validate(data, now);
+            if (error != null) {
+                items[i] = new Item(i, Status.INVALID, data == null ? null : data.getId(), error);
+                continue;
+            }
+            if (data.getTimestamp() == null) data.setTimestamp(now);
+            if (data.getId() == null) data.setId(new ObjectId().toHexString());
+            valid.add(data);
+            positions.add(i);
+        }
+
+        for (int from = 0; from < valid.size(); from += batchChunkSize) {
+            int to = Math.min(valid.size(), from + batchChunkSize);
+            insertChunk(valid.subList(from, to), positions.subList(from, to), items);
+        }
+
+        SensorBatchResult result = new SensorBatchResult();
+        for (Item item : items) result.add(item);
+        return result;
+    }
+
+    /**
+     * Egy részköteg beszúrása. Rendezetlen módban a hibátlan tételek akkor is bekerülnek,
+     * ha mások elbuknak; a hibákat a részkötegen belüli index alapján rendeljük vissza.
+     */
+    private void insertChunk(List<SensorData> chunk, List<Integer> positions, Item[] items) {
+        Item[] failures = new Item[chunk.size()];
+        try {
+            mongoTemplate.bulkOps(BulkMode.UNORDERED, SensorData.class).insert(chunk).execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                int index = error.getIndex();
+                Status status = error.getCode() == DUPLICATE_KEY ? Status.DUPLICATE : Status.FAILED;
+                failures[index] = new Item(positions.get(index), status, chunk.get(index).getId(), error.getMessage());
+            }
+        } catch (DataAccessException e) {
+            log.warn("Szenzoradat köteg mentése sikertelen ({} tétel): {}", chunk.size(), e.getMessage());
+            for (int i = 0; i < chunk.size(); i++) {
+                failures[i] = new Item(positions.get(i), Status.FAILED, chunk.get(i).getId(), e.getMessage());
+            }
+        }
+
+        for (int i = 0; i < chunk.size(); i++) {
+            SensorData data = chunk.get(i);
+            if (failures[i] != null) {
+                items[positions.get(i)] = failures[i];
+            } else {
+                items[positions.get(i)] = new Item(positions.get(i), Status.CREATED, data.getId(), null);
+                if (remember(data)) publish(data);
+            }
+        }
+    }
+
+    private void publish(final SensorData data) {
+        MetricsChangedEvent event = MetricsChangedEvent.of(data);
+        if (event != null) eventPublisher.publishEvent(event);
     }
 
     @Override
     public Optional<SensorData> latest(final String sensorCode) {
-        return sensorDataRepository.findByCodeAndTimestampAfter(sensorCode, Instant.now().minusSeconds(7 * 24 * 3600))
-                .stream().sorted((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()))
-                .findFirst();
+        Latest cached = latestByCode.get(sensorCode);
+        SensorData latest = cached != null && System.nanoTime() - cached.cachedAt() < latestCacheTtlNanos
+                ? cached.data()
+                : reload(sensorCode);
+        if (latest == null || latest.getTimestamp().isBefore(Instant.now().minus(latestMaxAge))) {
+            return Optional.empty();
+        }
+        return Optional.of(latest);
     }
 
     @Override
@@ -38,6 +181,9 @@ public class SensorServiceImpl implements SensorService {
             existSensor.setSoilMoisture(sensor.getSoilMoisture());
             existSensor.setWindSpeed(sensor.getWindSpeed());
             sensorDataRepository.save(existSensor);
+            // a módosított mérés bármelyik kód legutolsó értékét érintheti: legközelebb újratöltjük
+            latestByCode.remove(sensorCode);
+            if (sensor.getCode() != null) latestByCode.remove(sensor.getCode());
         } else {
             throw new RuntimeException("Sensor not found: " + sensorCode);
         }
@@ -46,6 +192,35 @@ public class SensorServiceImpl implements SensorService {
     @Override
     public void deleteByIdAndGreenhouseCode(final String sensorId, final String greenhouseCode) {
         sensorDataRepository.deleteByIdAndGreenhouseCode(sensorId, greenhouseCode);
+        latestByCode.values().removeIf(cached -> sensorId.equals(cached.data().getId()));
+    }
+
+    /**
+     * A mérés eltárolása a legutolsó értékek között, ha frissebb az ott lévőnél
+     * (a sorrenden kívül érkező régebbi mérés nem írja felül az újabbat).
+     *
+     * @return igaz, ha a mérés lett a kód legutolsó értéke
+     */
+    private boolean remember(SensorData data) {
+        if (data == null || data.getCode() == null || data.getTimestamp() == null) return false;
+        Latest candidate = new Latest(data, System.nanoTime());
+        Latest latest = latestByCode.merge(data.getCode(), candidate,
+                (current, next) -> next.data().getTimestamp().isBefore(current.data().getTimestamp()) ? current : next);
+        return latest == candidate;
+    }
+
+    /**
+     * A legutolsó mérés újratöltése a Mongóból. Az ott lévő érték felülírja a tárolt bejegyzést (más példány
+     * törölhette vagy módosíthatta), kivéve, ha a lekérdezés indulása után helyben frissebb mérés érkezett.
+     */
+    private SensorData reload(final String sensorCode) {
+        long queriedAt = System.nanoTime();
+        SensorData stored = sensorDataRepository.findFirstByCodeOrderByTimestampDesc(sensorCode).orElse(null);
+        Latest result = latestByCode.compute(sensorCode, (code, current) -> {
+            if (current != null && current.cachedAt() - queriedAt >= 0) return current;
+            return stored == null || stored.getTimestamp() == null ? null : new Latest(stored, System.nanoTime());
+        });
+        return result == null ? null : result.data();
     }
 
     private SensorData getByCode(final String sensorCode) {
@@ -53,4 +228,7 @@ public class SensorServiceImpl implements SensorService {
                 .orElseThrow(() -> new RuntimeException("Sensor not found: " + sensorCode));
 
     }
-}
\ No newline at end of file
+
+    /** A legutolsó mérés és a tárolásának ideje ({@link System#nanoTime()}). */
+    private record Latest(SensorData data, long cachedAt) {}
+}
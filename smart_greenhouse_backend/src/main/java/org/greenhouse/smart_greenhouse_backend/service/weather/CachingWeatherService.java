@@ -0,0 +1,161 @@
+package org.greenhouse.smart_greenhouse_backend.service.weather;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
+import org.springframework.scheduling.annotation.Scheduled;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gyorsítótár a {@link WeatherService} előtt.
+ * <p>
+ * Az aktuális időjárást helykulcs ({@link WeatherLocationKey}) szerint tárolja
+ * {@code ttl} ideig. Az azonos kulcsra egyszerre érkező kérések egyetlen, közös
+ * külső hívásra várnak. Hiba vagy üres válasz nem kerül a tárba.
+ * Minden hívó saját másolatot kap, mert a hívók módosítják a DTO-t (city, timestamp).
+ */
+@Slf4j
+public class CachingWeatherService implements WeatherService {
+
+    private final WeatherService delegate;
+    private final Clock clock;
+    private final Duration ttl;
+    private final WeatherLocationKey.Mode keyMode;
+    private final double cellDeg;
+
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+
+    public CachingWeatherService(final WeatherService delegate,
+                                 final MeterRegistry meterRegistry,
+                                 final Clock clock,
+                                 final Duration ttl,
+                                 final WeatherLocationKey.Mode keyMode,
+                                 final double cellDeg) {
+        this.delegate = delegate;
+        this.clock = clock;
+        this.ttl = ttl;
+        this.keyMode = keyMode;
+        this.cellDeg = cellDeg;
+
+        this.hitCounter = Counter.builder("weather.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.missCounter = Counter.builder("weather.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.evictionCounter = Counter.builder("weather.cache.evictions").register(meterRegistry);
+        Gauge.builder("weather.cache.size", current, Map::size).register(meterRegistry);
+    }
+
+    @Override
+    public Mono<WeatherDto> fetchForLocation(final String city, final Double lat, final Double lon) {
+        String key = WeatherLocationKey.of(city, lat, lon, keyMode, cellDeg);
+        Instant now = clock.instant();
+
+        Entry entry = current.get(key);
+        if (entry != null && now.isBefore(entry.expiresAt())) {
+            recordHit();
+            return entry.value().map(CachingWeatherService::copy);
+        }
+
+        AtomicReference<Entry> created = new AtomicReference<>();
+        Entry resolved = current.compute(key, (k, old) -> {
+            if (old != null && now.isBefore(old.expiresAt())) {
+                // egy másik szál közben már frissítette
+                return old;
+            }
+            if (old != null) recordEviction();
+            Entry fresh = load(k, city, lat, lon, now);
+            created.set(fresh);
+            return fresh;
+        });
+
+        if (created.get() == resolved) {
+            recordMiss();
+        } else {
+            recordHit();
+        }
+        return resolved.value().map(CachingWeatherService::copy);
+    }
+
+    @Override
+    public Flux<WeatherDto> fetchForecastForLocation(final String city, final Double lat, final Double lon) {
+        return delegate.fetchForecastForLocation(city, lat, lon);
+    }
+
+    /**
+     * A lejárt bejegyzések eltávolítása, hogy a már nem használt helyek ne maradjanak a memóriában.
+     */
+    @Scheduled(fixedDelayString = "${weather.cache.ttl:PT10M}")
+    public void evictExpired() {
+        Instant now = clock.instant();
+        current.forEach((key, entry) -> {
+            if (!now.isBefore(entry.expiresAt()) && current.remove(key, entry)) {
+                recordEviction();
+            }
+        });
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), current.size());
+    }
+
+    private Entry load(String key, String city, Double lat, Double lon, Instant now) {
+        AtomicReference<Entry> self = new AtomicReference<>();
+        Mono<WeatherDto> shared = delegate.fetchForLocation(city, lat, lon)
+                .doOnError(e -> {
+                    log.debug("Időjárás lekérés hiba a(z) {} kulcsra, nem tároljuk: {}", key, e.getMessage());
+                    current.remove(key, self.get());
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    current.remove(key, self.get());
+                    return Mono.empty();
+                }))
+                .cache();
+        Entry entry = new Entry(shared, now.plus(ttl));
+        self.set(entry);
+        return entry;
+    }
+
+    private void recordHit() {
+        hits.increment();
+        hitCounter.increment();
+    }
+
+    private void recordMiss() {
+        misses.increment();
+        missCounter.increment();
+    }
+
+    private void recordEviction() {
+        evictions.increment();
+        evictionCounter.increment();
+    }
+
+    private static WeatherDto copy(WeatherDto dto) {
+        return dto.toBuilder().build();
+    }
+
+    private record Entry(Mono<WeatherDto> value, Instant expiresAt) {
+    }
+
+    /**
+     * A gyorsítótár számlálói.
+     */
+    public record CacheStats(long hits, long misses, long evictions, int size) {
+    }
+}
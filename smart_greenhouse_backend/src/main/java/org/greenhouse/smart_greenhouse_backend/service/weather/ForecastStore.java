@@ -0,0 +1,168 @@
+package org.greenhouse.smart_greenhouse_backend.service.weather;
+
+import lombok.extern.slf4j.Slf4j;
+import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ForecastSlot;
+import org.greenhouse.smart_greenhouse_backend.model.documents.WeatherForecast;
+import org.greenhouse.smart_greenhouse_backend.repository.WeatherForecastRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Helyenként egyszer lekért, MongoDB-ben is tárolt előrejelzés.
+ * <p>
+ * Az OpenWeather {@code /forecast} adatai {@code refreshWindow} időközönként
+ * (alapból 3 óra) frissülnek, ezért egy lekért előrejelzés a következő
+ * ablakhatárig érvényes. Addig a tervgenerálás és a {@code /weather/forecast}
+ * végpont is ugyanazt az adatot kapja. A tárolt példány túléli az újraindítást,
+ * és ha a frissítés nem sikerül, az utolsó ismert előrejelzést adjuk vissza.
+ * Az aktuális időjárás lekérését változtatás nélkül továbbadja.
+ */
+@Slf4j
+public class ForecastStore implements WeatherService {
+
+    private final WeatherService delegate;
+    private final WeatherForecastRepository repository;
+    private final Clock clock;
+    private final Duration refreshWindow;
+    private final WeatherLocationKey.Mode keyMode;
+    private final double cellDeg;
+
+    /** helykulcs → érvényes előrejelzés vagy folyamatban lévő betöltés */
+    private final Map<String, Entry> loaded = new ConcurrentHashMap<>();
+
+    public ForecastStore(final WeatherService delegate,
+                         final WeatherForecastRepository repository,
+                         final Clock clock,
+                         final Duration refreshWindow,
+                         final WeatherLocationKey.Mode keyMode,
+                         final double cellDeg) {
+        this.delegate = delegate;
+        this.repository = repository;
+        this.clock = clock;
+        this.refreshWindow = refreshWindow;
+        this.keyMode = keyMode;
+        this.cellDeg = cellDeg;
+    }
+
+    @Override
+    public Mono<WeatherDto> fetchForLocation(final String city, final Double lat, final Double lon) {
+        return delegate.fetchForLocation(city, lat, lon);
+    }
+
+    @Override
+    public Flux<WeatherDto> fetchForecastForLocation(final String city, final Double lat, final Double lon) {
+        String key = WeatherLocationKey.of(city, lat, lon, keyMode, cellDeg);
+        Instant now = clock.instant();
+
+        Entry entry = loaded.compute(key, (k, existing) -> {
+            if (existing != null && (existing.ready == null || now.isBefore(existing.ready.getValidUntil()))) {
+                // folyamatban lévő vagy még érvényes betöltés: közösen használjuk
+                return existing;
+            }
+            return new Entry(k, city, lat, lon);
+        });
+
+        return entry.value
+                .flatMapIterable(WeatherForecast::getSlots)
+                .map(ForecastStore::toDto);
+    }
+
+    private Mono<WeatherForecast> load(Entry entry) {
+        return Mono.fromCallable(() -> repository.findById(entry.key))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(stored -> {
+                    if (stored.isPresent() && clock.instant().isBefore(stored.get().getValidUntil())) {
+                        return Mono.just(stored.get());
+                    }
+                    return refresh(entry, stored);
+                })
+                .doOnSuccess(forecast -> {
+                    if (forecast == null) loaded.remove(entry.key, entry);
+                    else entry.ready = forecast;
+                })
+                .doOnError(e -> loaded.remove(entry.key, entry));
+    }
+
+    private Mono<WeatherForecast> refresh(Entry entry, Optional<WeatherForecast> stale) {
+        return delegate.fetchForecastForLocation(entry.city, entry.lat, entry.lon)
+                .map(ForecastStore::toSlot)
+                .collectList()
+                .filter(slots -> !slots.isEmpty())
+                .publishOn(Schedulers.boundedElastic())
+                .map(slots -> {
+                    Instant now = clock.instant();
+                    WeatherForecast forecast = WeatherForecast.builder()
+                            .id(entry.key)
+                            .city(entry.city)
+                            .lat(entry.lat)
+                            .lon(entry.lon)
+                            .fetchedAt(now)
+                            .validUntil(nextWindowBoundary(now))
+                            .slots(slots)
+                            .build();
+                    return repository.save(forecast);
+                })
+                .onErrorResume(e -> {
+                    if (stale.isEmpty()) return Mono.error(e);
+                    log.warn("Előrejelzés frissítése sikertelen ({}), a {} óta tárolt adatot használjuk: {}",
+                            entry.key, stale.get().getFetchedAt(), e.getMessage());
+                    return Mono.just(stale.get());
+                })
+                .switchIfEmpty(Mono.defer(() -> stale.map(Mono::just).orElseGet(Mono::empty)));
+    }
+
+    /**
+     * A következő szolgáltatói frissítési ablak kezdete (az epoch-hoz igazított {@code refreshWindow} többszöröse).
+     */
+    Instant nextWindowBoundary(Instant now) {
+        long windowMillis = refreshWindow.toMillis();
+        long next = (now.toEpochMilli() / windowMillis + 1) * windowMillis;
+        return Instant.ofEpochMilli(next);
+    }
+
+    private static ForecastSlot toSlot(WeatherDto dto) {
+        return new ForecastSlot(
+                dto.getTimestamp(),
+                dto.getTemperature(),
+                dto.getHumidity(),
+                dto.getWindSpeed(),
+                dto.getPrecipitationMm()
+        );
+    }
+
+    private static WeatherDto toDto(ForecastSlot slot) {
+        return WeatherDto.builder()
+                .timestamp(slot.at())
+                .temperature(slot.temperature())
+                .humidity(slot.humidity())
+                .windSpeed(slot.windSpeed())
+                .precipitationMm(slot.precipitationMm())
+                .build();
+    }
+
+    private final class Entry {
+        private final String key;
+        private final String city;
+        private final Double lat;
+        private final Double lon;
+        private final Mono<WeatherForecast> value;
+        private volatile WeatherForecast ready;
+
+        private Entry(String key, String city, Double lat, Double lon) {
+            this.key = key;
+            this.city = city;
+            this.lat = lat;
+            this.lon = lon;
+            this.value = load(this).cache();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.greenhouse.smart_greenhouse_backend.service.weather;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Az OpenWeather {@code /forecast} válaszának folyamatos (streaming) dekódolása.
+ * <p>
+ * A beérkező bájtokat a Jackson nem-blokkoló parserébe tölti, és a {@code list}
+ * tömb minden elemét már a tokenizálás közben {@link WeatherDto}-ként adja tovább.
+ * Nem épül fel sem a teljes válasz objektumfája, sem JSON fa: csak a szükséges
+ * mezőket (dt, main.temp, main.humidity, wind.speed, rain.3h) olvassa ki,
+ * a többi részfát átlépi.
+ */
+@Component
+public class ForecastStreamDecoder {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public Flux<WeatherDto> decode(final Flux<DataBuffer> body) {
+        return Flux.defer(() -> {
+            ForecastTokenizer tokenizer = new ForecastTokenizer(createParser());
+            return body
+                    .concatMapIterable(tokenizer::feed)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(tokenizer.finish())))
+                    .doFinally(signal -> tokenizer.close());
+        });
+    }
+
+    private JsonParser createParser() {
+        try {
+            return jsonFactory.createNonBlockingByteBufferParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Egy válasz tokenizálási állapota. Szintek: 1 = gyökér objektum,
+     * 2 = {@code list} tömb, 3 = előrejelzési elem, 4 = elem alobjektuma (main, wind, rain).
+     */
+    private static final class ForecastTokenizer {
+
+        private static final int LIST_DEPTH = 2;
+        private static final int ITEM_DEPTH = 3;
+        private static final int SECTION_DEPTH = 4;
+
+        private final JsonParser parser;
+        private final ByteBufferFeeder feeder;
+
+        private int depth;
+        private boolean inList;
+        private String field;
+        private String section;
+
+        private long dt;
+        private Double temperature;
+        private Double humidity;
+        private Double windSpeed;
+        private double precipitation;
+
+        private ForecastTokenizer(JsonParser parser) {
+            this.parser = parser;
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        private List<WeatherDto> feed(DataBuffer buffer) {
+            try {
+                List<WeatherDto> items = new ArrayList<>(2);
+                try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                    while (iterator.hasNext()) {
+                        ByteBuffer chunk = iterator.next();
+                        feeder.feedInput(chunk);
+                        drain(items);
+                    }
+                }
+                return items;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }
+
+        private List<WeatherDto> finish() {
+            try {
+                feeder.endOfInput();
+                List<WeatherDto> items = new ArrayList<>(1);
+                drain(items);
+                return items;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void close() {
+            try {
+                parser.close();
+            } catch (IOException ignored) {
+                // a parser csak memóriát foglal, zárási hiba nem érdekes
+            }
+        }
+
+        private void drain(List<WeatherDto> out) throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                switch (token) {
+                    case START_OBJECT -> startObject();
+                    case START_ARRAY -> startArray();
+                    case END_OBJECT -> endObject(out);
+                    case END_ARRAY -> endArray();
+                    case FIELD_NAME -> field = parser.currentName();
+                    case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> number();
+                    default -> {
+                        // string, bool, null: egyik szükséges mező sem ilyen
+                    }
+                }
+            }
+        }
+
+        private void startObject() {
+            depth++;
+            if (!inList) return;
+            if (depth == ITEM_DEPTH) {
+                resetItem();
+            } else if (depth == SECTION_DEPTH) {
+                section = field;
+            }
+        }
+
+        private void startArray() {
+            depth++;
+            if (depth == LIST_DEPTH && "list".equals(field)) {
+                inList = true;
+            }
+        }
+
+        private void endObject(List<WeatherDto> out) {
+            if (inList) {
+                if (depth == ITEM_DEPTH) {
+                    out.add(WeatherDto.builder()
+                            .timestamp(Instant.ofEpochSecond(dt))
+                            .temperature(temperature)
+                            .humidity(humidity)
+                            .windSpeed(windSpeed)
+                            .precipitationMm(precipitation)
+                            .build());
+                } else if (depth == SECTION_DEPTH) {
+                    section = null;
+                }
+            }
+            depth--;
+        }
+
+        private void endArray() {
+            if (inList && depth == LIST_DEPTH) {
+                inList = false;
+            }
+            depth--;
+        }
+
+        private void number() throws IOException {
+            if (!inList || field == null) return;
+            if (depth == ITEM_DEPTH) {
+                if ("dt".equals(field)) dt = parser.getLongValue();
+                return;
+            }
+            if (depth != SECTION_DEPTH || section == null) return;
+            switch (section) {
+                case "main" -> {
+                    if ("temp".equals(field)) temperature = parser.getDoubleValue();
+                    else if ("humidity".equals(field)) humidity = parser.getDoubleValue();
+                }
+                case "wind" -> {
+                    if ("speed".equals(field)) windSpeed = parser.getDoubleValue();
+                }
+                case "rain" -> {
+                    if ("3h".equals(field)) precipitation = parser.getDoubleValue();
+                }
+                default -> {
+                    // clouds, sys, ...: nem használjuk
+                }
+            }
+        }
+
+        private void resetItem() {
+            dt = 0L;
+            temperature = null;
+            humidity = null;
+            windSpeed = null;
+            precipitation = 0.0;
+            section = null;
+        }
+    }
+}
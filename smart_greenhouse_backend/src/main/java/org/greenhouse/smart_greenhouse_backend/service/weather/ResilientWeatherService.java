@@ -0,0 +1,152 @@
+package org.greenhouse.smart_greenhouse_backend.service.weather;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Hibatűrő réteg a közvetlen OpenWeather hívások körül.
+ * <p>
+ * Minden próbálkozásnak saját időkorlátja van ({@code callTimeout}). Az átmeneti hibákat
+ * (időtúllépés, kapcsolódási hiba, 5xx, 429) exponenciális, jitteres várakozással újrapróbálja,
+ * de csak amíg a {@link RetryBudget} engedi. A próbálkozások egy circuit breakeren mennek át:
+ * ha az upstream tartósan hibás, a hívások azonnal {@link CallNotPermittedException}-nel
+ * térnek vissza, a hívó pedig a tárolt adatra állhat át.
+ * <p>
+ * Az előrejelzést egy listába gyűjti, mert részben kiküldött elemsor után nem lehet
+ * biztonságosan újrapróbálni.
+ */
+@Slf4j
+public class ResilientWeatherService implements WeatherService {
+
+    private static final String OP_CURRENT = "current";
+    private static final String OP_FORECAST = "forecast";
+
+    private final WeatherService delegate;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryBudget retryBudget;
+    private final MeterRegistry meterRegistry;
+    private final Duration callTimeout;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+
+    public ResilientWeatherService(final WeatherService delegate,
+                                   final CircuitBreaker circuitBreaker,
+                                   final MeterRegistry meterRegistry,
+                                   final Duration callTimeout,
+                                   final int maxRetries,
+                                   final Duration retryBackoff,
+                                   final double retryBudgetRatio,
+                                   final int retryBudgetMax) {
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+        this.retryBudget = new RetryBudget(retryBudgetRatio, retryBudgetMax);
+        this.meterRegistry = meterRegistry;
+        this.callTimeout = callTimeout;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+
+        Gauge.builder("weather.client.retry.budget", retryBudget, RetryBudget::available).register(meterRegistry);
+    }
+
+    /**
+     * Circuit breaker beállítás: csak az upstream hibái számítanak bele (egy 404 nem az).
+     */
+    public static CircuitBreakerConfig breakerConfig(final float failureRateThreshold,
+                                                     final int slidingWindowSize,
+                                                     final int minimumNumberOfCalls,
+                                                     final Duration openDuration) {
+        return CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumNumberOfCalls)
+                .waitDurationInOpenState(openDuration)
+                .permittedNumberOfCallsInHalfOpenState(2)
+                .recordException(ResilientWeatherService::isTransient)
+                .build();
+    }
+
+    @Override
+    public Mono<WeatherDto> fetchForLocation(final String city, final Double lat, final Double lon) {
+        return protect(OP_CURRENT, delegate.fetchForLocation(city, lat, lon));
+    }
+
+    @Override
+    public Flux<WeatherDto> fetchForecastForLocation(final String city, final Double lat, final Double lon) {
+        return protect(OP_FORECAST, delegate.fetchForecastForLocation(city, lat, lon).collectList())
+                .flatMapIterable(items -> items);
+    }
+
+    private <T> Mono<T> protect(String operation, Mono<T> call) {
+        return Mono.defer(() -> {
+            retryBudget.deposit();
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return call
+                    .timeout(callTimeout)
+                    .doOnError(TimeoutException.class, e -> counter("weather.client.timeouts", operation).increment())
+                    .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                    .retryWhen(retrySpec(operation))
+                    .doOnSuccess(v -> sample.stop(timer(operation, "success")))
+                    .doOnError(e -> sample.stop(timer(operation,
+                            e instanceof CallNotPermittedException ? "rejected" : "failure")));
+        });
+    }
+
+    private Retry retrySpec(String operation) {
+        return Retry.backoff(maxRetries, retryBackoff)
+                .jitter(0.5)
+                .filter(e -> {
+                    if (!isTransient(e)) return false;
+                    if (retryBudget.tryWithdraw()) return true;
+                    counter("weather.client.retry.budget.exhausted", operation).increment();
+                    log.debug("Az újrapróbálkozási keret elfogyott ({}), nem próbáljuk újra: {}", operation, e.getMessage());
+                    return false;
+                })
+                .doBeforeRetry(signal -> {
+                    counter("weather.client.retries", operation).increment();
+                    log.debug("Időjárás hívás újrapróbálása ({}, {}. alkalom): {}",
+                            operation, signal.totalRetries() + 1, signal.failure().getMessage());
+                })
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    /**
+     * Átmeneti, újrapróbálható upstream hiba-e.
+     */
+    static boolean isTransient(Throwable e) {
+        if (e instanceof TimeoutException || e instanceof WebClientRequestException) {
+            return true;
+        }
+        if (e instanceof WebClientResponseException response) {
+            int status = response.getStatusCode().value();
+            return status >= 500 || status == 429;
+        }
+        return false;
+    }
+
+    private Counter counter(String name, String operation) {
+        return Counter.builder(name).tag("operation", operation).register(meterRegistry);
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return Timer.builder("weather.client.calls")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,42 @@
+package org.greenhouse.smart_greenhouse_backend.service.weather;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Újrapróbálkozási keret (token bucket).
+ * <p>
+ * Minden első próbálkozás {@code ratio} tokent tesz a keretbe (legfeljebb {@code max}-ig),
+ * minden újrapróbálkozás egy egész tokent vesz ki. Így tartós hibánál az újrapróbálkozások
+ * aránya a forgalom {@code ratio}-szorosára korlátozódik, és nem sokszorozzák a terhelést
+ * egy amúgy is túlterhelt szolgáltatón.
+ */
+class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long depositPerCall;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    RetryBudget(final double ratio, final int max) {
+        this.depositPerCall = Math.round(ratio * SCALE);
+        this.maxBalance = (long) max * SCALE;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    void deposit() {
+        balance.accumulateAndGet(depositPerCall, (current, add) -> Math.min(maxBalance, current + add));
+    }
+
+    boolean tryWithdraw() {
+        while (true) {
+            long current = balance.get();
+            if (current < SCALE) return false;
+            if (balance.compareAndSet(current, current - SCALE)) return true;
+        }
+    }
+
+    double available() {
+        return (double) balance.get() / SCALE;
+    }
+}
@@ -0,0 +1,37 @@
+package org.greenhouse.smart_greenhouse_backend.service.weather;
+
+import java.util.Locale;
+
+/**
+ * Időjárás-lekérdezések helykulcsa.
+ * <p>
+ * A közeli üvegházak ugyanarra a kulcsra képződnek: koordináták esetén egy
+ * {@code cellDeg} fokos rács cellájára, egyébként a kisbetűs városnévre.
+ * Így egy bejárás során helyenként csak egy külső hívás történik.
+ */
+public final class WeatherLocationKey {
+
+    public enum Mode {
+        /** lat/lon rácscella, ha vannak koordináták; különben város */
+        GRID,
+        /** mindig a város neve */
+        CITY
+    }
+
+    private WeatherLocationKey() {
+    }
+
+    public static String of(final String city,
+                            final Double lat,
+                            final Double lon,
+                            final Mode mode,
+                            final double cellDeg) {
+        if (mode == Mode.GRID && lat != null && lon != null && cellDeg > 0) {
+            long latCell = (long) Math.floor(lat / cellDeg);
+            long lonCell = (long) Math.floor(lon / cellDeg);
+            return "grid:" + latCell + ":" + lonCell;
+        }
+        String normalized = city == null ? "" : city.trim().toLowerCase(Locale.ROOT);
+        return "city:" + normalized;
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
@@ -17,6 +18,7 @@ import java.time.Instant;
 public class WeatherServiceImpl implements WeatherService {
 
     private final WebClient weatherWebClient;
+    private final ForecastStreamDecoder forecastStreamDecoder;
 
     @Value("${weather.api-key}")
     private String apiKey;
@@ -24,6 +26,9 @@ public class WeatherServiceImpl implements WeatherService {
     @Value("${weather.units}")
     private String units;
 
+    @Value("${weather.forecast.streaming-decode:true}")
+    private boolean streamingDecode;
+
     @Override
     public Mono<WeatherDto> fetchForLocation(String city, Double lat, Double lon) {
         if (lat != null && lon != null) {
@@ -55,7 +60,7 @@ public class WeatherServiceImpl implements WeatherService {
     @Override
     public Flux<WeatherDto> fetchForecastForLocation(String city, Double lat, Double lon) {
         if (lat != null && lon != null) {
-            return weatherWebClient.get()
+            return decodeForecast(weatherWebClient.get()
                     .uri(uriBuilder -> uriBuilder
                             .path("/forecast")
                             .queryParam("lat", lat)
@@ -63,23 +68,32 @@ public class WeatherServiceImpl implements WeatherService {
                             .queryParam("appid", apiKey)
                             .queryParam("units", units)
                             .build())
-                    .retrieve()
-                    .bodyToMono(OpenWeatherForecastResponse.class)
-                    .flatMapMany(resp -> Flux.fromIterable(resp.getList())
-                            .map(this::mapForecastItemToDto));
+                    .retrieve());
         } else {
-            return weatherWebClient.get()
+            return decodeForecast(weatherWebClient.get()
                     .uri(uriBuilder -> uriBuilder
                             .path("/forecast")
                             .queryParam("q", city)
                             .queryParam("appid", apiKey)
                             .queryParam("units", units)
                             .build())
-                    .retrieve()
-                    .bodyToMono(OpenWeatherForecastResponse.class)
-                    .flatMapMany(resp -> Flux.fromIterable(resp.getList())
-                            .map(this::mapForecastItemToDto));
+                    .retrieve());
+        }
+    }
+
+    /**
+     * Az előrejelzés válaszának dekódolása. Streaming módban a {@code list} elemei
+     * már a válasz olvasása közben megjelennek; egyébként a teljes
+     * {@link OpenWeatherForecastResponse} felépül, és utána képezzük le.
+     */
+    private Flux<WeatherDto> decodeForecast(WebClient.ResponseSpec response) {
+        if (streamingDecode) {
+            return forecastStreamDecoder.decode(response.bodyToFlux(DataBuffer.class));
         }
+        return response
+                .bodyToMono(OpenWeatherForecastResponse.class)
+                .flatMapMany(resp -> Flux.fromIterable(resp.getList())
+                        .map(WeatherServiceImpl::mapForecastItemToDto));
     }
 
     private WeatherDto mapToDto(OpenWeatherResponse weatherResponse) {
@@ -97,7 +111,7 @@ public class WeatherServiceImpl implements WeatherService {
                 .build();
     }
 
-    private WeatherDto mapForecastItemToDto(OpenWeatherForecastResponse.ForecastItem item) {
+    static WeatherDto mapForecastItemToDto(OpenWeatherForecastResponse.ForecastItem item) {
         Double precipitation = 0.0;
         if (item.getRain() != null && item.getRain().getThreeHour() != null) {
             precipitation = item.getRain().getThreeHour();
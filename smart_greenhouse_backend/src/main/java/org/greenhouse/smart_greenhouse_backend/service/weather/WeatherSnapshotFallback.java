@@ -0,0 +1,82 @@
+package org.greenhouse.smart_greenhouse_backend.service.weather;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
+import org.greenhouse.smart_greenhouse_backend.model.documents.WeatherSnapshot;
+import org.greenhouse.smart_greenhouse_backend.repository.WeatherSnapshotRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Tartalék időjárás adat, ha az upstream nem érhető el.
+ * <p>
+ * Nyitott circuit breaker vagy kimerült újrapróbálkozás után az üvegház utolsó tárolt
+ * {@link WeatherSnapshot}-ját adja vissza, feltéve hogy az nem régebbi {@code maxAge}-nél.
+ * A nem átmeneti hibákat (pl. ismeretlen város) nem takarja el.
+ */
+@Slf4j
+@Component
+public class WeatherSnapshotFallback {
+
+    private final WeatherSnapshotRepository weatherSnapshotRepository;
+    private final MeterRegistry meterRegistry;
+    private final Duration maxAge;
+    private final Clock clock = Clock.systemUTC();
+
+    public WeatherSnapshotFallback(final WeatherSnapshotRepository weatherSnapshotRepository,
+                                   final MeterRegistry meterRegistry,
+                                   @Value("${weather.resilience.fallback-max-age:PT6H}") final Duration maxAge) {
+        this.weatherSnapshotRepository = weatherSnapshotRepository;
+        this.meterRegistry = meterRegistry;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * A hiba alapján tárolt adatra állunk át, ha lehet; különben üres.
+     */
+    public Optional<WeatherDto> latestFor(final String greenhouseCode, final Throwable failure) {
+        String reason;
+        if (failure instanceof CallNotPermittedException) {
+            reason = "circuit_open";
+        } else if (ResilientWeatherService.isTransient(failure)) {
+            reason = "upstream_error";
+        } else {
+            return Optional.empty();
+        }
+
+        Instant oldest = clock.instant().minus(maxAge);
+        Optional<WeatherDto> fallback = weatherSnapshotRepository
+                .findFirstByGreenhouseCodeOrderByTimestampDesc(greenhouseCode)
+                .filter(snapshot -> snapshot.getTimestamp() != null && snapshot.getTimestamp().isAfter(oldest))
+                .map(WeatherSnapshotFallback::toDto);
+
+        Counter.builder("weather.fallback")
+                .tag("reason", reason)
+                .tag("result", fallback.isPresent() ? "served" : "missing")
+                .register(meterRegistry)
+                .increment();
+        fallback.ifPresent(dto -> log.warn("Időjárás nem elérhető ({}), a(z) {} {}-i tárolt adatát használjuk",
+                reason, greenhouseCode, dto.getTimestamp()));
+        return fallback;
+    }
+
+    private static WeatherDto toDto(WeatherSnapshot snapshot) {
+        return WeatherDto.builder()
+                .city(snapshot.getCity())
+                .timestamp(snapshot.getTimestamp())
+                .temperature(snapshot.getTemperature())
+                .humidity(snapshot.getHumidity())
+                .windSpeed(snapshot.getWindSpeed())
+                .precipitationMm(snapshot.getPrecipitationMm())
+                .soilMoistureExtPct(snapshot.getSoilMoistureExtPct())
+                .build();
+    }
+}
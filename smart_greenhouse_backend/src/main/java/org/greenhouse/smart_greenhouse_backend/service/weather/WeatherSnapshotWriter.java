@@ -0,0 +1,63 @@
+package org.greenhouse.smart_greenhouse_backend.service.weather;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.greenhouse.smart_greenhouse_backend.model.documents.WeatherSnapshot;
+import org.greenhouse.smart_greenhouse_backend.service.persistence.BulkWriteBuffer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Az időjárás pillanatképek kötegelt mentése.
+ * <p>
+ * Egy üvegházhoz ütemezési ciklusonként ({@code tick}) egy dokumentum tartozik:
+ * az azonosító az üvegház kódjából és a ciklus kezdetéből áll, a pufferben az
+ * azonos ciklusú újabb pillanatkép felülírja a régebbit. Egy már kiírt ciklust az egyedi
+ * {@code _id} véd a duplikációtól (ezért a weather_snapshots hagyományos gyűjtemény, nem time-series).
+ */
+@Component
+public class WeatherSnapshotWriter {
+
+    private final BulkWriteBuffer<WeatherSnapshot> buffer;
+    private final long tickSeconds;
+
+    public WeatherSnapshotWriter(final MongoTemplate mongoTemplate,
+                                 final MeterRegistry meterRegistry,
+                                 @Value("${weather.snapshot.tick:PT30M}") final Duration tick,
+                                 @Value("${weather.snapshot.batch-size:500}") final int batchSize,
+                                 @Value("${weather.snapshot.capacity:10000}") final int capacity,
+                                 @Value("${weather.snapshot.flush-interval:PT5S}") final Duration flushInterval) {
+        this.tickSeconds = tick.toSeconds();
+        this.buffer = new BulkWriteBuffer<>(
+                "weather_snapshots",
+                mongoTemplate,
+                WeatherSnapshot.class,
+                WeatherSnapshot::getId,
+                (older, newer) -> newer,
+                batchSize,
+                capacity,
+                flushInterval,
+                meterRegistry
+        );
+    }
+
+    public void write(final WeatherSnapshot snapshot) {
+        snapshot.setId(snapshotId(snapshot.getGreenhouseCode(), snapshot.getTimestamp()));
+        buffer.add(snapshot);
+    }
+
+    String snapshotId(String greenhouseCode, Instant timestamp) {
+        long epochSecond = timestamp.getEpochSecond();
+        long tickStart = epochSecond - Math.floorMod(epochSecond, tickSeconds);
+        return greenhouseCode + ":" + tickStart;
+    }
+
+    @PreDestroy
+    public void close() {
+        buffer.close();
+    }
+}
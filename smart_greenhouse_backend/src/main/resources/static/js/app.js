@@ -432,7 +432,7 @@ function renderSensors(greenHouse) {
     });
 }
 
-/* ---------- Betöltés, pollolás, változás-detektálás ---------- */
+/* ---------- Betöltés, változás-detektálás ---------- */
 
 function hasMeaningfulChange(oldgh, newgh) {
     if (!oldgh) return false;
@@ -456,25 +456,88 @@ async function loadGreenhouses(showNotifications = false) {
 
         renderGreenhouseList(greenhouses);
 
-        greenhouses.forEach(gh => {
-            const code = gh.code ?? gh.id ?? gh._id;
-            if (!code) return;
-            const old = previousStateByCode.get(code);
-            if (showNotifications && hasMeaningfulChange(old, gh)) {
-                const summary = greenhouseChangeSummary(old, gh);
-                const name = gh.name ?? `üvegház (${code})`;
-                showNotification(`Frissült az üvegház állapota: ${name}`, summary);
-            }
-            previousStateByCode.set(code, gh);
-            if (selectedGreenhouseCode && code === selectedGreenhouseCode) {
-                renderGreenhouseDetails(gh);
-            }
-        });
+        greenhouses.forEach(gh => applyGreenhouseState(gh, showNotifications));
     } catch (err) {
         console.error('Nem sikerült betölteni az üvegházakat', err);
     }
 }
 
+function applyGreenhouseState(gh, showNotifications) {
+    const code = gh.code ?? gh.id ?? gh._id;
+    if (!code) return;
+    const old = previousStateByCode.get(code);
+    if (showNotifications && hasMeaningfulChange(old, gh)) {
+        const summary = greenhouseChangeSummary(old, gh);
+        const name = gh.name ?? `üvegház (${code})`;
+        showNotification(`Frissült az üvegház állapota: ${name}`, summary);
+    }
+    previousStateByCode.set(code, gh);
+    if (selectedGreenhouseCode && code === selectedGreenhouseCode) {
+        renderGreenhouseDetails(gh);
+    }
+}
+
+/* ---------- Élő frissítés (Server-Sent Events) ---------- */
+
+let listRenderPending = false;
+
+// egymás után érkező delták esetén a listát csak egyszer rajzoljuk újra
+function scheduleListRender() {
+    if (listRenderPending) return;
+    listRenderPending = true;
+    setTimeout(() => {
+        listRenderPending = false;
+        renderGreenhouseList(Array.from(previousStateByCode.values()));
+    }, 250);
+}
+
+function findCodeById(id) {
+    for (const [code, gh] of previousStateByCode) {
+        if (gh.id === id) return code;
+    }
+    return null;
+}
+
+function subscribeToGreenhouseEvents() {
+    if (!window.EventSource) {
+        // régi böngésző: marad a pollolás
+        setInterval(() => loadGreenhouses(true), 30000);
+        return;
+    }
+
+    const source = new EventSource(`${API_BASE}/greenhouses/events`);
+
+    // (újra)csatlakozáskor a teljes lista egyszer
+    source.addEventListener('snapshot', e => {
+        const greenhouses = JSON.parse(e.data);
+        const codes = new Set(greenhouses.map(gh => gh.code ?? gh.id));
+        Array.from(previousStateByCode.keys())
+            .filter(code => !codes.has(code))
+            .forEach(code => previousStateByCode.delete(code));
+        greenhouses.forEach(gh => applyGreenhouseState(gh, true));
+        renderGreenhouseList(greenhouses);
+    });
+
+    // utána csak a változott mezők
+    source.addEventListener('delta', e => {
+        const delta = JSON.parse(e.data);
+        const oldCode = findCodeById(delta.id);
+        const old = oldCode ? previousStateByCode.get(oldCode) : {};
+        if (oldCode && oldCode !== delta.code) previousStateByCode.delete(oldCode);
+        applyGreenhouseState({ ...old, ...delta.changes }, true);
+        scheduleListRender();
+    });
+
+    source.addEventListener('deleted', e => {
+        const { id, code } = JSON.parse(e.data);
+        const key = code ?? findCodeById(id);
+        if (key) previousStateByCode.delete(key);
+        scheduleListRender();
+    });
+
+    source.onerror = () => console.warn('Az élő frissítés megszakadt, a böngésző újracsatlakozik');
+}
+
 /* ---------- Új üvegház létrehozása (szenzorok nélkül) ---------- */
 
 async function setupNewGreenHouseButton() {
@@ -940,7 +1003,7 @@ async function loadActionLogPage(greenhouseCode, page = 0, size = 20) {
             listEl.innerHTML = logs.map(l => `
                 <div class="action-log-row">
                     <div class="action-log-time">${formatTimestampShort(l.timestamp)}</div>
-                    <div class="action-log-action"><strong>${l.action}</strong></div>
+                    <div class="action-log-action"><strong>${l.action}</strong>${l.count > 1 ? ` ×${l.count}` : ''}</div>
                     <div class="action-log-reason">${l.reason ?? ''}</div>
                 </div>
             `).join('');
@@ -1039,7 +1102,7 @@ async function openActionLogModal(greenhouseCode) {
         listEl.innerHTML = logs.map(l => `
             <div class="action-log-row">
                 <div class="action-log-time">${formatTimestamp(l.timestamp)}</div>
-                <div class="action-log-action"><strong>${l.action}</strong></div>
+                <div class="action-log-action"><strong>${l.action}</strong>${l.count > 1 ? ` ×${l.count}` : ''}</div>
                 <div class="action-log-reason">${l.reason ?? ''}</div>
             </div>
         `).join('');
@@ -1084,5 +1147,5 @@ document.addEventListener('DOMContentLoaded', () => {
     setupSensorControls();
     setupActionLogModalControls();
     attachActionLogButton();
-    setInterval(() => loadGreenhouses(true), 30000);
+    subscribeToGreenhouseEvents();
 });
\ No newline at end of file
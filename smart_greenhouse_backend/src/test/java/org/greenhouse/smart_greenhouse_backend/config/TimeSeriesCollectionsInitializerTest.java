@@ -0,0 +1,196 @@
+package org.greenhouse.smart_greenhouse_backend.config;
+
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.TimeSeriesOptions;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * A mérési gyűjtemények inicializálásának tesztje beágyazott MongoDB-vel.
+ * <p>
+ * Alapból a docker-compose-ban rögzített 6.0-s szerverrel fut; {@code -Dmongo.embedded.version=7.0}
+ * mellett 7.0-val. Ha a mongod bináris nem tölthető le / nem indítható, a tesztek kimaradnak,
+ * kivéve {@code -Dmongo.embedded.required=true} mellett (CI), ahol ez hiba.
+ */
+class TimeSeriesCollectionsInitializerTest {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private static MongoClient client;
+
+    private MongoTemplate mongoTemplate;
+    private MongoDatabase db;
+
+    @BeforeAll
+    static void startMongo() {
+        Version.Main version = "7.0".equals(System.getProperty("mongo.embedded.version"))
+                ? Version.Main.V7_0 : Version.Main.V6_0;
+        try {
+            mongod = Mongod.instance().start(version);
+            client = MongoClients.create("mongodb://" + mongod.current().getServerAddress());
+        } catch (RuntimeException e) {
+            if (Boolean.getBoolean("mongo.embedded.required")) throw e;
+            mongod = null;
+        }
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        if (client != null) client.close();
+        if (mongod != null) mongod.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(mongod != null, "beágyazott MongoDB nem érhető el");
+        mongoTemplate = new MongoTemplate(client, "greenhouse");
+        db = mongoTemplate.getDb();
+        db.drop();
+    }
+
+    private TimeSeriesCollectionsInitializer initializer(boolean migrate, Duration sensorExpiry) {
+        return new TimeSeriesCollectionsInitializer(mongoTemplate, true, migrate,
+                sensorExpiry, Duration.ofDays(365), Duration.ofDays(180));
+    }
+
+    private Document info(String name) {
+        return db.listCollections().filter(new Document("name", name)).first();
+    }
+
+    private Document index(String collection, String name) {
+        for (Document index : db.getCollection(collection).listIndexes()) {
+            if (name.equals(index.getString("name"))) return index;
+        }
+        return null;
+    }
+
+    private static Document reading(String code, Instant timestamp) {
+        return new Document("code", code).append("greenhouseCode", "GH1").append("timestamp", Date.from(timestamp));
+    }
+
+    /**
+     * Teszteli, hogy üres adatbázisban a sensor_data hagyományos gyűjtemény lesz TTL és egyedi
+     * {code, timestamp} indexszel, az actionLogs pedig time-series gyűjtemény lejárattal.
+     */
+    @Test
+    void shouldCreateCollectionsWithExpiryAndIndexes() {
+        initializer(false, Duration.ofDays(90)).afterSingletonsInstantiated();
+
+        assertEquals("collection", info("sensor_data").getString("type"));
+        assertEquals(90L * 24 * 3600, index("sensor_data", "timestamp_ttl").get("expireAfterSeconds", Number.class).longValue());
+        assertTrue(index("sensor_data", "code_1_timestamp_-1").getBoolean("unique", false));
+        assertEquals("collection", info("weather_snapshots").getString("type"));
+
+        Document actionLogs = info("actionLogs");
+        assertEquals("timeseries", actionLogs.getString("type"));
+        Document options = actionLogs.get("options", Document.class);
+        assertEquals(180L * 24 * 3600, options.get("expireAfterSeconds", Number.class).longValue());
+        assertEquals("greenhouseCode", options.get("timeseries", Document.class).getString("metaField"));
+        assertNotNull(index("actionLogs", "greenhouseCode_1_timestamp_-1"));
+    }
+
+    /**
+     * Teszteli, hogy a már létező gyűjtemény lejárata (TTL index) a beállításhoz igazodik.
+     */
+    @Test
+    void shouldUpdateExpiryOfExistingCollection() {
+        initializer(false, Duration.ofDays(90)).afterSingletonsInstantiated();
+        initializer(false, Duration.ofDays(30)).afterSingletonsInstantiated();
+
+        assertEquals(30L * 24 * 3600, index("sensor_data", "timestamp_ttl").get("expireAfterSeconds", Number.class).longValue());
+    }
+
+    /**
+     * Teszteli, hogy a sensor_data-n működik a REST API teljes dokumentumos módosítása és
+     * {@code _id} + {@code greenhouseCode} szerinti törlése, az ismételt mérés pedig kulcsütközés.
+     */
+    @Test
+    void sensorDataShouldSupportUpdateDeleteAndRejectDuplicates() {
+        initializer(false, Duration.ofDays(90)).afterSingletonsInstantiated();
+        MongoCollection<Document> sensorData = db.getCollection("sensor_data");
+        Instant now = Instant.now();
+        Document first = reading("S1", now);
+        sensorData.insertOne(first);
+
+        sensorData.replaceOne(Filters.eq("_id", first.get("_id")), reading("S1", now).append("temperature", 21.5));
+        assertEquals(21.5, sensorData.find().first().getDouble("temperature"));
+
+        MongoWriteException duplicate = assertThrows(MongoWriteException.class, () -> sensorData.insertOne(reading("S1", now)));
+        assertEquals(DUPLICATE_KEY, duplicate.getCode());
+
+        sensorData.deleteOne(Filters.and(Filters.eq("_id", first.get("_id")), Filters.eq("greenhouseCode", "GH1")));
+        assertEquals(0, sensorData.countDocuments());
+    }
+
+    /**
+     * Teszteli, hogy az azonos ciklusú időjárás pillanatkép (azonos {@code _id}) másodszor nem kerül be.
+     */
+    @Test
+    void weatherSnapshotsShouldRejectSameCycleTwice() {
+        initializer(false, Duration.ofDays(90)).afterSingletonsInstantiated();
+        MongoCollection<Document> snapshots = db.getCollection("weather_snapshots");
+        snapshots.insertOne(new Document("_id", "GH1:1800").append("greenhouseCode", "GH1").append("timestamp", new Date()));
+
+        MongoWriteException duplicate = assertThrows(MongoWriteException.class, () -> snapshots.insertOne(
+                new Document("_id", "GH1:1800").append("greenhouseCode", "GH1").append("timestamp", new Date())));
+        assertEquals(DUPLICATE_KEY, duplicate.getCode());
+    }
+
+    /**
+     * Teszteli, hogy a hagyományos actionLogs gyűjtemény time-series-re migrálódik, az időbélyeg nélküli dokumentumok kimaradnak.
+     */
+    @Test
+    void shouldMigrateLegacyCollectionWhenEnabled() {
+        db.getCollection("actionLogs").insertOne(new Document("greenhouseCode", "GH1").append("timestamp", Date.from(Instant.now())));
+        db.getCollection("actionLogs").insertOne(new Document("greenhouseCode", "GH1").append("timestamp", Date.from(Instant.now())));
+        db.getCollection("actionLogs").insertOne(new Document("greenhouseCode", "GH2"));
+
+        initializer(true, Duration.ofDays(90)).afterSingletonsInstantiated();
+
+        assertEquals("timeseries", info("actionLogs").getString("type"));
+        assertEquals(2, db.getCollection("actionLogs").countDocuments());
+        assertEquals(3, db.getCollection("actionLogs_legacy").countDocuments());
+    }
+
+    /**
+     * Teszteli, hogy a korábban time-series-ként létrehozott sensor_data hagyományos gyűjteménnyé
+     * alakul, és az ismétlődő {code, timestamp} mérésekből csak egy kerül át.
+     */
+    @Test
+    void shouldMigrateTimeSeriesSensorDataBackToRegularCollection() {
+        Instant now = Instant.now();
+        db.createCollection("sensor_data", new CreateCollectionOptions()
+                .timeSeriesOptions(new TimeSeriesOptions("timestamp").metaField("code")));
+        db.getCollection("sensor_data").insertMany(List.of(reading("S1", now), reading("S1", now), reading("S2", now)));
+
+        initializer(true, Duration.ofDays(90)).afterSingletonsInstantiated();
+
+        assertEquals("collection", info("sensor_data").getString("type"));
+        assertEquals(2, db.getCollection("sensor_data").countDocuments());
+        assertEquals(3, db.getCollection("sensor_data_timeseries").countDocuments());
+        assertTrue(index("sensor_data", "code_1_timestamp_-1").getBoolean("unique", false));
+    }
+}
@@ -0,0 +1,133 @@
+package org.greenhouse.smart_greenhouse_backend.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tomcat.websocket.WsSession;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult.Item;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult.Status;
+import org.greenhouse.smart_greenhouse_backend.service.sensor.SensorBatchStreamReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SensorStreamHandlerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<JsonNode> sent = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private SensorBatchStreamReader batchReader;
+    private WebSocketSession session;
+    private WsSession nativeSession;
+    private SensorStreamHandler handler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        batchReader = mock(SensorBatchStreamReader.class);
+        nativeSession = mock(WsSession.class);
+        session = mock(WebSocketSession.class, withSettings().extraInterfaces(NativeWebSocketSession.class));
+        when(session.getId()).thenReturn("gw-1");
+        when(session.isOpen()).thenReturn(true);
+        when(((NativeWebSocketSession) session).getNativeSession(WsSession.class)).thenReturn(nativeSession);
+        doAnswer(inv -> {
+            WebSocketMessage<?> message = inv.getArgument(0);
+            sent.add(objectMapper.readTree(((TextMessage) message).getPayload()));
+            return null;
+        }).when(session).sendMessage(any());
+
+        handler = new SensorStreamHandler(batchReader, objectMapper, new SimpleMeterRegistry(),
+                2, DataSize.ofKilobytes(64), Duration.ofMinutes(1), Duration.ofSeconds(5), 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        handler.shutdown();
+    }
+
+    private static SensorBatchResult result(Status... statuses) {
+        SensorBatchResult result = new SensorBatchResult();
+        for (int i = 0; i < statuses.length; i++) {
+            result.add(new Item(i, statuses[i], "id-" + i, statuses[i] == Status.CREATED ? null : "hiba"));
+        }
+        return result;
+    }
+
+    private void awaitMessages(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sent.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, sent.size(), "üzenetek: " + sent);
+    }
+
+    /**
+     * Teszteli, hogy a kötegek sorrendben nyugtázódnak, és a keret betelésekor a szerver
+     * felfüggeszti, majd a feldolgozás után folytatja az olvasást.
+     */
+    @Test
+    void stream_shouldAckInOrderAndSuspendReadsWhenWindowIsFull() throws Exception {
+        when(batchReader.ingest(any(InputStream.class))).thenAnswer(inv -> {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return result(Status.CREATED, Status.INVALID);
+        }).thenReturn(result(Status.CREATED));
+
+        handler.afterConnectionEstablished(session);
+        handler.handleMessage(session, new TextMessage("[{\"code\":\"a\",\"temperature\":20}]"));
+        handler.handleMessage(session, new TextMessage("{\"code\":\"b\",\"humidity\":50}"));
+
+        verify(nativeSession).suspend();
+        verify(nativeSession, never()).resume();
+        release.countDown();
+        awaitMessages(3);
+
+        assertEquals("hello", sent.get(0).get("type").asText());
+        assertEquals(2, sent.get(0).get("window").asInt());
+        List<Long> seqs = new ArrayList<>();
+        for (JsonNode ack : sent.subList(1, 3)) {
+            assertEquals("ack", ack.get("type").asText());
+            seqs.add(ack.get("seq").asLong());
+        }
+        assertEquals(List.of(1L, 2L), seqs);
+        assertEquals(1, sent.get(1).get("rejected").asInt());
+        assertEquals("INVALID", sent.get(1).get("errors").get(0).get("status").asText());
+        assertEquals(2, sent.get(2).get("credit").asInt());
+        verify(nativeSession).resume();
+    }
+
+    /**
+     * Teszteli, hogy a feldolgozási hiba hibaüzenetet ad az adott sorszámra, a kapcsolat megmarad.
+     */
+    @Test
+    void stream_shouldReplyWithErrorWhenBatchFails() throws Exception {
+        when(batchReader.ingestBinary(any(InputStream.class))).thenThrow(new IOException("olvasási hiba"));
+
+        handler.afterConnectionEstablished(session);
+        handler.handleMessage(session, new BinaryMessage(new byte[]{1, 2, 3}));
+        awaitMessages(2);
+
+        assertEquals("error", sent.get(1).get("type").asText());
+        assertEquals(1, sent.get(1).get("seq").asLong());
+        verify(session, never()).close(any());
+    }
+}
@@ -0,0 +1,86 @@
+package org.greenhouse.smart_greenhouse_backend.service.actionLog;
+
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.greenhouse.smart_greenhouse_backend.model.documents.ActionLog;
+import org.greenhouse.smart_greenhouse_backend.repository.ActionLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ActionLogServiceImplTest {
+
+    @Mock private ActionLogRepository actionLogRepository;
+    @Mock private MongoTemplate mongoTemplate;
+    @Mock private BulkOperations bulkOperations;
+    @Mock private BulkWriteResult bulkWriteResult;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(mongoTemplate.bulkOps(eq(BulkMode.UNORDERED), eq(ActionLog.class))).thenReturn(bulkOperations);
+        lenient().when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        lenient().when(bulkOperations.execute()).thenReturn(bulkWriteResult);
+    }
+
+    private ActionLogServiceImpl service(boolean stateChangesOnly) {
+        return new ActionLogServiceImpl(actionLogRepository, mongoTemplate, new SimpleMeterRegistry(),
+                stateChangesOnly, 500, 5000, Duration.ofHours(1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ActionLog> flushed() {
+        ArgumentCaptor<List<ActionLog>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bulkOperations).insert(captor.capture());
+        return captor.getValue();
+    }
+
+    /**
+     * Teszteli, hogy az ismétlődő bejegyzések egy darabbá vonódnak össze, darabszámmal.
+     */
+    @Test
+    void record_shouldCoalesceRepeatedEntriesWithCount() {
+        ActionLogServiceImpl service = service(false);
+
+        service.record("gh1", "VENT_OPEN", "rule-1", false);
+        service.record("gh1", "VENT_OPEN", "rule-1", false);
+        service.record("gh1", "VENT_OPEN", "rule-1", false);
+        service.record("gh1", "IRRIGATION_ON", "rule-2", true);
+        service.close();
+
+        List<ActionLog> entries = flushed();
+        assertEquals(2, entries.size());
+        assertEquals(3, entries.get(0).getCount());
+        assertFalse(entries.get(0).getApplied());
+        assertEquals(1, entries.get(1).getCount());
+    }
+
+    /**
+     * Teszteli, hogy "csak állapotváltozás" módban a hatás nélküli akciók nem kerülnek a naplóba.
+     */
+    @Test
+    void record_shouldSkipNonApplyingActionsWhenStateChangesOnly() {
+        ActionLogServiceImpl service = service(true);
+
+        service.record("gh1", "VENT_OPEN", "rule-1", false);
+        service.record("gh1", "IRRIGATION_ON", "manual", true);
+        service.close();
+
+        List<ActionLog> entries = flushed();
+        assertEquals(1, entries.size());
+        assertEquals("IRRIGATION_ON", entries.get(0).getAction());
+    }
+}
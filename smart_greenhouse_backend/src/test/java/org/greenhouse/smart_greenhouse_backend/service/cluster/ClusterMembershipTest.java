@@ -0,0 +1,189 @@
+package org.greenhouse.smart_greenhouse_backend.service.cluster;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Több példány egy JVM-ben, közös beágyazott MongoDB-vel.
+ * Ha a mongod bináris nem tölthető le / nem indítható, a tesztek kimaradnak.
+ */
+class ClusterMembershipTest {
+
+    private static final Duration LEASE = Duration.ofSeconds(15);
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private static MongoClient client;
+
+    private MongoTemplate mongoTemplate;
+    private MutableClock clock;
+    private List<ClusterRebalancedEvent> events;
+
+    @BeforeAll
+    static void startMongo() {
+        try {
+            mongod = Mongod.instance().start(Version.Main.V7_0);
+            client = MongoClients.create("mongodb://" + mongod.current().getServerAddress());
+        } catch (RuntimeException e) {
+            mongod = null;
+        }
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        if (client != null) client.close();
+        if (mongod != null) mongod.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        if (mongod != null) {
+            mongoTemplate = new MongoTemplate(client, "greenhouse");
+            mongoTemplate.getDb().drop();
+        }
+        clock = new MutableClock(Instant.parse("2024-05-01T10:00:00Z"));
+        events = new ArrayList<>();
+    }
+
+    private ClusterMembership node(String id) {
+        assumeTrue(mongod != null, "beágyazott MongoDB nem érhető el");
+        return new ClusterMembership(mongoTemplate, event -> events.add((ClusterRebalancedEvent) event),
+                new SimpleMeterRegistry(), true, id, Duration.ofSeconds(5), LEASE, 64, clock);
+    }
+
+    /**
+     * Teszteli, hogy három példány esetén minden üvegháznak pontosan egy gazdája van,
+     * és a terhelés mindhárom példányra jut.
+     */
+    @Test
+    void shouldAssignEveryGreenhouseToExactlyOneNode() {
+        List<ClusterMembership> nodes = List.of(node("n1"), node("n2"), node("n3"));
+        nodes.forEach(ClusterMembership::heartbeat);
+        nodes.forEach(ClusterMembership::heartbeat); // a korábban belépettek is lássák a később jötteket
+
+        int[] owned = new int[nodes.size()];
+        for (int i = 0; i < 3_000; i++) {
+            String code = "GH-" + i;
+            int owners = 0;
+            for (int n = 0; n < nodes.size(); n++) {
+                if (nodes.get(n).owns(code)) {
+                    owners++;
+                    owned[n]++;
+                }
+            }
+            assertEquals(1, owners, code);
+        }
+        for (int count : owned) assertTrue(count > 500, "egyenetlen elosztás");
+    }
+
+    /**
+     * Teszteli, hogy kilépő és kieső (lejárt bérletű) példány üvegházait a megmaradók veszik át,
+     * a kieső példány pedig semmit sem tekint a sajátjának.
+     */
+    @Test
+    void shouldRebalanceWhenNodesLeaveOrStopHeartbeating() {
+        ClusterMembership n1 = node("n1");
+        ClusterMembership n2 = node("n2");
+        ClusterMembership n3 = node("n3");
+        List.of(n1, n2, n3).forEach(ClusterMembership::heartbeat);
+        List.of(n1, n2, n3).forEach(ClusterMembership::heartbeat);
+        events.clear();
+
+        n3.leave();
+        n1.heartbeat();
+        n2.heartbeat();
+        assertEquals(2, events.size());
+        assertTrue(events.stream().anyMatch(event -> event.gained(firstOwnedBy("n3", event.previous()))));
+        for (int i = 0; i < 1_000; i++) {
+            String code = "GH-" + i;
+            assertTrue(n1.owns(code) ^ n2.owns(code), code);
+            assertFalse(n3.owns(code));
+        }
+
+        // n2 elhallgat: a bérlete lejártával n1 mindent visz, n2 pedig önként lemond
+        clock.advance(LEASE.plusSeconds(1));
+        n1.heartbeat();
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(n1.owns("GH-" + i));
+            assertFalse(n2.owns("GH-" + i));
+        }
+    }
+
+    /**
+     * Teszteli, hogy sikertelen szívverés után a kilépés meg sem próbálja törölni a csomópont dokumentumát,
+     * így a leállást nem tartja fel az elérhetetlen adatbázis.
+     */
+    @Test
+    void leave_shouldSkipDelete_whenLastHeartbeatFailed() {
+        MongoTemplate unreachable = mock(MongoTemplate.class);
+        when(unreachable.upsert(any(Query.class), any(Update.class), eq(ClusterMembership.COLLECTION)))
+                .thenThrow(new DataAccessResourceFailureException("Timed out after 30000 ms"));
+        ClusterMembership node = new ClusterMembership(unreachable, event -> { }, new SimpleMeterRegistry(),
+                true, "n1", Duration.ofSeconds(5), LEASE, 64, clock);
+
+        assertThrows(DataAccessResourceFailureException.class, node::heartbeat);
+        node.leave();
+
+        verify(unreachable, never()).remove(any(Query.class), anyString());
+    }
+
+    private static String firstOwnedBy(String node, ConsistentHashRing ring) {
+        for (int i = 0; ; i++) {
+            if (node.equals(ring.owner("GH-" + i))) return "GH-" + i;
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.greenhouse.smart_greenhouse_backend.service.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    /**
+     * Teszteli, hogy a kulcsok nagyjából egyenletesen oszlanak el a csomópontok között.
+     */
+    @Test
+    void owner_shouldSpreadKeysEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c", "d"), 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            counts.merge(ring.owner("GH-" + i), 1, Integer::sum);
+        }
+
+        assertEquals(4, counts.size());
+        counts.values().forEach(count -> assertTrue(count > 3_500 && count < 6_500, "egyenetlen: " + counts));
+    }
+
+    /**
+     * Teszteli, hogy új csomópont belépésekor csak a kulcsok kb. 1/N része vándorol, és mind az új csomóponthoz.
+     */
+    @Test
+    void owner_shouldMoveOnlyShareOfNewNode() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "b", "c", "d"), 128);
+
+        int moved = 0;
+        for (int i = 0; i < 20_000; i++) {
+            String key = "GH-" + i;
+            if (!before.owner(key).equals(after.owner(key))) {
+                moved++;
+                assertEquals("d", after.owner(key));
+            }
+        }
+        assertTrue(moved > 3_500 && moved < 6_500, "vándorolt: " + moved);
+    }
+
+    /**
+     * Teszteli, hogy üres gyűrűn nincs gazda, és a csomópontok sorrendje nem számít.
+     */
+    @Test
+    void owner_shouldBeDeterministic() {
+        assertNull(new ConsistentHashRing(List.of(), 16).owner("GH-1"));
+
+        ConsistentHashRing one = new ConsistentHashRing(List.of("x", "y"), 16);
+        ConsistentHashRing two = new ConsistentHashRing(List.of("y", "x"), 16);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(one.owner("GH-" + i), two.owner("GH-" + i));
+        }
+    }
+}
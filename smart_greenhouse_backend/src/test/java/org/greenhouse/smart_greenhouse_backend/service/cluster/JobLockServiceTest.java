@@ -0,0 +1,154 @@
+package org.greenhouse.smart_greenhouse_backend.service.cluster;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.support.CronExpression;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * A bérletzár tesztje több példánnyal, közös beágyazott MongoDB-vel.
+ * Ha a mongod bináris nem tölthető le / nem indítható, a Mongo-t igénylő tesztek kimaradnak.
+ */
+class JobLockServiceTest {
+
+    private static final Duration TTL = Duration.ofMinutes(2);
+    private static final String CRON = "0 0 */12 * * *";
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private static MongoClient client;
+
+    private MongoTemplate mongoTemplate;
+    private MutableClock clock;
+
+    @BeforeAll
+    static void startMongo() {
+        try {
+            mongod = Mongod.instance().start(Version.Main.V7_0);
+            client = MongoClients.create("mongodb://" + mongod.current().getServerAddress());
+        } catch (RuntimeException e) {
+            mongod = null;
+        }
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        if (client != null) client.close();
+        if (mongod != null) mongod.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(LocalDateTime.parse("2024-05-01T12:00:00").atZone(ZoneId.systemDefault()).toInstant());
+        if (mongod == null) return;
+        mongoTemplate = new MongoTemplate(client, "greenhouse");
+        mongoTemplate.getDb().drop();
+    }
+
+    private JobLockService node(String id) {
+        return new JobLockService(mongoTemplate, new SimpleMeterRegistry(), id, TTL, Duration.ofMinutes(1), clock);
+    }
+
+    /**
+     * Teszteli, hogy a ciklus a legutóbbi esedékes időpont, a kicsit korábban és a jóval később induló példánynál is.
+     */
+    @Test
+    void cycle_shouldResolveLatestFireTimeWithinSkew() {
+        CronExpression cron = CronExpression.parse(CRON);
+        Instant noon = clock.instant();
+
+        assertEquals(noon, JobLockService.cycle(cron, noon.minusSeconds(1).plus(Duration.ofMinutes(1))).toInstant());
+        assertEquals(noon, JobLockService.cycle(cron, noon.plus(Duration.ofHours(5))).toInstant());
+        assertEquals(noon.minus(Duration.ofHours(12)), JobLockService.cycle(cron, noon.minusSeconds(120)).toInstant());
+    }
+
+    /**
+     * Teszteli, hogy ciklusonként csak egy példány futtatja a feladatot, a következő ciklusban pedig újra fut.
+     */
+    @Test
+    void runOncePerCycle_shouldRunOnceAcrossNodes() {
+        assumeTrue(mongod != null, "beágyazott MongoDB nem érhető el");
+        AtomicInteger runs = new AtomicInteger();
+        JobLockService n1 = node("n1");
+        JobLockService n2 = node("n2");
+
+        assertTrue(n1.runOncePerCycle("generatePlans", CRON, lease -> runs.incrementAndGet()));
+        clock.advance(Duration.ofSeconds(30));
+        assertFalse(n2.runOncePerCycle("generatePlans", CRON, lease -> runs.incrementAndGet()));
+        assertFalse(n1.runOncePerCycle("generatePlans", CRON, lease -> runs.incrementAndGet()));
+        assertEquals(1, runs.get());
+
+        clock.advance(Duration.ofHours(12));
+        assertTrue(n2.runOncePerCycle("generatePlans", CRON, lease -> runs.incrementAndGet()));
+        assertEquals(2, runs.get());
+    }
+
+    /**
+     * Teszteli, hogy a tartott zárat más nem szerzi meg, összeomlás (lejárt bérlet) után viszont átveszi,
+     * nagyobb tokennel, és a régi birtokos megújítása ekkor elbukik.
+     */
+    @Test
+    void tryAcquire_shouldTakeOverExpiredLeaseWithHigherToken() {
+        assumeTrue(mongod != null, "beágyazott MongoDB nem érhető el");
+        JobLockService n1 = node("n1");
+        JobLockService n2 = node("n2");
+
+        JobLease first = n1.tryAcquire("rollUp", null, TTL).orElseThrow();
+        assertTrue(n2.tryAcquire("rollUp", null, TTL).isEmpty());
+
+        clock.advance(TTL.plusSeconds(1));
+        assertFalse(first.isHeld());
+        JobLease second = n2.tryAcquire("rollUp", null, TTL).orElseThrow();
+        assertTrue(second.token() > first.token());
+
+        assertFalse(n1.renew(first));
+        assertThrows(JobLeaseLostException.class, first::assertHeld);
+        assertTrue(n2.renew(second));
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetSweepExecutorTest {
+
+    private static List<Greenhouse> greenhouses(int count) {
+        List<Greenhouse> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Greenhouse greenhouse = new Greenhouse();
+            greenhouse.setCode("GH_" + i);
+            result.add(greenhouse);
+        }
+        return result;
+    }
+
+    /**
+     * Teszteli, hogy egy üvegház hibája nem állítja meg a többi feldolgozását.
+     */
+    @Test
+    void sweep_shouldIsolateFailures() {
+        FleetSweepExecutor executor = new FleetSweepExecutor(new SimpleMeterRegistry(), 4);
+
+        FleetSweepExecutor.SweepReport report = executor.sweep("test", greenhouses(10), gh -> {
+            if (gh.getCode().equals("GH_3")) throw new IllegalStateException("boom");
+        });
+
+        assertEquals(10, report.total());
+        assertEquals(9, report.succeeded());
+        assertEquals(1, report.failed());
+        assertSame(report, executor.lastReport("test"));
+    }
+
+    /**
+     * Teszteli, hogy a párhuzamosan futó feladatok száma nem lépi túl a beállított korlátot.
+     */
+    @Test
+    void sweep_shouldRespectConcurrencyLimit() {
+        FleetSweepExecutor executor = new FleetSweepExecutor(new SimpleMeterRegistry(), 3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        executor.sweep("limit", greenhouses(30), gh -> {
+            int now = running.incrementAndGet();
+            peak.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+        });
+
+        assertTrue(peak.get() <= 3, "peak=" + peak.get());
+    }
+
+    /**
+     * Teszteli, hogy egy átfedő, azonos nevű bejárás kihagyja a már feldolgozás alatt álló üvegházat.
+     */
+    @Test
+    void sweep_shouldSkipGreenhousesOfOverlappingSweep() throws Exception {
+        FleetSweepExecutor executor = new FleetSweepExecutor(new SimpleMeterRegistry(), 4);
+        List<Greenhouse> fleet = greenhouses(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread first = Thread.ofVirtual().start(() -> executor.sweep("poll", fleet, gh -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        FleetSweepExecutor.SweepReport second = executor.sweep("poll", fleet, gh -> fail("nem futhat kétszer"));
+        release.countDown();
+        first.join();
+
+        assertEquals(1, second.skipped());
+        assertEquals(0, second.succeeded());
+    }
+}
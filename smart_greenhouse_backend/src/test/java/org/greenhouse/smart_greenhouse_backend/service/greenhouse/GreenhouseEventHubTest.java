@@ -0,0 +1,63 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class GreenhouseEventHubTest {
+
+    private GreenhouseEventHub hub;
+
+    @BeforeEach
+    void setUp() {
+        hub = new GreenhouseEventHub(mock(GreenhouseStateStore.class),
+                new ObjectMapper().registerModule(new JavaTimeModule()),
+                new SimpleMeterRegistry(), Duration.ofMinutes(1), Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.shutdown();
+    }
+
+    private static Greenhouse greenhouse() {
+        Greenhouse greenhouse = new Greenhouse();
+        greenhouse.setId("id-1");
+        greenhouse.setCode("GH-1");
+        greenhouse.setName("Paradicsom");
+        return greenhouse;
+    }
+
+    /**
+     * Teszteli, hogy az első mentés a teljes állapotot, a további mentések csak a változott mezőket küldik,
+     * változatlan mentésnél pedig nincs esemény.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void delta_shouldContainOnlyChangedFields() {
+        Greenhouse greenhouse = greenhouse();
+        Map<String, Object> first = hub.delta(greenhouse);
+        assertTrue(((Map<String, Object>) first.get("changes")).keySet().containsAll(List.of("name", "devices", "sensors")));
+
+        greenhouse.getDevices().setVentOpen(true);
+        greenhouse.recordAction("VENT_OPEN", Instant.parse("2026-10-18T10:00:00Z"));
+        Map<String, Object> second = hub.delta(greenhouse);
+
+        assertEquals("GH-1", second.get("code"));
+        assertEquals(Set.of("devices", "lastActionAt"), ((Map<String, Object>) second.get("changes")).keySet());
+        assertNull(hub.delta(greenhouse));
+    }
+}
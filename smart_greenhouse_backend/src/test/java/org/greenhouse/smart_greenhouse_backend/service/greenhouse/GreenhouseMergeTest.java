@@ -0,0 +1,81 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.SensorRef;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.DeviceChannel;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Unit;
+import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GreenhouseMergeTest {
+
+    private static final Instant T0 = Instant.parse("2024-05-01T10:00:00Z");
+
+    /**
+     * Teszteli, hogy a két oldal eltérő eszközváltása és időbélyege egyaránt megmarad,
+     * azonos kulcsnál a későbbi időpont nyer.
+     */
+    @Test
+    void rebase_shouldKeepBothSidesDeviceChanges() {
+        Greenhouse base = greenhouse();
+        Greenhouse ours = GreenhouseStateStore.copy(base);
+        ours.getDevices().setVentOpen(true);
+        ours.recordAction("VENT_OPEN", T0.plusSeconds(10));
+        ours.getDevices().recordManual(DeviceChannel.VENT, T0.plusSeconds(10));
+
+        Greenhouse theirs = GreenhouseStateStore.copy(base);
+        theirs.getDevices().setIrrigationOn(true);
+        theirs.recordAction("VENT_OPEN", T0.plusSeconds(20));
+        theirs.setVersion(2L);
+
+        Greenhouse merged = GreenhouseMerge.rebase(base, ours, theirs);
+
+        assertTrue(merged.getDevices().isVentOpen());
+        assertTrue(merged.getDevices().isIrrigationOn());
+        assertEquals(T0.plusSeconds(20), merged.getLastActionAt().get("VENT_OPEN"));
+        assertEquals(T0.plusSeconds(10), merged.getDevices().getLastManualActionAt().get("VENT"));
+        assertEquals(2L, merged.getVersion());
+    }
+
+    /**
+     * Teszteli, hogy szenzoroknál kódonként a frissebb mérés nyer, és a másik oldalon felvett szenzor megmarad.
+     */
+    @Test
+    void rebase_shouldKeepNewestSensorReading() {
+        Greenhouse base = greenhouse();
+        Greenhouse ours = GreenhouseStateStore.copy(base);
+        ours.getSensors().set(0, sensor("INT_TEMP", 23.0, T0.plusSeconds(5)));
+        ours.getSensors().set(1, sensor("SOIL_MOIST", 41.0, T0.plusSeconds(30)));
+
+        Greenhouse theirs = GreenhouseStateStore.copy(base);
+        theirs.getSensors().set(0, sensor("INT_TEMP", 24.5, T0.plusSeconds(15)));
+        theirs.getSensors().add(sensor("WIND_SPEED", 2.0, T0.plusSeconds(15)));
+
+        List<SensorRef> sensors = GreenhouseMerge.rebase(base, ours, theirs).getSensors();
+
+        assertEquals(3, sensors.size());
+        assertEquals(24.5, sensors.get(0).lastValue());
+        assertEquals(41.0, sensors.get(1).lastValue());
+        assertEquals("WIND_SPEED", sensors.get(2).code());
+    }
+
+    private static Greenhouse greenhouse() {
+        Greenhouse greenhouse = new Greenhouse();
+        greenhouse.setCode("gh-1");
+        greenhouse.setVersion(1L);
+        greenhouse.setSensors(new ArrayList<>(List.of(
+                sensor("INT_TEMP", 22.0, T0),
+                sensor("SOIL_MOIST", 35.0, T0))));
+        return greenhouse;
+    }
+
+    private static SensorRef sensor(String code, double value, Instant seen) {
+        return new SensorRef(null, code, Type.TEMPERATURE, Unit.CELSIUS, value, seen);
+    }
+}
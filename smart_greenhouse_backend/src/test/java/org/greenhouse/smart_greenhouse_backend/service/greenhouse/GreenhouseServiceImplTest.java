@@ -1,9 +1,18 @@
 package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.greenhouse.smart_greenhouse_backend.dto.GreenhouseListQuery;
+import org.greenhouse.smart_greenhouse_backend.dto.GreenhousePageDto;
 import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ActionRule;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.DeviceState;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.Location;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.Range;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.SensorRef;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.DeviceAction;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.DeviceChannel;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Unit;
 import org.greenhouse.smart_greenhouse_backend.model.documents.ActionLog;
@@ -11,25 +20,54 @@ import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
 import org.greenhouse.smart_greenhouse_backend.model.documents.Plan;
 import org.greenhouse.smart_greenhouse_backend.model.documents.PlantProfile;
 import org.greenhouse.smart_greenhouse_backend.repository.*;
+import org.greenhouse.smart_greenhouse_backend.service.actionLog.ActionLogService;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.ClusterMembership;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.JobLease;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.JobLeaseLostException;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.ActionMatrix;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.CompiledRules;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricChanges;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricsChangedEvent;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.ReadingBlock;
 import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.RuleEvaluatorService;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.RuleEvaluatorServiceImpl;
 import org.greenhouse.smart_greenhouse_backend.service.weather.WeatherService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,14 +77,30 @@ class GreenhouseServiceImplTest {
     private GreenhouseRepository greenhouseRepository;
     @Mock private PlantProfileRepository plantProfileRepository;
     @Mock private ActionLogRepository actionLogRepository;
+    @Mock private ActionLogService actionLogService;
     @Mock private PlanRepository planRepository;
     @Mock private WeatherSnapshotRepository weatherSnapshotRepository;
     @Mock private WeatherService weatherService;
     @Mock private RuleEvaluatorService ruleEvaluatorService;
+    @Mock private MongoTemplate mongoTemplate;
+    @Mock private ClusterMembership cluster;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Spy private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
 
     @InjectMocks
     private GreenhouseServiceImpl service;
 
+    private GreenhouseStateStore stateStore;
+
+    @BeforeEach
+    void setUpStateStore() {
+        // valódi állapottár a mockolt repository fölött: a hiányzó üvegházat kódra keresve tölti be
+        stateStore = new GreenhouseStateStore(greenhouseRepository, mongoTemplate, event -> { }, new SimpleMeterRegistry(), 3);
+        ReflectionTestUtils.setField(service, "stateStore", stateStore);
+        // egy példányos futás: minden üvegház a miénk
+        lenient().when(cluster.owned(anyList())).thenAnswer(inv -> inv.getArgument(0));
+    }
+
     /**
      * Teszteli, hogy a create() metódus:
      * - hozzárendeli a PlantProfile ID-t, ha a plantType meg van adva
@@ -82,6 +136,8 @@ class GreenhouseServiceImplTest {
                 .thenReturn(Flux.just(
                         new WeatherDto("Halásztelek", Instant.now(), 0.0, 0.0, 0.0, 0.0, 0.0)
                 ));
+        when(ruleEvaluatorService.evaluate(eq(profile), any(ReadingBlock.class)))
+                .thenAnswer(inv -> new RuleEvaluatorServiceImpl().evaluate(profile, (ReadingBlock) inv.getArgument(1)));
 
         when(greenhouseRepository.save(greenhouse)).thenReturn(greenhouse);
 
@@ -93,7 +149,8 @@ class GreenhouseServiceImplTest {
     /**
      * Teszteli, hogy a manualAction():
      * - módosítja a DeviceState-et a megadott akció szerint
-     * - elmenti az ActionLog-ot a repository-ba
+     * - naplózza a kézi akciót az ActionLogService-en keresztül
+     * - a változást a következő kiíráskor menti
      */
     @Test
     void manualAction_shouldUpdateDeviceStateAndLogAction() {
@@ -103,13 +160,15 @@ class GreenhouseServiceImplTest {
 
         when(greenhouseRepository.findByCode("greenhouse2"))
                 .thenReturn(Optional.of(greenhouse));
-        when(greenhouseRepository.save(ArgumentMatchers.any()))
-                .thenReturn(greenhouse);
+
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Greenhouse.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
 
         DeviceState result = service.manualAction("greenhouse2", "VENT_OPEN");
 
         assertTrue(result.isVentOpen());
-        verify(actionLogRepository).save(ArgumentMatchers.any());
+        verify(actionLogService).record("greenhouse2", "VENT_OPEN", "manual", true);
+        assertEquals(1, stateStore.flush());
     }
 
     /**
@@ -142,15 +201,17 @@ class GreenhouseServiceImplTest {
 
     /**
      * Teszteli, hogy az evaluateRulesFromSensors():
-     * - lekéri az összes greenhouse-t
-     * - a RuleEvaluatorService által visszaadott akciókat alkalmazza
-     * - és ActionLog-ot ment
+     * - a memóriabeli állapotból veszi az üvegházakat, profilonként egy kötegben
+     * - a szenzorértékekből a kötegbe töltött sorra tüzelő akciókat alkalmazza
+     * - és ActionLog-ot ír
      */
     @Test
     void evaluateRulesFromSensors_shouldApplyActionsAndLog() {
         Greenhouse greenhouse = new Greenhouse();
         greenhouse.setId("greenhouse4");
+        greenhouse.setCode("GREENHOUSE_4");
         greenhouse.setActive(true);
+        greenhouse.setPlantProfileId("profileX");
         greenhouse.setSensors(List.of(new SensorRef("s1", "TEMPERATURES_SENSOR_1", Type.TEMPERATURE, Unit.CELSIUS, 35.0, Instant.now())));
         greenhouse.setDevices(new DeviceState());
 
@@ -158,14 +219,16 @@ class GreenhouseServiceImplTest {
         profile.setId("profileX");
 
         when(greenhouseRepository.findAll()).thenReturn(List.of(greenhouse));
-        when(plantProfileRepository.findByPlantCode(ArgumentMatchers.any())).thenReturn(Optional.of(profile));
-        when(ruleEvaluatorService.evaluate(eq(profile), anyMap()))
-                .thenReturn(List.of("VENT_OPEN"));
+        when(plantProfileRepository.findById("profileX")).thenReturn(Optional.of(profile));
+        ArgumentCaptor<ReadingBlock> block = ArgumentCaptor.forClass(ReadingBlock.class);
+        when(ruleEvaluatorService.evaluate(eq(profile), block.capture(), eq(List.of("GREENHOUSE_4")), any(Instant.class)))
+                .thenAnswer(inv -> firing("VENT_OPEN", inv.getArgument(1)));
 
         service.evaluateRulesFromSensors();
 
-        assertTrue(greenhouse.getDevices().isVentOpen());
-        //verify(actionLogRepository).save(ArgumentMatchers.any());
+        assertEquals(35.0, block.getValue().get(0, Type.TEMPERATURE));
+        assertTrue(stateStore.snapshot("GREENHOUSE_4").orElseThrow().getDevices().isVentOpen());
+        verify(actionLogService).record(eq("GREENHOUSE_4"), eq("VENT_OPEN"), eq("rule-engine"), anyBoolean());
     }
 
     /**
@@ -194,8 +257,8 @@ class GreenhouseServiceImplTest {
         when(plantProfileRepository.findByPlantCode(ArgumentMatchers.any())).thenReturn(Optional.of(profile));
         when(weatherService.fetchForecastForLocation(anyString(), anyDouble(), anyDouble()))
                 .thenReturn(Flux.just(forecastDto));
-        when(ruleEvaluatorService.evaluate(eq(profile), anyMap()))
-                .thenReturn(List.of("SHADE_ON"));
+        when(ruleEvaluatorService.evaluate(eq(profile), any(ReadingBlock.class)))
+                .thenAnswer(inv -> firing("SHADE_ON", inv.getArgument(1)));
         when(planRepository.save(ArgumentMatchers.any()))
                 .thenAnswer(inv -> {
                     Plan p = inv.getArgument(0);
@@ -206,8 +269,68 @@ class GreenhouseServiceImplTest {
         service.generatePlans();
 
         verify(planRepository).save(ArgumentMatchers.any());
-        verify(greenhouseRepository).save(greenhouse);
-        assertEquals("GREENHOUSE_6TS", greenhouse.getPlanId());
+        assertEquals("plan123", stateStore.snapshot("GREENHOUSE_6TS").orElseThrow().getPlanId());
+    }
+
+    /**
+     * Teszteli, hogy bérlet alatti tervgenerálásnál a terv a bérlet tokenjét kapja,
+     * és a régebbi aktív tervek inaktívvá válnak.
+     */
+    @Test
+    void generatePlansWithLease_shouldStampTokenAndDeactivateOlderPlans() {
+        Greenhouse greenhouse = new Greenhouse();
+        greenhouse.setId("greenhouse7");
+        greenhouse.setCode("GREENHOUSE_7");
+        greenhouse.setActive(true);
+        greenhouse.setLocation(new Location("Budapest", 47.5, 19.0));
+
+        WeatherDto forecastDto = new WeatherDto();
+        forecastDto.setTimestamp(Instant.now().plus(1, ChronoUnit.HOURS));
+        forecastDto.setTemperature(32.0);
+        forecastDto.setHumidity(40.0);
+        forecastDto.setWindSpeed(2.0);
+
+        JobLease lease = mock(JobLease.class);
+        when(lease.token()).thenReturn(7L);
+        when(greenhouseRepository.findAll()).thenReturn(List.of(greenhouse));
+        when(plantProfileRepository.findByPlantCode(any())).thenReturn(Optional.of(new PlantProfile()));
+        when(weatherService.fetchForecastForLocation(anyString(), anyDouble(), anyDouble()))
+                .thenReturn(Flux.just(forecastDto));
+        when(ruleEvaluatorService.evaluate(any(PlantProfile.class), any(ReadingBlock.class)))
+                .thenAnswer(inv -> firing("SHADE_ON", inv.getArgument(1)));
+        when(planRepository.save(any())).thenAnswer(inv -> {
+            Plan p = inv.getArgument(0);
+            p.setId("plan7");
+            return p;
+        });
+        when(mongoTemplate.exists(any(Query.class), eq(Plan.class))).thenReturn(false);
+
+        service.generatePlans(lease);
+
+        ArgumentCaptor<Plan> saved = ArgumentCaptor.forClass(Plan.class);
+        verify(planRepository).save(saved.capture());
+        assertEquals(7L, saved.getValue().getFencingToken());
+        assertTrue(saved.getValue().isActive());
+        verify(mongoTemplate).updateMulti(any(Query.class), any(Update.class), eq(Plan.class));
+        assertEquals("plan7", stateStore.snapshot("GREENHOUSE_7").orElseThrow().getPlanId());
+    }
+
+    /**
+     * Teszteli, hogy elveszett bérletnél a tervgenerálás abbamarad, nem kér előrejelzést és nem ír tervet.
+     */
+    @Test
+    void generatePlansWithLease_shouldStopWhenLeaseLost() {
+        Greenhouse greenhouse = new Greenhouse();
+        greenhouse.setCode("GREENHOUSE_8");
+        greenhouse.setActive(true);
+
+        JobLease lease = mock(JobLease.class);
+        doThrow(new JobLeaseLostException("generatePlans", 3L)).when(lease).assertHeld();
+        when(greenhouseRepository.findAll()).thenReturn(List.of(greenhouse));
+
+        assertThrows(JobLeaseLostException.class, () -> service.generatePlans(lease));
+
+        verifyNoInteractions(weatherService, planRepository);
     }
 
     /**
@@ -240,12 +363,13 @@ class GreenhouseServiceImplTest {
     /**
      * Teszteli, hogy az updateById():
      * - frissíti a greenhouse mezőit
-     * - elmenti a repository-ba
+     * - a következő kiíráskor csak a változott mezőt írja ki
      */
     @Test
     void updateById_shouldUpdateFields() {
         Greenhouse existing = new Greenhouse();
         existing.setId("greenhouse11");
+        existing.setCode("greenhouse11");
         existing.setName("OldName");
 
         Greenhouse updated = new Greenhouse();
@@ -253,13 +377,16 @@ class GreenhouseServiceImplTest {
 
         when(greenhouseRepository.findByCode("greenhouse11"))
                 .thenReturn(Optional.of(existing));
-        when(greenhouseRepository.save(ArgumentMatchers.any()))
-                .thenAnswer(inv -> inv.getArgument(0));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Greenhouse.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
 
         Greenhouse result = service.updateById("greenhouse11", updated);
+        stateStore.flush();
 
         assertEquals("NewName", result.getName());
-        verify(greenhouseRepository).save(ArgumentMatchers.any());
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(Greenhouse.class));
+        assertEquals(new Document("name", "NewName"), update.getValue().getUpdateObject().get("$set"));
     }
 
     /**
@@ -305,4 +432,242 @@ class GreenhouseServiceImplTest {
     }
 
 
-}
\ No newline at end of file
+
+    /**
+     * Teszteli, hogy a vetítés nélküli lista a memóriabeli állapotból szűr és lapoz (adatbázis-lekérdezés nélkül),
+     * az utolsó elem kódjából kurzort ad, amit a következő lekérés szűrőként használ.
+     */
+    @Test
+    void listPage_shouldFilterAndPageFromMemory() {
+        for (String code : List.of("gh-3", "gh-1", "gh-2", "gh-4")) {
+            Greenhouse greenhouse = greenhouse(code);
+            greenhouse.setLocation(new Location("gh-4".equals(code) ? "Szeged" : "Budapest", 47.5, 19.0));
+            stateStore.put(greenhouse);
+        }
+
+        GreenhousePageDto page = service.listPage(new GreenhouseListQuery("Budapest", null, null, null, 2));
+
+        assertEquals(List.of("gh-1", "gh-2"), page.items().stream().map(item -> ((Greenhouse) item).getCode()).toList());
+        assertEquals("gh-2", GreenhouseServiceImpl.decodeCursor(page.nextCursor()));
+
+        GreenhousePageDto next = service.listPage(new GreenhouseListQuery("Budapest", null, null, page.nextCursor(), 2));
+        assertEquals(List.of("gh-3"), next.items().stream().map(item -> ((Greenhouse) item).getCode()).toList());
+        assertNull(next.nextCursor());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    /**
+     * Teszteli, hogy vetítésnél a lekérdezés a Mongóban fut (szűrő, kurzor, eggyel nagyobb limit), csak a kért
+     * mezők (és az azonosítók) kerülnek a válaszba, az utolsó oldalnál pedig nincs kurzor.
+     */
+    @Test
+    void listPage_shouldProjectRequestedFields() {
+        when(mongoTemplate.find(any(Query.class), eq(Greenhouse.class))).thenReturn(List.of(greenhouse("gh-3")));
+
+        GreenhousePageDto page = service.listPage(new GreenhouseListQuery("Budapest", null, Set.of("name"), GreenhouseServiceImpl.encodeCursor("gh-2"), 10));
+
+        assertNull(page.nextCursor());
+        Map<?, ?> item = (Map<?, ?>) page.items().get(0);
+        assertEquals(Set.of("id", "code", "name"), item.keySet());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Greenhouse.class));
+        assertEquals(11, query.getValue().getLimit());
+        assertEquals("Budapest", query.getValue().getQueryObject().get("location.city"));
+        assertEquals(new Document("$gt", "gh-2"), query.getValue().getQueryObject().get("code"));
+    }
+
+    /**
+     * Teszteli, hogy ismeretlen mezőre a lekérdezés el sem indul.
+     */
+    @Test
+    void listPage_shouldRejectUnknownField() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.listPage(new GreenhouseListQuery(null, null, Set.of("secret"), null, 10)));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    /**
+     * Teszteli, hogy az eseményvezérelt kiértékelés csak a saját üvegházat értékeli ki, a változott értéket
+     * a szenzorértékek fölé írja, a változott metrikák maszkját átadja, és a kiváltott akciót alkalmazza.
+     */
+    @Test
+    void evaluateRulesForChanges_shouldEvaluateOnlyChangedMetricsOfOwnedGreenhouses() {
+        Greenhouse own = greenhouse("GH_OWN");
+        own.setActive(true);
+        own.setPlantProfileId("p1");
+        own.setDevices(new DeviceState());
+        own.setSensors(new ArrayList<>(List.of(
+                new SensorRef("s1", "INT_TEMP", Type.TEMPERATURE, Unit.CELSIUS, 20.0, Instant.now()),
+                new SensorRef("s2", "SOIL_MOIST", Type.SOILMOISTURE_PTC, Unit.PERCENT, 50.0, Instant.now()))));
+        Greenhouse foreign = greenhouse("GH_FOREIGN");
+        foreign.setActive(true);
+        foreign.setPlantProfileId("p1");
+        stateStore.put(own);
+        stateStore.put(foreign);
+
+        PlantProfile profile = new PlantProfile();
+        profile.setId("p1");
+        when(cluster.owns(anyString())).thenAnswer(inv -> "GH_OWN".equals(inv.getArgument(0)));
+        when(plantProfileRepository.findById("p1")).thenReturn(Optional.of(profile));
+        when(ruleEvaluatorService.evaluate(eq(profile), any(ReadingBlock.class), anyList(), any(Instant.class), any(int[].class)))
+                .thenAnswer(inv -> firing("VENT_OPEN", inv.getArgument(1)));
+
+        double[] changed = CompiledRules.input();
+        changed[Type.TEMPERATURE.ordinal()] = 35.0;
+        service.evaluateRulesForChanges(Map.of(
+                "GH_OWN", new MetricChanges(changed, Map.of("INT_TEMP", changed)),
+                "GH_FOREIGN", new MetricChanges(changed.clone(), Map.of())));
+
+        ArgumentCaptor<ReadingBlock> block = ArgumentCaptor.forClass(ReadingBlock.class);
+        ArgumentCaptor<int[]> masks = ArgumentCaptor.forClass(int[].class);
+        verify(ruleEvaluatorService).evaluate(eq(profile), block.capture(), eq(List.of("GH_OWN")), any(Instant.class), masks.capture());
+        assertEquals(1, block.getValue().size());
+        assertEquals(35.0, block.getValue().get(0, Type.TEMPERATURE));
+        assertEquals(50.0, block.getValue().get(0, Type.SOILMOISTURE_PTC));
+        assertArrayEquals(new int[]{1 << Type.TEMPERATURE.ordinal()}, masks.getValue());
+        assertTrue(stateStore.snapshot("GH_OWN").orElseThrow().getDevices().isVentOpen());
+    }
+
+    /**
+     * Teszteli, hogy az eseményvezérelt kiértékelés a mért értékeket a kódjuk és típusuk szerinti szenzorba írja:
+     * az azonos típusú másik szenzort nem írja felül, ismeretlen kódhoz vagy hiányzó típushoz nem vesz fel
+     * új szenzort, a kód nélküli (már beírt) változást pedig nem írja újra.
+     */
+    @Test
+    void evaluateRulesForChanges_shouldWriteMeasurementsIntoSensors() {
+        Greenhouse own = greenhouse("GH_OWN");
+        own.setActive(true);
+        own.setPlantProfileId("p1");
+        own.setDevices(new DeviceState());
+        own.setSensors(List.of(
+                new SensorRef("s1", "INT_TEMP", Type.TEMPERATURE, Unit.CELSIUS, 20.0, Instant.EPOCH),
+                new SensorRef("s2", "EXT_TEMP", Type.TEMPERATURE, Unit.CELSIUS, 15.0, Instant.EPOCH)));
+        stateStore.put(own);
+
+        when(cluster.owns("GH_OWN")).thenReturn(true);
+        when(plantProfileRepository.findById("p1")).thenReturn(Optional.empty());
+
+        double[] ext = CompiledRules.input();
+        ext[Type.TEMPERATURE.ordinal()] = 28.5;
+        ext[Type.HUMIDITY_PCT.ordinal()] = 71.0;
+        double[] ghost = CompiledRules.input();
+        ghost[Type.TEMPERATURE.ordinal()] = 99.0;
+        MetricChanges changes = new MetricChanges(ext.clone(), new HashMap<>(Map.of("EXT_TEMP", ext, "GHOST", ghost)));
+        changes.merge(MetricChanges.of(MetricsChangedEvent.of("GH_OWN", Type.TEMPERATURE, 30.0)));
+        service.evaluateRulesForChanges(Map.of("GH_OWN", changes));
+
+        List<SensorRef> sensors = stateStore.snapshot("GH_OWN").orElseThrow().getSensors();
+        assertEquals(2, sensors.size());
+        assertEquals(20.0, sensors.get(0).lastValue());
+        assertEquals(Instant.EPOCH, sensors.get(0).lastSeen());
+        assertEquals("s2", sensors.get(1).id());
+        assertEquals(28.5, sensors.get(1).lastValue());
+        assertTrue(sensors.get(1).lastSeen().isAfter(Instant.EPOCH));
+    }
+
+    /**
+     * Teszteli, hogy az updateSensorData() ismeretlen szenzornál felveszi azt, és egyetlen változási eseményt küld.
+     */
+    @Test
+    void updateSensorData_shouldAddUnknownSensorAndPublishOnce() {
+        Greenhouse greenhouse = greenhouse("GH_SENS");
+        greenhouse.setSensors(new ArrayList<>());
+        stateStore.put(greenhouse);
+
+        Greenhouse result = service.updateSensorData("GH_SENS",
+                new SensorRef("s9", "NEW_TEMP", Type.TEMPERATURE, Unit.CELSIUS, 23.0, null));
+
+        assertEquals(1, result.getSensors().size());
+        assertEquals("NEW_TEMP", result.getSensors().get(0).code());
+        assertNotNull(result.getSensors().get(0).lastSeen());
+        verify(eventPublisher, times(1)).publishEvent(any(MetricsChangedEvent.class));
+    }
+
+    /**
+     * Teszteli, hogy a manualAction() a diszpécsertáblából kezeli az új csatornákat is (fűtés),
+     * a bemenetet normalizálja, és a kézi vezérlés időbélyegét a csatorna nevével tárolja.
+     */
+    @Test
+    void manualAction_shouldDispatchNewChannelsFromTable() {
+        Greenhouse greenhouse = greenhouse("GH_HEAT");
+        greenhouse.setDevices(new DeviceState());
+        stateStore.put(greenhouse);
+
+        DeviceState result = service.manualAction("GH_HEAT", " heating_on ");
+
+        assertTrue(result.isHeatingOn());
+        assertNotNull(result.getLastManualActionAt().get("HEATING"));
+        assertNotNull(stateStore.snapshot("GH_HEAT").orElseThrow().getLastActionAt().get("HEATING"));
+        assertThrows(IllegalArgumentException.class, () -> service.manualAction("GH_HEAT", "WARP_DRIVE_ON"));
+    }
+
+    /**
+     * Teszteli, hogy a lehűlési időn belül újra kiváltott akciót a kiértékelés nem alkalmazza és nem naplózza.
+     */
+    @Test
+    void evaluateRulesForChanges_shouldSkipActionInCooldown() {
+        Greenhouse own = greenhouse("GH_OWN");
+        own.setActive(true);
+        own.setPlantProfileId("p1");
+        own.setDevices(new DeviceState());
+        own.recordAction("VENT_OPEN", Instant.now().minusSeconds(60));
+        stateStore.put(own);
+
+        PlantProfile profile = new PlantProfile();
+        profile.setId("p1");
+        when(cluster.owns("GH_OWN")).thenReturn(true);
+        when(plantProfileRepository.findById("p1")).thenReturn(Optional.of(profile));
+        when(ruleEvaluatorService.evaluate(eq(profile), any(ReadingBlock.class), anyList(), any(Instant.class), any(int[].class)))
+                .thenAnswer(inv -> firing("VENT_OPEN", inv.getArgument(1)));
+
+        double[] changed = CompiledRules.input();
+        changed[Type.TEMPERATURE.ordinal()] = 35.0;
+        service.evaluateRulesForChanges(Map.of("GH_OWN", new MetricChanges(changed, Map.of())));
+
+        assertFalse(stateStore.snapshot("GH_OWN").orElseThrow().getDevices().isVentOpen());
+        verify(actionLogService, never()).record(eq("GH_OWN"), eq("VENT_OPEN"), anyString(), anyBoolean());
+    }
+
+    /**
+     * Teszteli, hogy az akció- és kézi időbélyegek csak olvasható nézetként jönnek ki, így a lehűlési
+     * gyorsítótár nem avulhat el; a setter és a record metódusok a gyorsítótárat is frissítik.
+     */
+    @Test
+    void actionTimestamps_shouldBeReadOnlyAndKeepCooldownCacheInSync() {
+        Instant at = Instant.parse("2026-10-18T10:00:00Z");
+        Greenhouse greenhouse = greenhouse("GH_TS");
+        greenhouse.setDevices(new DeviceState());
+        assertEquals(0, greenhouse.lastActionMillis(DeviceAction.VENT_OPEN));
+        assertEquals(0, greenhouse.getDevices().lastManualMillis(DeviceChannel.VENT));
+
+        assertThrows(UnsupportedOperationException.class, () -> greenhouse.getLastActionAt().put("VENT_OPEN", at));
+        assertThrows(UnsupportedOperationException.class,
+                () -> greenhouse.getDevices().getLastManualActionAt().put("VENT", at));
+
+        greenhouse.setLastActionAt(Map.of("VENT_OPEN", at));
+        greenhouse.getDevices().recordManual(DeviceChannel.VENT, at);
+        assertEquals(at.toEpochMilli(), greenhouse.lastActionMillis(DeviceAction.VENT_OPEN));
+        assertEquals(at.toEpochMilli(), greenhouse.getDevices().lastManualMillis(DeviceChannel.VENT));
+
+        greenhouse.recordAction(DeviceAction.VENT_OPEN, at.plusSeconds(5));
+        assertEquals(at.plusSeconds(5).toEpochMilli(), greenhouse.lastActionMillis(DeviceAction.VENT_OPEN));
+    }
+
+    private static Greenhouse greenhouse(String code) {
+        Greenhouse greenhouse = new Greenhouse();
+        greenhouse.setId("id-" + code);
+        greenhouse.setCode(code);
+        greenhouse.setName("Név " + code);
+        greenhouse.setPlantType("TOMATO");
+        return greenhouse;
+    }
+
+    /**
+     * Valódi kötegelt kiértékelés egy minden mért hőmérsékletre kiváltódó szabállyal (a mockolt kiértékelő válaszához).
+     */
+    private static ActionMatrix firing(String action, ReadingBlock block) {
+        PlantProfile rules = new PlantProfile();
+        rules.setRules(List.of(new ActionRule(Type.TEMPERATURE, new Range(-1000.0, -999.0), action)));
+        return new RuleEvaluatorServiceImpl().evaluate(rules, block);
+    }
+}
@@ -0,0 +1,294 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.greenhouse.smart_greenhouse_backend.exception.GreenhouseNotFoundException;
+import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
+import org.greenhouse.smart_greenhouse_backend.repository.GreenhouseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GreenhouseStateStoreTest {
+
+    private static final UpdateResult MATCHED = UpdateResult.acknowledged(1, 1L, null);
+    private static final UpdateResult NOT_MATCHED = UpdateResult.acknowledged(0, 0L, null);
+
+    @Mock
+    private GreenhouseRepository greenhouseRepository;
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private GreenhouseStateStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new GreenhouseStateStore(greenhouseRepository, mongoTemplate, eventPublisher, new SimpleMeterRegistry(), 3);
+    }
+
+    /**
+     * Teszteli, hogy a meleg indítás után a bejárás nem olvas újra az adatbázisból.
+     */
+    @Test
+    void all_shouldServeFromMemoryAfterWarmStart() {
+        when(greenhouseRepository.findAll()).thenReturn(List.of(greenhouse("gh-1"), greenhouse("gh-2")));
+
+        store.afterSingletonsInstantiated();
+        store.all();
+        store.snapshotAll();
+
+        assertEquals(2, store.all().size());
+        verify(greenhouseRepository, times(1)).findAll();
+    }
+
+    /**
+     * Teszteli, hogy két kiírás között akárhány módosítás egyetlen, csak a változott mezőt
+     * beállító, verzióhoz kötött írást eredményez, változatlan üvegházat pedig nem ír.
+     */
+    @Test
+    void flush_shouldWriteChangedFieldsOncePerGreenhouse() {
+        when(greenhouseRepository.findAll()).thenReturn(List.of(greenhouse("gh-1"), greenhouse("gh-2")));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Greenhouse.class))).thenReturn(MATCHED);
+        store.afterSingletonsInstantiated();
+
+        for (int i = 0; i < 5; i++) {
+            store.update("gh-1", live -> {
+                live.getDevices().setVentOpen(!live.getDevices().isVentOpen());
+                store.markDirty(live);
+                return null;
+            });
+        }
+
+        assertEquals(1, store.flush());
+        assertEquals(0, store.flush());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(1)).updateFirst(query.capture(), update.capture(), eq(Greenhouse.class));
+        assertEquals(new Document("_id", "id-gh-1").append("version", 3L), query.getValue().getQueryObject());
+        assertEquals(new Document("devices.ventOpen", true), update.getValue().getUpdateObject().get("$set"));
+        assertEquals(new Document("version", 1), update.getValue().getUpdateObject().get("$inc"));
+        assertEquals(4L, store.snapshot("gh-1").orElseThrow().getVersion());
+        verify(eventPublisher).publishEvent(any(AfterSaveEvent.class));
+        verify(greenhouseRepository, never()).save(any());
+    }
+
+    /**
+     * Teszteli, hogy sikertelen írás után az üvegház piszkos marad, és a következő kiírás újrapróbálja.
+     */
+    @Test
+    void flush_shouldKeepDirtyOnFailure() {
+        when(greenhouseRepository.findByCode("gh-1")).thenReturn(Optional.of(greenhouse("gh-1")));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Greenhouse.class)))
+                .thenThrow(new DataAccessResourceFailureException("nem érhető el"))
+                .thenReturn(MATCHED);
+
+        store.update("gh-1", live -> {
+            live.setName("új");
+            store.markDirty(live);
+            return null;
+        });
+
+        assertEquals(0, store.flush());
+        assertEquals(1, store.dirtyCount());
+        assertEquals(1, store.flush());
+        assertEquals(0, store.dirtyCount());
+    }
+
+    /**
+     * Teszteli, hogy ha a dokumentumot közben más írta, a tárolt változatra ráfésüljük a saját
+     * változásunkat, és az újabb verzióra írunk – egyik fél módosítása sem vész el.
+     */
+    @Test
+    void flush_shouldMergeAndRetryOnVersionConflict() {
+        Greenhouse stored = greenhouse("gh-1");
+        stored.setName("máshol átnevezve");
+        stored.setVersion(7L);
+        when(greenhouseRepository.findByCode("gh-1"))
+                .thenReturn(Optional.of(greenhouse("gh-1")))
+                .thenReturn(Optional.of(stored));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Greenhouse.class)))
+                .thenReturn(NOT_MATCHED)
+                .thenReturn(MATCHED);
+
+        store.update("gh-1", live -> {
+            live.getDevices().setLightOn(true);
+            store.markDirty(live);
+            return null;
+        });
+
+        assertEquals(1, store.flush());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(query.capture(), update.capture(), eq(Greenhouse.class));
+        assertEquals(7L, query.getAllValues().get(1).getQueryObject().get("version"));
+        assertEquals(new Document("devices.lightOn", true), update.getAllValues().get(1).getUpdateObject().get("$set"));
+
+        Greenhouse current = store.snapshot("gh-1").orElseThrow();
+        assertEquals("máshol átnevezve", current.getName());
+        assertTrue(current.getDevices().isLightOn());
+        assertEquals(8L, current.getVersion());
+        assertEquals(0, store.dirtyCount());
+    }
+
+    /**
+     * Teszteli, hogy tartós ütközésnél a próbálkozások száma korlátos, és az üvegház piszkos marad.
+     */
+    @Test
+    void flush_shouldGiveUpAfterBoundedRetries() {
+        Greenhouse stored = greenhouse("gh-1");
+        stored.setVersion(9L);
+        when(greenhouseRepository.findByCode("gh-1"))
+                .thenReturn(Optional.of(greenhouse("gh-1")))
+                .thenReturn(Optional.of(stored));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Greenhouse.class))).thenReturn(NOT_MATCHED);
+
+        store.update("gh-1", live -> {
+            live.setActive(false);
+            store.markDirty(live);
+            return null;
+        });
+
+        assertEquals(0, store.flush());
+        verify(mongoTemplate, times(4)).updateFirst(any(Query.class), any(Update.class), eq(Greenhouse.class));
+        assertEquals(1, store.dirtyCount());
+        assertFalse(store.snapshot("gh-1").orElseThrow().isActive());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    /**
+     * Teszteli, hogy a másolat módosítása nem hat az élő állapotra, és a törölt üvegház nem íródik ki.
+     */
+    @Test
+    void snapshotAndRemove_shouldIsolateLiveState() {
+        when(greenhouseRepository.findByCode("gh-1")).thenReturn(Optional.of(greenhouse("gh-1")));
+
+        Greenhouse copy = store.snapshot("gh-1").orElseThrow();
+        copy.getDevices().setLightOn(true);
+        assertFalse(store.snapshot("gh-1").orElseThrow().getDevices().isLightOn());
+
+        store.update("gh-1", live -> {
+            live.setActive(false);
+            store.markDirty(live);
+            return null;
+        });
+        store.remove("gh-1");
+
+        assertEquals(0, store.flush());
+        verifyNoInteractions(mongoTemplate);
+        when(greenhouseRepository.findByCode("gh-1")).thenReturn(Optional.empty());
+        assertThrows(GreenhouseNotFoundException.class, () -> store.update("gh-1", live -> null));
+    }
+
+    /**
+     * Teszteli két, közös adatbázist használó példánnyal, hogy a nem gazda példány az egyeztetéskor
+     * újratölti a gazda által közben kiírt (magasabb verziójú) állapotot, változatlan verziónál pedig nem olvas újra.
+     */
+    @Test
+    void reconcile_shouldRefreshGreenhousesModifiedByAnotherMember() {
+        AtomicReference<Greenhouse> stored = new AtomicReference<>(greenhouse("gh-1"));
+        when(greenhouseRepository.findAll()).thenAnswer(inv -> List.of(GreenhouseStateStore.copy(stored.get())));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Greenhouse.class))).thenReturn(MATCHED);
+        when(mongoTemplate.find(any(Query.class), eq(Greenhouse.class)))
+                .thenAnswer(inv -> List.of(GreenhouseStateStore.copy(stored.get())));
+        GreenhouseStateStore owner = store;
+        GreenhouseStateStore replica = new GreenhouseStateStore(greenhouseRepository, mongoTemplate, eventPublisher,
+                new SimpleMeterRegistry(), 3);
+        owner.afterSingletonsInstantiated();
+        replica.afterSingletonsInstantiated();
+
+        owner.update("gh-1", live -> {
+            live.getDevices().setIrrigationOn(true);
+            owner.markDirty(live);
+            return null;
+        });
+        owner.flush();
+        stored.set(owner.snapshot("gh-1").orElseThrow());
+        assertFalse(replica.snapshot("gh-1").orElseThrow().getDevices().isIrrigationOn());
+
+        assertEquals(1, replica.reconcile());
+        Greenhouse refreshed = replica.snapshot("gh-1").orElseThrow();
+        assertTrue(refreshed.getDevices().isIrrigationOn());
+        assertEquals(4L, refreshed.getVersion());
+
+        assertEquals(0, replica.reconcile());
+        // verziók lekérdezése kétszer, a teljes dokumentumé csak egyszer
+        verify(mongoTemplate, times(3)).find(any(Query.class), eq(Greenhouse.class));
+    }
+
+    /**
+     * Teszteli, hogy az egyeztetéskor újratöltött, felvett és eldobott üvegházakról a nem gazda példány
+     * is mentési/törlési eseményt küld, így az SSE a máshol kiírt változásokat is továbbítja.
+     */
+    @Test
+    void reconcile_shouldPublishEventsForChangesMadeElsewhere() {
+        Greenhouse changed = greenhouse("gh-1");
+        when(greenhouseRepository.findAll()).thenReturn(List.of(greenhouse("gh-1"), greenhouse("gh-2")));
+        store.afterSingletonsInstantiated();
+        changed.setVersion(4L);
+        changed.getDevices().setIrrigationOn(true);
+        Greenhouse created = greenhouse("gh-3");
+        when(mongoTemplate.find(any(Query.class), eq(Greenhouse.class)))
+                .thenReturn(List.of(versionOf(changed), versionOf(created)))
+                .thenReturn(List.of(changed));
+        when(greenhouseRepository.findByCode("gh-3")).thenReturn(Optional.of(created));
+
+        assertEquals(3, store.reconcile());
+
+        ArgumentCaptor<ApplicationEvent> events = ArgumentCaptor.forClass(ApplicationEvent.class);
+        verify(eventPublisher, times(3)).publishEvent(events.capture());
+        List<String> saved = events.getAllValues().stream()
+                .filter(AfterSaveEvent.class::isInstance)
+                .map(event -> ((AfterSaveEvent<?>) event).getSource())
+                .map(source -> ((Greenhouse) source).getCode())
+                .sorted()
+                .toList();
+        assertEquals(List.of("gh-1", "gh-3"), saved);
+        AfterDeleteEvent<?> deleted = events.getAllValues().stream()
+                .filter(AfterDeleteEvent.class::isInstance)
+                .map(event -> (AfterDeleteEvent<?>) event)
+                .findFirst().orElseThrow();
+        assertEquals("id-gh-2", deleted.getSource().get("_id"));
+        assertEquals(Greenhouse.class, deleted.getType());
+    }
+
+    private static Greenhouse versionOf(Greenhouse greenhouse) {
+        Greenhouse version = new Greenhouse();
+        version.setCode(greenhouse.getCode());
+        version.setVersion(greenhouse.getVersion());
+        return version;
+    }
+
+    private static Greenhouse greenhouse(String code) {
+        Greenhouse greenhouse = new Greenhouse();
+        greenhouse.setId("id-" + code);
+        greenhouse.setCode(code);
+        greenhouse.setActive(true);
+        greenhouse.setVersion(3L);
+        return greenhouse;
+    }
+}
@@ -0,0 +1,83 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import org.bson.Document;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.SensorRef;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Unit;
+import org.greenhouse.smart_greenhouse_backend.model.documents.Greenhouse;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GreenhouseUpdatesTest {
+
+    private static final Instant T0 = Instant.parse("2024-05-01T10:00:00Z");
+
+    /**
+     * Teszteli, hogy változatlan állapotra nincs módosítás.
+     */
+    @Test
+    void diff_shouldReturnNullWhenNothingChanged() {
+        Greenhouse before = greenhouse();
+        assertNull(GreenhouseUpdates.diff(before, GreenhouseStateStore.copy(before)));
+    }
+
+    /**
+     * Teszteli, hogy a szenzorérték, az eszköz és az akció-időbélyeg változása pozíciós, illetve
+     * beágyazott útvonalú beállítás lesz, a törölt időbélyeg pedig törlés.
+     */
+    @Test
+    void diff_shouldSetOnlyChangedPaths() {
+        Greenhouse before = greenhouse();
+        Greenhouse after = GreenhouseStateStore.copy(before);
+        after.getSensors().set(1, sensor("INT_HUMIDITY", Type.HUMIDITY_PCT, 61.0));
+        after.getDevices().setIrrigationOn(true);
+        after.getDevices().setHeatingOn(true);
+        after.setLastActionAt(Map.of("IRRIGATION_ON", T0.plusSeconds(60)));
+
+        Update update = GreenhouseUpdates.diff(before, after);
+
+        Document set = (Document) update.getUpdateObject().get("$set");
+        assertEquals(4, set.size());
+        assertEquals(after.getSensors().get(1), set.get("sensors.1"));
+        assertEquals(true, set.get("devices.irrigationOn"));
+        assertEquals(true, set.get("devices.heatingOn"));
+        assertEquals(T0.plusSeconds(60), set.get("lastActionAt.IRRIGATION_ON"));
+        assertEquals(new Document("lastActionAt.VENT_OPEN", 1), update.getUpdateObject().get("$unset"));
+    }
+
+    /**
+     * Teszteli, hogy új szenzor felvételekor a lista egészben íródik ki.
+     */
+    @Test
+    void diff_shouldReplaceSensorListWhenItsShapeChanged() {
+        Greenhouse before = greenhouse();
+        Greenhouse after = GreenhouseStateStore.copy(before);
+        after.getSensors().add(sensor("WIND_SPEED", Type.WIND_SPEED, 3.0));
+
+        Document set = (Document) GreenhouseUpdates.diff(before, after).getUpdateObject().get("$set");
+
+        assertEquals(after.getSensors(), set.get("sensors"));
+        assertEquals(1, set.size());
+    }
+
+    private static Greenhouse greenhouse() {
+        Greenhouse greenhouse = new Greenhouse();
+        greenhouse.setCode("gh-1");
+        greenhouse.setSensors(new ArrayList<>(List.of(
+                sensor("INT_TEMP", Type.TEMPERATURE, 22.0),
+                sensor("INT_HUMIDITY", Type.HUMIDITY_PCT, 60.0))));
+        greenhouse.recordAction("VENT_OPEN", T0);
+        return greenhouse;
+    }
+
+    private static SensorRef sensor(String code, Type type, double value) {
+        return new SensorRef(null, code, type, type == Type.TEMPERATURE ? Unit.CELSIUS : Unit.PERCENT, value, T0);
+    }
+}
@@ -0,0 +1,140 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
+import org.greenhouse.smart_greenhouse_backend.model.documents.MetricChange;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.ClusterMembership;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricChanges;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricsChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MetricChangeOutboxTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ClusterMembership cluster;
+
+    private MetricChangeOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        outbox = new MetricChangeOutbox(mongoTemplate, cluster, new SimpleMeterRegistry(), Duration.ofMinutes(10), 1000);
+    }
+
+    private static double[] values(Type type, double value) {
+        return MetricsChangedEvent.of("x", type, value).values();
+    }
+
+    private static MetricChanges measured(String sensor, Type type, double value) {
+        double[] values = values(type, value);
+        return new MetricChanges(values, new HashMap<>(Map.of(sensor, values.clone())));
+    }
+
+    /**
+     * Teszteli, hogy a továbbítás üvegházanként egy dokumentumot szúr be, egyetlen kötegben.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    void forward_shouldInsertOneDocumentPerGreenhouse() {
+        outbox.forward(Map.of("GH1", measured("INT_TEMP", Type.TEMPERATURE, 20.0),
+                "GH2", MetricChanges.of(MetricsChangedEvent.of("GH2", Type.HUMIDITY_PCT, 55.0))));
+
+        ArgumentCaptor<Collection<MetricChange>> inserted = ArgumentCaptor.forClass(Collection.class);
+        verify(mongoTemplate).insertAll(inserted.capture());
+        assertEquals(2, inserted.getValue().size());
+        assertTrue(inserted.getValue().stream().allMatch(c -> c.getId() != null && c.getCreatedAt() != null));
+        MetricChange gh1 = inserted.getValue().stream().filter(c -> "GH1".equals(c.getGreenhouseCode())).findFirst().orElseThrow();
+        assertEquals(1, gh1.getSensors().size());
+        assertEquals("INT_TEMP", gh1.getSensors().get(0).code());
+    }
+
+    /**
+     * Teszteli, hogy az átvétel csak a hozzánk tartozó bejegyzéseket veszi át (beérkezési sorrendben összevonva),
+     * és csak azokat, valamint a feldolgozhatatlan (kód nélküli) bejegyzéseket törli.
+     */
+    @Test
+    void claim_shouldTakeOnlyOwnedChangesAndRemoveThem() {
+        Instant now = Instant.now();
+        when(cluster.isEnabled()).thenReturn(true);
+        when(cluster.owns("GH1")).thenReturn(true);
+        when(cluster.owns("GH2")).thenReturn(false);
+        when(mongoTemplate.find(any(Query.class), eq(MetricChange.class))).thenReturn(List.of(
+                new MetricChange("a", "GH1", values(Type.TEMPERATURE, 20.0),
+                        List.of(new MetricChange.SensorValues("INT_TEMP", values(Type.TEMPERATURE, 20.0))), now),
+                new MetricChange("b", "GH2", values(Type.TEMPERATURE, 25.0), List.of(), now),
+                new MetricChange("c", "GH1", values(Type.TEMPERATURE, 21.0),
+                        List.of(new MetricChange.SensorValues("EXT_TEMP", values(Type.TEMPERATURE, 21.0))), now),
+                new MetricChange("d", null, values(Type.TEMPERATURE, 22.0), List.of(), now)));
+
+        Map<String, MetricChanges> claimed = outbox.claim();
+
+        assertEquals(1, claimed.size());
+        assertEquals(21.0, claimed.get("GH1").values()[Type.TEMPERATURE.ordinal()]);
+        assertEquals(20.0, claimed.get("GH1").sensors().get("INT_TEMP")[Type.TEMPERATURE.ordinal()]);
+        assertEquals(21.0, claimed.get("GH1").sensors().get("EXT_TEMP")[Type.TEMPERATURE.ordinal()]);
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(removed.capture(), eq(MetricChange.class));
+        assertEquals(List.of("a", "c", "d"), removed.getValue().getQueryObject().get("_id", org.bson.Document.class).get("$in"));
+    }
+
+    /**
+     * Teszteli, hogy a más példányokhoz tartozó bejegyzésekkel teli lap után a következő átvétel kurzorral
+     * továbblapoz a saját bejegyzésünkig, rövid lap után pedig elölről kezdi.
+     */
+    @Test
+    void claim_shouldPagePastChangesOwnedElsewhere() {
+        MetricChangeOutbox paged = new MetricChangeOutbox(mongoTemplate, cluster, new SimpleMeterRegistry(), Duration.ofMinutes(10), 2);
+        Instant now = Instant.now();
+        when(cluster.isEnabled()).thenReturn(true);
+        when(cluster.owns("GH1")).thenReturn(true);
+        when(cluster.owns("GH2")).thenReturn(false);
+        when(mongoTemplate.find(any(Query.class), eq(MetricChange.class)))
+                .thenReturn(List.of(
+                        new MetricChange("a", "GH2", values(Type.TEMPERATURE, 25.0), List.of(), now),
+                        new MetricChange("b", "GH2", values(Type.TEMPERATURE, 26.0), List.of(), now)))
+                .thenReturn(List.of(new MetricChange("c", "GH1", values(Type.TEMPERATURE, 21.0), List.of(), now)))
+                .thenReturn(List.of());
+
+        assertTrue(paged.claim().isEmpty());
+        assertEquals(21.0, paged.claim().get("GH1").values()[Type.TEMPERATURE.ordinal()]);
+        assertTrue(paged.claim().isEmpty());
+
+        ArgumentCaptor<Query> pages = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(3)).find(pages.capture(), eq(MetricChange.class));
+        assertNull(pages.getAllValues().get(0).getQueryObject().get("_id"));
+        assertEquals("b", pages.getAllValues().get(1).getQueryObject().get("_id", org.bson.Document.class).get("$gt"));
+        assertNull(pages.getAllValues().get(2).getQueryObject().get("_id"));
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq(MetricChange.class));
+    }
+
+    /**
+     * Teszteli, hogy kikapcsolt fürtmódban az átvétel nem fordul a Mongóhoz.
+     */
+    @Test
+    void claim_shouldDoNothing_whenClusterDisabled() {
+        assertTrue(outbox.claim().isEmpty());
+        verifyNoInteractions(mongoTemplate);
+    }
+}
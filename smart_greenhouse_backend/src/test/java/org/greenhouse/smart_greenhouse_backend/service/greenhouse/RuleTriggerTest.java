@@ -0,0 +1,194 @@
+package org.greenhouse.smart_greenhouse_backend.service.greenhouse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.ClusterMembership;
+import org.greenhouse.smart_greenhouse_backend.model.documents.SensorData;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricChanges;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricsChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RuleTriggerTest {
+
+    @Mock
+    private GreenhouseService service;
+
+    @Mock
+    private ClusterMembership cluster;
+
+    @Mock
+    private MetricChangeOutbox outbox;
+
+    private RuleTrigger trigger(boolean enabled) {
+        return new RuleTrigger(service, cluster, outbox, new SimpleMeterRegistry(), enabled, Duration.ofHours(1), Duration.ofHours(1));
+    }
+
+    /**
+     * Teszteli, hogy az egy üvegházra gyűlt események egy kiértékelésbe olvadnak (metrikánként a legutolsó érték),
+     * és a kiürült sornál a következő feldolgozás nem hívja a kiértékelést.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    void drain_shouldCoalesceEventsPerGreenhouse() {
+        when(cluster.owns(anyString())).thenReturn(true);
+        RuleTrigger trigger = trigger(true);
+        try {
+            trigger.onMetricsChanged(MetricsChangedEvent.of("GH1", Type.TEMPERATURE, 20.0));
+            trigger.onMetricsChanged(MetricsChangedEvent.of("GH1", Type.SOILMOISTURE_PTC, 35.0));
+            trigger.onMetricsChanged(MetricsChangedEvent.of("GH1", Type.TEMPERATURE, 22.0));
+            trigger.onMetricsChanged(MetricsChangedEvent.of("GH2", Type.HUMIDITY_PCT, 60.0));
+
+            trigger.drain();
+            trigger.drain();
+
+            ArgumentCaptor<Map<String, MetricChanges>> batch = ArgumentCaptor.forClass(Map.class);
+            verify(service, times(1)).evaluateRulesForChanges(batch.capture());
+            double[] gh1 = batch.getValue().get("GH1").values();
+            assertEquals(2, batch.getValue().size());
+            assertEquals(22.0, gh1[Type.TEMPERATURE.ordinal()]);
+            assertEquals(35.0, gh1[Type.SOILMOISTURE_PTC.ordinal()]);
+            assertEquals((1 << Type.TEMPERATURE.ordinal()) | (1 << Type.SOILMOISTURE_PTC.ordinal()),
+                    MetricsChangedEvent.changedMask(gh1));
+        } finally {
+            trigger.shutdown();
+        }
+    }
+
+    /**
+     * Teszteli, hogy az összevonás szenzoronként megőrzi a beküldött méréseket (két azonos típusú szenzor
+     * nem írja felül egymást), a kód nélküli, már beírt változás pedig csak a kiértékelésbe kerül.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    void drain_shouldKeepMeasurementsPerSensor() {
+        when(cluster.owns(anyString())).thenReturn(true);
+        RuleTrigger trigger = trigger(true);
+        try {
+            trigger.onMetricsChanged(MetricsChangedEvent.of(SensorData.builder()
+                    .greenhouseCode("GH1").code("INT_TEMP").temperature(21.0).build()));
+            trigger.onMetricsChanged(MetricsChangedEvent.of(SensorData.builder()
+                    .greenhouseCode("GH1").code("EXT_TEMP").temperature(12.0).build()));
+            trigger.onMetricsChanged(MetricsChangedEvent.of("GH1", Type.HUMIDITY_PCT, 55.0));
+
+            trigger.drain();
+
+            ArgumentCaptor<Map<String, MetricChanges>> batch = ArgumentCaptor.forClass(Map.class);
+            verify(service).evaluateRulesForChanges(batch.capture());
+            MetricChanges gh1 = batch.getValue().get("GH1");
+            assertEquals(12.0, gh1.values()[Type.TEMPERATURE.ordinal()]);
+            assertEquals(55.0, gh1.values()[Type.HUMIDITY_PCT.ordinal()]);
+            assertEquals(Set.of("INT_TEMP", "EXT_TEMP"), gh1.sensors().keySet());
+            assertEquals(21.0, gh1.sensors().get("INT_TEMP")[Type.TEMPERATURE.ordinal()]);
+            assertEquals(12.0, gh1.sensors().get("EXT_TEMP")[Type.TEMPERATURE.ordinal()]);
+            assertTrue(Double.isNaN(gh1.sensors().get("INT_TEMP")[Type.HUMIDITY_PCT.ordinal()]));
+        } finally {
+            trigger.shutdown();
+        }
+    }
+
+    /**
+     * Teszteli, hogy kikapcsolt eseményvezérelt módban az események nem váltanak ki kiértékelést.
+     */
+    @Test
+    void onMetricsChanged_shouldIgnoreEvents_whenDisabled() {
+        RuleTrigger trigger = trigger(false);
+
+        trigger.onMetricsChanged(MetricsChangedEvent.of("GH1", Type.TEMPERATURE, 20.0));
+        trigger.drain();
+
+        verify(service, never()).evaluateRulesForChanges(anyMap());
+        trigger.shutdown();
+    }
+
+    /**
+     * Teszteli, hogy a más példányhoz tartozó üvegház változása nem vész el, hanem a gazdájához továbbítódik,
+     * és a helyben csak a saját üvegház értékelődik ki.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    void drain_shouldForwardChangesOfGreenhousesOwnedElsewhere() {
+        when(cluster.owns("GH1")).thenReturn(true);
+        when(cluster.owns("GH2")).thenReturn(false);
+        RuleTrigger trigger = trigger(true);
+        try {
+            trigger.onMetricsChanged(MetricsChangedEvent.of("GH1", Type.TEMPERATURE, 20.0));
+            trigger.onMetricsChanged(MetricsChangedEvent.of("GH2", Type.HUMIDITY_PCT, 60.0));
+
+            trigger.drain();
+
+            ArgumentCaptor<Map<String, MetricChanges>> local = ArgumentCaptor.forClass(Map.class);
+            ArgumentCaptor<Map<String, MetricChanges>> remote = ArgumentCaptor.forClass(Map.class);
+            verify(service).evaluateRulesForChanges(local.capture());
+            verify(outbox).forward(remote.capture());
+            assertEquals(1, local.getValue().size());
+            assertEquals(20.0, local.getValue().get("GH1").values()[Type.TEMPERATURE.ordinal()]);
+            assertEquals(1, remote.getValue().size());
+            assertEquals(60.0, remote.getValue().get("GH2").values()[Type.HUMIDITY_PCT.ordinal()]);
+        } finally {
+            trigger.shutdown();
+        }
+    }
+
+    /**
+     * Teszteli, hogy sikertelen továbbításnál a változás visszakerül a sorba, és a közben érkezett újabb érték nyer.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    void drain_shouldRequeueChanges_whenForwardingFails() {
+        when(cluster.owns("GH2")).thenReturn(false);
+        doThrow(new IllegalStateException("mongo down")).doNothing().when(outbox).forward(anyMap());
+        RuleTrigger trigger = trigger(true);
+        try {
+            trigger.onMetricsChanged(MetricsChangedEvent.of("GH2", Type.HUMIDITY_PCT, 60.0));
+            trigger.onMetricsChanged(MetricsChangedEvent.of("GH2", Type.TEMPERATURE, 18.0));
+            trigger.drain();
+            trigger.onMetricsChanged(MetricsChangedEvent.of("GH2", Type.TEMPERATURE, 19.0));
+            trigger.drain();
+
+            ArgumentCaptor<Map<String, MetricChanges>> remote = ArgumentCaptor.forClass(Map.class);
+            verify(outbox, times(2)).forward(remote.capture());
+            double[] retried = remote.getAllValues().get(1).get("GH2").values();
+            assertEquals(60.0, retried[Type.HUMIDITY_PCT.ordinal()]);
+            assertEquals(19.0, retried[Type.TEMPERATURE.ordinal()]);
+            verify(service, never()).evaluateRulesForChanges(anyMap());
+        } finally {
+            trigger.shutdown();
+        }
+    }
+
+    /**
+     * Teszteli, hogy a nekünk továbbított változások a következő feldolgozásban kiértékelődnek.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    void claimForwarded_shouldEvaluateChangesForwardedToThisNode() {
+        when(outbox.claim()).thenReturn(Map.of("GH3", MetricChanges.of(MetricsChangedEvent.of("GH3", Type.TEMPERATURE, 31.0))));
+        when(cluster.owns("GH3")).thenReturn(true);
+        RuleTrigger trigger = trigger(true);
+        try {
+            trigger.claimForwarded();
+            trigger.drain();
+
+            ArgumentCaptor<Map<String, MetricChanges>> local = ArgumentCaptor.forClass(Map.class);
+            verify(service).evaluateRulesForChanges(local.capture());
+            assertEquals(31.0, local.getValue().get("GH3").values()[Type.TEMPERATURE.ordinal()]);
+            verify(outbox, never()).forward(anyMap());
+        } finally {
+            trigger.shutdown();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.greenhouse.smart_greenhouse_backend.service.persistence;
+
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkWriteBufferTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private final List<List<Doc>> inserted = new ArrayList<>();
+    private BulkWriteBuffer<Doc> buffer;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.bulkOps(eq(BulkMode.UNORDERED), eq(Doc.class))).thenReturn(bulkOperations);
+        lenient().when(bulkOperations.insert(anyList())).thenAnswer(inv -> {
+            inserted.add(new ArrayList<>(inv.getArgument(0)));
+            return bulkOperations;
+        });
+        lenient().when(bulkOperations.execute()).thenAnswer(inv -> {
+            BulkWriteResult result = mock(BulkWriteResult.class);
+            when(result.getInsertedCount()).thenReturn(inserted.get(inserted.size() - 1).size());
+            return result;
+        });
+        buffer = newBuffer(100, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        buffer.close();
+    }
+
+    private BulkWriteBuffer<Doc> newBuffer(int batchSize, int capacity) {
+        return new BulkWriteBuffer<>("test", mongoTemplate, Doc.class, Doc::key, (older, newer) -> newer,
+                batchSize, capacity, Duration.ofHours(1), new SimpleMeterRegistry());
+    }
+
+    /**
+     * Teszteli, hogy az azonos kulcsú elemek összevonódnak, és egy rendezetlen bulk beszúrás megy ki.
+     */
+    @Test
+    void flush_shouldCoalesceByKeyIntoOneBulkInsert() {
+        buffer.add(new Doc("gh1:0", 1));
+        buffer.add(new Doc("gh2:0", 2));
+        buffer.add(new Doc("gh1:0", 3));
+
+        assertEquals(2, buffer.flush());
+
+        assertEquals(List.of(List.of(new Doc("gh1:0", 3), new Doc("gh2:0", 2))), inserted);
+        assertEquals(0, buffer.size());
+    }
+
+    /**
+     * Teszteli, hogy betelt puffernél a beíró szál maga írja ki az adatot (ellennyomás).
+     */
+    @Test
+    void add_shouldFlushInlineWhenCapacityReached() {
+        buffer.close();
+        buffer = newBuffer(2, 2);
+
+        buffer.add(new Doc("a", 1));
+        buffer.add(new Doc("b", 2));
+
+        assertEquals(1, inserted.size());
+        assertEquals(0, buffer.size());
+    }
+
+    /**
+     * Teszteli, hogy átmeneti hiba után az elemek a pufferben maradnak, és a következő kiírás pótolja őket.
+     */
+    @Test
+    void flush_shouldRequeueOnTransientFailure() {
+        when(bulkOperations.insert(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("timeout"))
+                .thenAnswer(inv -> {
+                    inserted.add(new ArrayList<>(inv.getArgument(0)));
+                    return bulkOperations;
+                });
+
+        buffer.add(new Doc("a", 1));
+        buffer.add(new Doc("b", 2));
+
+        assertEquals(0, buffer.flush());
+        assertEquals(2, buffer.size());
+        assertEquals(2, buffer.flush());
+        assertEquals(0, buffer.size());
+    }
+
+    /**
+     * Teszteli, hogy leállításkor a maradék kiíródik.
+     */
+    @Test
+    void close_shouldFlushPending() {
+        buffer.add(new Doc("a", 1));
+
+        buffer.close();
+
+        ArgumentCaptor<List<Doc>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bulkOperations).insert(captor.capture());
+        assertEquals(List.of(new Doc("a", 1)), captor.getValue());
+    }
+
+    private record Doc(String key, int value) {
+    }
+}
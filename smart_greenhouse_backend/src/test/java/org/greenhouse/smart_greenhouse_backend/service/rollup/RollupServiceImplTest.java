@@ -0,0 +1,132 @@
+package org.greenhouse.smart_greenhouse_backend.service.rollup;
+
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.greenhouse.smart_greenhouse_backend.dto.RollupSeriesDto;
+import org.greenhouse.smart_greenhouse_backend.model.documents.SensorRollup;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RollupServiceImplTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-18T10:05:30Z");
+
+    @Mock private MongoTemplate mongoTemplate;
+    @Mock private IndexOperations indexOperations;
+    @Mock private MongoCollection<Document> sensorData;
+    @Mock private MongoCollection<Document> weatherSnapshots;
+    @Mock private AggregateIterable<Document> aggregation;
+
+    private RollupServiceImpl service() {
+        return new RollupServiceImpl(mongoTemplate, new SimpleMeterRegistry(), true, Duration.ofMinutes(2),
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    /**
+     * Teszteli, hogy a felbontásválasztás csak addig durvít, amíg a pontkeret megköveteli.
+     */
+    @Test
+    void pick_shouldChooseFinestResolutionWithinBudget() {
+        Instant from = Instant.parse("2026-10-01T00:00:00Z");
+
+        assertEquals(RollupResolution.MINUTE, RollupResolution.pick(from, from.plus(Duration.ofHours(2)), 500));
+        assertEquals(RollupResolution.HOUR, RollupResolution.pick(from, from.plus(Duration.ofDays(3)), 500));
+        assertEquals(RollupResolution.DAY, RollupResolution.pick(from, from.plus(Duration.ofDays(90)), 500));
+        assertEquals(RollupResolution.DAY, RollupResolution.pick(from, from.plus(Duration.ofDays(3650)), 500));
+    }
+
+    /**
+     * Teszteli, hogy a lekérdezés a választott felbontás gyűjteményéből olvas, és jelzi a lefedettséget.
+     */
+    @Test
+    void query_shouldReadFromChosenResolutionCollection() {
+        Instant from = Instant.parse("2026-10-10T00:00:00Z");
+        Instant to = Instant.parse("2026-10-17T00:00:00Z");
+        SensorRollup point = SensorRollup.builder().code("S1").bucket(from).build();
+        when(mongoTemplate.find(any(Query.class), eq(SensorRollup.class), eq("sensor_rollups_1h")))
+                .thenReturn(List.of(point));
+        when(mongoTemplate.findById("sensor:1h", Document.class, RollupServiceImpl.WATERMARKS))
+                .thenReturn(new Document("until", Date.from(to)));
+
+        RollupSeriesDto series = service().query("sensor", "gh1", "S1", from, to, 200, null);
+
+        assertEquals("1h", series.getResolution());
+        assertEquals(List.of(point), series.getPoints());
+        assertEquals(to, series.getCoveredUntil());
+    }
+
+    /**
+     * Teszteli, hogy az időjárás-forrásnál a sorozatkód rögzített, és a hibás időszakot elutasítja.
+     */
+    @Test
+    void query_shouldUseWeatherSeriesCodeAndRejectInvalidRange() {
+        Instant from = Instant.parse("2026-10-18T08:00:00Z");
+
+        RollupSeriesDto series = service().query("weather", "gh1", "ignored", from, from.plusSeconds(3600), 500, null);
+        assertEquals(RollupSource.WEATHER_CODE, series.getCode());
+        assertEquals("1m", series.getResolution());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service().query("sensor", "gh1", "S1", from, from, 500, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> service().query("nincsilyen", "gh1", "S1", from, from.plusSeconds(60), 500, null));
+    }
+
+    /**
+     * Teszteli, hogy egy futás csak a watermark és a lezárt vödrök vége közti ablakot dolgozza fel,
+     * majd továbblépteti a watermarkot.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void rollUp_shouldProcessOnlyClosedBucketsSinceWatermark() {
+        when(mongoTemplate.indexOps(anyString())).thenReturn(indexOperations);
+        when(mongoTemplate.findById(anyString(), eq(Document.class), eq(RollupServiceImpl.WATERMARKS)))
+                .thenAnswer(inv -> switch ((String) inv.getArgument(0)) {
+                    case "sensor:1m", "weather:1m", "sensor:1h", "weather:1h" ->
+                            new Document("until", Date.from(Instant.parse("2026-10-18T10:00:00Z")));
+                    default -> new Document("until", Date.from(Instant.parse("2026-10-18T00:00:00Z")));
+                });
+        when(mongoTemplate.getCollection("sensor_data")).thenReturn(sensorData);
+        when(mongoTemplate.getCollection("weather_snapshots")).thenReturn(weatherSnapshots);
+        when(sensorData.aggregate(anyList())).thenReturn(aggregation);
+        when(weatherSnapshots.aggregate(anyList())).thenReturn(aggregation);
+        when(aggregation.allowDiskUse(true)).thenReturn(aggregation);
+
+        service().rollUp();
+
+        ArgumentCaptor<List<Document>> pipeline = ArgumentCaptor.forClass(List.class);
+        verify(sensorData).aggregate(pipeline.capture());
+        Document range = pipeline.getValue().get(0).get("$match", Document.class).get("timestamp", Document.class);
+        assertEquals(Date.from(Instant.parse("2026-10-18T10:00:00Z")), range.get("$gte"));
+        assertEquals(Date.from(Instant.parse("2026-10-18T10:03:00Z")), range.get("$lt"));
+        assertEquals("sensor_rollups_1m",
+                pipeline.getValue().get(3).get("$merge", Document.class).getString("into"));
+
+        verify(aggregation, times(2)).toCollection();
+        verify(mongoTemplate, times(2)).upsert(any(Query.class), any(Update.class), eq(RollupServiceImpl.WATERMARKS));
+        // az órás és napi szint még nem zárt le új vödröt
+        verify(mongoTemplate, never()).getCollection("sensor_rollups_1m");
+        verify(mongoTemplate, never()).getCollection("sensor_rollups_1h");
+    }
+}
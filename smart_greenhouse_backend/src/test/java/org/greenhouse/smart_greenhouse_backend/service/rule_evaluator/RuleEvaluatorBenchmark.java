@@ -0,0 +1,158 @@
+package org.greenhouse.smart_greenhouse_backend.service.rule_evaluator;
+
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ConditionRule;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
+import org.greenhouse.smart_greenhouse_backend.model.documents.PlantProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Szabálykiértékelés áteresztőképessége (kiértékelés/másodperc): a korábbi, szabályonként {@link Map}-ből
+ * kereső megoldás a lefordított tervvel ({@link CompiledRules}) szemben, {@link Map}-es és primitív
+ * vektoros bemenettel, közvetlenül a tervvel (lista nélkül, csak bithalmaz), illetve kötegelten: a teljes
+ * bemenetkészlet egy oszlopos blokkban ({@link ReadingBlock}), egyetlen hívással ({@link ActionMatrix}).
+ * A {@code batchWithConditions} ugyanez négy további kifejezés alapú szabállyal (hiszterézis, tartósság,
+ * változási sebesség, napszak), soronként előre létrehozott állapottal ({@link RuleState}).
+ * <p>
+ * A bemenetek kb. negyede a tartományon kívül esik; a {@code -prof gc} {@code gc.alloc.rate.norm}
+ * sora a kiértékelésenkénti foglalást mutatja.
+ * Futtatás: {@link #main} vagy {@code org.openjdk.jmh.Main RuleEvaluatorBenchmark -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleEvaluatorBenchmark {
+
+    private static final int INPUTS = 1024;
+
+    /** szabályok száma a profilban (a mellékelt profilokban 3–6) */
+    @Param({"4", "16", "64"})
+    public int rules;
+
+    private RuleEvaluatorServiceImpl service;
+    private PlantProfile profile;
+    private CompiledRules compiled;
+    private Map<Type, Double>[] maps;
+    private double[][] vectors;
+    private final BitSet fired = new BitSet();
+    private ReadingBlock block;
+    private CompiledRules conditional;
+    private RuleState[] states;
+    private long now;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Random random = new Random(7);
+        service = new RuleEvaluatorServiceImpl();
+        profile = new PlantProfile();
+        profile.setId("bench");
+        profile.setVersion(1L);
+        profile.setRules(RuleEvaluatorServiceImplTest.randomRules(random, rules));
+        compiled = service.compile(profile);
+
+        maps = new Map[INPUTS];
+        vectors = new double[INPUTS][];
+        for (int i = 0; i < INPUTS; i++) {
+            maps[i] = RuleEvaluatorServiceImplTest.randomValues(random);
+            double[] vector = CompiledRules.input();
+            maps[i].forEach((type, value) -> vector[type.ordinal()] = value);
+            vectors[i] = vector;
+        }
+        block = new ReadingBlock(INPUTS);
+        for (int i = 0; i < INPUTS; i++) {
+            int row = i;
+            maps[i].forEach((type, value) -> block.set(row, type, value));
+        }
+
+        PlantProfile withConditions = new PlantProfile();
+        withConditions.setRules(profile.getRules());
+        withConditions.setConditions(List.of(
+                new ConditionRule("soilMoisturePct < 30 until soilMoisturePct > 40", "IRRIGATION_ON"),
+                new ConditionRule("temperature > 28 for 10m", "VENT_OPEN"),
+                new ConditionRule("rate(temperature) > 3 and time between 08:00 and 19:00", "SHADE_ON"),
+                new ConditionRule("humidityPct < 40 or (humidityPct < 50 and temperature > 25)", "HUMIDIFIER_ON")));
+        conditional = service.compile(withConditions);
+        states = new RuleState[INPUTS];
+        for (int i = 0; i < INPUTS; i++) states[i] = conditional.newState();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void legacy(Blackhole bh) {
+        for (Map<Type, Double> values : maps) {
+            bh.consume(RuleEvaluatorServiceImplTest.legacyEvaluate(profile, values));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void compiledMap(Blackhole bh) {
+        for (Map<Type, Double> values : maps) {
+            bh.consume(service.evaluate(profile, values));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void compiledVector(Blackhole bh) {
+        for (double[] values : vectors) {
+            bh.consume(service.evaluate(profile, values));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void planBitSet(Blackhole bh) {
+        for (double[] values : vectors) {
+            compiled.evaluate(values, fired);
+            bh.consume(fired.cardinality());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public ActionMatrix batch() {
+        return service.evaluate(profile, block);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public ActionMatrix batchWithConditions() {
+        now += 60_000L;
+        return conditional.evaluate(block, states, now, 600);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RuleEvaluatorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
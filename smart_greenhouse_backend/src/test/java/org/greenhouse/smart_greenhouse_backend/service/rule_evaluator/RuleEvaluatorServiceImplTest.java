@@ -1,18 +1,34 @@
 package org.greenhouse.smart_greenhouse_backend.service.rule_evaluator;
 
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ActionRule;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ConditionRule;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.Range;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.DeviceAction;
 import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
 import org.greenhouse.smart_greenhouse_backend.model.documents.PlantProfile;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.ClusterRebalancedEvent;
+import org.greenhouse.smart_greenhouse_backend.service.cluster.ConsistentHashRing;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(MockitoExtension.class)
@@ -83,4 +99,315 @@ class RuleEvaluatorServiceImplTest {
 
         assertTrue(result.isEmpty());
     }
-}
\ No newline at end of file
+
+    /**
+     * Teszteli, hogy a lefordított terv véletlen profilokon és bemeneteken ugyanazokat az akciókat adja,
+     * ugyanabban a sorrendben, mint a korábbi, szabályonként bejáró kiértékelés.
+     */
+    @Test
+    void evaluate_shouldMatchReferenceImplementation() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            PlantProfile profile = new PlantProfile();
+            profile.setId("p" + round);
+            profile.setRules(randomRules(random, 1 + random.nextInt(20)));
+
+            for (int i = 0; i < 20; i++) {
+                Map<Type, Double> values = randomValues(random);
+                List<String> expected = legacyEvaluate(profile, values);
+
+                assertEquals(expected, service.evaluate(profile, values));
+
+                double[] vector = CompiledRules.input();
+                values.forEach((type, value) -> vector[type.ordinal()] = value);
+                assertEquals(expected, service.evaluate(profile, vector));
+            }
+        }
+    }
+
+    /**
+     * Teszteli, hogy a terv profil-azonosítónként és verziónként gyorsítótárazódik, új verzió újrafordítást okoz.
+     */
+    @Test
+    void compile_shouldCachePerProfileVersion() {
+        PlantProfile profile = new PlantProfile();
+        profile.setId("tomato");
+        profile.setVersion(1L);
+        profile.setRules(List.of(new ActionRule(Type.TEMPERATURE, new Range(20.0, 30.0), "VENT_OPEN")));
+
+        PlantProfile sameVersion = new PlantProfile();
+        sameVersion.setId("tomato");
+        sameVersion.setVersion(1L);
+        sameVersion.setRules(new ArrayList<>(profile.getRules()));
+
+        CompiledRules first = service.compile(profile);
+        assertSame(first, service.compile(sameVersion));
+
+        sameVersion.setVersion(2L);
+        sameVersion.setRules(List.of(new ActionRule(Type.TEMPERATURE, new Range(10.0, 15.0), "SHADE_ON")));
+        CompiledRules second = service.compile(sameVersion);
+        assertNotSame(first, second);
+        assertEquals(List.of("SHADE_ON"), service.evaluate(sameVersion, Map.of(Type.TEMPERATURE, 25.0)));
+    }
+
+    /**
+     * Teszteli, hogy a kimeneti bithalmaz újrahasznosítható: a hívás elején törlődik, és hiányzó (NaN) érték nem vált ki akciót.
+     */
+    @Test
+    void compiledRules_shouldReuseOutputAndIgnoreMissingValues() {
+        CompiledRules rules = new CompiledRules(List.of(
+                new ActionRule(Type.TEMPERATURE, new Range(20.0, 30.0), "VENT_OPEN"),
+                new ActionRule(Type.SOILMOISTURE_PTC, new Range(40.0, null), "IRRIGATION_ON")));
+        BitSet fired = new BitSet();
+        double[] values = CompiledRules.input();
+
+        values[Type.TEMPERATURE.ordinal()] = 35.0;
+        rules.evaluate(values, fired);
+        assertEquals(List.of("VENT_OPEN"), rules.actions(fired));
+
+        values[Type.TEMPERATURE.ordinal()] = Double.NaN;
+        values[Type.SOILMOISTURE_PTC.ordinal()] = 10.0;
+        rules.evaluate(values, fired);
+        assertEquals(List.of("IRRIGATION_ON"), rules.actions(fired));
+    }
+
+    /**
+     * Teszteli, hogy a kötegelt kiértékelés soronként ugyanazt adja, mint az egyedi, a 64 soros szóhatárokon át is.
+     */
+    @Test
+    void evaluateBatch_shouldMatchPerRowEvaluation() {
+        Random random = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            PlantProfile profile = new PlantProfile();
+            profile.setId("batch" + round);
+            profile.setRules(randomRules(random, 1 + random.nextInt(20)));
+
+            int rows = 1 + random.nextInt(200);
+            ReadingBlock block = new ReadingBlock(rows);
+            List<Map<Type, Double>> inputs = new ArrayList<>();
+            for (int row = 0; row < rows; row++) {
+                Map<Type, Double> values = randomValues(random);
+                int r = row;
+                values.forEach((type, value) -> block.set(r, type, value));
+                inputs.add(values);
+            }
+
+            ActionMatrix matrix = service.evaluate(profile, block);
+            for (int row = 0; row < rows; row++) {
+                List<String> expected = legacyEvaluate(profile, inputs.get(row));
+                assertEquals(expected, matrix.actions(row));
+                assertEquals(!expected.isEmpty(), matrix.anyFired(row));
+            }
+        }
+    }
+
+    /**
+     * Teszteli, hogy a hiszterézis retesz az alsó küszöb alatt bekapcsol, a sávban tart, és csak a felső fölött enged el.
+     */
+    @Test
+    void conditions_shouldHoldHysteresisBand() {
+        PlantProfile profile = conditional("soilMoisturePct < 30 until soilMoisturePct > 40", "IRRIGATION_ON");
+        Instant t = Instant.parse("2024-06-01T10:00:00Z");
+
+        assertEquals(List.of(), tick(profile, "GH1", Type.SOILMOISTURE_PTC, 35.0, t));
+        assertEquals(List.of("IRRIGATION_ON"), tick(profile, "GH1", Type.SOILMOISTURE_PTC, 25.0, t.plusSeconds(60)));
+        assertEquals(List.of("IRRIGATION_ON"), tick(profile, "GH1", Type.SOILMOISTURE_PTC, 35.0, t.plusSeconds(120)));
+        assertEquals(List.of(), tick(profile, "GH1", Type.SOILMOISTURE_PTC, 41.0, t.plusSeconds(180)));
+        assertEquals(List.of(), tick(profile, "GH1", Type.SOILMOISTURE_PTC, 35.0, t.plusSeconds(240)));
+    }
+
+    /**
+     * Teszteli, hogy a "for" feltétel csak a megadott ideje folyamatosan fennálló állapotra vált ki, és megszakításkor újraindul.
+     */
+    @Test
+    void conditions_shouldRequireDuration() {
+        PlantProfile profile = conditional("temperature > 30 for 10m", "VENT_OPEN");
+        Instant t = Instant.parse("2024-06-01T10:00:00Z");
+
+        assertEquals(List.of(), tick(profile, "GH1", Type.TEMPERATURE, 31.0, t));
+        assertEquals(List.of(), tick(profile, "GH1", Type.TEMPERATURE, 31.0, t.plus(Duration.ofMinutes(5))));
+        assertEquals(List.of("VENT_OPEN"), tick(profile, "GH1", Type.TEMPERATURE, 31.0, t.plus(Duration.ofMinutes(10))));
+        assertEquals(List.of(), tick(profile, "GH1", Type.TEMPERATURE, 29.0, t.plus(Duration.ofMinutes(11))));
+        assertEquals(List.of(), tick(profile, "GH1", Type.TEMPERATURE, 31.0, t.plus(Duration.ofMinutes(20))));
+        // másik üvegháznak saját állapota van
+        assertEquals(List.of(), tick(profile, "GH2", Type.TEMPERATURE, 31.0, t.plus(Duration.ofMinutes(20))));
+    }
+
+    /**
+     * Teszteli, hogy a változási sebesség óránként értendő, és a napszak ablakon kívül nem vált ki akciót.
+     */
+    @Test
+    void conditions_shouldEvaluateRateWithinTimeWindow() {
+        PlantProfile profile = conditional("time between 08:00 and 19:00 and rate(temperature) > 3", "VENT_OPEN");
+        LocalDate day = LocalDate.of(2024, 6, 1);
+        ZoneId zone = ZoneId.systemDefault();
+
+        assertEquals(List.of(), tick(profile, "GH1", Type.TEMPERATURE, 20.0, day.atTime(10, 0).atZone(zone).toInstant()));
+        assertEquals(List.of("VENT_OPEN"), tick(profile, "GH1", Type.TEMPERATURE, 22.0, day.atTime(10, 30).atZone(zone).toInstant()));
+        assertEquals(List.of(), tick(profile, "GH1", Type.TEMPERATURE, 22.5, day.atTime(11, 0).atZone(zone).toInstant()));
+        assertEquals(List.of(), tick(profile, "GH1", Type.TEMPERATURE, 26.0, day.atTime(20, 0).atZone(zone).toInstant()));
+    }
+
+    /**
+     * Teszteli, hogy az akciónevek a fordításkor eszközakcióvá oldódnak (ismeretlen névnél {@code null}),
+     * a név pedig a naplózáshoz megmarad.
+     */
+    @Test
+    void compile_shouldResolveDeviceActions() {
+        PlantProfile profile = new PlantProfile();
+        profile.setRules(List.of(
+                new ActionRule(Type.TEMPERATURE, new Range(18.0, 28.0), "VENT_OPEN"),
+                new ActionRule(Type.HUMIDITY_PCT, new Range(40.0, 80.0), "WARP_DRIVE_ON")));
+        profile.setConditions(List.of(new ConditionRule("soilMoisturePct < 30", "IRRIGATION_ON")));
+
+        ReadingBlock block = new ReadingBlock(1);
+        ActionMatrix matrix = service.evaluate(profile, block, List.of("GH1"), Instant.now());
+
+        assertEquals(3, matrix.ruleCount());
+        assertEquals(2, matrix.rangeRuleCount());
+        assertEquals(DeviceAction.VENT_OPEN, matrix.deviceAction(0));
+        assertNull(matrix.deviceAction(1));
+        assertEquals("WARP_DRIVE_ON", matrix.action(1));
+        assertEquals(DeviceAction.IRRIGATION_ON, matrix.deviceAction(2));
+    }
+
+    /**
+     * Teszteli, hogy a hibás kifejezésű szabály kimarad, a tartomány- és kifejezés alapú akciók pedig külön lekérdezhetők.
+     */
+    @Test
+    void conditions_shouldSkipInvalidExpressionAndSeparateFromRangeRules() {
+        PlantProfile profile = new PlantProfile();
+        profile.setRules(List.of(new ActionRule(Type.TEMPERATURE, new Range(18.0, 28.0), "SHADE_ON")));
+        profile.setConditions(List.of(
+                new ConditionRule("soil < 30", "IRRIGATION_ON"),
+                new ConditionRule("(temperature > 30 or humidityPct < 40) and not humidityPct > 90", "VENT_OPEN")));
+
+        assertEquals(2, service.compile(profile).ruleCount());
+
+        ReadingBlock block = new ReadingBlock(1);
+        block.set(0, Type.TEMPERATURE, 32.0);
+        ActionMatrix matrix = service.evaluate(profile, block, List.of("GH1"), Instant.now());
+
+        assertEquals(List.of("SHADE_ON", "VENT_OPEN"), matrix.actions(0));
+        assertEquals(List.of("SHADE_ON"), matrix.rangeActions(0));
+        assertEquals(List.of("VENT_OPEN"), matrix.conditionActions(0));
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> new RuleExpression.Compiler().compile("temperature > 30 for 10x"));
+        assertTrue(error.getMessage().contains("időegység"));
+    }
+
+    /**
+     * Teszteli, hogy eseményvezérelt kiértékelésnél csak a változott metrikára hivatkozó tartomány- és kifejezés
+     * alapú szabályok futnak, így a többi szabály tartóssági állapota sem lép tovább.
+     */
+    @Test
+    void evaluateChanged_shouldRunOnlyRulesReferencingChangedMetrics() {
+        PlantProfile profile = new PlantProfile();
+        profile.setId("incremental");
+        profile.setRules(List.of(
+                new ActionRule(Type.TEMPERATURE, new Range(18.0, 28.0), "SHADE_ON"),
+                new ActionRule(Type.SOILMOISTURE_PTC, new Range(40.0, 60.0), "IRRIGATION_ON")));
+        profile.setConditions(List.of(new ConditionRule("humidityPct < 40 for 10m", "HUMIDIFIER_ON")));
+        Instant t = Instant.parse("2024-06-01T10:00:00Z");
+
+        ReadingBlock block = new ReadingBlock(2);
+        for (int row = 0; row < 2; row++) {
+            block.set(row, Type.TEMPERATURE, 35.0);
+            block.set(row, Type.SOILMOISTURE_PTC, 20.0);
+            block.set(row, Type.HUMIDITY_PCT, 30.0);
+        }
+        int temperature = 1 << Type.TEMPERATURE.ordinal();
+        int humidity = 1 << Type.HUMIDITY_PCT.ordinal();
+        List<String> keys = List.of("GH1", "GH2");
+
+        ActionMatrix first = service.evaluate(profile, block, keys, t, new int[]{temperature, humidity});
+        assertEquals(List.of("SHADE_ON"), first.actions(0));
+        assertEquals(List.of(), first.actions(1));
+
+        // GH1 páratartalma nem változott: a "for" állapota nem indult el, GH2-é 10 perce fut
+        ActionMatrix later = service.evaluate(profile, block, keys, t.plus(Duration.ofMinutes(10)), new int[]{humidity, humidity});
+        assertEquals(List.of(), later.actions(0));
+        assertEquals(List.of("HUMIDIFIER_ON"), later.actions(1));
+    }
+
+    /**
+     * Teszteli, hogy a másik csomóponthoz átkerült üvegház szabályállapota eldobódik, így egy későbbi
+     * visszakerüléskor a "for" időzítő nem a régi, közben nem frissült kezdőpontból folytatódik.
+     */
+    @Test
+    void onRebalanced_shouldDropStateOfGreenhousesThatMoved() {
+        ConsistentHashRing alone = new ConsistentHashRing(List.of("node-a"), 16);
+        ConsistentHashRing shared = new ConsistentHashRing(List.of("node-a", "node-b"), 16);
+        String moved = null;
+        String kept = null;
+        for (int i = 0; moved == null || kept == null; i++) {
+            String code = "GH" + i;
+            if ("node-b".equals(shared.owner(code))) moved = moved == null ? code : moved;
+            else kept = kept == null ? code : kept;
+        }
+        PlantProfile profile = conditional("temperature > 30 for 10m", "VENT_OPEN");
+        Instant t = Instant.parse("2024-06-01T10:00:00Z");
+        tick(profile, moved, Type.TEMPERATURE, 31.0, t);
+        tick(profile, kept, Type.TEMPERATURE, 31.0, t);
+
+        service.onRebalanced(new ClusterRebalancedEvent("node-a", alone, shared));
+
+        assertEquals(List.of(), tick(profile, moved, Type.TEMPERATURE, 31.0, t.plus(Duration.ofMinutes(10))));
+        assertEquals(List.of("VENT_OPEN"), tick(profile, kept, Type.TEMPERATURE, 31.0, t.plus(Duration.ofMinutes(10))));
+    }
+
+    private static PlantProfile conditional(String when, String action) {
+        PlantProfile profile = new PlantProfile();
+        profile.setId("conditional");
+        profile.setConditions(List.of(new ConditionRule(when, action)));
+        return profile;
+    }
+
+    private List<String> tick(PlantProfile profile, String code, Type type, double value, Instant now) {
+        ReadingBlock block = new ReadingBlock(1);
+        block.set(0, type, value);
+        return service.evaluate(profile, block, List.of(code), now).actions(0);
+    }
+
+    /**
+     * A korábbi kiértékelés: szabályonként végigjárja a profilt, és a {@link Map}-ből keresi az értéket.
+     * Összehasonlításhoz és a {@link RuleEvaluatorBenchmark}-hoz.
+     */
+    static List<String> legacyEvaluate(PlantProfile profile, Map<Type, Double> values) {
+        List<String> actions = new ArrayList<>();
+        if (profile.getRules() == null) {
+            return actions;
+        }
+        for (ActionRule rule : profile.getRules()) {
+            Double measured = values.get(rule.metric());
+            if (measured != null) {
+                Range range = rule.range();
+                if (range != null && (measured < range.min() || measured > range.max())) {
+                    actions.add(rule.action());
+                }
+            }
+        }
+        return actions;
+    }
+
+    static List<ActionRule> randomRules(Random random, int count) {
+        String[] actions = {"VENT_OPEN", "SHADE_ON", "IRRIGATION_ON", "LIGHT_ON", "HUMIDIFIER_ON", "VENT_CLOSE"};
+        Type[] types = Type.values();
+        List<ActionRule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double min = random.nextInt(40);
+            rules.add(new ActionRule(types[random.nextInt(types.length)],
+                    new Range(min, min + 5 + random.nextInt(30)),
+                    actions[random.nextInt(actions.length)]));
+        }
+        return rules;
+    }
+
+    static Map<Type, Double> randomValues(Random random) {
+        Map<Type, Double> values = new EnumMap<>(Type.class);
+        for (Type type : Type.values()) {
+            if (random.nextInt(4) > 0) values.put(type, random.nextDouble() * 80);
+        }
+        return values;
+    }
+}
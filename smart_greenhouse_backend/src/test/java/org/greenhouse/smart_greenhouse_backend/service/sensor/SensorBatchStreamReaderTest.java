@@ -0,0 +1,97 @@
+package org.greenhouse.smart_greenhouse_backend.service.sensor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult.Item;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult.Status;
+import org.greenhouse.smart_greenhouse_backend.model.documents.SensorData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SensorBatchStreamReaderTest {
+
+    @Mock
+    private SensorService sensorService;
+
+    private SensorBatchStreamReader reader;
+    private final List<List<String>> chunks = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        reader = new SensorBatchStreamReader(sensorService, new ObjectMapper().registerModule(new JavaTimeModule()), 2);
+        when(sensorService.ingestBatch(anyList())).thenAnswer(inv -> {
+            List<SensorData> chunk = inv.getArgument(0);
+            chunks.add(chunk.stream().map(SensorData::getCode).toList());
+            SensorBatchResult result = new SensorBatchResult();
+            for (int i = 0; i < chunk.size(); i++) {
+                result.add(new Item(i, Status.CREATED, "id-" + chunk.get(i).getCode(), null));
+            }
+            return result;
+        });
+    }
+
+    private SensorBatchResult ingest(String body) throws IOException {
+        return reader.ingest(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Teszteli, hogy az NDJSON folyam részkötegekben kerül mentésre, és a nem leképezhető sor
+     * csak a saját tételét érvényteleníti, az indexek a beküldés sorrendjét követik.
+     */
+    @Test
+    void ingest_shouldChunkNdjsonAndKeepGoingAfterUnmappableLine() throws IOException {
+        SensorBatchResult result = ingest("""
+                {"code":"a","temperature":20.5}
+                {"code":"b","temperature":"meleg"}
+                {"code":"c","humidity":40}
+                {"code":"d","timestamp":"2026-10-18T10:00:00Z","soilMoisture":30}
+                """);
+
+        assertEquals(List.of(List.of("a", "c"), List.of("d")), chunks);
+        assertEquals(3, result.getAccepted());
+        assertEquals(1, result.getRejected());
+        assertEquals(List.of(0, 1, 2, 3), result.getItems().stream().map(Item::index).toList());
+        assertEquals(Status.INVALID, result.getItems().get(1).status());
+        assertEquals("id-c", result.getItems().get(2).id());
+    }
+
+    /**
+     * Teszteli, hogy a JSON tömb ugyanazon az úton dolgozódik fel.
+     */
+    @Test
+    void ingest_shouldAcceptJsonArray() throws IOException {
+        SensorBatchResult result = ingest("[{\"code\":\"a\",\"temperature\":20.5},{\"code\":\"b\",\"humidity\":50}]");
+
+        assertEquals(List.of(List.of("a", "b")), chunks);
+        assertEquals(2, result.getAccepted());
+    }
+
+    /**
+     * Teszteli, hogy a bináris köteg ugyanazon a mentési úton megy át, és a csonka végét érvénytelennek jelöli.
+     */
+    @Test
+    void ingestBinary_shouldShareChunkedPersistence() throws IOException {
+        byte[] bytes = SensorBinaryCodec.encode(SensorBinaryCodecTest.sampleBatch(3));
+
+        SensorBatchResult result = reader.ingestBinary(new ByteArrayInputStream(bytes, 0, bytes.length - 2));
+
+        assertEquals(List.of(List.of("SENSOR-0", "SENSOR-1")), chunks);
+        assertEquals(2, result.getAccepted());
+        assertEquals(Status.INVALID, result.getItems().get(2).status());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+package org.greenhouse.smart_greenhouse_backend.service.sensor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.greenhouse.smart_greenhouse_backend.model.documents.SensorData;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SensorBinaryCodecTest {
+
+    static List<SensorData> sampleBatch(int size) {
+        Instant now = Instant.parse("2026-10-18T10:00:00Z");
+        List<SensorData> readings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            readings.add(SensorData.builder()
+                    .greenhouseCode("GH-" + (i % 10))
+                    .code("SENSOR-" + (i % 50))
+                    .timestamp(now.plusMillis(i * 250L))
+                    .temperature(18 + (i % 40) * 0.25)
+                    .humidity(55.5)
+                    .soilMoisture(i % 3 == 0 ? null : 38.25)
+                    .windSpeed(2.5)
+                    .build());
+        }
+        return readings;
+    }
+
+    static List<SensorData> decode(byte[] bytes) throws IOException {
+        SensorBinaryCodec.Reader reader = new SensorBinaryCodec.Reader(new ByteArrayInputStream(bytes));
+        List<SensorData> decoded = new ArrayList<>();
+        while (reader.hasNext()) {
+            decoded.add(reader.next());
+        }
+        return decoded;
+    }
+
+    /**
+     * Teszteli, hogy a kódolás-dekódolás megőrzi a méréseket (két tizedesig), a hiányzó mezőkkel együtt.
+     */
+    @Test
+    void roundTrip_shouldPreserveReadings() throws IOException {
+        List<SensorData> readings = new ArrayList<>(sampleBatch(20));
+        readings.add(SensorData.builder().code("no-greenhouse").timestamp(Instant.parse("2026-10-18T09:59:00Z"))
+                .temperature(-3.75).build());
+
+        assertEquals(readings, decode(SensorBinaryCodec.encode(readings)));
+    }
+
+    /**
+     * Teszteli, hogy a bináris köteg jóval kisebb a JSON-nál.
+     */
+    @Test
+    void encode_shouldBeMuchSmallerThanJson() throws IOException {
+        List<SensorData> readings = sampleBatch(500);
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+        int json = objectMapper.writeValueAsBytes(readings).length;
+        int binary = SensorBinaryCodec.encode(readings).length;
+
+        assertTrue(binary * 5 < json, "binary=" + binary + " json=" + json);
+    }
+
+    /**
+     * Teszteli, hogy a csonka vagy idegen adat hibát ad, nem hibás mérést.
+     */
+    @Test
+    void reader_shouldRejectTruncatedOrForeignInput() throws IOException {
+        byte[] bytes = SensorBinaryCodec.encode(sampleBatch(5));
+
+        assertThrows(IOException.class, () -> decode(Arrays.copyOf(bytes, bytes.length - 3)));
+        assertThrows(IOException.class, () -> decode("{\"code\":\"a\"}".getBytes()));
+    }
+
+    /**
+     * Teszteli, hogy a tartományon kívüli vagy túlcsorduló időbélyeg {@link IOException}, nem futásidejű hiba.
+     */
+    @Test
+    void reader_shouldRejectOutOfRangeTimestamp() {
+        SensorData farFuture = SensorData.builder().code("S1")
+                .timestamp(Instant.ofEpochMilli(SensorBinaryCodec.MAX_TIMESTAMP + 1)).temperature(20.0).build();
+        assertThrows(IOException.class, () -> decode(SensorBinaryCodec.encode(List.of(farFuture))));
+
+        // alapidő Long.MAX_VALUE, eltérés +1: az összeadás túlcsordul
+        byte[] overflow = {'S', 'G', SensorBinaryCodec.VERSION, 1, 2, 'S', '1',
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F,
+                1, 0, 0, 2, 0};
+        IOException error = assertThrows(IOException.class, () -> decode(overflow));
+        assertTrue(error.getMessage().contains("időbélyeg"));
+    }
+}
@@ -0,0 +1,105 @@
+package org.greenhouse.smart_greenhouse_backend.service.sensor;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.greenhouse.smart_greenhouse_backend.model.documents.SensorData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Szenzoradat-köteg dekódolási költsége mérésenként: JSON tömb, NDJSON és a {@link SensorBinaryCodec}.
+ * <p>
+ * A mérésenkénti méret bájtban induláskor kiíródik ({@code bytes/reading}); a {@code -prof gc}
+ * {@code gc.alloc.rate.norm} sora a mérésenkénti foglalást mutatja.
+ * Futtatás: {@link #main} vagy {@code org.openjdk.jmh.Main SensorCodecBenchmark -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorCodecBenchmark {
+
+    private static final int READINGS = 500;
+
+    private ObjectReader arrayReader;
+    private ObjectReader itemReader;
+    private byte[] json;
+    private byte[] ndjson;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        arrayReader = objectMapper.readerFor(new TypeReference<List<SensorData>>() {});
+        itemReader = objectMapper.readerFor(SensorData.class);
+
+        List<SensorData> readings = SensorBinaryCodecTest.sampleBatch(READINGS);
+        json = objectMapper.writeValueAsBytes(readings);
+        StringBuilder lines = new StringBuilder();
+        for (SensorData data : readings) {
+            lines.append(objectMapper.writeValueAsString(data)).append('\n');
+        }
+        ndjson = lines.toString().getBytes();
+        binary = SensorBinaryCodec.encode(readings);
+
+        System.out.printf("%nbytes/reading: json=%.1f ndjson=%.1f binary=%.1f%n",
+                (double) json.length / READINGS, (double) ndjson.length / READINGS, (double) binary.length / READINGS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READINGS)
+    public List<SensorData> jsonArray() throws IOException {
+        return arrayReader.readValue(json);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READINGS)
+    public List<SensorData> ndjson() throws IOException {
+        List<SensorData> decoded = new ArrayList<>(READINGS);
+        try (MappingIterator<SensorData> items = itemReader.readValues(ndjson)) {
+            while (items.hasNextValue()) {
+                decoded.add(items.nextValue());
+            }
+        }
+        return decoded;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READINGS)
+    public List<SensorData> binary() throws IOException {
+        return SensorBinaryCodecTest.decode(binary);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SensorCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,173 @@
+package org.greenhouse.smart_greenhouse_backend.service.sensor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult;
+import org.greenhouse.smart_greenhouse_backend.model.documents.SensorData;
+import org.greenhouse.smart_greenhouse_backend.repository.SensorDataRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Szenzoradat-beküldés áteresztőképessége: egyenkénti {@code ingest} (mérésenként egy {@code save})
+ * a kötegelt úttal szemben. Az eredmény mérés/másodperc ({@link OperationsPerInvocation}).
+ * <p>
+ * Alapból egy szimulált adatbázissal fut, ahol minden kérés {@code rttMicros} körülfordulási időbe
+ * és dokumentumonként {@code perDocumentMicros}-ba kerül – így a különbség a kérésszámból adódik.
+ * Valódi MongoDB-vel: {@code -Dbench.mongo.uri=mongodb://localhost:27017/greenhouse_bench}.
+ * Futtatás: {@link #main} vagy {@code org.openjdk.jmh.Main SensorIngestBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorIngestBenchmark {
+
+    private static final int READINGS = 500;
+
+    /** Szimulált kérésenkénti körülfordulási idő (mikroszekundum). Valódi adatbázisnál nem számít. */
+    @Param({"0", "250"})
+    private long rttMicros;
+
+    private static final long PER_DOCUMENT_MICROS = 2;
+
+    private MongoClient client;
+    private SensorServiceImpl service;
+    private SensorBatchStreamReader streamReader;
+    private byte[] ndjson;
+
+    @Setup
+    public void setUp() throws IOException {
+        String uri = System.getProperty("bench.mongo.uri");
+        SensorDataRepository repository;
+        MongoTemplate mongoTemplate;
+        if (uri != null) {
+            client = MongoClients.create(uri);
+            mongoTemplate = new MongoTemplate(client, "greenhouse_bench");
+            repository = new MongoRepositoryFactory(mongoTemplate).getRepository(SensorDataRepository.class);
+        } else {
+            repository = mock(SensorDataRepository.class, withSettings().stubOnly());
+            when(repository.save(any(SensorData.class))).thenAnswer(inv -> {
+                roundTrip(1);
+                return inv.getArgument(0);
+            });
+            mongoTemplate = mock(MongoTemplate.class, withSettings().stubOnly());
+            BulkOperations bulk = mock(BulkOperations.class, withSettings().stubOnly());
+            int[] pending = new int[1];
+            when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class))).thenReturn(bulk);
+            when(bulk.insert(anyList())).thenAnswer(inv -> {
+                pending[0] = inv.<List<?>>getArgument(0).size();
+                return bulk;
+            });
+            when(bulk.execute()).thenAnswer(inv -> {
+                roundTrip(pending[0]);
+                return BulkWriteResult.acknowledged(pending[0], 0, 0, 0, List.of(), List.of());
+            });
+        }
+        service = new SensorServiceImpl(repository, mongoTemplate, Duration.ofDays(7), Duration.ofSeconds(5), 1000, event -> { });
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        streamReader = new SensorBatchStreamReader(service, objectMapper, 1000);
+
+        StringBuilder body = new StringBuilder();
+        for (SensorData data : readings()) {
+            body.append(objectMapper.writeValueAsString(data)).append('\n');
+        }
+        ndjson = body.toString().getBytes();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (client != null) client.close();
+    }
+
+    private void roundTrip(int documents) {
+        long micros = rttMicros + documents * PER_DOCUMENT_MICROS;
+        if (micros > 0) LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+
+    /** Friss mérések minden híváshoz (a mentés kitölti az azonosítót). */
+    private static List<SensorData> readings() {
+        Instant now = Instant.now();
+        List<SensorData> readings = new ArrayList<>(READINGS);
+        for (int i = 0; i < READINGS; i++) {
+            readings.add(SensorData.builder()
+                    .greenhouseCode("GH-" + (i % 10))
+                    .code("S-" + (i % 50))
+                    .timestamp(now.minusMillis(i))
+                    .temperature(20 + (i % 10) * 0.5)
+                    .humidity(55.0)
+                    .soilMoisture(38.5)
+                    .windSpeed(2.5)
+                    .build());
+        }
+        return readings;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READINGS)
+    public int single() {
+        int saved = 0;
+        for (SensorData data : readings()) {
+            if (service.ingest(data) != null) saved++;
+        }
+        return saved;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READINGS)
+    public SensorBatchResult batch() {
+        return service.ingestBatch(readings());
+    }
+
+    /** A teljes HTTP-törzs út: NDJSON beolvasás, ellenőrzés, bulk mentés. */
+    @Benchmark
+    @OperationsPerInvocation(READINGS)
+    public SensorBatchResult batchNdjson() throws IOException {
+        return streamReader.ingest(new ByteArrayInputStream(ndjson));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SensorIngestBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -1,21 +1,39 @@
 package org.greenhouse.smart_greenhouse_backend.service.sensor;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult;
+import org.greenhouse.smart_greenhouse_backend.dto.SensorBatchResult.Status;
 import org.greenhouse.smart_greenhouse_backend.model.documents.SensorData;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.enums.Type;
 import org.greenhouse.smart_greenhouse_backend.repository.SensorDataRepository;
+import org.greenhouse.smart_greenhouse_backend.service.rule_evaluator.MetricsChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentMatchers;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class SensorServiceImplTest {
@@ -23,9 +41,22 @@ class SensorServiceImplTest {
     @Mock
     private SensorDataRepository repository;
 
-    @InjectMocks
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     private SensorServiceImpl service;
 
+    @BeforeEach
+    void setUp() {
+        service = new SensorServiceImpl(repository, mongoTemplate, Duration.ofDays(7), Duration.ofHours(1), 2, eventPublisher);
+    }
+
     @Test
     void ingest_shouldSetTimestampIfMissing() {
         SensorData data = SensorData.builder()
@@ -44,6 +75,48 @@ class SensorServiceImplTest {
         verify(repository).save(saved);
     }
 
+    /**
+     * Teszteli, hogy az üvegházhoz tartozó mérés mentése után a mért értékekkel változási esemény megy ki,
+     * üvegház nélküli mérésnél pedig nem.
+     */
+    @Test
+    void ingest_shouldPublishMetricsChangedEvent() {
+        SensorData data = SensorData.builder()
+                .greenhouseCode("GH1")
+                .code("S1")
+                .temperature(22.5)
+                .soilMoisture(40.0)
+                .build();
+        when(repository.save(any(SensorData.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        service.ingest(data);
+        service.ingest(SensorData.builder().temperature(30.0).build());
+
+        ArgumentCaptor<MetricsChangedEvent> event = ArgumentCaptor.forClass(MetricsChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals("GH1", event.getValue().greenhouseCode());
+        assertEquals("S1", event.getValue().sensorCode());
+        assertEquals(22.5, event.getValue().values()[Type.TEMPERATURE.ordinal()]);
+        assertEquals(40.0, event.getValue().values()[Type.SOILMOISTURE_PTC.ordinal()]);
+        assertTrue(Double.isNaN(event.getValue().values()[Type.HUMIDITY_PCT.ordinal()]));
+    }
+
+    /**
+     * Teszteli, hogy az ismételten beküldött mérés (azonos kód + időbélyeg) a már mentettet adja vissza,
+     * és nem küld újabb változási eseményt.
+     */
+    @Test
+    void ingest_shouldReturnExistingReading_whenSameCodeAndTimestampAlreadyStored() {
+        Instant timestamp = Instant.parse("2025-01-01T10:00:00Z");
+        SensorData existing = SensorData.builder().id("first").greenhouseCode("GH1").code("S1").timestamp(timestamp).temperature(20.0).build();
+        SensorData resent = SensorData.builder().greenhouseCode("GH1").code("S1").timestamp(timestamp).temperature(20.0).build();
+        when(repository.save(resent)).thenThrow(new DuplicateKeyException("E11000"));
+        when(repository.findFirstByCodeAndTimestamp("S1", timestamp)).thenReturn(Optional.of(existing));
+
+        assertSame(existing, service.ingest(resent));
+        verifyNoInteractions(eventPublisher);
+    }
+
     @Test
     void latest_shouldReturnMostRecentSensorData() {
         SensorData oldData = SensorData.builder()
@@ -60,8 +133,8 @@ class SensorServiceImplTest {
                 .temperature(25.0)
                 .build();
 
-        when(repository.findByCodeAndTimestampAfter(oldData.getCode(), ArgumentMatchers.any()))
-                .thenReturn(List.of(oldData, newData));
+        when(repository.findFirstByCodeOrderByTimestampDesc(oldData.getCode()))
+                .thenReturn(Optional.of(newData));
 
         Optional<SensorData> result = service.latest(newData.getCode());
 
@@ -69,4 +142,115 @@ class SensorServiceImplTest {
         assertEquals("2", result.get().getId());
         assertEquals(25.0, result.get().getTemperature());
     }
+
+    /**
+     * Teszteli, hogy a beérkező mérések után a legutolsó érték adatbázis-lekérdezés nélkül elérhető,
+     * és a később érkező régebbi mérés nem írja felül.
+     */
+    @Test
+    void latest_shouldServeIngestedValueWithoutQuery_andIgnoreOutOfOrderReadings() {
+        when(repository.save(any(SensorData.class))).thenAnswer(inv -> inv.getArgument(0));
+        Instant now = Instant.now();
+
+        service.ingest(SensorData.builder().id("2").code("sensor1").timestamp(now).temperature(25.0).build());
+        service.ingest(SensorData.builder().id("1").code("sensor1").timestamp(now.minusSeconds(60)).temperature(20.0).build());
+
+        assertEquals("2", service.latest("sensor1").orElseThrow().getId());
+        verify(repository, never()).findFirstByCodeOrderByTimestampDesc(any());
+    }
+
+    /**
+     * Teszteli, hogy a visszatöltött vagy sorrenden kívül érkező régebbi mérés (egyenként és kötegben is)
+     * nem küld változási eseményt, így nem írja felül az üvegház élő szenzorállapotát.
+     */
+    @Test
+    void ingest_shouldPublishOnlyReadingsThatBecomeLatest() {
+        when(repository.save(any(SensorData.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, SensorData.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        Instant now = Instant.now();
+
+        service.ingest(SensorData.builder().greenhouseCode("GH1").code("s1").timestamp(now).temperature(25.0).build());
+        service.ingest(SensorData.builder().greenhouseCode("GH1").code("s1").timestamp(now.minusSeconds(60)).temperature(20.0).build());
+        service.ingestBatch(List.of(
+                SensorData.builder().greenhouseCode("GH1").code("s1").timestamp(now.plusSeconds(10)).temperature(26.0).build(),
+                SensorData.builder().greenhouseCode("GH1").code("s1").timestamp(now.plusSeconds(5)).temperature(24.0).build()));
+
+        ArgumentCaptor<MetricsChangedEvent> events = ArgumentCaptor.forClass(MetricsChangedEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertEquals(List.of(25.0, 26.0), events.getAllValues().stream()
+                .map(event -> event.values()[Type.TEMPERATURE.ordinal()]).toList());
+    }
+
+    /**
+     * Teszteli, hogy a tárolási idő lejárta után a legutolsó mérést a Mongóból újraellenőrizzük, így a más
+     * példányon történt törlés vagy újabb beküldés nem marad rejtve.
+     */
+    @Test
+    void latest_shouldRecheckMongo_whenCachedEntryExpired() {
+        SensorServiceImpl shortLived = new SensorServiceImpl(repository, mongoTemplate, Duration.ofDays(7), Duration.ZERO, 2, eventPublisher);
+        when(repository.save(any(SensorData.class))).thenAnswer(inv -> inv.getArgument(0));
+        Instant now = Instant.now();
+        shortLived.ingest(SensorData.builder().id("2").code("sensor1").timestamp(now).temperature(25.0).build());
+
+        SensorData remote = SensorData.builder().id("3").code("sensor1").timestamp(now.plusSeconds(10)).temperature(27.0).build();
+        when(repository.findFirstByCodeOrderByTimestampDesc("sensor1"))
+                .thenReturn(Optional.of(remote))
+                .thenReturn(Optional.empty());
+
+        assertEquals("3", shortLived.latest("sensor1").orElseThrow().getId());
+        assertTrue(shortLived.latest("sensor1").isEmpty());
+        verify(repository, times(2)).findFirstByCodeOrderByTimestampDesc("sensor1");
+    }
+
+    /**
+     * Teszteli, hogy a túl régi utolsó mérést nem adja vissza.
+     */
+    @Test
+    void latest_shouldReturnEmpty_whenLastReadingIsTooOld() {
+        SensorData stale = SensorData.builder().id("1").code("sensor1")
+                .timestamp(Instant.now().minus(Duration.ofDays(8))).build();
+        when(repository.findFirstByCodeOrderByTimestampDesc("sensor1")).thenReturn(Optional.of(stale));
+
+        assertTrue(service.latest("sensor1").isEmpty());
+    }
+
+    /**
+     * Teszteli, hogy a kötegelt beküldés a hibás tételeket kiszűri, a többit részkötegenként menti,
+     * és a bulk hibákat a beküldés szerinti indexhez rendeli.
+     */
+    @Test
+    void ingestBatch_shouldValidateInBulkAndReportPerItemResults() {
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, SensorData.class)).thenReturn(bulkOperations);
+        List<List<SensorData>> inserted = new ArrayList<>();
+        when(bulkOperations.insert(anyList())).thenAnswer(inv -> {
+            inserted.add(new ArrayList<>(inv.<List<SensorData>>getArgument(0)));
+            return bulkOperations;
+        });
+        BulkWriteError duplicate = new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1);
+        when(bulkOperations.execute())
+                .thenReturn(BulkWriteResult.acknowledged(2, 0, 0, 0, List.of(), List.of()))
+                .thenThrow(new BulkOperationException("bulk", new MongoBulkWriteException(
+                        BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()),
+                        List.of(duplicate), null, new ServerAddress(), java.util.Set.of())));
+
+        List<SensorData> readings = List.of(
+                SensorData.builder().code("s1").temperature(21.0).build(),
+                SensorData.builder().code("s2").humidity(140.0).build(),
+                SensorData.builder().code("s1").temperature(22.0).timestamp(Instant.now().plusSeconds(30)).build(),
+                SensorData.builder().code("s3").soilMoisture(30.0).build(),
+                SensorData.builder().id("dup").code("s4").windSpeed(3.0).build());
+
+        SensorBatchResult result = service.ingestBatch(readings);
+
+        assertEquals(3, result.getAccepted());
+        assertEquals(2, result.getRejected());
+        assertEquals(List.of(Status.CREATED, Status.INVALID, Status.CREATED, Status.CREATED, Status.DUPLICATE),
+                result.getItems().stream().map(SensorBatchResult.Item::status).toList());
+        assertEquals("dup", result.getItems().get(4).id());
+        assertEquals(List.of(2, 2), inserted.stream().map(List::size).toList());
+        assertTrue(inserted.get(0).stream().allMatch(d -> d.getId() != null && d.getTimestamp() != null));
+        assertEquals(22.0, service.latest("s1").orElseThrow().getTemperature());
+        verify(repository, never()).save(any());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package org.greenhouse.smart_greenhouse_backend.service.weather;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingWeatherServiceTest {
+
+    @Mock
+    private WeatherService delegate;
+
+    private MutableClock clock;
+    private CachingWeatherService service;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-06-01T12:00:00Z"));
+        service = new CachingWeatherService(delegate, new SimpleMeterRegistry(), clock,
+                Duration.ofMinutes(10), WeatherLocationKey.Mode.GRID, 0.01);
+    }
+
+    private static WeatherDto weather(double temperature) {
+        return WeatherDto.builder().temperature(temperature).humidity(50.0).windSpeed(2.0).build();
+    }
+
+    /**
+     * Teszteli, hogy az egymáshoz közeli (azonos rácscellába eső) üvegházak egy külső hívásban osztoznak.
+     */
+    @Test
+    void fetchForLocation_shouldShareOneCallWithinGridCell() {
+        when(delegate.fetchForLocation(any(), anyDouble(), anyDouble())).thenReturn(Mono.just(weather(21.0)));
+
+        WeatherDto first = service.fetchForLocation("Budapest", 47.4971, 19.0401).block();
+        WeatherDto second = service.fetchForLocation("Budapest", 47.4979, 19.0409).block();
+
+        verify(delegate, times(1)).fetchForLocation(any(), anyDouble(), anyDouble());
+        assertEquals(21.0, second.getTemperature());
+        assertNotSame(first, second);
+        assertEquals(1, service.stats().hits());
+        assertEquals(1, service.stats().misses());
+    }
+
+    /**
+     * Teszteli, hogy az egyidejű kérések ugyanarra a folyamatban lévő hívásra várnak.
+     */
+    @Test
+    void fetchForLocation_shouldCollapseConcurrentRequests() {
+        AtomicInteger subscriptions = new AtomicInteger();
+        when(delegate.fetchForLocation(any(), any(), any())).thenReturn(
+                Mono.delay(Duration.ofMillis(50))
+                        .doOnSubscribe(s -> subscriptions.incrementAndGet())
+                        .map(t -> weather(18.0)));
+
+        Mono<WeatherDto> a = service.fetchForLocation("Szeged", null, null);
+        Mono<WeatherDto> b = service.fetchForLocation("szeged ", null, null);
+
+        assertEquals(2, Mono.zip(a, b).map(t -> 2).block());
+        assertEquals(1, subscriptions.get());
+    }
+
+    /**
+     * Teszteli, hogy a TTL lejárta után újra lekér, és ezt kilakoltatásként számolja.
+     */
+    @Test
+    void fetchForLocation_shouldRefetchAfterTtl() {
+        when(delegate.fetchForLocation(any(), anyDouble(), anyDouble()))
+                .thenReturn(Mono.just(weather(10.0)), Mono.just(weather(12.0)));
+
+        service.fetchForLocation("Pécs", 46.07, 18.23).block();
+        clock.advance(Duration.ofMinutes(11));
+        WeatherDto refreshed = service.fetchForLocation("Pécs", 46.07, 18.23).block();
+
+        assertEquals(12.0, refreshed.getTemperature());
+        assertEquals(2, service.stats().misses());
+        assertEquals(1, service.stats().evictions());
+    }
+
+    /**
+     * Teszteli, hogy a hibás választ nem tárolja, a következő hívás újra próbálkozik.
+     */
+    @Test
+    void fetchForLocation_shouldNotCacheErrors() {
+        when(delegate.fetchForLocation(any(), anyDouble(), anyDouble()))
+                .thenReturn(Mono.error(new IllegalStateException("503")), Mono.just(weather(15.0)));
+
+        assertThrows(IllegalStateException.class, () -> service.fetchForLocation("Győr", 47.68, 17.63).block());
+        WeatherDto retried = service.fetchForLocation("Győr", 47.68, 17.63).block();
+
+        assertEquals(15.0, retried.getTemperature());
+        verify(delegate, times(2)).fetchForLocation(any(), anyDouble(), anyDouble());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.greenhouse.smart_greenhouse_backend.service.weather;
+
+import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Az előrejelzés dekódolásának összehasonlítása rögzített OpenWeather válaszon.
+ * <ul>
+ *   <li>{@code legacy}: a WebClient {@code bodyToMono} útja – a darabok összefűzése,
+ *       a teljes {@code OpenWeatherForecastResponse} felépítése, majd leképezés;</li>
+ *   <li>{@code streaming}: {@link ForecastStreamDecoder}, elemenként a tokenizálás közben.</li>
+ * </ul>
+ * Futtatás a teszt classpath-szal ({@code mvn test-compile} után) a {@link #main} metódussal,
+ * vagy {@code org.openjdk.jmh.Main ForecastDecodeBenchmark -prof gc}. A {@code gc.alloc.rate.norm}
+ * sor a hívásonkénti foglalást mutatja.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ForecastDecodeBenchmark {
+
+    private static final ResolvableType RESPONSE_TYPE =
+            ResolvableType.forClass(WeatherServiceImpl.OpenWeatherForecastResponse.class);
+
+    /** A hálózati olvasás darabmérete bájtban (a Reactor Netty tipikusan ~1-8 KB-os darabokat ad). */
+    @Param({"1024", "8192"})
+    private int chunkSize;
+
+    private byte[] payload;
+    private Jackson2JsonDecoder jsonDecoder;
+    private ForecastStreamDecoder streamDecoder;
+
+    @Setup
+    public void setUp() throws IOException {
+        payload = ForecastStreamDecoderTest.recordedPayload();
+        jsonDecoder = new Jackson2JsonDecoder(Jackson2ObjectMapperBuilder.json().build());
+        streamDecoder = new ForecastStreamDecoder();
+    }
+
+    @Benchmark
+    public List<WeatherDto> legacy() {
+        return jsonDecoder.decodeToMono(ForecastStreamDecoderTest.chunked(payload, chunkSize), RESPONSE_TYPE, null, null)
+                .cast(WeatherServiceImpl.OpenWeatherForecastResponse.class)
+                .flatMapMany(resp -> Flux.fromIterable(resp.getList())
+                        .map(WeatherServiceImpl::mapForecastItemToDto))
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<WeatherDto> streaming() {
+        return streamDecoder.decode(ForecastStreamDecoderTest.chunked(payload, chunkSize))
+                .collectList()
+                .block();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ForecastDecodeBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,145 @@
+package org.greenhouse.smart_greenhouse_backend.service.weather;
+
+import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
+import org.greenhouse.smart_greenhouse_backend.model.auxiliaries.ForecastSlot;
+import org.greenhouse.smart_greenhouse_backend.model.documents.WeatherForecast;
+import org.greenhouse.smart_greenhouse_backend.repository.WeatherForecastRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ForecastStoreTest {
+
+    private static final Instant NOW = Instant.parse("2025-06-01T12:30:00Z");
+    private static final String KEY = WeatherLocationKey.of("Budapest", 47.4971, 19.0401, WeatherLocationKey.Mode.GRID, 0.01);
+
+    @Mock
+    private WeatherService delegate;
+
+    @Mock
+    private WeatherForecastRepository repository;
+
+    private ForecastStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new ForecastStore(delegate, repository, Clock.fixed(NOW, ZoneOffset.UTC),
+                Duration.ofHours(3), WeatherLocationKey.Mode.GRID, 0.01);
+    }
+
+    private static WeatherForecast stored(Instant validUntil, double temperature) {
+        return WeatherForecast.builder()
+                .id(KEY)
+                .city("Budapest")
+                .fetchedAt(validUntil.minus(Duration.ofHours(3)))
+                .validUntil(validUntil)
+                .slots(List.of(new ForecastSlot(NOW.plus(Duration.ofHours(3)), temperature, 50.0, 2.0, 0.0)))
+                .build();
+    }
+
+    private static WeatherDto slot(double temperature) {
+        return WeatherDto.builder()
+                .timestamp(NOW.plus(Duration.ofHours(3)))
+                .temperature(temperature)
+                .humidity(55.0)
+                .windSpeed(3.0)
+                .precipitationMm(0.0)
+                .build();
+    }
+
+    private List<WeatherDto> fetch() {
+        return store.fetchForecastForLocation("Budapest", 47.4971, 19.0401).collectList().block();
+    }
+
+    /**
+     * Teszteli, hogy a még érvényes tárolt előrejelzést adjuk vissza a szolgáltató hívása nélkül,
+     * és az ablakon belüli ismételt kérés a tárolóhoz sem fordul újra.
+     */
+    @Test
+    void fetchForecast_shouldServeFreshStoredForecastWithoutUpstreamCall() {
+        when(repository.findById(KEY)).thenReturn(Optional.of(stored(Instant.parse("2025-06-01T15:00:00Z"), 24.0)));
+
+        List<WeatherDto> first = fetch();
+        List<WeatherDto> second = fetch();
+
+        assertEquals(1, first.size());
+        assertEquals(24.0, first.get(0).getTemperature());
+        assertEquals(24.0, second.get(0).getTemperature());
+        verify(repository, times(1)).findById(KEY);
+        verifyNoInteractions(delegate);
+        verify(repository, never()).save(any());
+    }
+
+    /**
+     * Teszteli, hogy lejárt tárolt előrejelzésnél a frissítés hibája esetén az utolsó ismert adatot kapjuk.
+     */
+    @Test
+    void fetchForecast_shouldFallBackToStaleForecast_whenUpstreamFails() {
+        when(repository.findById(KEY)).thenReturn(Optional.of(stored(Instant.parse("2025-06-01T12:00:00Z"), 19.0)));
+        when(delegate.fetchForecastForLocation(any(), anyDouble(), anyDouble()))
+                .thenReturn(Flux.error(new IllegalStateException("503 Service Unavailable")));
+
+        List<WeatherDto> result = fetch();
+
+        assertEquals(1, result.size());
+        assertEquals(19.0, result.get(0).getTemperature());
+        verify(delegate, times(1)).fetchForecastForLocation(any(), anyDouble(), anyDouble());
+        verify(repository, never()).save(any());
+    }
+
+    /**
+     * Teszteli, hogy az egyszerre érkező, tárolt adat nélküli kérések egyetlen szolgáltatói hívásban
+     * és egyetlen mentésben osztoznak, az érvényesség pedig a következő ablakhatárig tart.
+     */
+    @Test
+    void fetchForecast_shouldCallUpstreamOnceForConcurrentMisses() throws Exception {
+        when(repository.findById(KEY)).thenReturn(Optional.empty());
+        when(repository.save(any(WeatherForecast.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(delegate.fetchForecastForLocation(any(), anyDouble(), anyDouble()))
+                .thenReturn(Flux.just(slot(22.0)).delayElements(Duration.ofMillis(100)));
+
+        int callers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<List<WeatherDto>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return fetch();
+                }));
+            }
+            start.countDown();
+            for (Future<List<WeatherDto>> result : results) {
+                assertEquals(22.0, result.get(5, TimeUnit.SECONDS).get(0).getTemperature());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(delegate, times(1)).fetchForecastForLocation(any(), anyDouble(), anyDouble());
+        verify(repository, times(1)).findById(KEY);
+        verify(repository).save(argThat(saved -> Instant.parse("2025-06-01T15:00:00Z").equals(saved.getValidUntil())));
+    }
+}
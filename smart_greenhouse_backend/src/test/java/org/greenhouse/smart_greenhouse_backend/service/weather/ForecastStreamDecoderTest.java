@@ -0,0 +1,111 @@
+package org.greenhouse.smart_greenhouse_backend.service.weather;
+
+import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastStreamDecoderTest {
+
+    private final ForecastStreamDecoder decoder = new ForecastStreamDecoder();
+
+    static byte[] recordedPayload() throws IOException {
+        try (InputStream in = ForecastStreamDecoderTest.class.getResourceAsStream("/weather/forecast-budapest.json")) {
+            assertNotNull(in, "hiányzó teszt payload");
+            return in.readAllBytes();
+        }
+    }
+
+    static Flux<DataBuffer> chunked(byte[] payload, int chunkSize) {
+        return Flux.defer(() -> {
+            List<DataBuffer> buffers = new ArrayList<>();
+            for (int offset = 0; offset < payload.length; offset += chunkSize) {
+                int length = Math.min(chunkSize, payload.length - offset);
+                buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(
+                        ByteBuffer.wrap(payload, offset, length).slice()));
+            }
+            return Flux.fromIterable(buffers);
+        });
+    }
+
+    /**
+     * Teszteli, hogy a streaming dekódolás tetszőleges darabolásnál ugyanazt adja, mint a teljes válasz leképezése.
+     */
+    @Test
+    void decode_shouldMatchLegacyMappingForAnyChunking() throws IOException {
+        byte[] payload = recordedPayload();
+        List<List<Object>> expected = Jackson2ObjectMapperBuilder.json().build()
+                .readValue(payload, WeatherServiceImpl.OpenWeatherForecastResponse.class)
+                .getList().stream()
+                .map(WeatherServiceImpl::mapForecastItemToDto)
+                .map(ForecastStreamDecoderTest::fields)
+                .toList();
+
+        for (int chunkSize : new int[]{1, 7, 512, payload.length}) {
+            List<List<Object>> actual = decoder.decode(chunked(payload, chunkSize))
+                    .map(ForecastStreamDecoderTest::fields)
+                    .collectList()
+                    .block();
+            assertEquals(expected, actual, "darabméret: " + chunkSize);
+        }
+        assertEquals(40, expected.size());
+    }
+
+    private static List<Object> fields(WeatherDto dto) {
+        return Arrays.asList(dto.getTimestamp(), dto.getTemperature(), dto.getHumidity(),
+                dto.getWindSpeed(), dto.getPrecipitationMm());
+    }
+
+    /**
+     * Teszteli, hogy az elemek már a teljes válasz beérkezése előtt megjelennek.
+     */
+    @Test
+    void decode_shouldEmitItemsBeforeBodyCompletes() {
+        String head = """
+                {"cod":"200","list":[
+                  {"dt":1750000000,"main":{"temp":21.5,"humidity":60},"wind":{"speed":3.1},"rain":{"3h":0.4}},
+                """;
+        AtomicInteger emittedBeforeTail = new AtomicInteger(-1);
+        List<WeatherDto> received = new ArrayList<>();
+
+        Flux<DataBuffer> body = Flux.just(head, "{\"dt\":1750010800,\"main\":{\"temp\":19.0,\"humidity\":70},\"wind\":{\"speed\":2.0}}]}")
+                .<DataBuffer>map(s -> DefaultDataBufferFactory.sharedInstance.wrap(s.getBytes(StandardCharsets.UTF_8)))
+                .doOnNext(b -> {
+                    if (emittedBeforeTail.get() < 0 && b.readableByteCount() < head.length()) {
+                        emittedBeforeTail.set(received.size());
+                    }
+                });
+
+        decoder.decode(body).doOnNext(received::add).blockLast();
+
+        assertEquals(1, emittedBeforeTail.get());
+        assertEquals(2, received.size());
+        assertEquals(0.4, received.get(0).getPrecipitationMm());
+        assertEquals(0.0, received.get(1).getPrecipitationMm());
+        assertEquals(60.0, received.get(0).getHumidity());
+    }
+
+    /**
+     * Teszteli, hogy a csonka válasz hibával zárul, nem néma üres eredménnyel.
+     */
+    @Test
+    void decode_shouldFailOnTruncatedBody() {
+        Flux<DataBuffer> body = Flux.just("{\"list\":[{\"dt\":1,\"main\":{\"temp\":1")
+                .<DataBuffer>map(s -> DefaultDataBufferFactory.sharedInstance.wrap(s.getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(RuntimeException.class, () -> decoder.decode(body).collectList().block());
+    }
+}
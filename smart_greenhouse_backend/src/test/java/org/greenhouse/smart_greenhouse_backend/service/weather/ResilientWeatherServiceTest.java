@@ -0,0 +1,149 @@
+package org.greenhouse.smart_greenhouse_backend.service.weather;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.greenhouse.smart_greenhouse_backend.config.WebClientConfig;
+import org.greenhouse.smart_greenhouse_backend.dto.WeatherDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A hibatűrő réteg tesztje egy helyi stub HTTP szerverrel, a valódi WebClient beállításokkal.
+ */
+class ResilientWeatherServiceTest {
+
+    private static final String CURRENT_JSON =
+            "{\"name\":\"Budapest\",\"main\":{\"temp\":21.5,\"humidity\":55},\"wind\":{\"speed\":3.0}}";
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final AtomicInteger requests = new AtomicInteger();
+    /** kérés sorszáma (1-től) → válasz */
+    private volatile IntFunction<StubResponse> behaviour = n -> new StubResponse(200, CURRENT_JSON, 0);
+
+    private SimpleMeterRegistry meterRegistry;
+    private CircuitBreaker breaker;
+    private ResilientWeatherService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverThreads = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(serverThreads);
+        server.start();
+
+        WebClient webClient = new WebClientConfig().weatherWebClient(
+                "http://127.0.0.1:" + server.getAddress().getPort(),
+                Duration.ofMillis(500),
+                Duration.ofSeconds(1),
+                10,
+                Duration.ofSeconds(1),
+                Duration.ofSeconds(30));
+        WeatherServiceImpl openWeather = new WeatherServiceImpl(webClient, new ForecastStreamDecoder());
+        ReflectionTestUtils.setField(openWeather, "apiKey", "test");
+        ReflectionTestUtils.setField(openWeather, "units", "metric");
+
+        meterRegistry = new SimpleMeterRegistry();
+        breaker = CircuitBreaker.of("test",
+                ResilientWeatherService.breakerConfig(50, 4, 4, Duration.ofMinutes(1)));
+        service = new ResilientWeatherService(openWeather, breaker, meterRegistry,
+                Duration.ofSeconds(5), 2, Duration.ofMillis(10), 0.2, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        StubResponse response = behaviour.apply(requests.incrementAndGet());
+        try {
+            if (response.delayMillis() > 0) Thread.sleep(response.delayMillis());
+            byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.status(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException | IOException e) {
+            // a kliens már bontotta a kapcsolatot
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Teszteli, hogy a lassú válasz időtúllépés után újrapróbálkozással sikerül.
+     */
+    @Test
+    void fetchForLocation_shouldRetryAfterSlowResponse() {
+        behaviour = n -> n == 1
+                ? new StubResponse(200, CURRENT_JSON, 3000)
+                : new StubResponse(200, CURRENT_JSON, 0);
+
+        WeatherDto dto = service.fetchForLocation("Budapest", 47.5, 19.04).block(Duration.ofSeconds(10));
+
+        assertEquals(21.5, dto.getTemperature());
+        assertEquals(2, requests.get());
+        assertEquals(1.0, meterRegistry.get("weather.client.retries").counter().count());
+    }
+
+    /**
+     * Teszteli, hogy tartós 5xx után a breaker kinyit, és a további hívások el sem jutnak a szerverig.
+     */
+    @Test
+    void fetchForLocation_shouldOpenBreakerOnPersistentFailures() {
+        behaviour = n -> new StubResponse(503, "{}", 0);
+
+        assertThrows(WebClientResponseException.ServiceUnavailable.class,
+                () -> service.fetchForLocation("Budapest", 47.5, 19.04).block(Duration.ofSeconds(10)));
+        assertThrows(CallNotPermittedException.class,
+                () -> service.fetchForLocation("Budapest", 47.5, 19.04).block(Duration.ofSeconds(10)));
+        int served = requests.get();
+        assertThrows(CallNotPermittedException.class,
+                () -> service.fetchForLocation("Budapest", 47.5, 19.04).block(Duration.ofSeconds(10)));
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(4, served);
+        assertEquals(served, requests.get());
+        assertEquals(2, meterRegistry.get("weather.client.calls").tag("outcome", "rejected").timer().count());
+    }
+
+    /**
+     * Teszteli, hogy a 4xx válasz nem ismétlődik és nem számít a breakerbe.
+     */
+    @Test
+    void fetchForLocation_shouldNotRetryClientErrors() {
+        behaviour = n -> new StubResponse(404, "{\"cod\":\"404\"}", 0);
+
+        assertThrows(WebClientResponseException.NotFound.class,
+                () -> service.fetchForLocation("Nincsilyen", null, null).block(Duration.ofSeconds(10)));
+
+        assertEquals(1, requests.get());
+        assertEquals(0, breaker.getMetrics().getNumberOfFailedCalls());
+    }
+
+    private record StubResponse(int status, String body, long delayMillis) {
+    }
+}